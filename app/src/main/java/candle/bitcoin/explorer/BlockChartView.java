@@ -0,0 +1,367 @@
+package candle.bitcoin.explorer;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.Locale;
+
+import candle.bitcoin.explorer.esplora.EsploraBlockPyramid;
+import candle.bitcoin.explorer.esplora.EsploraClient;
+import candle.bitcoin.explorer.esplora.EsploraFormatter;
+import candle.bitcoin.explorer.esplora.EsploraMetrics;
+
+/**
+ * Chart of a block metric over the received blocks, drawn from the {@link EsploraBlockPyramid}
+ * of the {@link EsploraClient}. Every point shows the range between minimum and maximum as a
+ * band and the average as a line. The amount of points is bounded by the width of the view, so
+ * a frame takes the same time for a window of a hundred blocks and for the whole chain.
+ * <p>
+ * Dragging pans the window, pinching zooms it around the fingers and a double tap shows all
+ * received blocks again. All methods must be called from the main thread.
+ */
+public class BlockChartView extends View {
+    // maximum amount of points, about one per two pixels of a wide screen
+    private static final int MAX_POINTS = 1024;
+
+    // horizontal distance between points
+    private static final float POINT_SPACING_DP = 2;
+
+    // smallest window that can be zoomed to
+    private static final int MIN_WINDOW_BLOCKS = 16;
+
+    // time spent drawing the chart in microseconds
+    private static final EsploraMetrics.Histogram drawTime =
+            EsploraMetrics.get().histogram("chart.draw_us");
+
+    private final EsploraBlockPyramid.Series series = new EsploraBlockPyramid.Series(MAX_POINTS);
+
+    // line segments of the bands and of the average, reused between frames
+    private final float[] bandLines = new float[MAX_POINTS * 4];
+    private final float[] averageLines = new float[MAX_POINTS * 4];
+
+    private final Paint bandPaint = new Paint();
+    private final Paint averagePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private final float pointSpacing;
+    private final float labelPadding;
+
+    private final GestureDetector gestureDetector;
+    private final ScaleGestureDetector scaleGestureDetector;
+
+    private EsploraBlockPyramid.Metric metric = EsploraBlockPyramid.Metric.SIZE;
+
+    // shown window of heights, the end excluded, empty until the first frame with blocks
+    private double windowStart = 0;
+    private double windowEnd = 0;
+
+    /**
+     * @param context The context of the view.
+     * @param attrs   Attributes of the view in the layout.
+     */
+    public BlockChartView(final Context context, final AttributeSet attrs) {
+        super(context, attrs);
+
+        pointSpacing = dp(POINT_SPACING_DP);
+        labelPadding = dp(4);
+
+        bandPaint.setColor(ContextCompat.getColor(context, R.color.colorPrimaryDark));
+        bandPaint.setAlpha(128);
+
+        averagePaint.setColor(ContextCompat.getColor(context, R.color.colorPrimary));
+        averagePaint.setStrokeWidth(dp(1.5f));
+
+        labelPaint.setColor(Color.WHITE);
+        labelPaint.setTextSize(TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_SP,
+                11,
+                getResources().getDisplayMetrics()
+        ));
+
+        gestureDetector = new GestureDetector(
+                context,
+                new GestureDetector.SimpleOnGestureListener() {
+                    @Override
+                    public boolean onDown(final MotionEvent event) {
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onScroll(
+                            final MotionEvent first,
+                            final MotionEvent current,
+                            final float distanceX,
+                            final float distanceY
+                    ) {
+                        final double shift = distanceX / getWidth() * (windowEnd - windowStart);
+
+                        setWindow(windowStart + shift, windowEnd + shift);
+
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onDoubleTap(final MotionEvent event) {
+                        resetWindow();
+                        invalidate();
+
+                        return true;
+                    }
+                }
+        );
+
+        scaleGestureDetector = new ScaleGestureDetector(
+                context,
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                    @Override
+                    public boolean onScale(final ScaleGestureDetector detector) {
+                        // keep the height under the fingers in place
+                        final double focus = detector.getFocusX() / getWidth();
+                        final double span = windowEnd - windowStart;
+                        final double focusHeight = windowStart + focus * span;
+                        final double newSpan = span / detector.getScaleFactor();
+
+                        setWindow(
+                                focusHeight - focus * newSpan,
+                                focusHeight + (1 - focus) * newSpan
+                        );
+
+                        return true;
+                    }
+                }
+        );
+    }
+
+    /**
+     * @param metric The metric to show.
+     */
+    public void setMetric(final EsploraBlockPyramid.Metric metric) {
+        this.metric = metric;
+        invalidate();
+    }
+
+    /**
+     * @return The shown metric.
+     */
+    public EsploraBlockPyramid.Metric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Handles pan and zoom gestures.
+     *
+     * @param event The touch event.
+     * @return Always true.
+     */
+    @Override
+    public boolean onTouchEvent(final MotionEvent event) {
+        scaleGestureDetector.onTouchEvent(event);
+
+        if (!scaleGestureDetector.isInProgress()) {
+            gestureDetector.onTouchEvent(event);
+        }
+
+        return true;
+    }
+
+    /**
+     * Draws the points of the shown window, queried from the pyramid for every frame.
+     *
+     * @param canvas The canvas to draw on.
+     */
+    @Override
+    protected void onDraw(final Canvas canvas) {
+        final long drawStartedAt = System.nanoTime();
+        final EsploraBlockPyramid pyramid = EsploraClient.getBlockPyramid();
+        final float width = getWidth();
+        final float height = getHeight();
+
+        if (pyramid.getLowHeight() < 0) {
+            canvas.drawText(
+                    getContext().getString(R.string.chart_no_blocks),
+                    labelPadding,
+                    height / 2,
+                    labelPaint
+            );
+            return;
+        }
+
+        if (windowEnd <= windowStart) {
+            resetWindow();
+        }
+
+        final int maxPoints = Math.max(1, Math.min(MAX_POINTS, (int) (width / pointSpacing)));
+
+        pyramid.query(
+                metric,
+                (int) Math.floor(windowStart),
+                (int) Math.ceil(windowEnd) - 1,
+                maxPoints,
+                series
+        );
+
+        // scale the values to the plot, leaving room for the labels
+        final float top = labelPaint.getTextSize() + 2 * labelPadding;
+        final float bottom = height - top;
+        final double valueMin = series.getMin();
+        final double valueRange = Math.max(1, series.getMax() - valueMin);
+        final double scaleY = (bottom - top) / valueRange;
+        final double scaleX = width / (windowEnd - windowStart);
+        final int blocksPerPoint = series.getBlocksPerPoint();
+
+        bandPaint.setStrokeWidth(Math.max(1, (float) (blocksPerPoint * scaleX) - 1));
+
+        int bandLength = 0;
+        int averageLength = 0;
+        float previousX = 0;
+        float previousY = 0;
+        boolean hasPrevious = false;
+
+        for (int point = 0; point < series.getPointCount(); point++) {
+            if (!series.hasValue(point)) {
+                // leave a gap in the average line for heights without blocks
+                hasPrevious = false;
+                continue;
+            }
+
+            final double center =
+                    series.getStartHeight() + (point + 0.5) * blocksPerPoint - windowStart;
+            final float x = (float) (center * scaleX);
+
+            bandLines[bandLength++] = x;
+            bandLines[bandLength++] = toY(series.getMin(point), valueMin, scaleY, bottom);
+            bandLines[bandLength++] = x;
+            bandLines[bandLength++] = toY(series.getMax(point), valueMin, scaleY, bottom);
+
+            final float y = toY(series.getAverage(point), valueMin, scaleY, bottom);
+
+            if (hasPrevious) {
+                averageLines[averageLength++] = previousX;
+                averageLines[averageLength++] = previousY;
+                averageLines[averageLength++] = x;
+                averageLines[averageLength++] = y;
+            }
+
+            previousX = x;
+            previousY = y;
+            hasPrevious = true;
+        }
+
+        canvas.drawLines(bandLines, 0, bandLength, bandPaint);
+        canvas.drawLines(averageLines, 0, averageLength, averagePaint);
+
+        // value range on the left, height range and resolution at the bottom
+        final float textHeight = labelPaint.getTextSize();
+
+        canvas.drawText(formatValue(series.getMax()), labelPadding, textHeight, labelPaint);
+        canvas.drawText(
+                formatValue(series.getMin()),
+                labelPadding,
+                bottom + labelPadding + textHeight,
+                labelPaint
+        );
+
+        final String heights = EsploraFormatter.blockHeight((int) windowStart) + " - "
+                + EsploraFormatter.blockHeight((int) Math.ceil(windowEnd) - 1) + " ("
+                + getContext().getString(R.string.chart_blocks_per_point, blocksPerPoint) + ")";
+
+        canvas.drawText(
+                heights,
+                width - labelPadding - labelPaint.measureText(heights),
+                height - labelPadding,
+                labelPaint
+        );
+
+        drawTime.recordSince(drawStartedAt);
+    }
+
+    /**
+     * @param value    A value of the shown metric.
+     * @param valueMin The value at the bottom of the plot.
+     * @param scaleY   Pixels per value unit.
+     * @param bottom   Bottom of the plot in pixels.
+     * @return Vertical position of the value in pixels.
+     */
+    private static float toY(
+            final double value,
+            final double valueMin,
+            final double scaleY,
+            final float bottom
+    ) {
+        return (float) (bottom - (value - valueMin) * scaleY);
+    }
+
+    /**
+     * Shows all received blocks.
+     */
+    private void resetWindow() {
+        final EsploraBlockPyramid pyramid = EsploraClient.getBlockPyramid();
+
+        windowStart = pyramid.getLowHeight();
+        windowEnd = pyramid.getHighHeight() + 1;
+    }
+
+    /**
+     * Moves the window, kept within the received blocks and at least
+     * {@link #MIN_WINDOW_BLOCKS} wide, and redraws the chart.
+     *
+     * @param start First height of the window.
+     * @param end   Height after the window.
+     */
+    private void setWindow(final double start, final double end) {
+        final EsploraBlockPyramid pyramid = EsploraClient.getBlockPyramid();
+        final double low = pyramid.getLowHeight();
+        final double high = pyramid.getHighHeight() + 1;
+
+        final double span = Math.min(high - low, Math.max(MIN_WINDOW_BLOCKS, end - start));
+        final double center = (start + end) / 2;
+
+        windowStart = Math.max(low, Math.min(high - span, center - span / 2));
+        windowEnd = windowStart + span;
+
+        invalidate();
+    }
+
+    /**
+     * @param value A value of the shown metric.
+     * @return The value formatted with its unit.
+     */
+    private String formatValue(final int value) {
+        final Context context = getContext();
+
+        switch (metric) {
+            case SIZE:
+                return EsploraFormatter.byteSize(value) + " "
+                        + context.getString(R.string.size_unit);
+            case WEIGHT:
+                return EsploraFormatter.byteSize(value) + " "
+                        + context.getString(R.string.weight_unit);
+            case INTERVAL:
+                return String.format(Locale.US, "%.1f min", value / 60.0);
+            default:
+                return Integer.toString(value);
+        }
+    }
+
+    /**
+     * @param dp A length in density independent pixels.
+     * @return The length in pixels.
+     */
+    private float dp(final float dp) {
+        return TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_DIP,
+                dp,
+                getResources().getDisplayMetrics()
+        );
+    }
+}
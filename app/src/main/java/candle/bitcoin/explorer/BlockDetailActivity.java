@@ -2,7 +2,6 @@ package candle.bitcoin.explorer;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Parcelable;
 import android.view.MenuItem;
 import android.view.View;
 
@@ -23,9 +22,6 @@ import candle.bitcoin.explorer.esplora.EsploraBlock;
  */
 public class BlockDetailActivity extends AppCompatActivity {
 
-    // EsploraBlock object to present with this activity
-    private EsploraBlock esploraBlock = null;
-
     /**
      * Called on creation of this activity view.
      *
@@ -55,6 +51,14 @@ public class BlockDetailActivity extends AppCompatActivity {
         fab.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(final View view) {
+                // share the block currently shown in the pager
+                final BlockDetailFragment fragment = (BlockDetailFragment)
+                        getSupportFragmentManager().findFragmentById(R.id.block_detail_container);
+
+                final EsploraBlock esploraBlock = fragment != null
+                        ? fragment.getSelectedBlock()
+                        : null;
+
                 if (esploraBlock == null) {
                     return;
                 }
@@ -73,17 +77,15 @@ public class BlockDetailActivity extends AppCompatActivity {
         // In this case, the fragment will automatically be re-added
         // to its container so we don't need to manually add it.
         if (savedInstanceState == null) {
-            // restore EsploraBlock object from intent
+            // the intent carries only the height and the hash of the block
             final Intent intent = getIntent();
-            if (!intent.hasExtra("block")) {
+            if (!intent.hasExtra(BlockDetailFragment.ARG_BLOCK_HEIGHT)) {
                 return;
             }
 
-            esploraBlock = intent.getParcelableExtra("block");
-
             // create the detail fragment and add it to the activity
             final Bundle arguments = new Bundle();
-            arguments.putParcelable("block", esploraBlock);
+            arguments.putAll(intent.getExtras());
 
             final BlockDetailFragment fragment = new BlockDetailFragment();
             fragment.setArguments(arguments);
@@ -91,9 +93,6 @@ public class BlockDetailActivity extends AppCompatActivity {
             getSupportFragmentManager().beginTransaction()
                     .add(R.id.block_detail_container, fragment)
                     .commit();
-        } else {
-            // restore EsploraBlock object from parcel
-            esploraBlock = savedInstanceState.getParcelable("block");
         }
     }
 
@@ -115,16 +114,4 @@ public class BlockDetailActivity extends AppCompatActivity {
 
         return super.onOptionsItemSelected(item);
     }
-
-    /**
-     * Called when the state of this instance is saved (i.e. rotating the screen). Adds block data
-     * in the {@link Parcelable} format to the state, in order to
-     *
-     * @param outState Instance state to be saved.
-     */
-    @Override
-    public void onSaveInstanceState(final Bundle outState) {
-        outState.putParcelable("block", esploraBlock);
-        super.onSaveInstanceState(outState);
-    }
 }
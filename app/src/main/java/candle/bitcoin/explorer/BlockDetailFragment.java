@@ -1,6 +1,6 @@
 package candle.bitcoin.explorer;
 
-import android.annotation.SuppressLint;
+import android.app.Activity;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -8,21 +8,42 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.fragment.app.Fragment;
+import androidx.viewpager.widget.ViewPager;
 
 import com.google.android.material.appbar.CollapsingToolbarLayout;
 
 import candle.bitcoin.explorer.esplora.EsploraBlock;
+import candle.bitcoin.explorer.esplora.EsploraBlockRepository;
+import candle.bitcoin.explorer.esplora.EsploraClient;
 import candle.bitcoin.explorer.esplora.EsploraFormatter;
 
 /**
- * A fragment representing a single Block detail screen.
+ * A fragment representing the Block detail screen. The details are shown in a pager, swiping
+ * moves to the previous or next block. Page views are reused and the adjacent blocks are
+ * prefetched, see {@link BlockDetailPagerAdapter}.
  * This fragment is either contained in a {@link BlockListActivity} two-pane mode (on tablets)
  * or a {@link BlockDetailActivity} on handsets.
  */
 @SuppressWarnings("WeakerAccess")
 public class BlockDetailFragment extends Fragment {
-    // the EsploraBlock object presented in this fragment
-    private EsploraBlock esploraBlock;
+    /**
+     * Argument and saved state key of the height of the shown block.
+     */
+    static final String ARG_BLOCK_HEIGHT = "block_height";
+
+    /**
+     * Argument and saved state key of the hash of the shown block.
+     */
+    static final String ARG_BLOCK_HASH = "block_hash";
+
+    // height of the selected page, -1 when no block was selected yet
+    private int selectedHeight = -1;
+
+    // hash of the block shown first, used to look it up in the block repository
+    private String selectedHash;
+
+    private ViewPager viewPager;
+    private BlockDetailPagerAdapter pagerAdapter;
 
     /**
      * Mandatory empty constructor for the fragment manager to instantiate the
@@ -32,8 +53,34 @@ public class BlockDetailFragment extends Fragment {
     }
 
     /**
-     * Initialize the block detail activity and retrieve the given {@link EsploraBlock} object (if
-     * one is given).
+     * Creates the arguments of a fragment showing the given block. Only the height and the hash
+     * are passed, the fragment takes the block from the {@link EsploraBlockRepository}.
+     *
+     * @param block The block to be shown.
+     * @return The fragment arguments.
+     */
+    static Bundle createArguments(final EsploraBlock block) {
+        return createArguments(block.getHeight(), block.getHash());
+    }
+
+    /**
+     * Creates the arguments of a fragment showing the block at the given height.
+     *
+     * @param blockHeight The height of the block to be shown.
+     * @param blockHash   The hash of the block to be shown or null if unknown.
+     * @return The fragment arguments.
+     */
+    static Bundle createArguments(final int blockHeight, final String blockHash) {
+        final Bundle arguments = new Bundle();
+        arguments.putInt(ARG_BLOCK_HEIGHT, blockHeight);
+        arguments.putString(ARG_BLOCK_HASH, blockHash);
+
+        return arguments;
+    }
+
+    /**
+     * Initialize the block detail activity and retrieve the height and hash of the given block
+     * (if one is given).
      *
      * @param savedInstanceState Saved instance bundle from a previous instance.
      */
@@ -41,152 +88,183 @@ public class BlockDetailFragment extends Fragment {
     public void onCreate(final Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        // get arguments
-        final Bundle arguments = getArguments();
-        if (arguments == null || !arguments.containsKey("block")) {
-            return;
-        }
+        // restore the page selected before (e.g. before rotating the screen) or get arguments
+        final Bundle state = savedInstanceState != null ? savedInstanceState : getArguments();
 
-        // get block
-        esploraBlock = arguments.getParcelable("block");
-        if (esploraBlock == null) {
-            return;
+        if (state != null) {
+            selectedHeight = state.getInt(ARG_BLOCK_HEIGHT, -1);
+            selectedHash = state.getString(ARG_BLOCK_HASH);
         }
     }
 
     /**
-     * Inflates the block detail view and populates it with the given EsploraBlock objects data.
+     * Inflates the block detail pager.
      *
-     * @param inflater              The LayoutInflater used to inflate the Layout.
-     * @param container             The Container ViewGroup.
-     * @param savedInstanceState    Saved instance bundle from a previous instance.
-     * @return The inflated and populated block detail view.
+     * @param inflater           The LayoutInflater used to inflate the Layout.
+     * @param container          The Container ViewGroup.
+     * @param savedInstanceState Saved instance bundle from a previous instance.
+     * @return The inflated block detail pager view.
      */
-    @SuppressLint("SetTextI18n")
     @Override
     public View onCreateView(
             final LayoutInflater inflater,
             final ViewGroup container,
             final Bundle savedInstanceState
     ) {
-        // inflate block detail view
-        final View rootView = inflater.inflate(
-                R.layout.block_detail,
-                container,
-                false
+        return inflater.inflate(R.layout.block_detail_pager, container, false);
+    }
+
+    /**
+     * Sets up the pager and shows the selected block.
+     *
+     * @param view               The view returned by onCreateView.
+     * @param savedInstanceState Saved instance bundle from a previous instance.
+     */
+    @Override
+    public void onViewCreated(final View view, final Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        pagerAdapter = new BlockDetailPagerAdapter(
+                requireContext(),
+                Math.max(EsploraClient.getTipHeight(), selectedHeight),
+                new LifecycleRequestScope(getViewLifecycleOwner()),
+                new BlockDetailPagerAdapter.Listener() {
+                    @Override
+                    public void onBlockReceived(final EsploraBlock block) {
+                        if (block.getHeight() == selectedHeight) {
+                            updateHeader();
+                        }
+                    }
+                }
         );
 
+        viewPager = view.findViewById(R.id.block_detail_pager);
+        viewPager.setAdapter(pagerAdapter);
+        viewPager.addOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
+            @Override
+            public void onPageSelected(final int position) {
+                selectPage(position);
+            }
+        });
+
         /*
-         * Abort when no EsploraBlock was found. This happens when being in two pane mode (tablet)
-         * and no block was selected yet.
+         * Show an introduction text when no block was selected yet. This happens when being in
+         * two pane mode (tablet), so the right pane is not empty.
          */
-        if (esploraBlock == null) {
-            // display an introduction text, so the right pane is not empty
-            rootView.findViewById(R.id.introductionTextView)
-                    .setVisibility(View.VISIBLE);
-
-            return rootView;
+        if (selectedHeight < 0) {
+            view.findViewById(R.id.introductionTextView).setVisibility(View.VISIBLE);
+            return;
         }
 
-        // title
-        final CollapsingToolbarLayout toolbarLayout = getActivity().findViewById(R.id.toolbar_layout);
-        if (toolbarLayout != null) {
-            final String title = getString(R.string.block)
-                    + " "
-                    + EsploraFormatter.blockHeight(esploraBlock.getHeight());
+        viewPager.setVisibility(View.VISIBLE);
+        viewPager.setCurrentItem(selectedHeight, false);
+        selectPage(selectedHeight);
+    }
 
-            toolbarLayout.setTitle(title);
-        }
+    /**
+     * Releases the views of the pager, pending requests are cancelled by the request scope.
+     */
+    @Override
+    public void onDestroyView() {
+        viewPager = null;
+        pagerAdapter = null;
+        super.onDestroyView();
+    }
 
-        // hash - header
-        final TextView blockHashTextView = getActivity().findViewById(R.id.block_hash_header);
-        if(blockHashTextView != null) {
-            blockHashTextView.setText(
-                    esploraBlock.getHash()
-            );
-        }
+    /**
+     * Saves the selected page, so it is shown again after rotating the screen.
+     *
+     * @param outState Instance state to be saved.
+     */
+    @Override
+    public void onSaveInstanceState(final Bundle outState) {
+        super.onSaveInstanceState(outState);
 
-        // make detail TableView visible
-        rootView.findViewById(R.id.table_layout).setVisibility(View.VISIBLE);
+        final EsploraBlock selectedBlock = getSelectedBlock();
 
-        // height
-        final TextView heightTextView = rootView.findViewById(R.id.height);
-        heightTextView.setText(
-                EsploraFormatter.blockHeight(esploraBlock.getHeight())
+        outState.putInt(ARG_BLOCK_HEIGHT, selectedHeight);
+        outState.putString(
+                ARG_BLOCK_HASH,
+                selectedBlock != null ? selectedBlock.getHash() : selectedHash
         );
+    }
 
-        // timestamp
-        final TextView timestampTextView = rootView.findViewById(R.id.timestamp);
-        timestampTextView.setText(
-                EsploraFormatter.time(esploraBlock.getTime())
-        );
+    /**
+     * Shows a block by paging to it. The pager and its page views are kept, so this is cheap
+     * compared to creating a new fragment.
+     *
+     * @param block The block to be shown.
+     */
+    void showBlock(final EsploraBlock block) {
+        selectedHeight = block.getHeight();
+        selectedHash = block.getHash();
 
-        // transactions
-        final TextView transactionsTextView = rootView.findViewById(R.id.transactions);
-        transactionsTextView.setText(
-                Integer.toString(esploraBlock.getTxCount())
-        );
+        if (pagerAdapter == null) {
+            return;
+        }
 
-        // size
-        final TextView sizeTextView = rootView.findViewById(R.id.size);
-        sizeTextView.setText(
-                String.format(
-                        "%s %s",
-                        EsploraFormatter.byteSize(esploraBlock.getSize()),
-                        getString(R.string.size_unit)
-                )
-        );
+        pagerAdapter.setHeightMax(Math.max(EsploraClient.getTipHeight(), selectedHeight));
 
-        // size virtual
-        final TextView sizeVirtualTextView = rootView.findViewById(R.id.size_virtual);
-        sizeVirtualTextView.setText(
-                String.format(
-                        "%s %s",
-                        EsploraFormatter.byteSizeVirtual(esploraBlock.getSizeVirtual()),
-                        getString(R.string.size_virtual_unit)
-                )
-        );
+        getView().findViewById(R.id.introductionTextView).setVisibility(View.GONE);
+        viewPager.setVisibility(View.VISIBLE);
+        viewPager.setCurrentItem(selectedHeight, false);
+        selectPage(selectedHeight);
+    }
 
-        // weight
-        final TextView weightTextView = rootView.findViewById(R.id.weight);
-        weightTextView.setText(
-                String.format(
-                        "%s %s",
-                        EsploraFormatter.byteSize(esploraBlock.getWeight()),
-                        getString(R.string.weight_unit)
-                )
-        );
+    /**
+     * @return The block of the selected page or null if it was not received yet.
+     */
+    EsploraBlock getSelectedBlock() {
+        if (pagerAdapter == null || selectedHeight < 0) {
+            return null;
+        }
 
-        // version
-        final TextView versionTextView = rootView.findViewById(R.id.version);
-        versionTextView.setText(
-                EsploraFormatter.hex(esploraBlock.getVersion())
-        );
+        // prefer the exact block shown first, the height may be ambiguous close to the tip
+        final EsploraBlock block = EsploraClient.getBlockRepository().getBlock(selectedHash);
+        if (block != null && block.getHeight() == selectedHeight) {
+            return block;
+        }
 
-        // bits
-        final TextView bitsTextView = rootView.findViewById(R.id.bits);
-        bitsTextView.setText(
-                EsploraFormatter.hex(esploraBlock.getBits())
-        );
+        return pagerAdapter.getBlock(selectedHeight);
+    }
 
-        // nonce
-        final TextView nonceTextView = rootView.findViewById(R.id.nonce);
-        nonceTextView.setText(
-                EsploraFormatter.hex(esploraBlock.getNonce())
-        );
+    /**
+     * Called when a page got selected. Updates the header and prefetches the adjacent blocks.
+     *
+     * @param height Height of the selected page.
+     */
+    private void selectPage(final int height) {
+        selectedHeight = height;
 
-        // merkle_root
-        final TextView merkleRootTextView = rootView.findViewById(R.id.merkle_root);
-        merkleRootTextView.setText(
-                esploraBlock.getMerkleRoot()
-        );
+        updateHeader();
+        pagerAdapter.prefetchAround(height);
+    }
 
-        // hash
-        final TextView hashTextView = rootView.findViewById(R.id.hash);
-        hashTextView.setText(
-                esploraBlock.getHash()
-        );
+    /**
+     * Shows the height and the hash of the selected block in the header of the activity.
+     */
+    private void updateHeader() {
+        final Activity activity = getActivity();
+        if (activity == null) {
+            return;
+        }
 
-        return rootView;
+        final EsploraBlock selectedBlock = getSelectedBlock();
+
+        // title
+        final CollapsingToolbarLayout toolbarLayout = activity.findViewById(R.id.toolbar_layout);
+        if (toolbarLayout != null) {
+            final String title = getString(R.string.block)
+                    + " "
+                    + EsploraFormatter.blockHeight(selectedHeight);
+
+            toolbarLayout.setTitle(title);
+        }
+
+        // hash - header
+        final TextView blockHashTextView = activity.findViewById(R.id.block_hash_header);
+        if (blockHashTextView != null) {
+            blockHashTextView.setText(selectedBlock != null ? selectedBlock.getHash() : "");
+        }
     }
 }
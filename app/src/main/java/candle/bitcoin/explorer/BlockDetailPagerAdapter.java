@@ -0,0 +1,407 @@
+package candle.bitcoin.explorer;
+
+import android.content.Context;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.viewpager.widget.PagerAdapter;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import candle.bitcoin.explorer.esplora.EsploraBlock;
+import candle.bitcoin.explorer.esplora.EsploraBlockRepository;
+import candle.bitcoin.explorer.esplora.EsploraClient;
+import candle.bitcoin.explorer.esplora.EsploraEpochTracker;
+import candle.bitcoin.explorer.esplora.EsploraExecutors;
+import candle.bitcoin.explorer.esplora.EsploraFormatter;
+import candle.bitcoin.explorer.esplora.EsploraFuture;
+import candle.bitcoin.explorer.esplora.EsploraRequestPriority;
+import candle.bitcoin.explorer.esplora.EsploraRequestScope;
+
+/**
+ * Pages of the block detail pager, one page per block height. Page views are recycled: a view
+ * removed from the pager is kept and rebound to the next height instead of inflating a new one.
+ * <p>
+ * The blocks up to {@link #PREFETCH_DISTANCE} heights around the selected page are requested in
+ * the background, so swiping to an adjacent block usually shows it right away. Received blocks
+ * are taken from the {@link EsploraBlockRepository}. All methods must be called from the main
+ * thread.
+ */
+class BlockDetailPagerAdapter extends PagerAdapter {
+    // amount of blocks prefetched on each side of the selected page
+    static final int PREFETCH_DISTANCE = 3;
+
+    private final Context context;
+    private final LayoutInflater inflater;
+    private final EsploraRequestScope requestScope;
+    private final Listener listener;
+
+    // highest block height that can be paged to
+    private int heightMax;
+
+    // running requests by height
+    private final HashMap<Integer, EsploraFuture<EsploraBlock>> requests = new HashMap<>();
+
+    // page views currently in the pager by height, and page views ready to be reused
+    private final SparseArray<View> pageViews = new SparseArray<>();
+    private final ArrayDeque<View> recycledPageViews = new ArrayDeque<>();
+
+    /**
+     * @param context      The context used to inflate the page views.
+     * @param heightMax    Highest block height that can be paged to.
+     * @param requestScope Scope owning all requests of the pager.
+     * @param listener     Listener informed about received blocks.
+     */
+    BlockDetailPagerAdapter(
+            final Context context,
+            final int heightMax,
+            final EsploraRequestScope requestScope,
+            final Listener listener
+    ) {
+        this.context = context;
+        this.inflater = LayoutInflater.from(context);
+        this.heightMax = heightMax;
+        this.requestScope = requestScope;
+        this.listener = listener;
+    }
+
+    /**
+     * Raises the highest block height that can be paged to, for example after new blocks were
+     * mined.
+     *
+     * @param heightMax Highest block height.
+     */
+    void setHeightMax(final int heightMax) {
+        if (heightMax <= this.heightMax) {
+            return;
+        }
+
+        this.heightMax = heightMax;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Shows a block on its page, if the page is in the pager.
+     *
+     * @param block The block.
+     */
+    private void bindBlock(final EsploraBlock block) {
+        final View pageView = pageViews.get(block.getHeight());
+        if (pageView != null) {
+            bindBlock(pageView, block);
+        }
+    }
+
+    /**
+     * @param height A block height.
+     * @return The block at the given height or null if it was not received yet.
+     */
+    EsploraBlock getBlock(final int height) {
+        return EsploraClient.getBlockRepository().getBlock(height);
+    }
+
+    /**
+     * Requests the blocks around the selected page and cancels requests of blocks that moved
+     * out of the prefetch range.
+     *
+     * @param height Height of the selected page.
+     */
+    void prefetchAround(final int height) {
+        final Iterator<Map.Entry<Integer, EsploraFuture<EsploraBlock>>> iterator =
+                requests.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            final Map.Entry<Integer, EsploraFuture<EsploraBlock>> entry = iterator.next();
+
+            if (Math.abs(entry.getKey() - height) > PREFETCH_DISTANCE) {
+                entry.getValue().cancel();
+                iterator.remove();
+            }
+        }
+
+        // closest blocks first, the next block before the previous one
+        for (int distance = 1; distance <= PREFETCH_DISTANCE; distance++) {
+            prefetch(height + distance);
+            prefetch(height - distance);
+        }
+    }
+
+    /**
+     * Requests a block in the background unless it is received or requested already.
+     *
+     * @param height A block height.
+     */
+    private void prefetch(final int height) {
+        if (height < 0 || height > heightMax || getBlock(height) != null) {
+            return;
+        }
+
+        request(height, EsploraRequestPriority.PREFETCH);
+    }
+
+    /**
+     * Requests a block unless it is requested already and binds it to its page when received.
+     *
+     * @param height   A block height.
+     * @param priority The priority of the request.
+     */
+    private void request(final int height, final EsploraRequestPriority priority) {
+        if (requests.containsKey(height)) {
+            return;
+        }
+
+        final EsploraFuture<EsploraBlock> future = EsploraClient.fetchBlock(height, priority);
+        requests.put(height, future);
+        requestScope.add(future);
+
+        future.addListener(new EsploraFuture.Listener<EsploraBlock>() {
+            @Override
+            public void onSuccess(final EsploraBlock block) {
+                if (requests.get(height) != future) {
+                    return;
+                }
+
+                requests.remove(height);
+                bindBlock(block);
+                listener.onBlockReceived(block);
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                if (requests.get(height) != future) {
+                    return;
+                }
+
+                requests.remove(height);
+
+                final View pageView = pageViews.get(height);
+                if (pageView == null) {
+                    return;
+                }
+
+                // prefetch requests are dropped under pressure, request shown blocks again
+                if (priority == EsploraRequestPriority.PREFETCH) {
+                    request(height, EsploraRequestPriority.VISIBLE);
+                    return;
+                }
+
+                bindStatus(pageView, R.string.loading_blocks_error);
+            }
+        }, EsploraExecutors.mainThread());
+    }
+
+    @Override
+    public int getCount() {
+        return heightMax + 1;
+    }
+
+    @Override
+    public Object instantiateItem(final ViewGroup container, final int position) {
+        View pageView = recycledPageViews.poll();
+
+        if (pageView == null) {
+            pageView = inflater.inflate(R.layout.block_detail, container, false);
+            pageView.setTag(new PageViewHolder(pageView));
+        }
+
+        container.addView(pageView);
+        pageViews.put(position, pageView);
+
+        final EsploraBlock block = getBlock(position);
+
+        if (block != null) {
+            bindBlock(pageView, block);
+        } else {
+            bindStatus(pageView, R.string.loading_block);
+            request(position, EsploraRequestPriority.VISIBLE);
+        }
+
+        return pageView;
+    }
+
+    @Override
+    public void destroyItem(final ViewGroup container, final int position, final Object object) {
+        final View pageView = (View) object;
+
+        container.removeView(pageView);
+        pageViews.remove(position);
+        recycledPageViews.add(pageView);
+    }
+
+    @Override
+    public boolean isViewFromObject(final View view, final Object object) {
+        return view == object;
+    }
+
+    /**
+     * Shows a status text instead of the block details on a page.
+     *
+     * @param pageView The page view.
+     * @param textId   Resource id of the status text.
+     */
+    private void bindStatus(final View pageView, final int textId) {
+        final PageViewHolder holder = (PageViewHolder) pageView.getTag();
+
+        holder.tableLayout.setVisibility(View.GONE);
+        holder.statusTextView.setText(textId);
+        holder.statusTextView.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Populates a page with the data of a block.
+     *
+     * @param pageView The page view.
+     * @param block    The block shown on the page.
+     */
+    private void bindBlock(final View pageView, final EsploraBlock block) {
+        final PageViewHolder holder = (PageViewHolder) pageView.getTag();
+
+        holder.statusTextView.setVisibility(View.GONE);
+        holder.tableLayout.setVisibility(View.VISIBLE);
+
+        holder.heightTextView.setText(EsploraFormatter.blockHeight(block.getHeight()));
+        holder.timestampTextView.setText(EsploraFormatter.time(block.getTime()));
+        holder.transactionsTextView.setText(Integer.toString(block.getTxCount()));
+
+        holder.sizeTextView.setText(
+                String.format(
+                        "%s %s",
+                        EsploraFormatter.byteSize(block.getSize()),
+                        context.getString(R.string.size_unit)
+                )
+        );
+
+        holder.sizeVirtualTextView.setText(
+                String.format(
+                        "%s %s",
+                        EsploraFormatter.byteSizeVirtual(block.getSizeVirtual()),
+                        context.getString(R.string.size_virtual_unit)
+                )
+        );
+
+        holder.weightTextView.setText(
+                String.format(
+                        "%s %s",
+                        EsploraFormatter.byteSize(block.getWeight()),
+                        context.getString(R.string.weight_unit)
+                )
+        );
+
+        holder.versionTextView.setText(EsploraFormatter.hex(block.getVersion()));
+        holder.bitsTextView.setText(EsploraFormatter.hex(block.getBits()));
+        holder.nonceTextView.setText(EsploraFormatter.hex(block.getNonce()));
+        holder.merkleRootTextView.setText(block.getMerkleRoot());
+        holder.hashTextView.setText(block.getHash());
+
+        bindEpoch(holder, block);
+    }
+
+    /**
+     * Shows the difficulty of a block and its retarget epoch, with the adjustment at the end of
+     * the epoch if its duration is known, projected for the current epoch.
+     *
+     * @param holder The views of the page.
+     * @param block  The block shown on the page.
+     */
+    private void bindEpoch(final PageViewHolder holder, final EsploraBlock block) {
+        final EsploraEpochTracker.Epoch epoch =
+                EsploraClient.getEpochTracker().getEpochOf(block.getHeight());
+        final String difficulty = EsploraFormatter.difficulty(block.getDifficulty());
+
+        // the change is only known if a block of the previous epoch was received
+        holder.difficultyTextView.setText(epoch.getPreviousDifficulty() > 0
+                ? context.getString(
+                        R.string.difficulty_change,
+                        difficulty,
+                        epoch.getDifficultyChange() * 100
+                )
+                : difficulty
+        );
+
+        holder.epochTextView.setText(context.getString(
+                R.string.epoch_position,
+                epoch.getIndex(),
+                block.getHeight() - epoch.getStartHeight() + 1,
+                EsploraEpochTracker.EPOCH_LENGTH
+        ));
+
+        if (!epoch.hasDuration()) {
+            holder.adjustmentRow.setVisibility(View.GONE);
+        } else if (epoch.getRemainingBlockCount() > 0) {
+            holder.adjustmentTextView.setText(context.getString(
+                    R.string.adjustment_projected,
+                    epoch.getAdjustment() * 100,
+                    epoch.getRemainingBlockCount()
+            ));
+            holder.adjustmentRow.setVisibility(View.VISIBLE);
+        } else {
+            holder.adjustmentTextView.setText(context.getString(
+                    R.string.adjustment_actual,
+                    epoch.getAdjustment() * 100
+            ));
+            holder.adjustmentRow.setVisibility(View.VISIBLE);
+        }
+    }
+
+    /**
+     * Listener informed about blocks received by the pager.
+     */
+    interface Listener {
+        /**
+         * @param block The received block.
+         */
+        void onBlockReceived(EsploraBlock block);
+    }
+
+    /**
+     * Holds the views of a page, looked up once when the page view is inflated.
+     */
+    private static class PageViewHolder {
+        final TextView statusTextView;
+        final View tableLayout;
+        final TextView heightTextView;
+        final TextView timestampTextView;
+        final TextView transactionsTextView;
+        final TextView sizeTextView;
+        final TextView sizeVirtualTextView;
+        final TextView weightTextView;
+        final TextView versionTextView;
+        final TextView bitsTextView;
+        final TextView difficultyTextView;
+        final TextView epochTextView;
+        final View adjustmentRow;
+        final TextView adjustmentTextView;
+        final TextView nonceTextView;
+        final TextView merkleRootTextView;
+        final TextView hashTextView;
+
+        /**
+         * @param pageView The inflated page view.
+         */
+        PageViewHolder(final View pageView) {
+            statusTextView = pageView.findViewById(R.id.status);
+            tableLayout = pageView.findViewById(R.id.table_layout);
+            heightTextView = pageView.findViewById(R.id.height);
+            timestampTextView = pageView.findViewById(R.id.timestamp);
+            transactionsTextView = pageView.findViewById(R.id.transactions);
+            sizeTextView = pageView.findViewById(R.id.size);
+            sizeVirtualTextView = pageView.findViewById(R.id.size_virtual);
+            weightTextView = pageView.findViewById(R.id.weight);
+            versionTextView = pageView.findViewById(R.id.version);
+            bitsTextView = pageView.findViewById(R.id.bits);
+            difficultyTextView = pageView.findViewById(R.id.difficulty);
+            epochTextView = pageView.findViewById(R.id.epoch);
+            adjustmentRow = pageView.findViewById(R.id.adjustment_row);
+            adjustmentTextView = pageView.findViewById(R.id.adjustment);
+            nonceTextView = pageView.findViewById(R.id.nonce);
+            merkleRootTextView = pageView.findViewById(R.id.merkle_root);
+            hashTextView = pageView.findViewById(R.id.hash);
+        }
+    }
+}
@@ -3,25 +3,49 @@ package candle.bitcoin.explorer;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.text.InputType;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.TextView;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.google.android.material.snackbar.Snackbar;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
 import candle.bitcoin.explorer.esplora.EsploraBlock;
+import candle.bitcoin.explorer.esplora.EsploraBlockListSnapshot;
+import candle.bitcoin.explorer.esplora.EsploraBlockRangeIndex;
+import candle.bitcoin.explorer.esplora.EsploraChainStats;
 import candle.bitcoin.explorer.esplora.EsploraClient;
+import candle.bitcoin.explorer.esplora.EsploraEpochTracker;
+import candle.bitcoin.explorer.esplora.EsploraExecutors;
+import candle.bitcoin.explorer.esplora.EsploraFormatter;
+import candle.bitcoin.explorer.esplora.EsploraFunction;
+import candle.bitcoin.explorer.esplora.EsploraFuture;
+import candle.bitcoin.explorer.esplora.EsploraMetrics;
+import candle.bitcoin.explorer.esplora.EsploraRequestPriority;
 import candle.bitcoin.explorer.esplora.EsploraResponseCallback;
+import candle.bitcoin.explorer.esplora.EsploraTimeSearch;
 
 /**
  * An activity representing a list of Bitcoin blocks. This activity
@@ -34,6 +58,38 @@ import candle.bitcoin.explorer.esplora.EsploraResponseCallback;
  * and the selected block details side-by-side, using two vertical panes.
  */
 public class BlockListActivity extends AppCompatActivity implements SearchView.OnQueryTextListener {
+    // file name of the stored block hash index
+    private static final String BLOCK_HASH_INDEX_FILE = "block_hash_index";
+
+    // amount of block pages requested per session to backfill the block hash index
+    private static final int BLOCK_HASH_INDEX_BACKFILL_PAGES = 100;
+
+    // file name of the stored snapshot of the block list
+    private static final String BLOCK_LIST_SNAPSHOT_FILE = "block_list_snapshot";
+
+    // amount of blocks stored around the visible blocks of the list
+    private static final int BLOCK_LIST_SNAPSHOT_MARGIN = 20;
+
+    // pages of blocks loaded into the list
+    private static final EsploraMetrics.Rate pagesLoaded =
+            EsploraMetrics.get().rate("list.pages_loaded");
+
+    // time from the creation of the activity to the first rendered row in milliseconds
+    private static final EsploraMetrics.Histogram firstRowTimeRestored =
+            EsploraMetrics.get().histogram("list.first_row_ms.restored");
+    private static final EsploraMetrics.Histogram firstRowTimeRequested =
+            EsploraMetrics.get().histogram("list.first_row_ms.requested");
+
+    // preference key of the frame overlay setting
+    private static final String PREFERENCE_FRAME_OVERLAY = "frame_overlay";
+
+    // date formats accepted by the block search, most specific first
+    private static final String[] SEARCH_DATE_PATTERNS = {
+            "yyyy-MM-dd HH:mm:ss",
+            "yyyy-MM-dd HH:mm",
+            "yyyy-MM-dd"
+    };
+
     // the RecyclerView used to display the list of EsploraBlocks
     private BlockListRecyclerViewAdapter recyclerViewAdapter;
 
@@ -43,6 +99,9 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
     // search view used to search for a certain block height
     private SearchView searchView;
 
+    // suggestions of blocks matching a partial hash while typing
+    private BlockSearchSuggestions searchSuggestions;
+
     // two-pane mode (i.e. running on a tablet)
     private boolean isTwoPaneMode;
 
@@ -52,6 +111,21 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
     // delayed handler used to dismiss the loaderSnackbar
     private final Handler loaderSnackbarDelayedDismissHandler = new Handler();
 
+    // owns all requests of this activity, cancels them when the activity gets destroyed
+    private LifecycleRequestScope requestScope;
+
+    // time this activity was created, used to measure the time to the first rendered row
+    private long createdAt;
+
+    // indicates that the block list was restored from a snapshot
+    private boolean isBlockListRestored = false;
+
+    // measures frame durations and binds while the block list scrolls
+    private BlockListFrameMonitor frameMonitor;
+
+    // first block of a range to summarize, selected by a long click, or null
+    private EsploraBlock rangeStartBlock;
+
     /**
      * Called on creation of this activity view.
      *
@@ -61,9 +135,13 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
      */
     @Override
     protected void onCreate(final Bundle savedInstanceState) {
+        createdAt = SystemClock.elapsedRealtime();
+
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_block_list);
 
+        requestScope = new LifecycleRequestScope(this);
+
         // initialize toolbar
         final Toolbar toolbar = findViewById(R.id.toolbar);
         toolbar.setTitle(getTitle());
@@ -71,25 +149,316 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
 
         setSupportActionBar(toolbar);
 
+        // initialize
+        initPullToRefresh();
+        initBlockList();
+
+        // show the blocks of the last session right away
+        final EsploraBlockListSnapshot snapshot = restoreBlockList();
+
         // the detail container view will be present only in the large-screen layouts
         if (findViewById(R.id.block_detail_container) != null) {
             isTwoPaneMode = true;
 
             /*
              * In two pane mode (tablets) load an empty block detail container. This will make
-             * sure that the right pane isn't empty and shows a short introduction text.
+             * sure that the right pane isn't empty and shows a short introduction text, or the
+             * block selected in the last session. After rotating the screen the fragment
+             * restores the shown block itself.
              */
-            getSupportFragmentManager().beginTransaction()
-                    .replace(R.id.block_detail_container, new BlockDetailFragment())
-                    .commit();
-        }
+            if (getSupportFragmentManager().findFragmentById(R.id.block_detail_container) == null) {
+                final BlockDetailFragment fragment = new BlockDetailFragment();
 
-        // initialize
-        initPullToRefresh();
-        initBlockList();
+                if (snapshot != null && snapshot.getSelectedHeight() >= 0) {
+                    fragment.setArguments(BlockDetailFragment.createArguments(
+                            snapshot.getSelectedHeight(),
+                            snapshot.getSelectedHash()
+                    ));
+                }
+
+                getSupportFragmentManager().beginTransaction()
+                        .replace(R.id.block_detail_container, fragment)
+                        .commit();
+            }
+        }
 
-        // load latest blocks
+        // load latest blocks, merged into restored blocks
         doLoadMoreBlocks();
+
+        loadBlockHashIndex();
+    }
+
+    /**
+     * Called when this activity becomes visible. Shows the frame overlay if enabled.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        if (isFrameOverlayEnabled()) {
+            frameMonitor.showOverlay((TextView) findViewById(R.id.frame_overlay));
+        }
+
+        updateStatsHeader();
+        updateEpochHeader();
+    }
+
+    /**
+     * Shows the rolling statistics of the most recent blocks received in the stats header. The
+     * statistics are kept up to date by the {@link EsploraChainStats} as blocks arrive, so this
+     * never iterates the block list.
+     */
+    private void updateStatsHeader() {
+        final TextView statsHeader = findViewById(R.id.stats_header);
+        final EsploraChainStats.Snapshot stats = EsploraClient.getChainStats().getSnapshot();
+
+        // an interval needs at least two blocks
+        if (stats.getBlockCount() < 2) {
+            statsHeader.setVisibility(View.GONE);
+            return;
+        }
+
+        statsHeader.setText(getString(
+                R.string.stats_header,
+                stats.getBlockCount(),
+                stats.getBlocksPerHour(),
+                stats.getMeanInterval() / 60,
+                stats.getMedianInterval() / 60,
+                EsploraFormatter.byteSize((int) stats.getAverageSize()),
+                stats.getAverageTxCount(),
+                EsploraFormatter.hashrate(stats.getHashrate())
+        ));
+        statsHeader.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Called when this activity is no longer visible. Stores the block hash index, so heights
+     * can be resolved without requests in the next session, and a snapshot of the block list.
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+
+        frameMonitor.hideOverlay();
+
+        final File file = new File(getFilesDir(), BLOCK_HASH_INDEX_FILE);
+        final File snapshotFile = new File(getFilesDir(), BLOCK_LIST_SNAPSHOT_FILE);
+        final EsploraBlockListSnapshot snapshot = createBlockListSnapshot();
+
+        EsploraExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    EsploraClient.getBlockHashIndex().save(file);
+                } catch (IOException e) {
+                    Log.w("BlockListActivity", "unable to store block hash index", e);
+                }
+
+                if (snapshot == null) {
+                    return;
+                }
+
+                try {
+                    snapshot.save(snapshotFile);
+                } catch (IOException e) {
+                    Log.w("BlockListActivity", "unable to store block list snapshot", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Shows the difficulty epoch of the newest block and the projected next adjustment in the
+     * epoch header. The boundary blocks of the epoch are requested if they were not received.
+     * The future is owned by the requestScope, so the listener is dropped with this activity.
+     */
+    private void updateEpochHeader() {
+        requestScope.add(EsploraClient.getEpochTracker()
+                .fetchCurrentEpoch(EsploraRequestPriority.PREFETCH)
+                .addListener(new EsploraFuture.Listener<EsploraEpochTracker.Epoch>() {
+                    @Override
+                    public void onSuccess(final EsploraEpochTracker.Epoch epoch) {
+                        bindEpochHeader(epoch);
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                        // show what is known without the boundary blocks
+                        bindEpochHeader(EsploraClient.getEpochTracker().getCurrentEpoch());
+                    }
+                }, EsploraExecutors.mainThread()));
+    }
+
+    /**
+     * @param epoch The epoch of the newest block, or null if no block was received.
+     */
+    private void bindEpochHeader(final EsploraEpochTracker.Epoch epoch) {
+        final TextView epochHeader = findViewById(R.id.epoch_header);
+
+        // a projection needs the first block of the epoch and at least one more
+        if (epoch == null || !epoch.hasDuration()) {
+            epochHeader.setVisibility(View.GONE);
+            return;
+        }
+
+        final long remainingMillis = Math.max(
+                0,
+                epoch.getProjectedEndTime() - System.currentTimeMillis()
+        );
+
+        epochHeader.setText(getString(
+                R.string.epoch_header,
+                epoch.getIndex(),
+                epoch.getBlockCount(),
+                EsploraEpochTracker.EPOCH_LENGTH,
+                EsploraFormatter.difficulty(epoch.getDifficulty()),
+                epoch.getAdjustment() * 100,
+                epoch.getRemainingBlockCount(),
+                remainingMillis / 86400000.0
+        ));
+        epochHeader.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Creates a snapshot of the visible blocks and some blocks around them, the scroll position
+     * and the block selected in two pane mode.
+     *
+     * @return The snapshot or null if the block list is empty.
+     */
+    private EsploraBlockListSnapshot createBlockListSnapshot() {
+        final ArrayList<EsploraBlock> blocks = recyclerViewAdapter.getBlocks();
+        if (blocks.isEmpty()) {
+            return null;
+        }
+
+        final RecyclerView recyclerView = findViewById(R.id.block_list);
+        final LinearLayoutManager layoutManager =
+                (LinearLayoutManager) recyclerView.getLayoutManager();
+
+        final int firstVisible = Math.max(0, layoutManager.findFirstVisibleItemPosition());
+        final int lastVisible = Math.max(firstVisible, layoutManager.findLastVisibleItemPosition());
+
+        final View firstVisibleView = layoutManager.findViewByPosition(firstVisible);
+        final int scrollOffset = firstVisibleView != null
+                ? firstVisibleView.getTop() - recyclerView.getPaddingTop()
+                : 0;
+
+        final int start = Math.max(0, firstVisible - BLOCK_LIST_SNAPSHOT_MARGIN);
+        final int end = Math.min(blocks.size(), lastVisible + 1 + BLOCK_LIST_SNAPSHOT_MARGIN);
+
+        // the selected block is only restored in two pane mode
+        EsploraBlock selectedBlock = null;
+
+        if (isTwoPaneMode) {
+            final Fragment shownFragment = getSupportFragmentManager()
+                    .findFragmentById(R.id.block_detail_container);
+
+            if (shownFragment instanceof BlockDetailFragment) {
+                selectedBlock = ((BlockDetailFragment) shownFragment).getSelectedBlock();
+            }
+        }
+
+        return new EsploraBlockListSnapshot(
+                new ArrayList<>(blocks.subList(start, end)),
+                firstVisible - start,
+                scrollOffset,
+                selectedBlock != null ? selectedBlock.getHeight() : -1,
+                selectedBlock != null ? selectedBlock.getHash() : null
+        );
+    }
+
+    /**
+     * Restores the block list and its scroll position from the snapshot of the last session.
+     * The snapshot is small, so it is read on the main thread to show the blocks in the first
+     * frame.
+     *
+     * @return The restored snapshot or null if there is none.
+     */
+    private EsploraBlockListSnapshot restoreBlockList() {
+        final File file = new File(getFilesDir(), BLOCK_LIST_SNAPSHOT_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+
+        final EsploraBlockListSnapshot snapshot;
+
+        try {
+            snapshot = EsploraBlockListSnapshot.load(file);
+        } catch (IOException e) {
+            Log.w("BlockListActivity", "unable to restore block list snapshot", e);
+            return null;
+        }
+
+        if (snapshot.getBlocks().isEmpty()) {
+            return null;
+        }
+
+        recyclerViewAdapter.addBlocks(new ArrayList<>(snapshot.getBlocks()), true);
+        isBlockListRestored = true;
+
+        EsploraClient.addRestoredBlocks(snapshot.getBlocks());
+
+        final RecyclerView recyclerView = findViewById(R.id.block_list);
+        ((LinearLayoutManager) recyclerView.getLayoutManager()).scrollToPositionWithOffset(
+                snapshot.getScrollPosition(),
+                snapshot.getScrollOffset()
+        );
+
+        return snapshot;
+    }
+
+    /**
+     * Called when this activity gets destroyed. Owned requests are cancelled by the
+     * requestScope, pending Snackbar callbacks are removed here.
+     */
+    @Override
+    protected void onDestroy() {
+        loaderSnackbarDelayedDismissHandler.removeCallbacksAndMessages(null);
+
+        if (searchSuggestions != null) {
+            searchSuggestions.cancel();
+        }
+
+        frameMonitor.stop();
+
+        super.onDestroy();
+    }
+
+    /**
+     * Loads the stored block hash index in the background and backfills missing block hashes
+     * afterwards. Starts the header chain sync again, unless it is still running.
+     */
+    private void loadBlockHashIndex() {
+        final File file = new File(getFilesDir(), BLOCK_HASH_INDEX_FILE);
+
+        EsploraExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (file.exists()) {
+                    try {
+                        EsploraClient.getBlockHashIndex().load(file);
+                    } catch (IOException e) {
+                        Log.w("BlockListActivity", "unable to load block hash index", e);
+                    }
+                }
+
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (requestScope.isCancelled()) {
+                            return;
+                        }
+
+                        requestScope.add(EsploraClient.backfillBlockHashIndex(
+                                BLOCK_HASH_INDEX_BACKFILL_PAGES
+                        ));
+
+                        // the sync of the process catches up with the tip once it finished
+                        HeaderChain.startSync(BlockListActivity.this);
+                    }
+                });
+            }
+        });
     }
 
     /**
@@ -108,10 +477,45 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
                 final EsploraBlock block = (EsploraBlock) itemView.getTag();
                 showBlockDetail(block);
             }
+        }, new View.OnLongClickListener() {
+            // on block long click
+            @Override
+            public boolean onLongClick(final View itemView) {
+                selectRangeBlock((EsploraBlock) itemView.getTag());
+                return true;
+            }
         });
 
         recyclerView.setAdapter(recyclerViewAdapter);
 
+        // measure the smoothness of the list while it scrolls
+        frameMonitor = new BlockListFrameMonitor(this, recyclerViewAdapter);
+        recyclerView.addOnScrollListener(frameMonitor);
+
+        // measure the time from the creation of this activity to the first rendered row
+        recyclerView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        if (recyclerView.getChildCount() == 0) {
+                            return true;
+                        }
+
+                        recyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+
+                        final long firstRowTime = SystemClock.elapsedRealtime() - createdAt;
+
+                        if (isBlockListRestored) {
+                            firstRowTimeRestored.record(firstRowTime);
+                        } else {
+                            firstRowTimeRequested.record(firstRowTime);
+                        }
+
+                        return true;
+                    }
+                }
+        );
+
         // add a scroll listener to RecyclerViewAdapter
         recyclerView.addOnScrollListener(new RecyclerViewEndlessScrollListener(20) {
             @Override
@@ -152,8 +556,11 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
             final Integer startBlockHeight,
             final RecyclerViewEndlessScrollListener.LoadingFinishedCallback loadingFinishedCallback
     ) {
-
-        Log.d("test", "startBlockHeight " + startBlockHeight);
+        // recent blocks requested for a populated list (e.g. restored) are merged silently
+        if (startBlockHeight == null && recyclerViewAdapter.getItemCount() > 0) {
+            doRefreshBlocks();
+            return;
+        }
 
         // remove the Snackbar delayed dismiss callback (prevents flickering)
         loaderSnackbarDelayedDismissHandler.removeCallbacksAndMessages(null);
@@ -175,13 +582,16 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
         }
 
         // request more blocks
-        EsploraClient.getBlockList(startBlockHeight, new EsploraResponseCallback() {
+        requestScope.add(EsploraClient.getBlockList(startBlockHeight, new EsploraResponseCallback() {
             @Override
             public void onSuccess(final ArrayList<EsploraBlock> blocks) {
                 loaderSnackbar.setText(getString(R.string.loading_blocks_success));
+                pagesLoaded.mark();
 
                 // add loaded blocks
                 recyclerViewAdapter.addBlocks(blocks, startBlockHeight == null);
+                updateStatsHeader();
+                updateEpochHeader();
 
                 // finish loading
                 loadingDone();
@@ -211,7 +621,7 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
                     },1000
                 );
             }
-        });
+        }));
     }
 
     /**
@@ -221,6 +631,60 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
         doLoadMoreBlocks(null, null);
     }
 
+    /**
+     * Request the most recent blocks and merge them into the block list, keeping the scroll
+     * position on the block shown at the top. A cached list is revalidated first, so a pull to
+     * refresh never shows the list it should replace.
+     */
+    private void doRefreshBlocks() {
+        requestScope.add(EsploraClient.refreshBlockList(new EsploraResponseCallback() {
+            @Override
+            public void onSuccess(final ArrayList<EsploraBlock> blocks) {
+                swipeRefreshLayout.setRefreshing(false);
+                pagesLoaded.mark();
+
+                final RecyclerView recyclerView = findViewById(R.id.block_list);
+                final LinearLayoutManager layoutManager =
+                        (LinearLayoutManager) recyclerView.getLayoutManager();
+
+                // remember the block at the top, unless the newest block is shown
+                final int firstVisible = layoutManager.findFirstVisibleItemPosition();
+                final View firstVisibleView = layoutManager.findViewByPosition(firstVisible);
+                final EsploraBlock firstVisibleBlock = firstVisible > 0 && firstVisibleView != null
+                        ? (EsploraBlock) firstVisibleView.getTag()
+                        : null;
+
+                recyclerViewAdapter.mergeBlocks(blocks);
+                updateStatsHeader();
+                updateEpochHeader();
+
+                final int position = firstVisibleBlock != null
+                        ? recyclerViewAdapter.getBlockIndex(firstVisibleBlock.getHeight())
+                        : -1;
+
+                if (position >= 0) {
+                    layoutManager.scrollToPositionWithOffset(
+                            position,
+                            firstVisibleView.getTop() - recyclerView.getPaddingTop()
+                    );
+                } else {
+                    layoutManager.scrollToPosition(0);
+                }
+            }
+
+            @Override
+            public void onError() {
+                swipeRefreshLayout.setRefreshing(false);
+
+                Snackbar.make(
+                        swipeRefreshLayout,
+                        getString(R.string.loading_blocks_error),
+                        Snackbar.LENGTH_LONG
+                ).show();
+            }
+        }));
+    }
+
     /**
      * Show the details of a block. Depending on the screen size the details are either displayed
      * on the right pane (tablet) or the BlockDetailAcivity will be started (phone).
@@ -236,12 +700,17 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
 
         // show block details
         if (isTwoPaneMode) {
-            // on right pane
-            final Bundle arguments = new Bundle();
-            arguments.putParcelable("block", block);
+            // on right pane, page the shown fragment to the block instead of replacing it
+            final Fragment shownFragment = getSupportFragmentManager()
+                    .findFragmentById(R.id.block_detail_container);
+
+            if (shownFragment instanceof BlockDetailFragment) {
+                ((BlockDetailFragment) shownFragment).showBlock(block);
+                return;
+            }
 
             final BlockDetailFragment fragment = new BlockDetailFragment();
-            fragment.setArguments(arguments);
+            fragment.setArguments(BlockDetailFragment.createArguments(block));
 
             getSupportFragmentManager().beginTransaction()
                     .replace(R.id.block_detail_container, fragment)
@@ -250,12 +719,81 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
         } else {
             // start activity
             final Intent intent = new Intent(this, BlockDetailActivity.class);
-            intent.putExtra("block", block);
+            intent.putExtras(BlockDetailFragment.createArguments(block));
 
             startActivity(intent);
         }
     }
 
+    /**
+     * Selects the first or the last block of a range. The first selected block is remembered,
+     * selecting a second block shows the summary of the range between both.
+     *
+     * @param block The long clicked block.
+     */
+    private void selectRangeBlock(final EsploraBlock block) {
+        if (rangeStartBlock == null || rangeStartBlock.getHeight() == block.getHeight()) {
+            rangeStartBlock = block;
+
+            Snackbar.make(
+                    swipeRefreshLayout,
+                    getString(
+                            R.string.range_start_selected,
+                            EsploraFormatter.blockHeight(block.getHeight())
+                    ),
+                    Snackbar.LENGTH_LONG
+            ).show();
+
+            return;
+        }
+
+        final EsploraBlock startBlock = rangeStartBlock;
+        rangeStartBlock = null;
+
+        showRangeSummary(startBlock.getHeight(), block.getHeight());
+    }
+
+    /**
+     * Shows the totals and averages of the blocks between two heights in a dialog. The
+     * {@link EsploraBlockRangeIndex} answers the query without iterating the blocks.
+     *
+     * @param fromHeight A height of the range.
+     * @param toHeight   The other height of the range.
+     */
+    private void showRangeSummary(final int fromHeight, final int toHeight) {
+        final EsploraBlockRangeIndex.Summary summary =
+                EsploraClient.getBlockRangeIndex().query(fromHeight, toHeight);
+
+        final StringBuilder message = new StringBuilder(getString(
+                R.string.range_summary,
+                summary.getBlockCount(),
+                summary.getTxCount(),
+                EsploraFormatter.byteSizeTotal(summary.getSize()),
+                EsploraFormatter.byteSize((int) summary.getMaxWeight()),
+                summary.getAverageInterval() / 60,
+                summary.getMinInterval() / 60.0,
+                summary.getMaxInterval() / 60.0
+        ));
+
+        // blocks dropped from the index or never loaded are not counted
+        if (!summary.isComplete()) {
+            message.append("\n\n").append(getString(
+                    R.string.range_summary_incomplete,
+                    summary.getToHeight() - summary.getFromHeight() + 1 - summary.getBlockCount()
+            ));
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(getString(
+                        R.string.range_summary_title,
+                        EsploraFormatter.blockHeight(summary.getFromHeight()),
+                        EsploraFormatter.blockHeight(summary.getToHeight())
+                ))
+                .setMessage(message)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+
     /**
      * Inflates the toolbars menu and initializes the SearchView.
      *
@@ -272,29 +810,119 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
 
         searchView = (SearchView) searchItem.getActionView();
         searchView.setQueryHint(getString(R.string.block_search_hint));
-        searchView.setInputType(InputType.TYPE_CLASS_NUMBER);
+        searchView.setInputType(
+                InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_NO_SUGGESTIONS
+        );
         searchView.setOnQueryTextListener(this);
 
+        menu.findItem(R.id.frame_overlay).setChecked(isFrameOverlayEnabled());
+
+        searchSuggestions = new BlockSearchSuggestions(
+                this,
+                searchView,
+                new BlockSearchSuggestions.Listener() {
+                    @Override
+                    public void onBlockSelected(final int blockHeight) {
+                        searchSuggestions.cancel();
+
+                        final Snackbar searchSnackbar = Snackbar.make(
+                                swipeRefreshLayout,
+                                getString(R.string.searching),
+                                Snackbar.LENGTH_LONG
+                        );
+
+                        searchSnackbar.show();
+                        searchBlock(blockHeight, searchSnackbar);
+                    }
+                }
+        );
+
         return true;
     }
 
     /**
-     * Called when the user submits a search in the SearchView.
+     * @return True if the frame overlay is enabled in the overflow menu.
+     */
+    private boolean isFrameOverlayEnabled() {
+        return getPreferences(MODE_PRIVATE).getBoolean(PREFERENCE_FRAME_OVERLAY, false);
+    }
+
+    /**
+     * Opens the metrics debug screen or toggles the frame overlay when selected in the
+     * overflow menu.
+     *
+     * @param item  The selected menu item.
+     * @return      True if the selection was handled.
+     */
+    @Override
+    public boolean onOptionsItemSelected(final MenuItem item) {
+        if (item.getItemId() == R.id.charts) {
+            startActivity(new Intent(this, ChartActivity.class));
+            return true;
+        }
+
+        if (item.getItemId() == R.id.metrics) {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        }
+
+        if (item.getItemId() == R.id.frame_overlay) {
+            final boolean enabled = !item.isChecked();
+            item.setChecked(enabled);
+
+            getPreferences(MODE_PRIVATE).edit()
+                    .putBoolean(PREFERENCE_FRAME_OVERLAY, enabled)
+                    .apply();
+
+            if (enabled) {
+                frameMonitor.showOverlay((TextView) findViewById(R.id.frame_overlay));
+            } else {
+                frameMonitor.hideOverlay();
+            }
+
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Called when the user submits a search in the SearchView. Accepts a block height, a date,
+     * which is resolved to the first block at or after it, a full block hash or transaction id,
+     * or a partial block hash matching a single known block.
      *
      * @param query Text entered in the SearchView.
-     * @return Always true.
+     * @return True if the query was recognized.
      */
     @Override
     public boolean onQueryTextSubmit(final String query) {
-        int blockHeight;
+        final String trimmedQuery = query.trim();
+        int blockHeight = -1;
 
         try {
-            blockHeight = Integer.parseInt(query);
-        } catch(Exception e) {
-            // overflow
+            blockHeight = Integer.parseInt(trimmedQuery);
+        } catch (NumberFormatException e) {
+            // not a block height, maybe a date
+        }
+
+        // digits with a leading zero are the start of a block hash, like in the suggestions
+        if (trimmedQuery.length() > 1 && trimmedQuery.charAt(0) == '0') {
+            blockHeight = -1;
+        }
+
+        final Date date = blockHeight < 0 ? parseSearchDate(trimmedQuery) : null;
+
+        // otherwise a full or partial block hash or transaction id
+        final boolean idQuery = blockHeight < 0 && date == null;
+
+        if (idQuery && !BlockSearchSuggestions.isHexQuery(trimmedQuery)) {
             return false;
         }
 
+        if (searchSuggestions != null) {
+            searchSuggestions.cancel();
+        }
+
         // indicate to user that the search has been started
         final Snackbar searchSnackbar = Snackbar.make(
                 swipeRefreshLayout,
@@ -304,40 +932,135 @@ public class BlockListActivity extends AppCompatActivity implements SearchView.O
 
         searchSnackbar.show();
 
-        // get block data
-        EsploraClient.getBlock(blockHeight, new EsploraResponseCallback() {
+        if (!idQuery && date == null) {
+            searchBlock(blockHeight, searchSnackbar);
+            return true;
+        }
+
+        final EsploraFuture<Integer> heightSearch;
+
+        if (!idQuery) {
+            // find the height of the first block at or after the date, locally when possible
+            heightSearch = EsploraTimeSearch.search(
+                    date.getTime() / 1000,
+                    HeaderChain.getStore(this),
+                    EsploraRequestPriority.SEARCH
+            );
+        } else if (trimmedQuery.length() == 64) {
+            heightSearch = EsploraClient.fetchBlockHeightById(
+                    trimmedQuery,
+                    EsploraRequestPriority.SEARCH
+            );
+        } else {
+            // only an unambiguous prefix of a known block hash identifies a block
+            heightSearch = EsploraFuture.completed(trimmedQuery.toLowerCase(Locale.US)).map(
+                    new EsploraFunction<String, Integer>() {
+                        @Override
+                        public Integer apply(final String prefix) {
+                            final List<Integer> heights =
+                                    EsploraClient.getHashPrefixIndex().find(prefix, 2);
+
+                            return heights.size() == 1 ? heights.get(0) : -1;
+                        }
+                    },
+                    EsploraExecutors.background()
+            );
+        }
+
+        heightSearch.addListener(new EsploraFuture.Listener<Integer>() {
             @Override
-            public void onSuccess(ArrayList<EsploraBlock> blocks) {
-                if (blocks.isEmpty()) {
-                    onError();
+            public void onSuccess(final Integer height) {
+                if (height < 0) {
+                    searchSnackbar.setText(getString(
+                            idQuery ? R.string.search_no_match : R.string.search_no_block_found
+                    ));
                     return;
                 }
 
-                showBlockDetail(blocks.get(0));
+                searchBlock(height, searchSnackbar);
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                searchSnackbar.setText(getString(
+                        idQuery ? R.string.search_no_match : R.string.loading_blocks_error
+                ));
+            }
+        }, EsploraExecutors.mainThread());
+
+        requestScope.add(heightSearch);
+
+        return true;
+    }
+
+    /**
+     * Requests the block at the given height and shows it.
+     *
+     * @param blockHeight    The block height searched for.
+     * @param searchSnackbar Snackbar indicating the running search, dismissed when done.
+     */
+    private void searchBlock(final int blockHeight, final Snackbar searchSnackbar) {
+        // get block data, the user is waiting for it, usually requested while typing already
+        final EsploraFuture<EsploraBlock> future = EsploraClient.getSearchPrefetcher().fetchBlock(
+                blockHeight,
+                EsploraRequestPriority.SEARCH
+        );
+
+        future.addListener(new EsploraFuture.Listener<EsploraBlock>() {
+            @Override
+            public void onSuccess(final EsploraBlock block) {
+                showBlockDetail(block);
                 searchSnackbar.dismiss();
             }
 
             @Override
-            public void onError() {
+            public void onError(final Throwable error) {
                 Snackbar.make(
                         swipeRefreshLayout,
                         getString(R.string.loading_blocks_error),
                         Snackbar.LENGTH_LONG
                 ).show();
             }
-        });
+        }, EsploraExecutors.mainThread());
 
-        return true;
+        requestScope.add(future);
     }
 
     /**
-     * Unused onQueryTextChange.
+     * Parses a date entered in the SearchView, in the local time zone of the device.
+     *
+     * @param query Text entered in the SearchView.
+     * @return The date or null if the text is not a supported date.
+     */
+    private static Date parseSearchDate(final String query) {
+        for (final String pattern : SEARCH_DATE_PATTERNS) {
+            final SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+            format.setLenient(false);
+
+            final ParsePosition position = new ParsePosition(0);
+            final Date date = format.parse(query, position);
+
+            if (date != null && position.getIndex() == query.length()) {
+                return date;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Called when the text in the SearchView changes. Looks up blocks matching a partial hash
+     * and shows them as suggestions.
      *
      * @param newText The text entered in the SearchView.
-     * @return Always false.
+     * @return Always true.
      */
     @Override
     public boolean onQueryTextChange(final String newText) {
-        return false;
+        if (searchSuggestions != null) {
+            searchSuggestions.onQueryChanged(newText);
+        }
+
+        return true;
     }
 }
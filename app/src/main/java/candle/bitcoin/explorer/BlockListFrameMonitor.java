@@ -0,0 +1,233 @@
+package candle.bitcoin.explorer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Locale;
+
+import candle.bitcoin.explorer.esplora.EsploraMetrics;
+
+/**
+ * Measures the smoothness of the block list while it scrolls. Frame durations are taken from
+ * the vsync timestamps passed to a {@link Choreographer.FrameCallback}, which is available on
+ * all supported API levels; a dropped frame shows up as a frame lasting several vsync
+ * intervals. For every frame the amount of rows bound by the
+ * {@link BlockListRecyclerViewAdapter} is recorded as well, and every fling hitting the end of
+ * the loaded blocks is counted.
+ * <p>
+ * The results are recorded in the {@link EsploraMetrics}, so they are aggregated over the
+ * session and exported with the other metrics. They can be shown on top of the list in an
+ * overlay. Frame callbacks are only requested while the list scrolls. All methods must be
+ * called from the main thread.
+ */
+class BlockListFrameMonitor extends RecyclerView.OnScrollListener
+        implements Choreographer.FrameCallback {
+    // a frame lasting longer than this many vsync intervals counts as janky
+    private static final double JANK_THRESHOLD = 1.5;
+
+    // interval the overlay is refreshed in
+    private static final long OVERLAY_REFRESH_MILLIS = 500;
+
+    // bounds of the binds per frame buckets, a frame usually binds none or a single row
+    private static final long[] BIND_COUNT_BOUNDS = {0, 1, 2, 3, 4, 6, 8, 12, 16, Long.MAX_VALUE};
+
+    private static final EsploraMetrics.Histogram frameTime =
+            EsploraMetrics.get().histogram("list.frame_us");
+    private static final EsploraMetrics.Histogram bindsPerFrame =
+            EsploraMetrics.get().histogram("list.binds_per_frame", BIND_COUNT_BOUNDS);
+    private static final EsploraMetrics.Counter jankyFrames =
+            EsploraMetrics.get().counter("list.janky_frames");
+    private static final EsploraMetrics.Counter droppedFrames =
+            EsploraMetrics.get().counter("list.dropped_frames");
+    private static final EsploraMetrics.Counter flings =
+            EsploraMetrics.get().counter("list.flings");
+    private static final EsploraMetrics.Counter flingsReachingEnd =
+            EsploraMetrics.get().counter("list.flings_reaching_end");
+    private static final EsploraMetrics.Histogram bindTime =
+            EsploraMetrics.get().histogram("list.bind_us");
+
+    private final BlockListRecyclerViewAdapter adapter;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Handler overlayHandler = new Handler();
+
+    // expected duration of a frame, taken from the refresh rate of the display
+    private final long frameIntervalNanos;
+
+    private int scrollState = RecyclerView.SCROLL_STATE_IDLE;
+    private boolean isFrameCallbackPosted = false;
+
+    // vsync time and bind count of the previous frame, the time is 0 before the first frame
+    private long lastFrameTimeNanos = 0;
+    private long lastBindCount = 0;
+
+    // whether the current fling already hit the end of the loaded blocks
+    private boolean isFlingAtEnd = false;
+
+    private TextView overlayTextView;
+
+    // shows the current results in the overlay and schedules the next refresh
+    private final Runnable overlayRunnable = new Runnable() {
+        @Override
+        public void run() {
+            overlayTextView.setText(getSummary());
+            overlayHandler.postDelayed(this, OVERLAY_REFRESH_MILLIS);
+        }
+    };
+
+    /**
+     * @param context The context used to look up the refresh rate of the display.
+     * @param adapter The adapter of the monitored list.
+     */
+    BlockListFrameMonitor(final Context context, final BlockListRecyclerViewAdapter adapter) {
+        this.adapter = adapter;
+
+        final WindowManager windowManager =
+                (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        final float refreshRate = windowManager.getDefaultDisplay().getRefreshRate();
+
+        frameIntervalNanos = (long) (1000000000L / (refreshRate >= 1 ? refreshRate : 60));
+    }
+
+    /**
+     * Starts measuring frames when the list starts scrolling and tracks flings.
+     *
+     * @param recyclerView The monitored list.
+     * @param newState     The new scroll state.
+     */
+    @Override
+    public void onScrollStateChanged(final RecyclerView recyclerView, final int newState) {
+        scrollState = newState;
+
+        if (newState == RecyclerView.SCROLL_STATE_SETTLING) {
+            flings.increment();
+            isFlingAtEnd = false;
+        }
+
+        if (newState != RecyclerView.SCROLL_STATE_IDLE && !isFrameCallbackPosted) {
+            isFrameCallbackPosted = true;
+            lastFrameTimeNanos = 0;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Counts flings reaching the end of the loaded blocks, where the user has to wait for more
+     * blocks to be loaded.
+     *
+     * @param recyclerView The monitored list.
+     * @param dx           Horizontal scroll distance.
+     * @param dy           Vertical scroll distance.
+     */
+    @Override
+    public void onScrolled(final RecyclerView recyclerView, final int dx, final int dy) {
+        if (scrollState != RecyclerView.SCROLL_STATE_SETTLING || isFlingAtEnd || dy <= 0) {
+            return;
+        }
+
+        if (!recyclerView.canScrollVertically(1)) {
+            isFlingAtEnd = true;
+            flingsReachingEnd.increment();
+        }
+    }
+
+    /**
+     * Records the duration of the previous frame and the rows bound during it.
+     *
+     * @param frameTimeNanos Vsync time of the frame.
+     */
+    @Override
+    public void doFrame(final long frameTimeNanos) {
+        final long bindCount = adapter.getBindCount();
+
+        if (lastFrameTimeNanos != 0) {
+            final long duration = frameTimeNanos - lastFrameTimeNanos;
+
+            frameTime.record(duration / 1000);
+            bindsPerFrame.record(bindCount - lastBindCount);
+
+            if (duration > frameIntervalNanos * JANK_THRESHOLD) {
+                jankyFrames.increment();
+                droppedFrames.add(Math.round((double) duration / frameIntervalNanos) - 1);
+            }
+        }
+
+        lastFrameTimeNanos = frameTimeNanos;
+        lastBindCount = bindCount;
+
+        // keep measuring until the list comes to rest
+        if (scrollState != RecyclerView.SCROLL_STATE_IDLE) {
+            choreographer.postFrameCallback(this);
+        } else {
+            isFrameCallbackPosted = false;
+        }
+    }
+
+    /**
+     * Shows the results in an overlay, refreshed until {@link #hideOverlay()} is called.
+     *
+     * @param textView The text view of the overlay.
+     */
+    void showOverlay(final TextView textView) {
+        hideOverlay();
+
+        overlayTextView = textView;
+        overlayTextView.setVisibility(View.VISIBLE);
+        overlayRunnable.run();
+    }
+
+    /**
+     * Hides the overlay and stops refreshing it.
+     */
+    void hideOverlay() {
+        if (overlayTextView == null) {
+            return;
+        }
+
+        overlayHandler.removeCallbacks(overlayRunnable);
+        overlayTextView.setVisibility(View.GONE);
+        overlayTextView = null;
+    }
+
+    /**
+     * Stops measuring, e.g. when the list is destroyed.
+     */
+    void stop() {
+        hideOverlay();
+        choreographer.removeFrameCallback(this);
+        isFrameCallbackPosted = false;
+    }
+
+    /**
+     * @return The results of the session as short text: frame duration percentiles in
+     * milliseconds, janky frames, binds per frame, bind time and flings reaching the end.
+     */
+    String getSummary() {
+        final long frameCount = frameTime.getCount();
+
+        return String.format(
+                Locale.US,
+                "frame p50 %.1f p90 %.1f p99 %.1f ms (n=%d)\n"
+                        + "janky %d (%.1f%%) dropped %d\n"
+                        + "binds/frame p90 %d max %d, bind p90 %d us\n"
+                        + "flings reaching end %d/%d",
+                frameTime.getQuantile(0.5) / 1000.0,
+                frameTime.getQuantile(0.9) / 1000.0,
+                frameTime.getQuantile(0.99) / 1000.0,
+                frameCount,
+                jankyFrames.getValue(),
+                frameCount == 0 ? 0.0 : jankyFrames.getValue() * 100.0 / frameCount,
+                droppedFrames.getValue(),
+                bindsPerFrame.getQuantile(0.9),
+                bindsPerFrame.getMax(),
+                bindTime.getQuantile(0.9),
+                flingsReachingEnd.getValue(),
+                flings.getValue()
+        );
+    }
+}
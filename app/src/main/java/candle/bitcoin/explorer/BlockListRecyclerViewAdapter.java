@@ -12,17 +12,29 @@ import java.util.ArrayList;
 
 import candle.bitcoin.explorer.esplora.EsploraBlock;
 import candle.bitcoin.explorer.esplora.EsploraFormatter;
+import candle.bitcoin.explorer.esplora.EsploraMetrics;
 
 /**
  * RecyclerView adapter to manage a list of EsploraBlock objects.
  */
 public class BlockListRecyclerViewAdapter extends RecyclerView.Adapter<BlockListRecyclerViewAdapter.ViewHolder> {
+    // time spent binding a row in microseconds
+    private static final EsploraMetrics.Histogram bindTime =
+            EsploraMetrics.get().histogram("list.bind_us");
 
     private ArrayList<EsploraBlock> blockList = new ArrayList<>();
     private final View.OnClickListener onBlockClickListener;
+    private final View.OnLongClickListener onBlockLongClickListener;
 
-    public BlockListRecyclerViewAdapter(final View.OnClickListener onBlockClickListener) {
+    // amount of bound rows, read by the BlockListFrameMonitor once per frame
+    private long bindCount = 0;
+
+    public BlockListRecyclerViewAdapter(
+            final View.OnClickListener onBlockClickListener,
+            final View.OnLongClickListener onBlockLongClickListener
+    ) {
         this.onBlockClickListener = onBlockClickListener;
+        this.onBlockLongClickListener = onBlockLongClickListener;
     }
 
     /**
@@ -42,10 +54,62 @@ public class BlockListRecyclerViewAdapter extends RecyclerView.Adapter<BlockList
         return blockList.get(blockListIndex);
     }
 
+    /**
+     * @return Amount of rows bound since the adapter was created.
+     */
+    long getBindCount() {
+        return bindCount;
+    }
+
     public EsploraBlock getBlockOldest() {
         return getBlock(getItemCount() - 1);
     }
 
+    /**
+     * @return A copy of the current block list, newest block first.
+     */
+    public ArrayList<EsploraBlock> getBlocks() {
+        return new ArrayList<>(blockList);
+    }
+
+    /**
+     * Get the index of the block at a given height in the block list.
+     *
+     * @param blockHeight Height of the desired block.
+     * @return Index of the block or -1 if it is not in the block list.
+     */
+    public int getBlockIndex(final int blockHeight) {
+        final EsploraBlock blockNewest = getBlock(0);
+        if (blockNewest == null) {
+            return -1;
+        }
+
+        // the block list holds consecutive heights in descending order
+        final int index = blockNewest.getHeight() - blockHeight;
+        final EsploraBlock block = getBlock(index);
+
+        return block != null && block.getHeight() == blockHeight ? index : -1;
+    }
+
+    /**
+     * Merge the most recent blocks into the blockList. Blocks at the same heights are replaced,
+     * as they may have been replaced by a reorg, older blocks are kept. If the blocks do not
+     * connect to the blockList, the blockList is replaced.
+     *
+     * @param blocks ArrayList of the most recent EsploraBlock objects, newest first.
+     */
+    public void mergeBlocks(final ArrayList<EsploraBlock> blocks) {
+        // skip empty
+        if (blocks.size() == 0) {
+            return;
+        }
+
+        blockList = BlockLists.merge(blockList, blocks);
+
+        // notify change
+        notifyDataSetChanged();
+    }
+
     /**
      * Add multiple EsploraBlock objects to the blockList.
      *
@@ -58,18 +122,7 @@ public class BlockListRecyclerViewAdapter extends RecyclerView.Adapter<BlockList
             return;
         }
 
-        // prevent duplications
-        blockList.removeAll(blocks);
-
-        // add
-        if (replace) {
-            blockList = new ArrayList<>();
-            blockList.addAll(0, blocks);
-
-        } else {
-            // append
-            blockList.addAll(blocks);
-        }
+        blockList = BlockLists.add(blockList, blocks, replace);
 
         // notify change
         notifyDataSetChanged();
@@ -100,6 +153,8 @@ public class BlockListRecyclerViewAdapter extends RecyclerView.Adapter<BlockList
     @SuppressLint("SetTextI18n")
     @Override
     public void onBindViewHolder(final ViewHolder holder, final int position) {
+        final long bindStartedAt = System.nanoTime();
+
         // set background color
         holder.itemView.setBackgroundResource(
                 position % 2 == 0 ? R.color.colorBackground : R.color.colorBackgroundLight
@@ -141,8 +196,12 @@ public class BlockListRecyclerViewAdapter extends RecyclerView.Adapter<BlockList
         // set block as tag on this items view
         holder.itemView.setTag(block);
 
-        // set click listener
+        // set click listeners
         holder.itemView.setOnClickListener(onBlockClickListener);
+        holder.itemView.setOnLongClickListener(onBlockLongClickListener);
+
+        bindCount++;
+        bindTime.recordSince(bindStartedAt);
     }
 
     /**
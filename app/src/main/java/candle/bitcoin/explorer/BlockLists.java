@@ -0,0 +1,84 @@
+package candle.bitcoin.explorer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import candle.bitcoin.explorer.esplora.EsploraBlock;
+
+/**
+ * List operations of the {@link BlockListRecyclerViewAdapter}. They are kept free of Android
+ * classes, so the benchmark module can measure them on the JVM.
+ */
+final class BlockLists {
+    private BlockLists() {
+    }
+
+    /**
+     * Adds blocks to a block list, removing blocks already contained first.
+     *
+     * @param blockList The block list, newest block first.
+     * @param blocks    Blocks to be added, newest block first.
+     * @param replace   Indicates if the block list should be replaced by the given blocks.
+     * @return The resulting block list, a new list when replaced.
+     */
+    static ArrayList<EsploraBlock> add(
+            final ArrayList<EsploraBlock> blockList,
+            final List<EsploraBlock> blocks,
+            final boolean replace
+    ) {
+        // skip empty
+        if (blocks.size() == 0) {
+            return blockList;
+        }
+
+        if (replace) {
+            return new ArrayList<>(blocks);
+        }
+
+        // prevent duplications
+        blockList.removeAll(blocks);
+
+        // append
+        blockList.addAll(blocks);
+
+        return blockList;
+    }
+
+    /**
+     * Merges the most recent blocks into a block list. Blocks at the same heights are replaced,
+     * as they may have been replaced by a reorg, older blocks are kept. If the blocks do not
+     * connect to the block list, the block list is replaced.
+     *
+     * @param blockList The block list, consecutive heights with the newest block first.
+     * @param blocks    The most recent blocks, newest block first.
+     * @return The resulting block list, a new list when replaced.
+     */
+    static ArrayList<EsploraBlock> merge(
+            final ArrayList<EsploraBlock> blockList,
+            final List<EsploraBlock> blocks
+    ) {
+        // skip empty
+        if (blocks.size() == 0) {
+            return blockList;
+        }
+
+        final int oldestHeight = blocks.get(blocks.size() - 1).getHeight();
+
+        // blocks are missing in between, the block list is outdated
+        if (blockList.isEmpty() || oldestHeight > blockList.get(0).getHeight() + 1) {
+            return add(blockList, blocks, true);
+        }
+
+        // remove blocks at the heights of the merged blocks
+        int removeCount = 0;
+        while (removeCount < blockList.size()
+                && blockList.get(removeCount).getHeight() >= oldestHeight) {
+            removeCount++;
+        }
+
+        blockList.subList(0, removeCount).clear();
+        blockList.addAll(0, blocks);
+
+        return blockList;
+    }
+}
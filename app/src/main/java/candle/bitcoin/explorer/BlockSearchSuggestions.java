@@ -0,0 +1,269 @@
+package candle.bitcoin.explorer;
+
+import android.app.Activity;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Handler;
+import android.provider.BaseColumns;
+
+import androidx.appcompat.widget.SearchView;
+import androidx.cursoradapter.widget.SimpleCursorAdapter;
+
+import java.util.List;
+import java.util.Locale;
+
+import candle.bitcoin.explorer.esplora.EsploraClient;
+import candle.bitcoin.explorer.esplora.EsploraExecutors;
+
+/**
+ * Shows blocks matching a partial block hash as suggestions of a {@link SearchView} while the
+ * user types. Lookups are debounced and run in the background against the
+ * {@link candle.bitcoin.explorer.esplora.EsploraHashPrefixIndex}, so they never block the UI.
+ * <p>
+ * The block most likely searched for, a typed block height or the only block matching a
+ * partial hash, is requested speculatively with the
+ * {@link candle.bitcoin.explorer.esplora.EsploraSearchPrefetcher}, so it is usually available
+ * when the search is submitted.
+ * <p>
+ * All methods must be called from the main thread.
+ */
+class BlockSearchSuggestions implements SearchView.OnSuggestionListener {
+    // delay between the last keystroke and the lookup
+    private static final long DEBOUNCE_MILLIS = 250;
+
+    // minimum amount of hex characters looked up, shorter prefixes match too many blocks
+    private static final int MIN_PREFIX_LENGTH = 4;
+
+    private static final int MAX_SUGGESTIONS = 10;
+
+    private static final String COLUMN_HASH = "hash";
+    private static final String COLUMN_LABEL = "label";
+    private static final String COLUMN_HEIGHT = "height";
+
+    private static final String[] COLUMNS = {
+            BaseColumns._ID,
+            COLUMN_HASH,
+            COLUMN_LABEL,
+            COLUMN_HEIGHT
+    };
+
+    private final Activity activity;
+    private final SimpleCursorAdapter adapter;
+    private final Listener listener;
+
+    private final Handler debounceHandler = new Handler();
+
+    // incremented with every query, results of outdated lookups are dropped
+    private int generation = 0;
+
+    /**
+     * Attaches the suggestions to a SearchView.
+     *
+     * @param activity   The activity showing the SearchView.
+     * @param searchView The SearchView.
+     * @param listener   Listener informed when a suggestion is selected.
+     */
+    BlockSearchSuggestions(
+            final Activity activity,
+            final SearchView searchView,
+            final Listener listener
+    ) {
+        this.activity = activity;
+        this.listener = listener;
+
+        adapter = new SimpleCursorAdapter(
+                activity,
+                android.R.layout.simple_list_item_2,
+                null,
+                new String[]{COLUMN_LABEL, COLUMN_HASH},
+                new int[]{android.R.id.text1, android.R.id.text2},
+                0
+        );
+
+        searchView.setSuggestionsAdapter(adapter);
+        searchView.setOnSuggestionListener(this);
+    }
+
+    /**
+     * @param query The text entered in the SearchView.
+     * @return A boolean value indicating if the query is a (partial) block hash or transaction
+     * id.
+     */
+    static boolean isHexQuery(final String query) {
+        if (query.isEmpty() || query.length() > 64) {
+            return false;
+        }
+
+        for (int i = 0; i < query.length(); i++) {
+            if (Character.digit(query.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param query The trimmed text entered in the SearchView.
+     * @return The block height entered or -1 if the query is not a block height. Digits with a
+     * leading zero are the start of a block hash, not a height.
+     */
+    private static int parseBlockHeight(final String query) {
+        if (query.isEmpty() || query.length() > 9) {
+            return -1;
+        }
+
+        if (query.length() > 1 && query.charAt(0) == '0') {
+            return -1;
+        }
+
+        for (int i = 0; i < query.length(); i++) {
+            if (query.charAt(i) < '0' || query.charAt(i) > '9') {
+                return -1;
+            }
+        }
+
+        return Integer.parseInt(query);
+    }
+
+    /**
+     * Schedules a lookup of the query, replacing a pending one. A block height is requested
+     * speculatively once the user stopped typing for a moment. Digits long enough to be a hash
+     * prefix are looked up as well, as hashes may consist of digits only.
+     *
+     * @param query The text entered in the SearchView.
+     */
+    void onQueryChanged(final String query) {
+        final String prefix = query.trim().toLowerCase(Locale.US);
+        final int queryGeneration = ++generation;
+
+        debounceHandler.removeCallbacksAndMessages(null);
+
+        final int blockHeight = parseBlockHeight(prefix);
+        final boolean isPrefix = prefix.length() >= MIN_PREFIX_LENGTH && isHexQuery(prefix);
+
+        if (blockHeight < 0 && !isPrefix) {
+            adapter.changeCursor(null);
+            EsploraClient.getSearchPrefetcher().cancel();
+            return;
+        }
+
+        if (!isPrefix) {
+            adapter.changeCursor(null);
+        }
+
+        debounceHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (blockHeight >= 0) {
+                    EsploraClient.getSearchPrefetcher().prefetch(blockHeight);
+                }
+
+                if (isPrefix) {
+                    lookup(prefix, queryGeneration, blockHeight < 0);
+                }
+            }
+        }, DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Drops pending lookups and the shown suggestions. A running speculative request is kept, as
+     * the search it was started for is usually submitted right afterwards.
+     */
+    void cancel() {
+        generation++;
+        debounceHandler.removeCallbacksAndMessages(null);
+        adapter.changeCursor(null);
+    }
+
+    /**
+     * Looks up a prefix in the background and shows the results if the query did not change in
+     * the meantime.
+     *
+     * @param prefix          Lower case hex prefix.
+     * @param queryGeneration Generation of the query.
+     * @param isPrefetching   False if the query is a block height as well, which is requested
+     *                        speculatively instead of the matching blocks.
+     */
+    private void lookup(
+            final String prefix,
+            final int queryGeneration,
+            final boolean isPrefetching
+    ) {
+        EsploraExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Integer> heights = EsploraClient.getHashPrefixIndex().find(
+                        prefix,
+                        MAX_SUGGESTIONS
+                );
+
+                final MatrixCursor cursor = new MatrixCursor(COLUMNS, heights.size());
+
+                for (final Integer height : heights) {
+                    final String hash = EsploraClient.getBlockHashIndex().getHash(height);
+
+                    if (hash != null) {
+                        cursor.addRow(new Object[]{
+                                height,
+                                hash,
+                                activity.getString(R.string.block) + " " + height,
+                                height
+                        });
+                    }
+                }
+
+                activity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (queryGeneration != generation || activity.isFinishing()) {
+                            cursor.close();
+                            return;
+                        }
+
+                        adapter.changeCursor(cursor);
+
+                        if (!isPrefetching) {
+                            return;
+                        }
+
+                        // an unambiguous prefix is likely completed to this block
+                        if (heights.size() == 1) {
+                            EsploraClient.getSearchPrefetcher().prefetch(heights.get(0));
+                        } else {
+                            EsploraClient.getSearchPrefetcher().cancel();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public boolean onSuggestionSelect(final int position) {
+        return false;
+    }
+
+    @Override
+    public boolean onSuggestionClick(final int position) {
+        final Cursor cursor = adapter.getCursor();
+
+        if (cursor == null || !cursor.moveToPosition(position)) {
+            return false;
+        }
+
+        listener.onBlockSelected(cursor.getInt(cursor.getColumnIndex(COLUMN_HEIGHT)));
+
+        return true;
+    }
+
+    /**
+     * Listener informed when a suggested block is selected.
+     */
+    interface Listener {
+        /**
+         * @param blockHeight Height of the selected block.
+         */
+        void onBlockSelected(int blockHeight);
+    }
+}
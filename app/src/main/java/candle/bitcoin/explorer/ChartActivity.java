@@ -0,0 +1,153 @@
+package candle.bitcoin.explorer;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.view.Menu;
+import android.view.MenuItem;
+
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AppCompatActivity;
+
+import candle.bitcoin.explorer.esplora.EsploraBlockPyramid;
+
+/**
+ * A screen charting a metric of the received blocks in a {@link BlockChartView}. The metric is
+ * chosen in the menu. The chart is redrawn every second to include newly received blocks.
+ */
+public class ChartActivity extends AppCompatActivity {
+    // interval the chart is redrawn in
+    private static final long REFRESH_INTERVAL_MILLIS = 1000;
+
+    // saved instance state key of the shown metric
+    private static final String STATE_METRIC = "metric";
+
+    private final Handler refreshHandler = new Handler();
+
+    private BlockChartView chartView;
+
+    // redraws the chart and schedules the next refresh
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            chartView.invalidate();
+            refreshHandler.postDelayed(this, REFRESH_INTERVAL_MILLIS);
+        }
+    };
+
+    /**
+     * Initializes the chart view.
+     *
+     * @param savedInstanceState Saved instance bundle from a previous instance.
+     */
+    @Override
+    protected void onCreate(final Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_chart);
+
+        chartView = findViewById(R.id.chart);
+
+        if (savedInstanceState != null && savedInstanceState.containsKey(STATE_METRIC)) {
+            chartView.setMetric(
+                    EsploraBlockPyramid.Metric.valueOf(savedInstanceState.getString(STATE_METRIC))
+            );
+        }
+
+        // show the Up button in the action bar
+        final ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+        }
+    }
+
+    /**
+     * Saves the shown metric, e.g. when rotating the screen.
+     *
+     * @param outState Bundle to save the state to.
+     */
+    @Override
+    protected void onSaveInstanceState(final Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_METRIC, chartView.getMetric().name());
+    }
+
+    /**
+     * Starts refreshing the chart.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        refreshRunnable.run();
+    }
+
+    /**
+     * Stops refreshing the chart.
+     */
+    @Override
+    protected void onStop() {
+        refreshHandler.removeCallbacks(refreshRunnable);
+        super.onStop();
+    }
+
+    /**
+     * Inflates the menu containing the metrics, checking the shown one.
+     *
+     * @param menu The menu of the action bar.
+     * @return Always true.
+     */
+    @Override
+    public boolean onCreateOptionsMenu(final Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_chart, menu);
+
+        switch (chartView.getMetric()) {
+            case SIZE:
+                menu.findItem(R.id.chart_size).setChecked(true);
+                break;
+            case WEIGHT:
+                menu.findItem(R.id.chart_weight).setChecked(true);
+                break;
+            case TX_COUNT:
+                menu.findItem(R.id.chart_tx_count).setChecked(true);
+                break;
+            case INTERVAL:
+                menu.findItem(R.id.chart_interval).setChecked(true);
+                break;
+        }
+
+        return true;
+    }
+
+    /**
+     * Shows the selected metric or navigates up.
+     *
+     * @param item The selected menu item.
+     * @return True if the selection was handled.
+     */
+    @Override
+    public boolean onOptionsItemSelected(final MenuItem item) {
+        final int id = item.getItemId();
+
+        if (id == android.R.id.home) {
+            finish();
+            return true;
+        }
+
+        final EsploraBlockPyramid.Metric metric;
+
+        if (id == R.id.chart_size) {
+            metric = EsploraBlockPyramid.Metric.SIZE;
+        } else if (id == R.id.chart_weight) {
+            metric = EsploraBlockPyramid.Metric.WEIGHT;
+        } else if (id == R.id.chart_tx_count) {
+            metric = EsploraBlockPyramid.Metric.TX_COUNT;
+        } else if (id == R.id.chart_interval) {
+            metric = EsploraBlockPyramid.Metric.INTERVAL;
+        } else {
+            return super.onOptionsItemSelected(item);
+        }
+
+        item.setChecked(true);
+        chartView.setMetric(metric);
+
+        return true;
+    }
+}
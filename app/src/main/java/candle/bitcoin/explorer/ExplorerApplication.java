@@ -0,0 +1,31 @@
+package candle.bitcoin.explorer;
+
+import android.app.Application;
+
+import candle.bitcoin.explorer.esplora.EsploraClient;
+import candle.bitcoin.explorer.esplora.EsploraExecutors;
+import candle.bitcoin.explorer.esplora.EsploraLoopjTransport;
+import candle.bitcoin.explorer.esplora.EsploraMainLooper;
+
+/**
+ * The application of the explorer. Configures the {@link EsploraClient} before any activity
+ * sends a request and starts the header chain sync of the process, see {@link HeaderChain}.
+ */
+public class ExplorerApplication extends Application {
+    /**
+     * Runs the esplora library on the main thread with the Android HTTP client and points the
+     * {@link EsploraClient} to the Esplora HTTP API instance configured in the build, see the
+     * esploraBaseUrl property in app/build.gradle. Starts the header chain sync in the
+     * background.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        EsploraExecutors.setEventLoop(new EsploraMainLooper());
+        EsploraClient.setTransport(new EsploraLoopjTransport());
+        EsploraClient.setBaseUrl(BuildConfig.ESPLORA_BASE_URL);
+
+        HeaderChain.startSync(this);
+    }
+}
@@ -0,0 +1,169 @@
+package candle.bitcoin.explorer;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+import candle.bitcoin.explorer.esplora.EsploraBlockSegmentStore;
+import candle.bitcoin.explorer.esplora.EsploraClient;
+import candle.bitcoin.explorer.esplora.EsploraExecutors;
+import candle.bitcoin.explorer.esplora.EsploraHeaderStore;
+import candle.bitcoin.explorer.esplora.EsploraHeaderSync;
+
+/**
+ * Owns the local copy of the header chain of this process: a single {@link EsploraHeaderStore}
+ * in the files directory and the {@link EsploraHeaderSync} filling it. The sync also fills an
+ * {@link EsploraBlockSegmentStore} with the immutable blocks, which the {@link EsploraClient}
+ * serves without requests.
+ * <p>
+ * The sync belongs to the process, not to a screen: a full sync takes at least 5 hours at the
+ * rate limit of the client (see {@link EsploraHeaderSync}), so it runs until the process dies
+ * and resumes from its checkpoint in the next one. It is started by the
+ * {@link ExplorerApplication} and started again by screens to catch up with a newer tip.
+ * <p>
+ * The methods can be called from any thread, the files are opened and synced in the
+ * background by {@link #startSync(Context)}.
+ */
+class HeaderChain {
+    private static final String TAG = "HeaderChain";
+
+    private static final String STORE_FILE = "headers";
+    private static final String CHECKPOINT_FILE = "headers.checkpoint";
+    private static final String SEGMENT_STORE_FILE = "blocks.segments";
+
+    // chunks of 100 blocks downloaded at the same time
+    private static final int MAX_CHUNKS_IN_FLIGHT = 2;
+
+    private static EsploraHeaderStore store;
+    private static EsploraBlockSegmentStore segmentStore;
+    private static EsploraHeaderSync sync;
+
+    /**
+     * Opens the header store on first use.
+     *
+     * @param context Any context of the app.
+     * @return The header store of this process, or null if it can't be opened.
+     */
+    static synchronized EsploraHeaderStore getStore(final Context context) {
+        if (store != null) {
+            return store;
+        }
+
+        final File file = new File(context.getFilesDir(), STORE_FILE);
+
+        try {
+            store = new EsploraHeaderStore(file);
+        } catch (IOException e) {
+            Log.w(TAG, "unable to open header store, recreating it", e);
+
+            // the store can always be synced again
+            if (file.delete()) {
+                try {
+                    store = new EsploraHeaderStore(file);
+                } catch (IOException retryException) {
+                    Log.w(TAG, "unable to recreate header store", retryException);
+                }
+            }
+        }
+
+        return store;
+    }
+
+    /**
+     * Opens the segment store of this process and lets the client read blocks from it.
+     *
+     * @param context Any context of the app.
+     * @return The segment store of this process, or null if it can't be opened.
+     */
+    static synchronized EsploraBlockSegmentStore getSegmentStore(final Context context) {
+        if (segmentStore != null) {
+            return segmentStore;
+        }
+
+        final File file = new File(context.getFilesDir(), SEGMENT_STORE_FILE);
+
+        try {
+            segmentStore = new EsploraBlockSegmentStore(file);
+        } catch (IOException e) {
+            Log.w(TAG, "unable to open segment store, recreating it", e);
+
+            // the sync builds the segments again from the header store
+            if (file.delete()) {
+                try {
+                    segmentStore = new EsploraBlockSegmentStore(file);
+                } catch (IOException retryException) {
+                    Log.w(TAG, "unable to recreate segment store", retryException);
+                }
+            }
+        }
+
+        EsploraClient.setBlockSegmentStore(segmentStore);
+
+        return segmentStore;
+    }
+
+    /**
+     * Starts syncing the header chain in the background, unless a sync is running already.
+     *
+     * @param context Any context of the app.
+     */
+    static void startSync(final Context context) {
+        final Context applicationContext = context.getApplicationContext();
+
+        // opening the stores reads their files
+        EsploraExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                startSyncInBackground(applicationContext);
+            }
+        });
+    }
+
+    /**
+     * Opens the stores and starts the sync, unless a sync is running already.
+     *
+     * @param context The context of the app.
+     */
+    private static synchronized void startSyncInBackground(final Context context) {
+        if (sync != null && !sync.isCancelled() && !sync.isFinished()) {
+            return;
+        }
+
+        final EsploraHeaderStore headerStore = getStore(context);
+        if (headerStore == null) {
+            return;
+        }
+
+        sync = new EsploraHeaderSync(
+                headerStore,
+                new File(context.getFilesDir(), CHECKPOINT_FILE),
+                getSegmentStore(context),
+                MAX_CHUNKS_IN_FLIGHT,
+                new EsploraHeaderSync.Listener() {
+                    @Override
+                    public void onProgress(
+                            final int height,
+                            final int tipHeight,
+                            final double headersPerSecond
+                    ) {
+                        Log.i(TAG, "synced headers up to " + height + " of " + tipHeight
+                                + " (" + Math.round(headersPerSecond) + " headers/s)");
+                    }
+
+                    @Override
+                    public void onFinished(final int height) {
+                        Log.i(TAG, "header chain synced up to " + height);
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                        Log.w(TAG, "header sync stopped", error);
+                    }
+                },
+                EsploraExecutors.mainThread()
+        );
+        sync.start();
+    }
+}
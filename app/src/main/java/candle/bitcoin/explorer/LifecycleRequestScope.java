@@ -0,0 +1,42 @@
+package candle.bitcoin.explorer;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import candle.bitcoin.explorer.esplora.EsploraRequestScope;
+
+/**
+ * An {@link EsploraRequestScope} bound to the lifecycle of an Activity or a Fragment. All
+ * requests owned by this scope are cancelled when the lifecycle owner gets destroyed (e.g. when
+ * the user leaves the screen or rotates it), so their callbacks neither touch dead views nor
+ * keep the Activity from being garbage collected.
+ */
+class LifecycleRequestScope extends EsploraRequestScope implements LifecycleEventObserver {
+
+    /**
+     * Creates a scope and binds it to the lifecycle of the given owner. For Fragments that
+     * update their views, pass the views lifecycle owner (getViewLifecycleOwner).
+     *
+     * @param lifecycleOwner The Activity or Fragment owning the requests.
+     */
+    LifecycleRequestScope(final LifecycleOwner lifecycleOwner) {
+        lifecycleOwner.getLifecycle().addObserver(this);
+    }
+
+    /**
+     * Cancels all owned requests when the lifecycle owner gets destroyed.
+     *
+     * @param source The lifecycle owner.
+     * @param event  The lifecycle event.
+     */
+    @Override
+    public void onStateChanged(final LifecycleOwner source, final Lifecycle.Event event) {
+        if (event != Lifecycle.Event.ON_DESTROY) {
+            return;
+        }
+
+        source.getLifecycle().removeObserver(this);
+        cancel();
+    }
+}
@@ -0,0 +1,130 @@
+package candle.bitcoin.explorer;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AppCompatActivity;
+
+import org.json.JSONException;
+
+import candle.bitcoin.explorer.esplora.EsploraMetrics;
+
+/**
+ * A debug screen showing the {@link EsploraMetrics} of the running process, refreshed every
+ * second. The share action sends the metrics as JSON, e.g. to attach them to a bug report.
+ */
+public class MetricsActivity extends AppCompatActivity {
+    // interval the shown metrics are refreshed in
+    private static final long REFRESH_INTERVAL_MILLIS = 1000;
+
+    private final Handler refreshHandler = new Handler();
+
+    private TextView metricsTextView;
+
+    // shows the current metrics and schedules the next refresh
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            metricsTextView.setText(EsploraMetrics.get().toText());
+            refreshHandler.postDelayed(this, REFRESH_INTERVAL_MILLIS);
+        }
+    };
+
+    /**
+     * Initializes the metrics view.
+     *
+     * @param savedInstanceState Saved instance bundle from a previous instance.
+     */
+    @Override
+    protected void onCreate(final Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+
+        metricsTextView = findViewById(R.id.metrics);
+
+        // show the Up button in the action bar
+        final ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+        }
+    }
+
+    /**
+     * Starts refreshing the shown metrics.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        refreshRunnable.run();
+    }
+
+    /**
+     * Stops refreshing the shown metrics.
+     */
+    @Override
+    protected void onStop() {
+        refreshHandler.removeCallbacks(refreshRunnable);
+        super.onStop();
+    }
+
+    /**
+     * Inflates the menu containing the share action.
+     *
+     * @param menu The menu of the action bar.
+     * @return Always true.
+     */
+    @Override
+    public boolean onCreateOptionsMenu(final Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_metrics, menu);
+
+        return true;
+    }
+
+    /**
+     * Shares the metrics as JSON or navigates up.
+     *
+     * @param item The selected menu item.
+     * @return True if the selection was handled.
+     */
+    @Override
+    public boolean onOptionsItemSelected(final MenuItem item) {
+        final int id = item.getItemId();
+
+        if (id == R.id.metrics_share) {
+            shareMetrics();
+            return true;
+        }
+
+        if (id == android.R.id.home) {
+            finish();
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Sends the current metrics as JSON text to another app.
+     */
+    private void shareMetrics() {
+        String metricsJson;
+
+        try {
+            metricsJson = EsploraMetrics.get().toJson().toString(2);
+        } catch (JSONException e) {
+            metricsJson = EsploraMetrics.get().toJson().toString();
+        }
+
+        final Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("application/json");
+        intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.title_metrics));
+        intent.putExtra(Intent.EXTRA_TEXT, metricsJson);
+
+        startActivity(Intent.createChooser(intent, getString(R.string.metrics_share)));
+    }
+}
@@ -0,0 +1,95 @@
+package candle.bitcoin.explorer.esplora;
+
+import com.loopj.android.http.AsyncHttpClient;
+import com.loopj.android.http.RequestHandle;
+import com.loopj.android.http.TextHttpResponseHandler;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import cz.msebera.android.httpclient.Header;
+import cz.msebera.android.httpclient.message.BasicHeader;
+
+/**
+ * Sends the requests of the {@link EsploraClient} with the Android Asynchronous Http Client.
+ * Must be used from a thread with a Looper, the callbacks run on that thread.
+ */
+public class EsploraLoopjTransport implements EsploraTransport {
+    private final AsyncHttpClient client = new AsyncHttpClient();
+
+    @Override
+    public Call get(final String url, final Map<String, String> headers, final Callback callback) {
+        final Header[] requestHeaders = new Header[headers.size()];
+
+        int i = 0;
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
+            requestHeaders[i++] = new BasicHeader(header.getKey(), header.getValue());
+        }
+
+        final RequestHandle requestHandle = client.get(
+                null,
+                url,
+                requestHeaders.length > 0 ? requestHeaders : null,
+                null,
+                new TextHttpResponseHandler() {
+                    @Override
+                    public void onSuccess(
+                            final int statusCode,
+                            final Header[] headers,
+                            final String responseString
+                    ) {
+                        callback.onResponse(statusCode, toMap(headers), responseString);
+                    }
+
+                    @Override
+                    public void onFailure(
+                            final int statusCode,
+                            final Header[] headers,
+                            final String responseString,
+                            final Throwable throwable
+                    ) {
+                        // a status code of 0 means no response was received at all
+                        if (statusCode == 0) {
+                            callback.onFailure(throwable);
+                            return;
+                        }
+
+                        callback.onResponse(
+                                statusCode,
+                                toMap(headers),
+                                responseString != null ? responseString : ""
+                        );
+                    }
+
+                    @Override
+                    public void onCancel() {
+                        callback.onCancelled();
+                    }
+                }
+        );
+
+        return new Call() {
+            @Override
+            public void cancel() {
+                requestHandle.cancel(true);
+            }
+        };
+    }
+
+    /**
+     * @param headers HTTP headers of a response, may be null.
+     * @return The header values by lowercase name.
+     */
+    private static Map<String, String> toMap(final Header[] headers) {
+        final HashMap<String, String> map = new HashMap<>();
+
+        if (headers != null) {
+            for (final Header header : headers) {
+                map.put(header.getName().toLowerCase(Locale.US), header.getValue());
+            }
+        }
+
+        return map;
+    }
+}
@@ -0,0 +1,27 @@
+package candle.bitcoin.explorer.esplora;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Makes the Android main thread the event loop of the esplora library, so the request
+ * scheduler and main thread listeners run on the UI thread.
+ */
+public class EsploraMainLooper implements EsploraEventLoop {
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public boolean isCurrentThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    @Override
+    public void post(final Runnable task) {
+        handler.post(task);
+    }
+
+    @Override
+    public void postDelayed(final Runnable task, final long delayMillis) {
+        handler.postDelayed(task, delayMillis);
+    }
+}
@@ -0,0 +1,59 @@
+package candle.bitcoin.explorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+
+import candle.bitcoin.explorer.esplora.EsploraBlock;
+import candle.bitcoin.explorer.esplora.SyntheticChain;
+
+/**
+ * The list operations of the {@link BlockListRecyclerViewAdapter} at growing list sizes:
+ * appending a page of older blocks while scrolling and merging the newest page on refresh.
+ */
+@State(Scope.Benchmark)
+public class BlockListsBenchmark {
+    // the API returns pages of 10 blocks
+    private static final int PAGE_SIZE = 10;
+
+    private static final int TIP_HEIGHT = 600000;
+
+    @Param({"100", "1000", "10000"})
+    public int listSize;
+
+    private ArrayList<EsploraBlock> fixture;
+    private ArrayList<EsploraBlock> olderPage;
+    private ArrayList<EsploraBlock> newestPage;
+
+    // fresh copy of the fixture for every invocation, as the operations modify the list
+    private ArrayList<EsploraBlock> blockList;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        fixture = SyntheticChain.descending(TIP_HEIGHT, listSize);
+        olderPage = SyntheticChain.descending(TIP_HEIGHT - listSize, PAGE_SIZE);
+
+        // a new block on top of the list, overlapping the 9 newest blocks of the list
+        newestPage = SyntheticChain.descending(TIP_HEIGHT + 1, PAGE_SIZE);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        blockList = new ArrayList<>(fixture);
+    }
+
+    @Benchmark
+    public ArrayList<EsploraBlock> appendOlderPage() {
+        return BlockLists.add(blockList, olderPage, false);
+    }
+
+    @Benchmark
+    public ArrayList<EsploraBlock> mergeNewestPage() {
+        return BlockLists.merge(blockList, newestPage);
+    }
+}
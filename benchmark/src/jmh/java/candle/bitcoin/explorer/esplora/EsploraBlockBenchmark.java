@@ -0,0 +1,63 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of blocks received from the Esplora API, see {@link EsploraClient}.
+ */
+@State(Scope.Benchmark)
+public class EsploraBlockBenchmark {
+    // the API returns pages of 10 blocks
+    private static final int PAGE_SIZE = 10;
+
+    private String blockJson;
+    private String pageJson;
+    private String validHash;
+    private String invalidHash;
+
+    @Setup
+    public void setUp() {
+        final EsploraBlock block = SyntheticChain.block(600000);
+
+        blockJson = SyntheticChain.toJson(block).toString();
+        pageJson = SyntheticChain.toJson(SyntheticChain.descending(600000, PAGE_SIZE));
+        validHash = block.getHash();
+        invalidHash = validHash.substring(0, 63) + "x";
+    }
+
+    /**
+     * Parsing a response of the block endpoint.
+     */
+    @Benchmark
+    public EsploraBlock parseBlock() throws Exception {
+        return new EsploraBlock(new JSONObject(blockJson));
+    }
+
+    /**
+     * Parsing a response of the blocks endpoint like EsploraClient.parseBlockPage.
+     */
+    @Benchmark
+    public void parseBlockPage(final Blackhole blackhole) throws Exception {
+        final JSONArray blocks = new JSONArray(pageJson);
+
+        for (int i = 0; i < blocks.length(); i++) {
+            blackhole.consume(new EsploraBlock(blocks.getJSONObject(i)));
+        }
+    }
+
+    @Benchmark
+    public boolean isValidBlockHash() {
+        return EsploraBlock.isValidBlockHash(validHash);
+    }
+
+    @Benchmark
+    public boolean isValidBlockHashInvalid() {
+        return EsploraBlock.isValidBlockHash(invalidHash);
+    }
+}
@@ -0,0 +1,116 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The header-only path of {@link EsploraClient#fetchBlockHeader(String, EsploraRequestPriority)}
+ * compared to the JSON path building {@link EsploraBlock} objects: decoding the 160 hex
+ * characters of a raw header and the JSON of a page of blocks, per header. The {@link Transfer} counters report the bytes
+ * of the decoded responses.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EsploraBlockHeaderBenchmark {
+    // the API returns pages of 10 blocks
+    private static final int PAGE_SIZE = 10;
+
+    private String[] headerHex;
+    private String pageJson;
+
+    @Setup
+    public void setUp() {
+        final ArrayList<EsploraBlock> blocks = SyntheticChain.descending(600000, PAGE_SIZE);
+        final byte[] header = new byte[EsploraBlockHeader.SIZE];
+
+        headerHex = new String[PAGE_SIZE];
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            EsploraHeaderStore.writeHeader(blocks.get(i), header, 0);
+            headerHex[i] = EsploraHex.encode(header, 0, EsploraBlockHeader.SIZE);
+        }
+
+        pageJson = SyntheticChain.toJson(blocks);
+    }
+
+    /**
+     * Decoding responses of the block/:hash/header endpoint and reading the header fields.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void parseHeader(final Transfer transfer, final Blackhole blackhole) throws Exception {
+        for (final String hex : headerHex) {
+            final EsploraBlockHeader header = EsploraBlockHeader.parse(hex);
+
+            blackhole.consume(header.getTimestamp());
+            blackhole.consume(header.getBits());
+            blackhole.consume(header.getNonce());
+            transfer.bytes += hex.length();
+        }
+
+        transfer.headers += PAGE_SIZE;
+    }
+
+    /**
+     * Decoding raw headers including their hash, which a header-only request checks against
+     * the requested hash.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void parseHeaderWithHash(final Transfer transfer, final Blackhole blackhole)
+            throws Exception {
+        for (final String hex : headerHex) {
+            final EsploraBlockHeader header = EsploraBlockHeader.parse(hex);
+
+            blackhole.consume(header.getHash());
+            blackhole.consume(header.getTimestamp());
+            transfer.bytes += hex.length();
+        }
+
+        transfer.headers += PAGE_SIZE;
+    }
+
+    /**
+     * Parsing a response of the blocks endpoint into blocks like EsploraClient.parseBlockPage.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void parseBlockJson(final Transfer transfer, final Blackhole blackhole)
+            throws Exception {
+        final JSONArray blocks = new JSONArray(pageJson);
+
+        for (int i = 0; i < blocks.length(); i++) {
+            blackhole.consume(new EsploraBlock(blocks.getJSONObject(i)));
+        }
+
+        transfer.bytes += pageJson.length();
+        transfer.headers += PAGE_SIZE;
+    }
+
+    /**
+     * Bytes of the decoded responses and headers, both summed over the iterations, so bytes
+     * divided by headers gives the bytes transferred per header.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Transfer {
+        public long bytes;
+        public long headers;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            headers = 0;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import candle.bitcoin.explorer.standin.EsploraStandinServer;
+import candle.bitcoin.explorer.standin.MinedChainSource;
+import candle.bitcoin.explorer.standin.NetworkConditions;
+
+/**
+ * The real cost of a range of headers through {@link EsploraClient}, including the request
+ * scheduler and its rate limit, against an in-process stand-in server with a round trip
+ * latency: raw headers by height, two requests per header, compared to
+ * {@link EsploraClient#fetchBlockHeaders(int, int, EsploraRequestPriority)} requesting pages
+ * of blocks. The {@link Transfer} counters report requests and response bytes, so dividing
+ * them by the headers gives the cost per header. The requests are visible ones, the scheduler
+ * queues fewer prefetches than a range of raw headers needs.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EsploraBlockHeaderRangeBenchmark {
+    // enough heights for every range of a trial to be requested for the first time
+    private static final int TIP_HEIGHT = 6000;
+
+    // headers per range, one page of the blocks endpoint
+    private static final int RANGE_SIZE = 10;
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    @Param({"150"})
+    public long latencyMillis;
+
+    private EsploraStandinServer server;
+
+    // every range is new, so none is served by the response cache or the hash index
+    private int nextHeight = TIP_HEIGHT - RANGE_SIZE;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new EsploraStandinServer(
+                0,
+                new MinedChainSource(TIP_HEIGHT),
+                new NetworkConditions(latencyMillis, 0, 0, 0)
+        );
+        server.start();
+
+        EsploraClient.setBaseUrl(server.getBaseUrl());
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Requesting the raw headers of a range one by one, each resolving its hash first.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RANGE_SIZE)
+    public List<EsploraBlockHeader> rawHeaders(final Transfer transfer) throws Exception {
+        final int startHeight = nextRange();
+        final ArrayList<EsploraFuture<EsploraBlockHeader>> headers = new ArrayList<>();
+
+        transfer.begin(server);
+        for (int height = startHeight; height < startHeight + RANGE_SIZE; height++) {
+            headers.add(EsploraClient.fetchBlockHeader(height, EsploraRequestPriority.VISIBLE));
+        }
+
+        final List<EsploraBlockHeader> result = await(EsploraFuture.allOf(headers));
+        transfer.end(server, RANGE_SIZE);
+
+        return result;
+    }
+
+    /**
+     * Requesting a range as pages of blocks, including the details of the blocks.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RANGE_SIZE)
+    public List<EsploraBlockHeader> pages(final Transfer transfer) throws Exception {
+        final int startHeight = nextRange();
+
+        transfer.begin(server);
+        final List<EsploraBlockHeader> result = await(EsploraClient.fetchBlockHeaders(
+                startHeight,
+                RANGE_SIZE,
+                EsploraRequestPriority.VISIBLE
+        ));
+        transfer.end(server, RANGE_SIZE);
+
+        return result;
+    }
+
+    /**
+     * @return Height of the first header of a range not requested before.
+     */
+    private int nextRange() {
+        if (nextHeight < 0) {
+            throw new IllegalStateException("all ranges of the chain were requested");
+        }
+
+        final int startHeight = nextHeight;
+        nextHeight -= RANGE_SIZE;
+
+        return startHeight;
+    }
+
+    /**
+     * Requests and response bytes sent by the stand-in and headers received, all summed over
+     * the iterations.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Transfer {
+        public long requests;
+        public long bytes;
+        public long headers;
+
+        private long requestCountBefore;
+        private long bytesSentBefore;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requests = 0;
+            bytes = 0;
+            headers = 0;
+        }
+
+        /**
+         * @param server The stand-in server.
+         */
+        void begin(final EsploraStandinServer server) {
+            requestCountBefore = server.getRequestCount();
+            bytesSentBefore = server.getBytesSent();
+        }
+
+        /**
+         * @param server      The stand-in server.
+         * @param headerCount Amount of headers received since {@link #begin}.
+         */
+        void end(final EsploraStandinServer server, final int headerCount) {
+            requests += server.getRequestCount() - requestCountBefore;
+            bytes += server.getBytesSent() - bytesSentBefore;
+            headers += headerCount;
+        }
+    }
+
+    /**
+     * @param future A future of the client.
+     * @param <T>    Type of the result.
+     * @return The result of the future.
+     * @throws Exception The requests failed or did not finish in time.
+     */
+    private static <T> T await(final EsploraFuture<T> future) throws Exception {
+        final CountDownLatch isDone = new CountDownLatch(1);
+        final AtomicReference<T> result = new AtomicReference<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        future.addListener(new EsploraFuture.Listener<T>() {
+            @Override
+            public void onSuccess(final T value) {
+                result.set(value);
+                isDone.countDown();
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                failure.set(error);
+                isDone.countDown();
+            }
+        }, EsploraExecutors.direct());
+
+        if (!isDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("the headers were not received");
+        }
+
+        if (failure.get() != null) {
+            throw new IllegalStateException(failure.get());
+        }
+
+        return result.get();
+    }
+}
@@ -0,0 +1,107 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+
+/**
+ * Serialization of blocks. android.os.Parcel needs the Android runtime, so the field layout
+ * blocks were parcelled with into Intents, before screens passed only their key to the
+ * {@link EsploraBlockRepository}, is written with a {@link DataOutputStream} instead, and
+ * compared to the {@link EsploraBlockSegment} encoding used by the block list snapshot and the
+ * segment store.
+ */
+@State(Scope.Benchmark)
+public class EsploraBlockSerializationBenchmark {
+    @Param({"10", "2016"})
+    public int blockCount;
+
+    private ArrayList<EsploraBlock> blocks;
+    private byte[] parcelLayout;
+    private byte[] segment;
+
+    @Setup
+    public void setUp() throws Exception {
+        blocks = SyntheticChain.ascending(600000, blockCount);
+        parcelLayout = writeParcelLayout();
+        segment = EsploraBlockSegment.encode(blocks);
+    }
+
+    @Benchmark
+    public byte[] writeParcelLayout() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(blockCount * 256);
+        final DataOutputStream output = new DataOutputStream(bytes);
+
+        output.writeInt(blocks.size());
+
+        // same fields in the same order as the former Parcel layout
+        for (final EsploraBlock block : blocks) {
+            output.writeUTF(block.getHash());
+            output.writeUTF(block.getHashPrevious());
+            output.writeInt(block.getHeight());
+            output.writeInt(block.getVersion());
+            output.writeLong(block.getTime().getTime());
+            output.writeInt(block.getTxCount());
+            output.writeInt(block.getSize());
+            output.writeInt(block.getWeight());
+            output.writeUTF(block.getMerkleRoot());
+            output.writeInt(block.getNonce());
+            output.writeInt(block.getBits());
+        }
+
+        output.flush();
+
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public ArrayList<EsploraBlock> readParcelLayout() throws IOException {
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(parcelLayout));
+        final int count = input.readInt();
+        final ArrayList<EsploraBlock> result = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            final String hash = input.readUTF();
+            final String hashPrevious = input.readUTF();
+            final int height = input.readInt();
+            final int version = input.readInt();
+            final Date time = new Date(input.readLong());
+
+            result.add(new EsploraBlock(
+                    hash,
+                    hashPrevious,
+                    height,
+                    version,
+                    time.getTime() / 1000,
+                    input.readInt(),
+                    input.readInt(),
+                    input.readInt(),
+                    input.readUTF(),
+                    input.readInt(),
+                    input.readInt()
+            ));
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public byte[] encodeSegment() throws EsploraClientException {
+        return EsploraBlockSegment.encode(blocks);
+    }
+
+    @Benchmark
+    public ArrayList<EsploraBlock> decodeSegment() throws EsploraClientException {
+        return EsploraBlockSegment.decode(segment, 0);
+    }
+}
@@ -0,0 +1,44 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Every {@link EsploraFormatter} method, called for each bound row of the block list.
+ */
+@State(Scope.Benchmark)
+public class EsploraFormatterBenchmark {
+    private EsploraBlock block;
+
+    @Setup
+    public void setUp() {
+        block = SyntheticChain.block(600000);
+    }
+
+    @Benchmark
+    public String blockHeight() {
+        return EsploraFormatter.blockHeight(block.getHeight());
+    }
+
+    @Benchmark
+    public String time() {
+        return EsploraFormatter.time(block.getTime());
+    }
+
+    @Benchmark
+    public String byteSize() {
+        return EsploraFormatter.byteSize(block.getSize());
+    }
+
+    @Benchmark
+    public String byteSizeVirtual() {
+        return EsploraFormatter.byteSizeVirtual(block.getSizeVirtual());
+    }
+
+    @Benchmark
+    public String hex() {
+        return EsploraFormatter.hex(block.getBits());
+    }
+}
@@ -0,0 +1,76 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Lookups of partial block hashes in the {@link EsploraHashPrefixIndex} over the hashes of a
+ * synthetic chain, and rebuilds of its sorted array after the block hash index changed.
+ */
+@State(Scope.Benchmark)
+public class EsploraHashPrefixIndexBenchmark {
+    // maximum amount of suggestions shown while typing
+    private static final int MAX_RESULTS = 5;
+
+    @Param({"200000", "900000"})
+    public int blockCount;
+
+    @Param({"4", "10"})
+    public int prefixLength;
+
+    private EsploraBlockHashIndex blockHashIndex;
+    private EsploraHashPrefixIndex prefixIndex;
+
+    // prefixes of known hashes without the leading zeros all block hashes share
+    private String[] prefixes;
+    private int prefixIndexPosition = 0;
+
+    @Setup
+    public void setUp() {
+        blockHashIndex = new EsploraBlockHashIndex();
+
+        for (int height = 0; height < blockCount; height++) {
+            blockHashIndex.put(height, SyntheticChain.hash(height));
+        }
+
+        prefixIndex = new EsploraHashPrefixIndex(blockHashIndex);
+
+        final Random random = new Random(blockCount);
+        prefixes = new String[1024];
+
+        for (int i = 0; i < prefixes.length; i++) {
+            final String hash = SyntheticChain.hash(random.nextInt(blockCount));
+            prefixes[i] = hash.substring(0, 2 + prefixLength);
+        }
+
+        // builds the sorted array, which is kept while the block hash index does not change
+        prefixIndex.find(prefixes[0], MAX_RESULTS);
+    }
+
+    /**
+     * Looking up a prefix typed into the search view.
+     */
+    @Benchmark
+    public List<Integer> find() {
+        prefixIndexPosition = (prefixIndexPosition + 1) & (prefixes.length - 1);
+
+        return prefixIndex.find(prefixes[prefixIndexPosition], MAX_RESULTS);
+    }
+
+    /**
+     * Rebuilding the sorted array like a lookup after the block hash index changed.
+     */
+    @Benchmark
+    public int[] rebuild() {
+        final int[] heights = blockHashIndex.getKnownHeights();
+        blockHashIndex.sortByDisplayedHash(heights);
+
+        return heights;
+    }
+}
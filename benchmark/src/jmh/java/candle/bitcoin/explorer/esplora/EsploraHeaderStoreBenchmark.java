@@ -0,0 +1,134 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of the memory-mapped {@link EsploraHeaderStore} over a synthetic file of 1M records,
+ * in ascending height order like a scan of the chain and at random heights like browsing the
+ * history. Results are per record.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EsploraHeaderStoreBenchmark {
+    // records read per invocation
+    private static final int BATCH_SIZE = 1024;
+
+    @Param({"1000000"})
+    public int recordCount;
+
+    private File file;
+    private EsploraHeaderStore store;
+    private EsploraHeaderStore.Cursor cursor;
+
+    // heights read by the random benchmarks, a multiple of the batch size
+    private int[] randomHeights;
+
+    private int sequentialHeight = 0;
+    private int randomIndex = 0;
+
+    private final byte[] header = new byte[EsploraHeaderStore.HEADER_SIZE];
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("headers", ".store");
+        file.delete();
+
+        store = new EsploraHeaderStore(file);
+
+        final Random random = new Random(recordCount);
+        final byte[] record = new byte[EsploraHeaderStore.HEADER_SIZE];
+
+        // the content does not matter to reads, only the size of the file does
+        for (int height = 0; height < recordCount; height++) {
+            random.nextBytes(record);
+            store.append(height, record, 0, random.nextInt(3500), random.nextInt(1500000), 0);
+        }
+
+        store.flush();
+        cursor = store.cursor();
+
+        randomHeights = new int[BATCH_SIZE * 1024];
+        for (int i = 0; i < randomHeights.length; i++) {
+            randomHeights[i] = random.nextInt(recordCount);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        file.delete();
+    }
+
+    /**
+     * Reading the fields of consecutive records, like computing chain statistics.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long readSequential() {
+        if (sequentialHeight + BATCH_SIZE > recordCount) {
+            sequentialHeight = 0;
+        }
+
+        long sum = 0;
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            cursor.moveTo(sequentialHeight++);
+            sum += cursor.getTimestamp() + cursor.getBits() + cursor.getTxCount();
+        }
+
+        return sum;
+    }
+
+    /**
+     * Reading the fields of records at random heights, like opening blocks of the history.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long readRandom() {
+        if (randomIndex == randomHeights.length) {
+            randomIndex = 0;
+        }
+
+        long sum = 0;
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            cursor.moveTo(randomHeights[randomIndex++]);
+            sum += cursor.getTimestamp() + cursor.getBits() + cursor.getTxCount();
+        }
+
+        return sum;
+    }
+
+    /**
+     * Copying the raw headers at random heights, like verifying their hashes.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int copyHeaderRandom() {
+        if (randomIndex == randomHeights.length) {
+            randomIndex = 0;
+        }
+
+        int sum = 0;
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            cursor.moveTo(randomHeights[randomIndex++]);
+            cursor.copyHeader(header, 0);
+            sum += header[0];
+        }
+
+        return sum;
+    }
+}
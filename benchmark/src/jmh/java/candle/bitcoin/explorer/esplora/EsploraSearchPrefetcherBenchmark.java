@@ -0,0 +1,149 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import candle.bitcoin.explorer.standin.EsploraStandinServer;
+import candle.bitcoin.explorer.standin.NetworkConditions;
+import candle.bitcoin.explorer.standin.SyntheticChainSource;
+
+/**
+ * Time from submitting a search for a block height to receiving the block, against an
+ * in-process stand-in server with a round trip latency. Without speculation the search takes
+ * two round trips (height to hash, hash to block), after the {@link EsploraSearchPrefetcher}
+ * speculated on the height while the user was typing it is mostly done.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EsploraSearchPrefetcherBenchmark {
+    private static final int TIP_HEIGHT = 800000;
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Param({"150"})
+    public long latencyMillis;
+
+    private EsploraStandinServer server;
+
+    // every search asks for another block, so none is served by the response cache
+    private int nextHeight = TIP_HEIGHT - 100;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new EsploraStandinServer(
+                0,
+                new SyntheticChainSource(TIP_HEIGHT),
+                new NetworkConditions(latencyMillis, 0, 0, 0)
+        );
+        server.start();
+
+        EsploraClient.setBaseUrl(server.getBaseUrl());
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+    }
+
+    /**
+     * Submitting a search nothing was speculated on.
+     */
+    @Benchmark
+    public EsploraBlock search() throws Exception {
+        return await(EsploraClient.getSearchPrefetcher().fetchBlock(
+                nextHeight--,
+                EsploraRequestPriority.SEARCH
+        ));
+    }
+
+    /**
+     * Submitting a search for the height speculated on while it was typed.
+     */
+    @Benchmark
+    public EsploraBlock searchAfterTyping(final Typing typing) throws Exception {
+        return await(EsploraClient.getSearchPrefetcher().fetchBlock(
+                typing.height,
+                EsploraRequestPriority.SEARCH
+        ));
+    }
+
+    /**
+     * Types the next height into the search view before every search, which speculates on it
+     * once the last digit is typed.
+     */
+    @State(Scope.Thread)
+    public static class Typing {
+        @Param({"300"})
+        public long typingMillis;
+
+        int height;
+
+        @Setup(Level.Invocation)
+        public void type(final EsploraSearchPrefetcherBenchmark benchmark) throws Exception {
+            height = benchmark.nextHeight--;
+
+            final CountDownLatch isPrefetched = new CountDownLatch(1);
+
+            // the prefetcher is driven from the main thread like by the search view
+            EsploraExecutors.getEventLoop().post(new Runnable() {
+                @Override
+                public void run() {
+                    EsploraClient.getSearchPrefetcher().prefetch(height);
+                    isPrefetched.countDown();
+                }
+            });
+
+            isPrefetched.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            // the time the user takes from the last digit to submitting the search
+            Thread.sleep(typingMillis);
+        }
+    }
+
+    /**
+     * @param future A future of a block.
+     * @return The block.
+     * @throws Exception The request failed or did not finish in time.
+     */
+    private static EsploraBlock await(final EsploraFuture<EsploraBlock> future)
+            throws Exception {
+        final CountDownLatch isDone = new CountDownLatch(1);
+        final AtomicReference<EsploraBlock> result = new AtomicReference<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        future.addListener(new EsploraFuture.Listener<EsploraBlock>() {
+            @Override
+            public void onSuccess(final EsploraBlock block) {
+                result.set(block);
+                isDone.countDown();
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                failure.set(error);
+                isDone.countDown();
+            }
+        }, EsploraExecutors.direct());
+
+        if (!isDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("the block was not received");
+        }
+
+        if (failure.get() != null) {
+            throw new IllegalStateException(failure.get());
+        }
+
+        return result.get();
+    }
+}
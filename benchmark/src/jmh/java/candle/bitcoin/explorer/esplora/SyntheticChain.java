@@ -0,0 +1,153 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic chain of synthetic blocks used as benchmark fixture. Hashes are derived from
+ * the height and start with "00", so they pass {@link EsploraBlock#isValidBlockHash(String)};
+ * the other fields vary like on mainnet, so delta encodings are not unrealistically small.
+ */
+public class SyntheticChain {
+    // timestamp of the genesis block
+    private static final long GENESIS_TIMESTAMP = 1231006505L;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private SyntheticChain() {
+    }
+
+    /**
+     * @param height A block height.
+     * @return The hash of the synthetic block at the given height.
+     */
+    public static String hash(final int height) {
+        return "00" + sha256Hex("block" + height).substring(2);
+    }
+
+    /**
+     * @param height A block height.
+     * @return The synthetic block at the given height.
+     */
+    public static EsploraBlock block(final int height) {
+        final Random random = new Random(height);
+        final int size = 200000 + random.nextInt(1300000);
+
+        return new EsploraBlock(
+                hash(height),
+                height > 0 ? hash(height - 1) : null,
+                height,
+                0x20000000 | random.nextInt(0x2000),
+                GENESIS_TIMESTAMP + height * 600L + random.nextInt(1200) - 600,
+                1 + random.nextInt(3500),
+                size,
+                size * 3 + random.nextInt(size),
+                sha256Hex("merkle" + height),
+                random.nextInt(),
+                0x17000000 | random.nextInt(0x1000000)
+        );
+    }
+
+    /**
+     * @param startHeight Height of the oldest block.
+     * @param count       Amount of blocks.
+     * @return Consecutive synthetic blocks in ascending height order.
+     */
+    public static ArrayList<EsploraBlock> ascending(final int startHeight, final int count) {
+        final ArrayList<EsploraBlock> blocks = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            blocks.add(block(startHeight + i));
+        }
+
+        return blocks;
+    }
+
+    /**
+     * @param newestHeight Height of the newest block.
+     * @param count        Amount of blocks.
+     * @return Consecutive synthetic blocks in descending height order, like block pages and
+     * the block list.
+     */
+    public static ArrayList<EsploraBlock> descending(final int newestHeight, final int count) {
+        final ArrayList<EsploraBlock> blocks = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            blocks.add(block(newestHeight - i));
+        }
+
+        return blocks;
+    }
+
+    /**
+     * @param block A block.
+     * @return The block as the Esplora API returns it.
+     */
+    public static JSONObject toJson(final EsploraBlock block) {
+        final JSONObject json = new JSONObject();
+
+        try {
+            json.put("id", block.getHash());
+            json.put("height", block.getHeight());
+            json.put("version", block.getVersion());
+            json.put("timestamp", block.getTime().getTime() / 1000);
+            json.put("tx_count", block.getTxCount());
+            json.put("size", block.getSize());
+            json.put("weight", block.getWeight());
+            json.put("merkle_root", block.getMerkleRoot());
+            json.put("previousblockhash", block.getHashPrevious());
+            json.put("mediantime", block.getTime().getTime() / 1000 - 3600);
+            json.put("nonce", block.getNonce());
+            json.put("bits", block.getBits());
+            json.put("difficulty", 1.5e13);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return json;
+    }
+
+    /**
+     * @param blocks Blocks of a page.
+     * @return The page as the Esplora API returns it.
+     */
+    public static String toJson(final List<EsploraBlock> blocks) {
+        final JSONArray json = new JSONArray();
+
+        for (final EsploraBlock block : blocks) {
+            json.put(toJson(block));
+        }
+
+        return json.toString();
+    }
+
+    /**
+     * @param text Text to be hashed.
+     * @return SHA-256 of the text as lowercase hex.
+     */
+    private static String sha256Hex(final String text) {
+        final byte[] digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+
+        return new String(hex);
+    }
+}
@@ -1,8 +1,5 @@
 package candle.bitcoin.explorer.esplora;
 
-import android.os.Parcel;
-import android.os.Parcelable;
-
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -11,7 +8,7 @@ import java.util.Date;
 /**
  * The EsploraBlock object is a representation of the block data provided from the Esplora API.
  */
-public class EsploraBlock implements Parcelable {
+public class EsploraBlock {
     private String hash;
     private String hashPrevious;
     private int height;
@@ -56,24 +53,45 @@ public class EsploraBlock implements Parcelable {
     }
 
     /**
-     * Initializes and populates this EsploraBlock object from the given Parcel data. The code
-     * below was automatically generated with http://www.parcelabler.com/.
+     * Initializes this EsploraBlock object from already validated fields, e.g. decoded from a
+     * local store.
      *
-     * @param in Input Parcel to populate the object.
+     * @param hash         Hash of the block.
+     * @param hashPrevious Previous hash of the block, or null for the genesis block.
+     * @param height       Height of the block.
+     * @param version      Version of the block.
+     * @param timestamp    Unix timestamp of the block creation in seconds.
+     * @param txCount      Transaction count of the block.
+     * @param size         Size of the block in byte.
+     * @param weight       Weight of the block.
+     * @param merkleRoot   Merkle root of the block.
+     * @param nonce        Nonce of the block.
+     * @param bits         Bits of the block.
      */
-    private EsploraBlock(final Parcel in) {
-        hash = in.readString();
-        hashPrevious = in.readString();
-        height = in.readInt();
-        version = in.readInt();
-        final long tmpTime = in.readLong();
-        time = tmpTime != -1 ? new Date(tmpTime) : null;
-        txCount = in.readInt();
-        size = in.readInt();
-        weight = in.readInt();
-        merkleRoot = in.readString();
-        nonce = in.readInt();
-        bits = in.readInt();
+    EsploraBlock(
+            final String hash,
+            final String hashPrevious,
+            final int height,
+            final int version,
+            final long timestamp,
+            final int txCount,
+            final int size,
+            final int weight,
+            final String merkleRoot,
+            final int nonce,
+            final int bits
+    ) {
+        this.hash = hash;
+        this.hashPrevious = hashPrevious;
+        this.height = height;
+        this.version = version;
+        this.time = new Date(timestamp * 1000);
+        this.txCount = txCount;
+        this.size = size;
+        this.weight = weight;
+        this.merkleRoot = merkleRoot;
+        this.nonce = nonce;
+        this.bits = bits;
     }
 
     /**
@@ -88,26 +106,26 @@ public class EsploraBlock implements Parcelable {
      * @throws EsploraClientException Supplied block hash is invalid.
      */
     private void setHash(final String hash) throws EsploraClientException {
-        if (!this.isValidBlockHash(hash)) {
+        if (!isValidBlockHash(hash)) {
             throw new EsploraClientException("supplied block hash is invalid");
         }
 
         this.hash = hash;
     }
 
-    // /**
-    //  * @return Previous hash of the block.
-    //  */
-    // public String getHashPrevious() {
-    //     return hashPrevious;
-    // }
+    /**
+     * @return Previous hash of the block, or null for the genesis block.
+     */
+    public String getHashPrevious() {
+        return hashPrevious;
+    }
 
     /**
      * @param hashPrevious Previous hash of the block.
      * @throws EsploraClientException Supplied block hash is invalid.
      */
     private void setHashPrevious(final String hashPrevious) throws EsploraClientException {
-        if (!this.isValidBlockHash(hashPrevious)) {
+        if (!isValidBlockHash(hashPrevious)) {
             throw new EsploraClientException("supplied previous block hash is invalid");
         }
 
@@ -264,6 +282,21 @@ public class EsploraBlock implements Parcelable {
         this.bits = bits;
     }
 
+    /**
+     * @return Difficulty of the block, decoded from its bits: the target of difficulty 1
+     * (0xffff * 2^208) divided by the target of the block.
+     */
+    public double getDifficulty() {
+        final int exponent = bits >>> 24;
+        final int mantissa = bits & 0xffffff;
+
+        if (mantissa == 0) {
+            return 0;
+        }
+
+        return (double) 0xffff / mantissa * Math.pow(2, 8 * (0x1d - exponent));
+    }
+
     /**
      * Checks if a given block hash seems to be valid. There's no guarantee that it actually is
      * a valid Bitcoin block hash.
@@ -272,7 +305,7 @@ public class EsploraBlock implements Parcelable {
      * @return A boolean value representing the validations result.
      */
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
-    private boolean isValidBlockHash(final String hash) {
+    static boolean isValidBlockHash(final String hash) {
         if (!hash.matches("[A-Fa-f0-9]{64}")) {
             return false;
         }
@@ -298,37 +331,4 @@ public class EsploraBlock implements Parcelable {
                 ((EsploraBlock) block).getHash()
         );
     }
-
-    @Override
-    public int describeContents() {
-        return 0;
-    }
-
-    @Override
-    public void writeToParcel(Parcel dest, int flags) {
-        dest.writeString(hash);
-        dest.writeString(hashPrevious);
-        dest.writeInt(height);
-        dest.writeInt(version);
-        dest.writeLong(time != null ? time.getTime() : -1L);
-        dest.writeInt(txCount);
-        dest.writeInt(size);
-        dest.writeInt(weight);
-        dest.writeString(merkleRoot);
-        dest.writeInt(nonce);
-        dest.writeInt(bits);
-    }
-
-    @SuppressWarnings("unused")
-    public static final Parcelable.Creator<EsploraBlock> CREATOR = new Parcelable.Creator<EsploraBlock>() {
-        @Override
-        public EsploraBlock createFromParcel(Parcel in) {
-            return new EsploraBlock(in);
-        }
-
-        @Override
-        public EsploraBlock[] newArray(int size) {
-            return new EsploraBlock[size];
-        }
-    };
 }
@@ -0,0 +1,788 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A dense index mapping every block height to its 32 byte block hash. The hashes are stored
+ * in internal (reversed) byte order in chunks of 4096 heights (128 KB), which are allocated
+ * when the first hash of their heights is added, so a full chain takes about 29 MB and an
+ * index of recent blocks a few chunks. Unknown heights are all zero.
+ * <p>
+ * Reverse lookups (hash to height) use an open addressing table keyed on the first 8 bytes of
+ * the hash in internal byte order, which unlike the displayed prefix are not zero.
+ * <p>
+ * The index is filled by the EsploraClient with every block it receives and can be stored to
+ * and loaded from a file. The file is a list of height and hash records: saving appends the
+ * hashes added or replaced since the last save and only rewrites the whole file once it has
+ * collected many replaced records. All methods are thread safe.
+ */
+public class EsploraBlockHashIndex {
+    private static final int HASH_SIZE = 32;
+
+    // heights per chunk of the hash storage
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_HEIGHTS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_SIZE = CHUNK_HEIGHTS * HASH_SIZE;
+
+    // file format identifier ("EHI" and version 2), version 1 stored all heights up to the max
+    private static final int FILE_MAGIC = 0x45484902;
+    private static final int FILE_MAGIC_V1 = 0x45484901;
+
+    // a file record is the height followed by the hash in internal byte order
+    private static final int FILE_HEADER_SIZE = 4;
+    private static final int FILE_RECORD_SIZE = 4 + HASH_SIZE;
+
+    // replaced records tolerated in a file before it gets rewritten, at least
+    private static final int FILE_REPLACED_RECORDS_MIN = 4096;
+
+    // heights logged for the next save, more changes are saved by rewriting the file (256 KB)
+    private static final int MAX_CHANGED_HEIGHTS = 65536;
+
+    // marks a removed entry in the reverse lookup table
+    private static final int TOMBSTONE = -1;
+
+    // hashes in internal byte order, chunk (height >> CHUNK_SHIFT) is null until it is used
+    private byte[][] chunks = new byte[0][];
+
+    // highest known height, -1 if the index is empty
+    private int heightMax = -1;
+
+    // amount of known heights
+    private int count = 0;
+
+    // incremented whenever a hash is added or replaced
+    private int modificationCount = 0;
+
+    // reverse lookup table storing height + 1 (0 = empty slot), the length is a power of two
+    private int[] table = new int[1024];
+    private int tableUsed = 0;
+
+    // heights added or replaced since the last save, may contain duplicates, not logged while
+    // a rewrite is required
+    private int[] changedHeights = new int[64];
+    private int changedCount = 0;
+
+    // file the index was loaded from or fully written to, the only file it rewrites on its own
+    private File file = null;
+
+    // forces the next save to write the whole index, after a failed save or when more heights
+    // changed than the change log holds
+    private boolean isRewriteRequired = false;
+
+    // serializes saves, which write outside of the index lock
+    private final Object saveLock = new Object();
+
+    /**
+     * Adds a block hash to the index, replacing a different hash at the same height (reorg).
+     *
+     * @param height Height of the block.
+     * @param hash   Hash of the block as displayed (hex).
+     * @return False if the hash is not a valid hex string of 32 bytes.
+     */
+    public synchronized boolean put(final int height, final String hash) {
+        if (height < 0 || hash.length() != HASH_SIZE * 2) {
+            return false;
+        }
+
+        final byte[] decoded = new byte[HASH_SIZE];
+        if (!EsploraHex.decodeReversed(hash, decoded, 0) || isZero(decoded, 0)) {
+            return false;
+        }
+
+        if (store(height, decoded) && !isRewriteRequired) {
+            // e.g. an index filled on the JVM without ever being saved
+            if (changedCount == MAX_CHANGED_HEIGHTS) {
+                isRewriteRequired = true;
+                changedCount = 0;
+                return true;
+            }
+
+            if (changedCount == changedHeights.length) {
+                changedHeights = Arrays.copyOf(changedHeights, changedCount * 2);
+            }
+
+            changedHeights[changedCount++] = height;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param height A block height.
+     * @return The block hash at the given height as displayed (hex), or null if unknown.
+     */
+    public synchronized String getHash(final int height) {
+        if (!isKnown(height)) {
+            return null;
+        }
+
+        return EsploraHex.encodeReversed(chunkOf(height), offsetOf(height), HASH_SIZE);
+    }
+
+    /**
+     * Copies the hash at the given height in internal byte order without allocating.
+     *
+     * @param height      A block height.
+     * @param destination Byte array to copy the hash to.
+     * @param offset      Offset in the destination array.
+     * @return False if the height is unknown.
+     */
+    public synchronized boolean copyHash(final int height, final byte[] destination, final int offset) {
+        if (!isKnown(height)) {
+            return false;
+        }
+
+        System.arraycopy(chunkOf(height), offsetOf(height), destination, offset, HASH_SIZE);
+
+        return true;
+    }
+
+    /**
+     * @param hash A block hash as displayed (hex).
+     * @return Height of the block with the given hash, or -1 if unknown.
+     */
+    public synchronized int getHeight(final String hash) {
+        if (hash.length() != HASH_SIZE * 2) {
+            return -1;
+        }
+
+        final byte[] key = new byte[HASH_SIZE];
+        if (!EsploraHex.decodeReversed(hash, key, 0)) {
+            return -1;
+        }
+
+        return findInTable(key, 0);
+    }
+
+    /**
+     * @param hash   A block hash in internal byte order.
+     * @param offset Offset of the hash in the given array.
+     * @return Height of the block with the given hash, or -1 if unknown.
+     */
+    public synchronized int getHeight(final byte[] hash, final int offset) {
+        return findInTable(hash, offset);
+    }
+
+    /**
+     * @param height A block height.
+     * @return A boolean value indicating if the hash at the given height is known.
+     */
+    public synchronized boolean contains(final int height) {
+        return isKnown(height);
+    }
+
+    /**
+     * @return Highest known block height, or -1 if the index is empty.
+     */
+    public synchronized int getHeightMax() {
+        return heightMax;
+    }
+
+    /**
+     * @return Amount of known block hashes.
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return A counter incremented whenever a hash is added or replaced, used to detect
+     * changes of the index.
+     */
+    public synchronized int getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * @return All heights with a known hash in ascending order.
+     */
+    synchronized int[] getKnownHeights() {
+        final int[] heights = new int[count];
+        int index = 0;
+
+        for (int height = 0; height <= heightMax && index < count; height++) {
+            if (chunkOf(height) == null) {
+                height |= CHUNK_HEIGHTS - 1;
+            } else if (!isZero(chunkOf(height), offsetOf(height))) {
+                heights[index++] = height;
+            }
+        }
+
+        return heights;
+    }
+
+    /**
+     * Sorts known heights by their hash as displayed (hex), using a merge sort on the primitive
+     * array.
+     *
+     * @param heights Known heights to sort.
+     */
+    synchronized void sortByDisplayedHash(final int[] heights) {
+        final int[] buffer = new int[heights.length];
+
+        for (int width = 1; width < heights.length; width *= 2) {
+            for (int start = 0; start < heights.length; start += 2 * width) {
+                final int middle = Math.min(start + width, heights.length);
+                final int end = Math.min(start + 2 * width, heights.length);
+
+                int left = start;
+                int right = middle;
+
+                for (int i = start; i < end; i++) {
+                    if (right >= end || (left < middle
+                            && compareDisplayed(heights[left], heights[right]) <= 0)) {
+                        buffer[i] = heights[left++];
+                    } else {
+                        buffer[i] = heights[right++];
+                    }
+                }
+            }
+
+            System.arraycopy(buffer, 0, heights, 0, heights.length);
+        }
+    }
+
+    /**
+     * Compares the hash at a height as displayed (hex) with a prefix.
+     *
+     * @param height  A known height.
+     * @param nibbles Prefix as hex digit values (0 to 15).
+     * @param length  Amount of hex digits of the prefix.
+     * @return A negative number, zero or a positive number if the hash is less than, starts
+     * with or is greater than the prefix.
+     */
+    synchronized int compareDisplayedPrefix(final int height, final byte[] nibbles, final int length) {
+        final byte[] chunk = chunkOf(height);
+        final int offset = offsetOf(height);
+
+        for (int i = 0; i < length; i++) {
+            // displayed byte i is stored at the reversed position
+            final int value = chunk[offset + HASH_SIZE - 1 - i / 2] & 0xff;
+            final int nibble = (i & 1) == 0 ? value >>> 4 : value & 0x0f;
+
+            if (nibble != nibbles[i]) {
+                return nibble - nibbles[i];
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Finds the highest height below or at the given height whose hash is unknown.
+     *
+     * @param height Height to start searching downwards from.
+     * @return The highest unknown height, or -1 if all heights down to 0 are known.
+     */
+    public synchronized int findGapBelow(final int height) {
+        for (int h = height; h >= 0; h--) {
+            if (!isKnown(h)) {
+                return h;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Stores the index to a file. The hashes added or replaced since the last save are appended
+     * to the index file this index was loaded from or last written to, so a crash leaves at most
+     * an incomplete last record behind, which is ignored when loading. Any other file, and the
+     * own file once it collected many replaced records or more changes than the index logs, is
+     * written to a temporary file and renamed afterwards.
+     *
+     * @param file File to store the index in.
+     * @throws IOException Writing the file failed.
+     */
+    public void save(final File file) throws IOException {
+        synchronized (saveLock) {
+            final long recordCount = countRecords(file);
+            final boolean isRewrite;
+
+            synchronized (this) {
+                isRewrite = recordCount < 0 || isRewriteRequired || !file.equals(this.file)
+                        || recordCount > count + Math.max(FILE_REPLACED_RECORDS_MIN, count / 4);
+            }
+
+            try {
+                if (isRewrite) {
+                    write(file);
+                } else {
+                    append(file, recordCount);
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    isRewriteRequired = true;
+                }
+
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Loads an index file. Heights already known are kept, so blocks received while loading
+     * are not overwritten by older data.
+     *
+     * @param file File to load the index from.
+     * @throws IOException Reading the file failed or the file is invalid.
+     */
+    public void load(final File file) throws IOException {
+        final DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file))
+        );
+
+        // heights taken from the file, later records of a height replace earlier ones
+        final BitSet loadedHeights = new BitSet();
+        final byte[] hash = new byte[HASH_SIZE];
+
+        try {
+            final int magic = input.readInt();
+
+            if (magic == FILE_MAGIC_V1) {
+                final int heightCount = input.readInt();
+
+                for (int height = 0; height < heightCount; height++) {
+                    input.readFully(hash);
+                    put(height, hash, loadedHeights);
+                }
+
+                return;
+            }
+
+            if (magic != FILE_MAGIC) {
+                throw new IOException("invalid block hash index file");
+            }
+
+            while (true) {
+                final int height;
+
+                try {
+                    height = input.readInt();
+                    input.readFully(hash);
+                } catch (EOFException e) {
+                    // the end of the file, or an incomplete record of an interrupted save
+                    break;
+                }
+
+                if (height < 0) {
+                    throw new IOException("invalid block hash index record");
+                }
+
+                put(height, hash, loadedHeights);
+            }
+
+            synchronized (this) {
+                this.file = file;
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Adds a hash in internal byte order read from a file, unless the height was known before
+     * the file was loaded.
+     *
+     * @param height        Height of the block.
+     * @param hash          Hash of the block in internal byte order.
+     * @param loadedHeights Heights read from the file so far.
+     */
+    private synchronized void put(final int height, final byte[] hash, final BitSet loadedHeights) {
+        if (isZero(hash, 0) || (isKnown(height) && !loadedHeights.get(height))) {
+            return;
+        }
+
+        loadedHeights.set(height);
+        store(height, hash);
+    }
+
+    /**
+     * Stores a hash at a height, replacing a different hash (reorg).
+     *
+     * @param height Height of the block.
+     * @param hash   Hash of the block in internal byte order, not all zero.
+     * @return False if the hash was known already.
+     */
+    private boolean store(final int height, final byte[] hash) {
+        ensureCapacity(height);
+
+        final byte[] chunk = chunkOf(height);
+        final int offset = offsetOf(height);
+
+        if (isZero(chunk, offset)) {
+            count++;
+        } else if (equals(chunk, offset, hash, 0)) {
+            return false;
+        } else {
+            removeFromTable(chunk, offset, height);
+        }
+
+        System.arraycopy(hash, 0, chunk, offset, HASH_SIZE);
+
+        modificationCount++;
+        heightMax = Math.max(heightMax, height);
+        insertIntoTable(height);
+
+        return true;
+    }
+
+    /**
+     * Appends the hashes added or replaced since the last save to an index file.
+     *
+     * @param file        An index file.
+     * @param recordCount Amount of complete records in the file.
+     * @throws IOException Writing the file failed.
+     */
+    private void append(final File file, final long recordCount) throws IOException {
+        final byte[] records;
+
+        synchronized (this) {
+            records = new byte[changedCount * FILE_RECORD_SIZE];
+
+            for (int i = 0; i < changedCount; i++) {
+                final int height = changedHeights[i];
+                final int offset = i * FILE_RECORD_SIZE;
+
+                records[offset] = (byte) (height >>> 24);
+                records[offset + 1] = (byte) (height >>> 16);
+                records[offset + 2] = (byte) (height >>> 8);
+                records[offset + 3] = (byte) height;
+                System.arraycopy(chunkOf(height), offsetOf(height), records, offset + 4, HASH_SIZE);
+            }
+
+            changedCount = 0;
+        }
+
+        if (records.length == 0) {
+            return;
+        }
+
+        final RandomAccessFile output = new RandomAccessFile(file, "rw");
+
+        try {
+            // drop an incomplete record of an interrupted save
+            final long length = FILE_HEADER_SIZE + recordCount * FILE_RECORD_SIZE;
+
+            output.setLength(length);
+            output.seek(length);
+            output.write(records);
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Writes the whole index to a temporary file and renames it to the given file afterwards,
+     * so a crash never leaves a corrupted index behind. The chunks are copied one at a time.
+     *
+     * @param file File to store the index in.
+     * @throws IOException Writing the file failed.
+     */
+    private void write(final File file) throws IOException {
+        final int chunkCount;
+
+        synchronized (this) {
+            // changes made while writing are logged again and appended by the next save, a
+            // failed write requires another rewrite
+            changedCount = 0;
+            isRewriteRequired = false;
+            chunkCount = chunks.length;
+        }
+
+        final File temporaryFile = new File(file.getPath() + ".tmp");
+        final FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile);
+        final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(fileOutputStream)
+        );
+        final byte[] buffer = new byte[CHUNK_SIZE];
+
+        try {
+            output.writeInt(FILE_MAGIC);
+
+            for (int index = 0; index < chunkCount; index++) {
+                synchronized (this) {
+                    if (chunks[index] == null) {
+                        continue;
+                    }
+
+                    System.arraycopy(chunks[index], 0, buffer, 0, CHUNK_SIZE);
+                }
+
+                for (int offset = 0; offset < CHUNK_SIZE; offset += HASH_SIZE) {
+                    if (!isZero(buffer, offset)) {
+                        output.writeInt(index << CHUNK_SHIFT | offset / HASH_SIZE);
+                        output.write(buffer, offset, HASH_SIZE);
+                    }
+                }
+            }
+
+            output.flush();
+            fileOutputStream.getFD().sync();
+        } finally {
+            output.close();
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            throw new IOException("unable to rename " + temporaryFile);
+        }
+
+        synchronized (this) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * @param file A file.
+     * @return Amount of complete records in the given index file, or -1 if it does not exist
+     * or is no index file of the current version.
+     * @throws IOException Reading the file failed.
+     */
+    private static long countRecords(final File file) throws IOException {
+        if (!file.exists()) {
+            return -1;
+        }
+
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+
+        try {
+            if (input.length() < FILE_HEADER_SIZE || input.readInt() != FILE_MAGIC) {
+                return -1;
+            }
+
+            return (input.length() - FILE_HEADER_SIZE) / FILE_RECORD_SIZE;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @param height A block height.
+     * @return A boolean value indicating if the hash at the given height is known.
+     */
+    private boolean isKnown(final int height) {
+        return height >= 0 && height <= heightMax && chunkOf(height) != null
+                && !isZero(chunkOf(height), offsetOf(height));
+    }
+
+    /**
+     * @param height A block height up to the highest known height.
+     * @return The chunk storing the hash of the given height, or null if it is not allocated.
+     */
+    private byte[] chunkOf(final int height) {
+        return chunks[height >>> CHUNK_SHIFT];
+    }
+
+    /**
+     * @param height A block height.
+     * @return Offset of the hash of the given height in its chunk.
+     */
+    private static int offsetOf(final int height) {
+        return (height & (CHUNK_HEIGHTS - 1)) * HASH_SIZE;
+    }
+
+    /**
+     * Allocates the chunk the given height is stored in.
+     *
+     * @param height A block height.
+     */
+    private void ensureCapacity(final int height) {
+        final int index = height >>> CHUNK_SHIFT;
+
+        if (index >= chunks.length) {
+            // the chunk references are small, leave room for about a year of new blocks
+            chunks = Arrays.copyOf(chunks, index + 1 + 16);
+        }
+
+        if (chunks[index] == null) {
+            chunks[index] = new byte[CHUNK_SIZE];
+        }
+    }
+
+    /**
+     * Inserts the hash at the given height into the reverse lookup table.
+     *
+     * @param height A known block height.
+     */
+    private void insertIntoTable(final int height) {
+        // keep the load factor below 0.5, the rebuilt table contains the height already
+        if ((tableUsed + 1) * 2 > table.length) {
+            rebuildTable();
+            return;
+        }
+
+        final int mask = table.length - 1;
+        int slot = slot(chunkOf(height), offsetOf(height), mask);
+
+        while (table[slot] != 0 && table[slot] != TOMBSTONE) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (table[slot] == 0) {
+            tableUsed++;
+        }
+
+        table[slot] = height + 1;
+    }
+
+    /**
+     * Removes a replaced hash from the reverse lookup table.
+     *
+     * @param hash   The replaced hash in internal byte order.
+     * @param offset Offset of the hash in the given array.
+     * @param height Height the hash was stored at.
+     */
+    private void removeFromTable(final byte[] hash, final int offset, final int height) {
+        final int mask = table.length - 1;
+        int slot = slot(hash, offset, mask);
+
+        while (table[slot] != 0) {
+            if (table[slot] == height + 1) {
+                table[slot] = TOMBSTONE;
+                return;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * @param hash   A block hash in internal byte order.
+     * @param offset Offset of the hash in the given array.
+     * @return Height of the hash or -1 if unknown.
+     */
+    private int findInTable(final byte[] hash, final int offset) {
+        final int mask = table.length - 1;
+        int slot = slot(hash, offset, mask);
+
+        while (table[slot] != 0) {
+            final int height = table[slot] - 1;
+
+            if (table[slot] != TOMBSTONE
+                    && equals(chunkOf(height), offsetOf(height), hash, offset)) {
+                return height;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Rebuilds the reverse lookup table with room for twice the known hashes, dropping all
+     * tombstones.
+     */
+    private void rebuildTable() {
+        table = new int[Math.max(1024, Integer.highestOneBit(count + 1) * 4)];
+        tableUsed = 0;
+
+        final int mask = table.length - 1;
+
+        for (int height = 0; height <= heightMax; height++) {
+            if (chunkOf(height) == null) {
+                height |= CHUNK_HEIGHTS - 1;
+                continue;
+            }
+
+            if (isZero(chunkOf(height), offsetOf(height))) {
+                continue;
+            }
+
+            int slot = slot(chunkOf(height), offsetOf(height), mask);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            table[slot] = height + 1;
+            tableUsed++;
+        }
+    }
+
+    /**
+     * Compares the hashes of two heights as displayed (hex).
+     *
+     * @param heightA A known height.
+     * @param heightB Another known height.
+     * @return A negative number, zero or a positive number if the first hash is less than,
+     * equal to or greater than the second one.
+     */
+    private int compareDisplayed(final int heightA, final int heightB) {
+        final byte[] chunkA = chunkOf(heightA);
+        final byte[] chunkB = chunkOf(heightB);
+        final int offsetA = offsetOf(heightA);
+        final int offsetB = offsetOf(heightB);
+
+        for (int i = HASH_SIZE - 1; i >= 0; i--) {
+            final int a = chunkA[offsetA + i] & 0xff;
+            final int b = chunkB[offsetB + i] & 0xff;
+
+            if (a != b) {
+                return a - b;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Computes the first slot of a hash in the reverse lookup table from its first 8 bytes.
+     *
+     * @param hash   A block hash in internal byte order.
+     * @param offset Offset of the hash in the given array.
+     * @param mask   Table length - 1.
+     * @return The first slot to probe.
+     */
+    private static int slot(final byte[] hash, final int offset, final int mask) {
+        long prefix = 0;
+
+        for (int i = 0; i < 8; i++) {
+            prefix = prefix << 8 | (hash[offset + i] & 0xff);
+        }
+
+        return (int) (prefix ^ prefix >>> 32) & mask;
+    }
+
+    /**
+     * @return A boolean value indicating if the 32 bytes at the given offset are equal.
+     */
+    private static boolean equals(
+            final byte[] a,
+            final int offsetA,
+            final byte[] b,
+            final int offsetB
+    ) {
+        for (int i = 0; i < HASH_SIZE; i++) {
+            if (a[offsetA + i] != b[offsetB + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return A boolean value indicating if the 32 bytes at the given offset are all zero.
+     */
+    private static boolean isZero(final byte[] hash, final int offset) {
+        for (int i = 0; i < HASH_SIZE; i++) {
+            if (hash[offset + i] != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,250 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+
+/**
+ * A lightweight representation of the 80 byte Bitcoin block header, decoded directly from the
+ * raw header hex provided by the Esplora API (block/:hash/header). Unlike {@link EsploraBlock}
+ * it has no transaction count, size or weight unless they were requested (see
+ * {@link #hasDetails()}), and the height is only known when the header was requested by
+ * height.
+ * <p>
+ * Fields are extracted from the raw bytes on access (little-endian), the hash of the block is
+ * computed as the double SHA-256 of the header.
+ */
+public class EsploraBlockHeader {
+    /**
+     * Size of a raw Bitcoin block header.
+     */
+    public static final int SIZE = 80;
+
+    // field offsets within the header
+    private static final int FIELD_VERSION = 0;
+    private static final int FIELD_HASH_PREVIOUS = 4;
+    private static final int FIELD_MERKLE_ROOT = 36;
+    private static final int FIELD_TIME = 68;
+    private static final int FIELD_BITS = 72;
+    private static final int FIELD_NONCE = 76;
+
+    private final byte[] bytes;
+    private int height = -1;
+    private String hash;
+
+    // details of the block outside the header, -1 unless requested
+    private int txCount = -1;
+    private int size = -1;
+    private int weight = -1;
+
+    /**
+     * @param bytes The 80 raw header bytes, not copied.
+     */
+    EsploraBlockHeader(final byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Decodes a raw header as provided by the Esplora API.
+     *
+     * @param hex 160 hex characters of the serialized header.
+     * @return The decoded header.
+     * @throws EsploraClientException The supplied string is not a valid header.
+     */
+    public static EsploraBlockHeader parse(final String hex) throws EsploraClientException {
+        final String trimmed = hex.trim();
+
+        if (trimmed.length() != SIZE * 2) {
+            throw new EsploraClientException("block header must be 160 hex characters");
+        }
+
+        final byte[] bytes = new byte[SIZE];
+        if (!EsploraHex.decode(trimmed, bytes, 0)) {
+            throw new EsploraClientException("block header contains non-hex characters");
+        }
+
+        return new EsploraBlockHeader(bytes);
+    }
+
+    /**
+     * Serializes the header of a block and takes its height and details. The hash of the
+     * header is checked against the hash of the block, so a block whose fields don't hash to
+     * its id is rejected like a raw header not matching the requested hash.
+     *
+     * @param block A block received from the API.
+     * @return The header of the block, including height and details.
+     * @throws EsploraClientException The header fields of the block don't match its hash.
+     */
+    static EsploraBlockHeader fromBlock(final EsploraBlock block) throws EsploraClientException {
+        final byte[] bytes = new byte[SIZE];
+        EsploraHeaderStore.writeHeader(block, bytes, 0);
+
+        final EsploraBlockHeader header = new EsploraBlockHeader(bytes);
+        if (!header.getHash().equalsIgnoreCase(block.getHash())) {
+            throw new EsploraClientException("block header does not match hash");
+        }
+
+        header.setHeight(block.getHeight());
+        header.txCount = block.getTxCount();
+        header.size = block.getSize();
+        header.weight = block.getWeight();
+
+        return header;
+    }
+
+    /**
+     * @return Height of the block, or -1 if the header was not requested by height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @param height Height of the block.
+     */
+    void setHeight(final int height) {
+        this.height = height;
+    }
+
+    /**
+     * @return A boolean value indicating if transaction count, size and weight are known.
+     */
+    public boolean hasDetails() {
+        return txCount >= 0;
+    }
+
+    /**
+     * @return Transaction count of the block, or -1 if the details were not requested.
+     */
+    public int getTxCount() {
+        return txCount;
+    }
+
+    /**
+     * @return Size of the block in byte, or -1 if the details were not requested.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Weight of the block, or -1 if the details were not requested.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return Hash of the block, the reversed double SHA-256 of the header.
+     */
+    public String getHash() {
+        if (hash == null) {
+            hash = EsploraHex.encodeReversed(computeHash(), 0, 32);
+        }
+
+        return hash;
+    }
+
+    /**
+     * @return Previous hash of the block, all zeros for the genesis block.
+     */
+    public String getHashPrevious() {
+        return EsploraHex.encodeReversed(bytes, FIELD_HASH_PREVIOUS, 32);
+    }
+
+    /**
+     * @return Merkle root of the block.
+     */
+    public String getMerkleRoot() {
+        return EsploraHex.encodeReversed(bytes, FIELD_MERKLE_ROOT, 32);
+    }
+
+    /**
+     * @return Version of the block.
+     */
+    public int getVersion() {
+        return readIntLittleEndian(FIELD_VERSION);
+    }
+
+    /**
+     * @return Unix timestamp of the block creation in seconds.
+     */
+    public long getTimestamp() {
+        return readIntLittleEndian(FIELD_TIME) & 0xffffffffL;
+    }
+
+    /**
+     * @return Time of the block creation.
+     */
+    public Date getTime() {
+        return new Date(getTimestamp() * 1000);
+    }
+
+    /**
+     * @return Bits of the block.
+     */
+    public int getBits() {
+        return readIntLittleEndian(FIELD_BITS);
+    }
+
+    /**
+     * @return Nonce of the block.
+     */
+    public int getNonce() {
+        return readIntLittleEndian(FIELD_NONCE);
+    }
+
+    /**
+     * Checks if this header directly follows the given header.
+     *
+     * @param previous The presumably previous header.
+     * @return A boolean value indicating if the previous hash of this header matches the hash
+     * of the given header.
+     */
+    public boolean follows(final EsploraBlockHeader previous) {
+        final byte[] previousHash = previous.computeHash();
+
+        for (int i = 0; i < 32; i++) {
+            if (bytes[FIELD_HASH_PREVIOUS + i] != previousHash[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Copies the 80 raw header bytes.
+     *
+     * @param destination Array to copy the header to.
+     * @param offset      Offset in the array.
+     */
+    public void copyBytes(final byte[] destination, final int offset) {
+        System.arraycopy(bytes, 0, destination, offset, SIZE);
+    }
+
+    /**
+     * @return The double SHA-256 of the header in internal byte order.
+     */
+    private byte[] computeHash() {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            return digest.digest(digest.digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param offset Offset of the field.
+     * @return The 4 byte little-endian value at the given offset.
+     */
+    private int readIntLittleEndian(final int offset) {
+        return (bytes[offset] & 0xff)
+                | (bytes[offset + 1] & 0xff) << 8
+                | (bytes[offset + 2] & 0xff) << 16
+                | (bytes[offset + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,196 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compact snapshot of a window of a block list, its scroll position and the selected block.
+ * It is stored when the list is left and restored at the next start, so the list can be shown
+ * before the first response of the API arrives.
+ * <p>
+ * The blocks are stored in the columnar {@link EsploraBlockSegment} format, about 80 bytes per
+ * block, and decode in about a microsecond per block, so restoring does not delay the first
+ * frame. Restored blocks are passed to {@link EsploraClient#addRestoredBlocks(List)} by the
+ * caller.
+ */
+public class EsploraBlockListSnapshot {
+    // magic number and version of the snapshot file format
+    private static final int FILE_MAGIC = 0x45424c01;
+
+    // upper bound of the encoded blocks, a snapshot holds a window of a few dozen blocks
+    private static final int MAX_SEGMENT_LENGTH = 1024 * 1024;
+
+    private final List<EsploraBlock> blocks;
+    private final int scrollPosition;
+    private final int scrollOffset;
+    private final int selectedHeight;
+    private final String selectedHash;
+
+    /**
+     * @param blocks         Consecutive blocks of the list in descending height order.
+     * @param scrollPosition Index of the first visible block in the given blocks.
+     * @param scrollOffset   Offset of the first visible block in pixels.
+     * @param selectedHeight Height of the selected block or -1.
+     * @param selectedHash   Hash of the selected block or null.
+     */
+    public EsploraBlockListSnapshot(
+            final List<EsploraBlock> blocks,
+            final int scrollPosition,
+            final int scrollOffset,
+            final int selectedHeight,
+            final String selectedHash
+    ) {
+        this.blocks = blocks;
+        this.scrollPosition = scrollPosition;
+        this.scrollOffset = scrollOffset;
+        this.selectedHeight = selectedHeight;
+        this.selectedHash = selectedHash;
+    }
+
+    /**
+     * @return Consecutive blocks of the list in descending height order.
+     */
+    public List<EsploraBlock> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return Index of the first visible block in the blocks of the snapshot.
+     */
+    public int getScrollPosition() {
+        return scrollPosition;
+    }
+
+    /**
+     * @return Offset of the first visible block in pixels.
+     */
+    public int getScrollOffset() {
+        return scrollOffset;
+    }
+
+    /**
+     * @return Height of the selected block or -1.
+     */
+    public int getSelectedHeight() {
+        return selectedHeight;
+    }
+
+    /**
+     * @return Hash of the selected block or null.
+     */
+    public String getSelectedHash() {
+        return selectedHash;
+    }
+
+    /**
+     * Stores the snapshot to a file. The file is written to a temporary file first and renamed
+     * afterwards, so a crash never leaves a corrupted snapshot behind.
+     *
+     * @param file File to store the snapshot in.
+     * @throws IOException Writing the file failed or the blocks are not consecutive.
+     */
+    public void save(final File file) throws IOException {
+        final ArrayList<EsploraBlock> ascending = new ArrayList<>(blocks);
+        Collections.reverse(ascending);
+
+        final byte[] segment;
+
+        try {
+            segment = EsploraBlockSegment.encode(ascending);
+        } catch (EsploraClientException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        final File temporaryFile = new File(file.getPath() + ".tmp");
+        final FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile);
+        final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(fileOutputStream)
+        );
+
+        try {
+            output.writeInt(FILE_MAGIC);
+            output.writeInt(scrollPosition);
+            output.writeInt(scrollOffset);
+            output.writeInt(selectedHeight);
+            output.writeUTF(selectedHash != null ? selectedHash : "");
+            output.writeInt(segment.length);
+            output.write(segment);
+            output.flush();
+            fileOutputStream.getFD().sync();
+        } finally {
+            output.close();
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            throw new IOException("unable to rename " + temporaryFile);
+        }
+    }
+
+    /**
+     * Loads a snapshot file. The blocks are not added to the client, see
+     * {@link EsploraClient#addRestoredBlocks(List)}.
+     *
+     * @param file File to load the snapshot from.
+     * @return The snapshot.
+     * @throws IOException Reading the file failed or the file is invalid.
+     */
+    public static EsploraBlockListSnapshot load(final File file) throws IOException {
+        final DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file))
+        );
+
+        final int scrollPosition;
+        final int scrollOffset;
+        final int selectedHeight;
+        final String selectedHash;
+        final byte[] segment;
+
+        try {
+            if (input.readInt() != FILE_MAGIC) {
+                throw new IOException("invalid block list snapshot file");
+            }
+
+            scrollPosition = input.readInt();
+            scrollOffset = input.readInt();
+            selectedHeight = input.readInt();
+            selectedHash = input.readUTF();
+
+            final int segmentLength = input.readInt();
+            if (segmentLength < 0 || segmentLength > MAX_SEGMENT_LENGTH) {
+                throw new IOException("invalid block list snapshot length");
+            }
+
+            segment = new byte[segmentLength];
+            input.readFully(segment);
+        } finally {
+            input.close();
+        }
+
+        final ArrayList<EsploraBlock> blocks;
+
+        try {
+            blocks = EsploraBlockSegment.decode(segment, 0);
+        } catch (EsploraClientException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        Collections.reverse(blocks);
+
+        return new EsploraBlockListSnapshot(
+                blocks,
+                scrollPosition,
+                scrollOffset,
+                selectedHeight,
+                selectedHash.isEmpty() ? null : selectedHash
+        );
+    }
+}
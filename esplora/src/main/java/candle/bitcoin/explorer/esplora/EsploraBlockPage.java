@@ -0,0 +1,39 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.ArrayList;
+
+/**
+ * A page of consecutive EsploraBlock objects as returned by the Esplora API, ordered from the
+ * most recent to the oldest block.
+ */
+public class EsploraBlockPage {
+    private final ArrayList<EsploraBlock> blocks;
+
+    /**
+     * @param blocks Blocks of this page, ordered from the most recent to the oldest block.
+     */
+    EsploraBlockPage(final ArrayList<EsploraBlock> blocks) {
+        this.blocks = blocks;
+    }
+
+    /**
+     * @return Blocks of this page, ordered from the most recent to the oldest block.
+     */
+    public ArrayList<EsploraBlock> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return The block height to request the next (older) page from, or null when this page
+     * contains the genesis block.
+     */
+    public Integer getNextStartHeight() {
+        final int heightOldest = blocks.get(blocks.size() - 1).getHeight();
+
+        if (heightOldest == 0) {
+            return null;
+        }
+
+        return heightOldest - 1;
+    }
+}
@@ -0,0 +1,690 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.Arrays;
+
+/**
+ * A multi-resolution pyramid of block metrics (size, weight, transaction count and interval)
+ * for charts of the whole chain at any zoom level. The first level holds the metrics of every
+ * block, each following level holds the minimum, maximum, sum and count of buckets of
+ * {@link #BASE_BUCKET_SIZE} blocks, then 4 times as many blocks per level up to 262 144 blocks
+ * per bucket. A chart window is served from the coarsest level whose buckets still fit the
+ * requested resolution, folding at most a few buckets per point, so the work per query is
+ * bounded by the amount of points and independent of the width of the window.
+ * <p>
+ * Every received block updates its own bucket on each level, recomputed from the level
+ * below in O(levels), so a block replaced by a reorg is handled like a new one.
+ * <p>
+ * Memory budget: the first level takes 20 bytes per block (four metrics and the timestamp),
+ * the bucket levels 80 bytes per bucket (minimum, maximum, sum and count of four metrics), or
+ * about 7 bytes per block over all bucket levels. The whole chain of 900 000 blocks takes
+ * about 24 MB. The arrays are allocated in chunks of {@link #CHUNK_SIZE} entries where blocks
+ * were received, a session browsing a few thousand recent blocks takes about 250 KB.
+ * <p>
+ * The pyramid is filled by the EsploraClient with every block it receives. All methods are
+ * thread safe.
+ */
+public class EsploraBlockPyramid {
+    /**
+     * Metrics kept in the pyramid.
+     */
+    public enum Metric {
+        SIZE,
+        WEIGHT,
+        TX_COUNT,
+        INTERVAL
+    }
+
+    /**
+     * Amount of blocks per bucket of the finest bucket level.
+     */
+    public static final int BASE_BUCKET_SIZE = 16;
+
+    /**
+     * Amount of entries per allocated chunk of every level.
+     */
+    public static final int CHUNK_SIZE = 256;
+
+    // amount of buckets of a level per bucket of the next level
+    private static final int FANOUT = 4;
+
+    // amount of bucket levels, the coarsest has 16 * 4^7 = 262 144 blocks per bucket
+    private static final int BUCKET_LEVEL_COUNT = 8;
+
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int METRIC_COUNT = Metric.values().length;
+
+    // value of an unknown metric of a block
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    // metrics of every block by metric ordinal, in chunks by height
+    private final int[][][] values = new int[METRIC_COUNT][][];
+
+    // timestamps of every block in seconds, unsigned, in chunks by height
+    private int[][] timestamps = new int[0][];
+
+    private final BucketLevel[] levels = new BucketLevel[BUCKET_LEVEL_COUNT];
+
+    // lowest and highest height of a received block, -1 if empty
+    private int lowHeight = -1;
+    private int highHeight = -1;
+
+    /**
+     * Initializes an empty pyramid.
+     */
+    public EsploraBlockPyramid() {
+        for (int metric = 0; metric < METRIC_COUNT; metric++) {
+            values[metric] = new int[0][];
+        }
+
+        int bucketSize = BASE_BUCKET_SIZE;
+
+        for (int level = 0; level < BUCKET_LEVEL_COUNT; level++) {
+            levels[level] = new BucketLevel(bucketSize);
+            bucketSize *= FANOUT;
+        }
+    }
+
+    /**
+     * Adds a block, replacing a block received before at the same height.
+     *
+     * @param block The block.
+     */
+    public synchronized void put(final EsploraBlock block) {
+        final int height = block.getHeight();
+        if (height < 0) {
+            return;
+        }
+
+        final int chunk = height >>> CHUNK_SHIFT;
+        final int slot = height & CHUNK_MASK;
+
+        ensureChunk(chunk);
+
+        timestamps[chunk][slot] = (int) (block.getTime().getTime() / 1000);
+        values[Metric.SIZE.ordinal()][chunk][slot] = block.getSize();
+        values[Metric.WEIGHT.ordinal()][chunk][slot] = block.getWeight();
+        values[Metric.TX_COUNT.ordinal()][chunk][slot] = block.getTxCount();
+
+        // the interval of the next block depends on the timestamp of this one
+        updateInterval(height);
+        updateBuckets(height);
+
+        if (isKnown(height + 1)) {
+            updateInterval(height + 1);
+            updateBuckets(height + 1);
+        }
+
+        lowHeight = lowHeight < 0 ? height : Math.min(lowHeight, height);
+        highHeight = Math.max(highHeight, height);
+    }
+
+    /**
+     * @return Lowest height of a received block, -1 if empty.
+     */
+    public synchronized int getLowHeight() {
+        return lowHeight;
+    }
+
+    /**
+     * @return Highest height of a received block, -1 if empty.
+     */
+    public synchronized int getHighHeight() {
+        return highHeight;
+    }
+
+    /**
+     * Downsamples a metric between two heights to at most the given amount of points. Each
+     * point aggregates the blocks of a run of heights, the runs are aligned to multiples of
+     * their length, so the points stay in place while a chart pans.
+     *
+     * @param metric     The metric.
+     * @param fromHeight Lowest height of the window.
+     * @param toHeight   Highest height of the window.
+     * @param maxPoints  Maximum amount of points, at least 1 and at most the series capacity.
+     * @param series     Series to fill, reused between queries to not allocate per frame.
+     * @return The filled series.
+     */
+    public synchronized Series query(
+            final Metric metric,
+            final int fromHeight,
+            final int toHeight,
+            final int maxPoints,
+            final Series series
+    ) {
+        final int from = Math.max(0, fromHeight);
+        final int limit = Math.min(maxPoints, series.getCapacity());
+
+        if (toHeight < from || limit < 1) {
+            series.clear();
+            return series;
+        }
+
+        final long windowSize = (long) toHeight - from + 1;
+        final long targetWidth = (windowSize + limit - 1) / limit;
+
+        // the coarsest level with buckets no larger than a point, the first level otherwise
+        int level = -1;
+        while (level + 1 < BUCKET_LEVEL_COUNT && levels[level + 1].bucketSize <= targetWidth) {
+            level++;
+        }
+
+        final int sourceSize = level < 0 ? 1 : levels[level].bucketSize;
+
+        // a multiple of the source entries, widened if the alignment needs an extra point
+        long width = (targetWidth + sourceSize - 1) / sourceSize * sourceSize;
+        while ((toHeight / width) - (from / width) + 1 > limit) {
+            width += sourceSize;
+        }
+
+        final long start = from / width * width;
+        final int pointCount = (int) ((toHeight - start) / width + 1);
+
+        series.begin(metric, (int) start, (int) width, pointCount);
+
+        for (int point = 0; point < pointCount; point++) {
+            final long pointStart = start + point * width;
+            final long pointEnd = Math.min(pointStart + width - 1, Integer.MAX_VALUE);
+
+            if (level < 0) {
+                foldBlocks(metric.ordinal(), (int) pointStart, (int) pointEnd, series, point);
+            } else {
+                levels[level].fold(
+                        metric.ordinal(),
+                        (int) (pointStart / sourceSize),
+                        (int) (pointEnd / sourceSize),
+                        series,
+                        point
+                );
+            }
+        }
+
+        series.end();
+
+        return series;
+    }
+
+    /**
+     * Adds the known values of a run of blocks to a point of a series.
+     *
+     * @param metric Ordinal of the metric.
+     * @param from   First height of the run.
+     * @param to     Last height of the run.
+     * @param series The series.
+     * @param point  Index of the point.
+     */
+    private void foldBlocks(
+            final int metric,
+            final int from,
+            final int to,
+            final Series series,
+            final int point
+    ) {
+        final int[][] chunks = values[metric];
+
+        for (int height = from; height <= to && height >= 0; height++) {
+            final int chunk = height >>> CHUNK_SHIFT;
+            if (chunk >= chunks.length) {
+                return;
+            }
+
+            if (chunks[chunk] == null) {
+                continue;
+            }
+
+            final int value = chunks[chunk][height & CHUNK_MASK];
+
+            if (value != UNKNOWN) {
+                series.add(point, value, value, value, 1);
+            }
+        }
+    }
+
+    /**
+     * Sets the interval of a block, known if the previous block is known.
+     *
+     * @param height Height of a known block.
+     */
+    private void updateInterval(final int height) {
+        final int chunk = height >>> CHUNK_SHIFT;
+        final int slot = height & CHUNK_MASK;
+
+        int interval = UNKNOWN;
+
+        if (height > 0 && isKnown(height - 1)) {
+            final int previous = height - 1;
+            final long time = timestamps[chunk][slot] & 0xffffffffL;
+            final long previousTime =
+                    timestamps[previous >>> CHUNK_SHIFT][previous & CHUNK_MASK] & 0xffffffffL;
+
+            interval = (int) (time - previousTime);
+        }
+
+        values[Metric.INTERVAL.ordinal()][chunk][slot] = interval;
+    }
+
+    /**
+     * Recomputes the buckets containing a block on every level from the level below.
+     *
+     * @param height Height of the block.
+     */
+    private void updateBuckets(final int height) {
+        for (int level = 0; level < BUCKET_LEVEL_COUNT; level++) {
+            final BucketLevel bucketLevel = levels[level];
+            final int bucket = height / bucketLevel.bucketSize;
+
+            bucketLevel.ensureChunk(bucket >>> CHUNK_SHIFT);
+
+            for (int metric = 0; metric < METRIC_COUNT; metric++) {
+                if (level == 0) {
+                    bucketLevel.setFromBlocks(metric, bucket, values[metric]);
+                } else {
+                    bucketLevel.setFromLevel(metric, bucket, levels[level - 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param height A block height.
+     * @return True if a block was received at the height.
+     */
+    private boolean isKnown(final int height) {
+        final int chunk = height >>> CHUNK_SHIFT;
+        final int[][] sizes = values[Metric.SIZE.ordinal()];
+
+        return chunk < sizes.length
+                && sizes[chunk] != null
+                && sizes[chunk][height & CHUNK_MASK] != UNKNOWN;
+    }
+
+    /**
+     * Allocates the chunk of the block metrics, filled with unknown values.
+     *
+     * @param chunk Index of the chunk.
+     */
+    private void ensureChunk(final int chunk) {
+        if (chunk >= timestamps.length) {
+            final int length = Math.max(chunk + 1, timestamps.length * 2);
+
+            timestamps = Arrays.copyOf(timestamps, length);
+
+            for (int metric = 0; metric < METRIC_COUNT; metric++) {
+                values[metric] = Arrays.copyOf(values[metric], length);
+            }
+        }
+
+        if (timestamps[chunk] != null) {
+            return;
+        }
+
+        timestamps[chunk] = new int[CHUNK_SIZE];
+
+        for (int metric = 0; metric < METRIC_COUNT; metric++) {
+            values[metric][chunk] = new int[CHUNK_SIZE];
+            Arrays.fill(values[metric][chunk], UNKNOWN);
+        }
+    }
+
+    /**
+     * A level of buckets, keeping the minimum, maximum, sum and count of the known values of
+     * each metric in chunked primitive arrays.
+     */
+    private static class BucketLevel {
+        final int bucketSize;
+
+        // by metric ordinal, in chunks by bucket index
+        private final int[][][] mins = new int[METRIC_COUNT][0][];
+        private final int[][][] maxs = new int[METRIC_COUNT][0][];
+        private final long[][][] sums = new long[METRIC_COUNT][0][];
+        private final int[][][] counts = new int[METRIC_COUNT][0][];
+
+        /**
+         * @param bucketSize Amount of blocks per bucket.
+         */
+        BucketLevel(final int bucketSize) {
+            this.bucketSize = bucketSize;
+        }
+
+        /**
+         * Allocates a chunk of buckets.
+         *
+         * @param chunk Index of the chunk.
+         */
+        void ensureChunk(final int chunk) {
+            for (int metric = 0; metric < METRIC_COUNT; metric++) {
+                if (chunk >= counts[metric].length) {
+                    final int length = Math.max(chunk + 1, counts[metric].length * 2);
+
+                    mins[metric] = Arrays.copyOf(mins[metric], length);
+                    maxs[metric] = Arrays.copyOf(maxs[metric], length);
+                    sums[metric] = Arrays.copyOf(sums[metric], length);
+                    counts[metric] = Arrays.copyOf(counts[metric], length);
+                }
+
+                if (counts[metric][chunk] == null) {
+                    mins[metric][chunk] = new int[CHUNK_SIZE];
+                    maxs[metric][chunk] = new int[CHUNK_SIZE];
+                    sums[metric][chunk] = new long[CHUNK_SIZE];
+                    counts[metric][chunk] = new int[CHUNK_SIZE];
+                }
+            }
+        }
+
+        /**
+         * Recomputes a bucket from the values of its blocks.
+         *
+         * @param metric Ordinal of the metric.
+         * @param bucket Index of the bucket.
+         * @param blocks Chunked values of the blocks.
+         */
+        void setFromBlocks(final int metric, final int bucket, final int[][] blocks) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            long sum = 0;
+            int count = 0;
+
+            // a bucket of the first level lies within a single chunk of blocks
+            final int firstHeight = bucket * bucketSize;
+            final int[] chunk = blocks[firstHeight >>> CHUNK_SHIFT];
+
+            for (int height = firstHeight; height < firstHeight + bucketSize; height++) {
+                final int value = chunk[height & CHUNK_MASK];
+                if (value == UNKNOWN) {
+                    continue;
+                }
+
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+                count++;
+            }
+
+            set(metric, bucket, min, max, sum, count);
+        }
+
+        /**
+         * Recomputes a bucket from its buckets in the level below.
+         *
+         * @param metric Ordinal of the metric.
+         * @param bucket Index of the bucket.
+         * @param below  The level below.
+         */
+        void setFromLevel(final int metric, final int bucket, final BucketLevel below) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            long sum = 0;
+            int count = 0;
+
+            for (int child = bucket * FANOUT; child < (bucket + 1) * FANOUT; child++) {
+                final int chunk = child >>> CHUNK_SHIFT;
+                if (chunk >= below.counts[metric].length || below.counts[metric][chunk] == null) {
+                    continue;
+                }
+
+                final int slot = child & CHUNK_MASK;
+                final int childCount = below.counts[metric][chunk][slot];
+                if (childCount == 0) {
+                    continue;
+                }
+
+                min = Math.min(min, below.mins[metric][chunk][slot]);
+                max = Math.max(max, below.maxs[metric][chunk][slot]);
+                sum += below.sums[metric][chunk][slot];
+                count += childCount;
+            }
+
+            set(metric, bucket, min, max, sum, count);
+        }
+
+        /**
+         * Adds the known buckets of a run to a point of a series.
+         *
+         * @param metric Ordinal of the metric.
+         * @param from   First bucket of the run.
+         * @param to     Last bucket of the run.
+         * @param series The series.
+         * @param point  Index of the point.
+         */
+        void fold(
+                final int metric,
+                final int from,
+                final int to,
+                final Series series,
+                final int point
+        ) {
+            for (int bucket = from; bucket <= to; bucket++) {
+                final int chunk = bucket >>> CHUNK_SHIFT;
+                if (chunk >= counts[metric].length) {
+                    return;
+                }
+
+                if (counts[metric][chunk] == null) {
+                    continue;
+                }
+
+                final int slot = bucket & CHUNK_MASK;
+                final int count = counts[metric][chunk][slot];
+
+                if (count > 0) {
+                    series.add(
+                            point,
+                            mins[metric][chunk][slot],
+                            maxs[metric][chunk][slot],
+                            sums[metric][chunk][slot],
+                            count
+                    );
+                }
+            }
+        }
+
+        /**
+         * @param metric Ordinal of the metric.
+         * @param bucket Index of an allocated bucket.
+         * @param min    Minimum of the known values.
+         * @param max    Maximum of the known values.
+         * @param sum    Sum of the known values.
+         * @param count  Amount of known values.
+         */
+        private void set(
+                final int metric,
+                final int bucket,
+                final int min,
+                final int max,
+                final long sum,
+                final int count
+        ) {
+            final int chunk = bucket >>> CHUNK_SHIFT;
+            final int slot = bucket & CHUNK_MASK;
+
+            mins[metric][chunk][slot] = min;
+            maxs[metric][chunk][slot] = max;
+            sums[metric][chunk][slot] = sum;
+            counts[metric][chunk][slot] = count;
+        }
+    }
+
+    /**
+     * Points of a downsampled metric, each the minimum, maximum and average of the known values
+     * of a run of blocks. A series is filled by {@link #query} and reused between queries.
+     */
+    public static class Series {
+        private final int[] mins;
+        private final int[] maxs;
+        private final long[] sums;
+        private final int[] counts;
+
+        private Metric metric;
+        private int startHeight;
+        private int blocksPerPoint;
+        private int pointCount;
+
+        // range of the values of all points, for scaling a chart
+        private int min;
+        private int max;
+
+        /**
+         * @param capacity Maximum amount of points.
+         */
+        public Series(final int capacity) {
+            mins = new int[capacity];
+            maxs = new int[capacity];
+            sums = new long[capacity];
+            counts = new int[capacity];
+        }
+
+        /**
+         * Removes all points.
+         */
+        void clear() {
+            pointCount = 0;
+            min = 0;
+            max = 0;
+        }
+
+        /**
+         * Starts filling the series with empty points.
+         *
+         * @param metric         The metric.
+         * @param startHeight    First height of the first point.
+         * @param blocksPerPoint Amount of heights per point.
+         * @param pointCount     Amount of points.
+         */
+        void begin(
+                final Metric metric,
+                final int startHeight,
+                final int blocksPerPoint,
+                final int pointCount
+        ) {
+            this.metric = metric;
+            this.startHeight = startHeight;
+            this.blocksPerPoint = blocksPerPoint;
+            this.pointCount = pointCount;
+
+            for (int point = 0; point < pointCount; point++) {
+                mins[point] = Integer.MAX_VALUE;
+                maxs[point] = Integer.MIN_VALUE;
+                sums[point] = 0;
+                counts[point] = 0;
+            }
+        }
+
+        /**
+         * Adds aggregated values to a point.
+         *
+         * @param point Index of the point.
+         * @param min   Minimum of the values.
+         * @param max   Maximum of the values.
+         * @param sum   Sum of the values.
+         * @param count Amount of values.
+         */
+        void add(final int point, final int min, final int max, final long sum, final int count) {
+            mins[point] = Math.min(mins[point], min);
+            maxs[point] = Math.max(maxs[point], max);
+            sums[point] += sum;
+            counts[point] += count;
+        }
+
+        /**
+         * Finishes filling the series, computing the range of the values.
+         */
+        void end() {
+            min = Integer.MAX_VALUE;
+            max = Integer.MIN_VALUE;
+
+            for (int point = 0; point < pointCount; point++) {
+                if (counts[point] > 0) {
+                    min = Math.min(min, mins[point]);
+                    max = Math.max(max, maxs[point]);
+                }
+            }
+
+            if (min > max) {
+                min = 0;
+                max = 0;
+            }
+        }
+
+        /**
+         * @return Maximum amount of points.
+         */
+        public int getCapacity() {
+            return counts.length;
+        }
+
+        /**
+         * @return The metric of the points, null before the first query.
+         */
+        public Metric getMetric() {
+            return metric;
+        }
+
+        /**
+         * @return Amount of points.
+         */
+        public int getPointCount() {
+            return pointCount;
+        }
+
+        /**
+         * @return First height of the first point.
+         */
+        public int getStartHeight() {
+            return startHeight;
+        }
+
+        /**
+         * @return Amount of heights per point.
+         */
+        public int getBlocksPerPoint() {
+            return blocksPerPoint;
+        }
+
+        /**
+         * @param point Index of a point.
+         * @return True if a block of the point is known.
+         */
+        public boolean hasValue(final int point) {
+            return counts[point] > 0;
+        }
+
+        /**
+         * @param point Index of a point with a value.
+         * @return Minimum of the point.
+         */
+        public int getMin(final int point) {
+            return mins[point];
+        }
+
+        /**
+         * @param point Index of a point with a value.
+         * @return Maximum of the point.
+         */
+        public int getMax(final int point) {
+            return maxs[point];
+        }
+
+        /**
+         * @param point Index of a point with a value.
+         * @return Average of the point.
+         */
+        public double getAverage(final int point) {
+            return (double) sums[point] / counts[point];
+        }
+
+        /**
+         * @return Minimum of all points, 0 if none has a value.
+         */
+        public int getMin() {
+            return min;
+        }
+
+        /**
+         * @return Maximum of all points, 0 if none has a value.
+         */
+        public int getMax() {
+            return max;
+        }
+    }
+}
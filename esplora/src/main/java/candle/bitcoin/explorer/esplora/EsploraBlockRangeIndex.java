@@ -0,0 +1,614 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.Arrays;
+
+/**
+ * Answers aggregate queries over any height range of the received blocks in O(log n): total
+ * transactions, bytes and weight, the lightest and heaviest block and the average, shortest
+ * and longest block interval. Sums are kept in Fenwick trees, minimum and maximum in segment
+ * trees, all over primitive arrays indexed by height. A block received again at a known height
+ * (e.g. after a reorg) replaces the old one with a point update.
+ * <p>
+ * The index covers a window of up to {@link #MAX_CAPACITY} consecutive heights, growing by
+ * doubling around the received blocks. The window stays pinned to the highest block received:
+ * a block above the largest window slides it up by at least {@link #SLIDE_HEIGHTS}, dropping
+ * the lowest heights, and a block below it is ignored, so browsing or syncing old blocks never
+ * moves the window away from the tip. Unknown heights are not counted, the summary of a range
+ * tells how many blocks were known.
+ * <p>
+ * The index is filled by the EsploraClient with every block it receives. All methods are
+ * thread safe.
+ */
+public class EsploraBlockRangeIndex {
+    /**
+     * Maximum amount of heights covered by the index, about 6 MB of arrays.
+     */
+    public static final int MAX_CAPACITY = 1 << 15;
+
+    /**
+     * Heights left free above a block that slid the window, so the window is rebuilt once per
+     * this many new blocks at the tip.
+     */
+    public static final int SLIDE_HEIGHTS = MAX_CAPACITY / 8;
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    // height of the first slot of the window, -1 if the index is empty
+    private int baseHeight = -1;
+
+    // amount of slots of the window, a power of two
+    private int capacity = 0;
+
+    // fields of the known blocks at height - baseHeight
+    private boolean[] known = new boolean[0];
+    private int[] txCounts = new int[0];
+    private int[] sizes = new int[0];
+    private int[] weights = new int[0];
+    private long[] timestamps = new long[0];
+
+    private SumTree blockCountSums;
+    private SumTree txCountSums;
+    private SumTree sizeSums;
+    private SumTree weightSums;
+    private ExtremeTree weightMins;
+    private ExtremeTree weightMaxs;
+
+    // the interval of a block is its time since the previous block, known if both blocks are
+    private SumTree intervalCountSums;
+    private SumTree intervalSums;
+    private ExtremeTree intervalMins;
+    private ExtremeTree intervalMaxs;
+
+    /**
+     * Adds a block, replacing a block received before at the same height.
+     *
+     * @param block The block.
+     */
+    public synchronized void put(final EsploraBlock block) {
+        final int height = block.getHeight();
+
+        if (!ensureCovered(height)) {
+            return;
+        }
+
+        final int slot = height - baseHeight;
+
+        known[slot] = true;
+        txCounts[slot] = block.getTxCount();
+        sizes[slot] = block.getSize();
+        weights[slot] = block.getWeight();
+        timestamps[slot] = block.getTime().getTime() / 1000;
+
+        updateSlot(slot);
+
+        // the interval of the next block depends on the timestamp of this one
+        if (slot + 1 < capacity) {
+            updateInterval(slot + 1);
+        }
+    }
+
+    /**
+     * Aggregates the known blocks from one height to another, both included. The intervals
+     * are those between the blocks of the range, i.e. of the blocks above the lowest height.
+     *
+     * @param fromHeight Lowest height of the range.
+     * @param toHeight   Highest height of the range.
+     * @return Summary of the known blocks in the range.
+     */
+    public synchronized Summary query(final int fromHeight, final int toHeight) {
+        final int from = Math.max(Math.min(fromHeight, toHeight) - baseHeight, 0);
+        final int to = Math.min(Math.max(fromHeight, toHeight) - baseHeight, capacity - 1);
+
+        if (baseHeight < 0 || from > to) {
+            return new Summary(
+                    Math.min(fromHeight, toHeight),
+                    Math.max(fromHeight, toHeight),
+                    0, 0, 0, 0, 0, 0, 0, 0, 0, 0
+            );
+        }
+
+        final int blockCount = (int) blockCountSums.sum(from, to);
+
+        // intervals are known from the second block of the range only
+        final int intervalCount = from < to ? (int) intervalCountSums.sum(from + 1, to) : 0;
+
+        return new Summary(
+                Math.min(fromHeight, toHeight),
+                Math.max(fromHeight, toHeight),
+                blockCount,
+                txCountSums.sum(from, to),
+                sizeSums.sum(from, to),
+                weightSums.sum(from, to),
+                blockCount > 0 ? weightMins.get(from, to) : 0,
+                blockCount > 0 ? weightMaxs.get(from, to) : 0,
+                intervalCount,
+                intervalCount > 0 ? intervalSums.sum(from + 1, to) : 0,
+                intervalCount > 0 ? intervalMins.get(from + 1, to) : 0,
+                intervalCount > 0 ? intervalMaxs.get(from + 1, to) : 0
+        );
+    }
+
+    /**
+     * @return Lowest height covered by the index, -1 if empty.
+     */
+    public synchronized int getLowHeight() {
+        return baseHeight;
+    }
+
+    /**
+     * @return Highest height covered by the index, -1 if empty.
+     */
+    public synchronized int getHighHeight() {
+        return baseHeight < 0 ? -1 : baseHeight + capacity - 1;
+    }
+
+    /**
+     * Updates the trees of the block in a slot and its interval.
+     *
+     * @param slot A slot of the window.
+     */
+    private void updateSlot(final int slot) {
+        final boolean isKnown = known[slot];
+
+        blockCountSums.set(slot, isKnown ? 1 : 0);
+        txCountSums.set(slot, isKnown ? txCounts[slot] : 0);
+        sizeSums.set(slot, isKnown ? sizes[slot] : 0);
+        weightSums.set(slot, isKnown ? weights[slot] : 0);
+        weightMins.set(slot, isKnown ? weights[slot] : weightMins.identity);
+        weightMaxs.set(slot, isKnown ? weights[slot] : weightMaxs.identity);
+
+        updateInterval(slot);
+    }
+
+    /**
+     * Updates the trees of the interval of the block in a slot.
+     *
+     * @param slot A slot of the window.
+     */
+    private void updateInterval(final int slot) {
+        final boolean isKnown = slot > 0 && known[slot] && known[slot - 1];
+        final long interval = isKnown ? timestamps[slot] - timestamps[slot - 1] : 0;
+
+        intervalCountSums.set(slot, isKnown ? 1 : 0);
+        intervalSums.set(slot, interval);
+        intervalMins.set(slot, isKnown ? interval : intervalMins.identity);
+        intervalMaxs.set(slot, isKnown ? interval : intervalMaxs.identity);
+    }
+
+    /**
+     * Grows or slides the window to cover the given height, rebuilding the trees. The capacity
+     * doubles and the window slides by at least {@link #SLIDE_HEIGHTS}, so the rebuilds take
+     * O(1) amortized per block.
+     *
+     * @param height A block height.
+     * @return False if the height is too far below the highest covered height to be covered.
+     */
+    private boolean ensureCovered(final int height) {
+        if (baseHeight >= 0 && height >= baseHeight && height < baseHeight + capacity) {
+            return true;
+        }
+
+        if (baseHeight < 0) {
+            // start with the height in the upper part, as older blocks are loaded while scrolling
+            rebuild(Math.max(0, height - INITIAL_CAPACITY * 3 / 4), INITIAL_CAPACITY);
+            return true;
+        }
+
+        final int highHeight = baseHeight + capacity - 1;
+
+        if (height < baseHeight) {
+            // grow downwards as long as the highest heights stay covered
+            if (highHeight - height + 1 > MAX_CAPACITY) {
+                return false;
+            }
+
+            int newCapacity = capacity;
+            while (newCapacity < highHeight - height + 1) {
+                newCapacity *= 2;
+            }
+
+            // keep the spare slots on the side the window grew to
+            rebuild(Math.max(0, highHeight - newCapacity + 1), newCapacity);
+            return true;
+        }
+
+        int newCapacity = capacity;
+        while (newCapacity < height - baseHeight + 1 && newCapacity < MAX_CAPACITY) {
+            newCapacity *= 2;
+        }
+
+        if (height - baseHeight + 1 <= newCapacity) {
+            rebuild(baseHeight, newCapacity);
+        } else {
+            // slide up, leaving room for the next blocks
+            rebuild(height + SLIDE_HEIGHTS - MAX_CAPACITY + 1, MAX_CAPACITY);
+        }
+
+        return true;
+    }
+
+    /**
+     * Copies the known blocks into a new window and rebuilds the trees in O(capacity).
+     *
+     * @param newBase     Height of the first slot of the new window.
+     * @param newCapacity Amount of slots of the new window.
+     */
+    private void rebuild(final int newBase, final int newCapacity) {
+        final boolean[] newKnown = new boolean[newCapacity];
+        final int[] newTxCounts = new int[newCapacity];
+        final int[] newSizes = new int[newCapacity];
+        final int[] newWeights = new int[newCapacity];
+        final long[] newTimestamps = new long[newCapacity];
+
+        // copy the overlap of the old and new window
+        if (baseHeight >= 0) {
+            final int low = Math.max(baseHeight, newBase);
+            final int high = Math.min(baseHeight + capacity, newBase + newCapacity);
+
+            if (low < high) {
+                final int from = low - baseHeight;
+                final int to = low - newBase;
+                final int length = high - low;
+
+                System.arraycopy(known, from, newKnown, to, length);
+                System.arraycopy(txCounts, from, newTxCounts, to, length);
+                System.arraycopy(sizes, from, newSizes, to, length);
+                System.arraycopy(weights, from, newWeights, to, length);
+                System.arraycopy(timestamps, from, newTimestamps, to, length);
+            }
+        }
+
+        baseHeight = newBase;
+        capacity = newCapacity;
+
+        known = newKnown;
+        txCounts = newTxCounts;
+        sizes = newSizes;
+        weights = newWeights;
+        timestamps = newTimestamps;
+
+        final long[] blockCountValues = new long[capacity];
+        final long[] txCountValues = new long[capacity];
+        final long[] sizeValues = new long[capacity];
+        final long[] weightValues = new long[capacity];
+        final long[] weightMinValues = new long[capacity];
+        final long[] weightMaxValues = new long[capacity];
+        final long[] intervalCountValues = new long[capacity];
+        final long[] intervalValues = new long[capacity];
+        final long[] intervalMinValues = new long[capacity];
+        final long[] intervalMaxValues = new long[capacity];
+
+        for (int slot = 0; slot < capacity; slot++) {
+            final boolean isKnown = known[slot];
+            final boolean isIntervalKnown = slot > 0 && isKnown && known[slot - 1];
+            final long interval = isIntervalKnown ? timestamps[slot] - timestamps[slot - 1] : 0;
+
+            blockCountValues[slot] = isKnown ? 1 : 0;
+            txCountValues[slot] = txCounts[slot];
+            sizeValues[slot] = sizes[slot];
+            weightValues[slot] = weights[slot];
+            weightMinValues[slot] = isKnown ? weights[slot] : Long.MAX_VALUE;
+            weightMaxValues[slot] = isKnown ? weights[slot] : Long.MIN_VALUE;
+            intervalCountValues[slot] = isIntervalKnown ? 1 : 0;
+            intervalValues[slot] = interval;
+            intervalMinValues[slot] = isIntervalKnown ? interval : Long.MAX_VALUE;
+            intervalMaxValues[slot] = isIntervalKnown ? interval : Long.MIN_VALUE;
+        }
+
+        blockCountSums = new SumTree(blockCountValues);
+        txCountSums = new SumTree(txCountValues);
+        sizeSums = new SumTree(sizeValues);
+        weightSums = new SumTree(weightValues);
+        weightMins = new ExtremeTree(weightMinValues, false);
+        weightMaxs = new ExtremeTree(weightMaxValues, true);
+        intervalCountSums = new SumTree(intervalCountValues);
+        intervalSums = new SumTree(intervalValues);
+        intervalMins = new ExtremeTree(intervalMinValues, false);
+        intervalMaxs = new ExtremeTree(intervalMaxValues, true);
+    }
+
+    /**
+     * Aggregates of the known blocks in a height range.
+     */
+    public static class Summary {
+        private final int fromHeight;
+        private final int toHeight;
+        private final int blockCount;
+        private final long txCount;
+        private final long size;
+        private final long weight;
+        private final long minWeight;
+        private final long maxWeight;
+        private final int intervalCount;
+        private final long intervalSum;
+        private final long minInterval;
+        private final long maxInterval;
+
+        /**
+         * @param fromHeight    Lowest height of the range.
+         * @param toHeight      Highest height of the range.
+         * @param blockCount    Amount of known blocks in the range.
+         * @param txCount       Total transaction count.
+         * @param size          Total size in bytes.
+         * @param weight        Total weight.
+         * @param minWeight     Weight of the lightest block.
+         * @param maxWeight     Weight of the heaviest block.
+         * @param intervalCount Amount of known intervals in the range.
+         * @param intervalSum   Total of the known intervals in seconds.
+         * @param minInterval   Shortest interval in seconds.
+         * @param maxInterval   Longest interval in seconds.
+         */
+        Summary(
+                final int fromHeight,
+                final int toHeight,
+                final int blockCount,
+                final long txCount,
+                final long size,
+                final long weight,
+                final long minWeight,
+                final long maxWeight,
+                final int intervalCount,
+                final long intervalSum,
+                final long minInterval,
+                final long maxInterval
+        ) {
+            this.fromHeight = fromHeight;
+            this.toHeight = toHeight;
+            this.blockCount = blockCount;
+            this.txCount = txCount;
+            this.size = size;
+            this.weight = weight;
+            this.minWeight = minWeight;
+            this.maxWeight = maxWeight;
+            this.intervalCount = intervalCount;
+            this.intervalSum = intervalSum;
+            this.minInterval = minInterval;
+            this.maxInterval = maxInterval;
+        }
+
+        /**
+         * @return Lowest height of the range.
+         */
+        public int getFromHeight() {
+            return fromHeight;
+        }
+
+        /**
+         * @return Highest height of the range.
+         */
+        public int getToHeight() {
+            return toHeight;
+        }
+
+        /**
+         * @return Amount of known blocks in the range.
+         */
+        public int getBlockCount() {
+            return blockCount;
+        }
+
+        /**
+         * @return True if every block of the range is known.
+         */
+        public boolean isComplete() {
+            return blockCount == toHeight - fromHeight + 1;
+        }
+
+        /**
+         * @return Total transaction count of the known blocks.
+         */
+        public long getTxCount() {
+            return txCount;
+        }
+
+        /**
+         * @return Total size of the known blocks in bytes.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return Total weight of the known blocks.
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return Weight of the lightest known block, 0 if none is known.
+         */
+        public long getMinWeight() {
+            return minWeight;
+        }
+
+        /**
+         * @return Weight of the heaviest known block, 0 if none is known.
+         */
+        public long getMaxWeight() {
+            return maxWeight;
+        }
+
+        /**
+         * @return Amount of known intervals between the blocks of the range.
+         */
+        public int getIntervalCount() {
+            return intervalCount;
+        }
+
+        /**
+         * @return Average of the known intervals in seconds, 0 if none is known.
+         */
+        public double getAverageInterval() {
+            return intervalCount > 0 ? (double) intervalSum / intervalCount : 0;
+        }
+
+        /**
+         * @return Shortest known interval in seconds (may be negative), 0 if none is known.
+         */
+        public long getMinInterval() {
+            return minInterval;
+        }
+
+        /**
+         * @return Longest known interval in seconds, 0 if none is known.
+         */
+        public long getMaxInterval() {
+            return maxInterval;
+        }
+    }
+
+    /**
+     * Fenwick tree of sums over a fixed amount of slots, with point updates and range sums in
+     * O(log n).
+     */
+    private static class SumTree {
+        // values of the slots, used to turn a set into an add
+        private final long[] values;
+
+        // partial sums at index + 1, each covering the lowest set bit of the index + 1 slots
+        private final long[] tree;
+
+        /**
+         * Builds the tree in O(n).
+         *
+         * @param values Initial values of the slots, owned by the tree.
+         */
+        SumTree(final long[] values) {
+            this.values = values;
+            this.tree = new long[values.length + 1];
+
+            for (int i = 1; i <= values.length; i++) {
+                tree[i] += values[i - 1];
+
+                final int parent = i + (i & -i);
+                if (parent <= values.length) {
+                    tree[parent] += tree[i];
+                }
+            }
+        }
+
+        /**
+         * @param slot  A slot.
+         * @param value New value of the slot.
+         */
+        void set(final int slot, final long value) {
+            final long delta = value - values[slot];
+            if (delta == 0) {
+                return;
+            }
+
+            values[slot] = value;
+
+            for (int i = slot + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        /**
+         * @param from First slot, included.
+         * @param to   Last slot, included.
+         * @return Sum of the slots.
+         */
+        long sum(final int from, final int to) {
+            return prefixSum(to + 1) - prefixSum(from);
+        }
+
+        /**
+         * @param count Amount of slots from the first one.
+         * @return Sum of the slots.
+         */
+        private long prefixSum(final int count) {
+            long sum = 0;
+
+            for (int i = count; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+
+            return sum;
+        }
+    }
+
+    /**
+     * Segment tree of the minimum or maximum over a power of two amount of slots, with point
+     * updates and range queries in O(log n). Slots without a value hold the identity.
+     */
+    private static class ExtremeTree {
+        private final boolean isMax;
+
+        // value ignored by the aggregation, Long.MIN_VALUE for a maximum
+        final long identity;
+
+        // leaves at size + slot, the parent of node i at i / 2
+        private final long[] tree;
+        private final int size;
+
+        /**
+         * Builds the tree in O(n).
+         *
+         * @param values Initial values of the slots, the length is a power of two.
+         * @param isMax  True to aggregate the maximum, false for the minimum.
+         */
+        ExtremeTree(final long[] values, final boolean isMax) {
+            this.isMax = isMax;
+            this.identity = isMax ? Long.MIN_VALUE : Long.MAX_VALUE;
+            this.size = values.length;
+            this.tree = new long[size * 2];
+
+            System.arraycopy(values, 0, tree, size, size);
+            Arrays.fill(tree, 0, size, identity);
+
+            for (int i = size - 1; i > 0; i--) {
+                tree[i] = combine(tree[2 * i], tree[2 * i + 1]);
+            }
+        }
+
+        /**
+         * @param slot  A slot.
+         * @param value New value of the slot.
+         */
+        void set(final int slot, final long value) {
+            int i = size + slot;
+            if (tree[i] == value) {
+                return;
+            }
+
+            tree[i] = value;
+
+            for (i /= 2; i > 0; i /= 2) {
+                tree[i] = combine(tree[2 * i], tree[2 * i + 1]);
+            }
+        }
+
+        /**
+         * @param from First slot, included.
+         * @param to   Last slot, included.
+         * @return Minimum or maximum of the slots, the identity if none has a value.
+         */
+        long get(final int from, final int to) {
+            long result = identity;
+
+            // walk up from both leaves, taking the nodes outside of the parents' ranges
+            for (int low = from + size, high = to + size + 1; low < high; low /= 2, high /= 2) {
+                if ((low & 1) == 1) {
+                    result = combine(result, tree[low++]);
+                }
+
+                if ((high & 1) == 1) {
+                    result = combine(result, tree[--high]);
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * @param a A value.
+         * @param b Another value.
+         * @return The minimum or maximum of both.
+         */
+        private long combine(final long a, final long b) {
+            return isMax ? Math.max(a, b) : Math.min(a, b);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide store of recently received blocks, addressed by their height or hash. Every
+ * block received by the {@link EsploraClient} is added, so screens pass only the height and
+ * hash of a block between each other (in Intents and saved instance state) and look the block
+ * up here. After the process got killed the repository is empty and blocks are requested again.
+ * <p>
+ * The least recently used blocks are evicted when {@link #MAX_BLOCKS} is reached. All methods
+ * are thread safe.
+ */
+public class EsploraBlockRepository {
+    /**
+     * Maximum amount of blocks kept in memory.
+     */
+    public static final int MAX_BLOCKS = 256;
+
+    // blocks by hash in access order, used to evict the least recently used blocks
+    private final LinkedHashMap<String, EsploraBlock> blocks =
+            new LinkedHashMap<String, EsploraBlock>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, EsploraBlock> eldest) {
+                    if (size() <= MAX_BLOCKS) {
+                        return false;
+                    }
+
+                    final int height = eldest.getValue().getHeight();
+                    if (eldest.getKey().equals(hashes.get(height))) {
+                        hashes.remove(height);
+                    }
+
+                    return true;
+                }
+            };
+
+    // hash of the most recently received block of each height
+    private final HashMap<Integer, String> hashes = new HashMap<>();
+
+    /**
+     * Adds a block, replacing a block received before at the same height (e.g. after a reorg).
+     *
+     * @param block The block.
+     */
+    synchronized void put(final EsploraBlock block) {
+        hashes.put(block.getHeight(), block.getHash());
+        blocks.put(block.getHash(), block);
+    }
+
+    /**
+     * @param blockHash A block hash.
+     * @return The block with the given hash or null if it is not in the repository.
+     */
+    public synchronized EsploraBlock getBlock(final String blockHash) {
+        return blockHash != null ? blocks.get(blockHash) : null;
+    }
+
+    /**
+     * @param blockHeight A block height.
+     * @return The most recently received block at the given height or null if it is not in the
+     * repository.
+     */
+    public synchronized EsploraBlock getBlock(final int blockHeight) {
+        final String blockHash = hashes.get(blockHeight);
+
+        return blockHash != null ? blocks.get(blockHash) : null;
+    }
+
+    /**
+     * Returns the block with the given hash from the repository, or requests it.
+     *
+     * @param blockHash The block hash.
+     * @param priority  The priority of the request.
+     * @return A future of the block.
+     */
+    public EsploraFuture<EsploraBlock> fetchBlock(
+            final String blockHash,
+            final EsploraRequestPriority priority
+    ) {
+        final EsploraBlock block = getBlock(blockHash);
+
+        if (block != null) {
+            return EsploraFuture.completed(block);
+        }
+
+        return EsploraClient.fetchBlock(blockHash, priority);
+    }
+
+    /**
+     * Returns the block at the given height from the repository, or requests it. The
+     * {@link EsploraClient#fetchBlock(int, EsploraRequestPriority)} this delegates to decides
+     * which blocks are deep enough below the tip to be served from the repository; blocks
+     * close to the tip may still be replaced by a reorg and are requested again.
+     *
+     * @param blockHeight The block height.
+     * @param priority    The priority of the request.
+     * @return A future of the block.
+     */
+    public EsploraFuture<EsploraBlock> fetchBlock(
+            final int blockHeight,
+            final EsploraRequestPriority priority
+    ) {
+        return EsploraClient.fetchBlock(blockHeight, priority);
+    }
+
+    /**
+     * @return Amount of blocks in the repository.
+     */
+    public synchronized int size() {
+        return blocks.size();
+    }
+}
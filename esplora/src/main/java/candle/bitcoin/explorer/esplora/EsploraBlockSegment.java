@@ -0,0 +1,351 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes and decodes a segment of consecutive blocks in a columnar binary format. Each field
+ * of all blocks is stored next to each other, so similar values compress well:
+ * <ul>
+ * <li>hashes and merkle roots as raw 32 bytes in internal byte order,</li>
+ * <li>only the previous hash of the first block, the others are the hashes before them,</li>
+ * <li>version, timestamp and bits as zig-zag varint deltas to the previous block,</li>
+ * <li>nonces as raw 4 bytes, as they are random,</li>
+ * <li>transaction count and size as varints and weight as varint of 4 * size - weight.</li>
+ * </ul>
+ */
+public class EsploraBlockSegment {
+    /**
+     * Amount of blocks in a segment, equal to a difficulty adjustment period.
+     */
+    public static final int SIZE = 2016;
+
+    private static final int HASH_SIZE = 32;
+
+    /**
+     * Encodes blocks of consecutive heights.
+     *
+     * @param blocks Blocks in ascending height order.
+     * @return The encoded segment.
+     * @throws EsploraClientException The blocks are not consecutive.
+     */
+    public static byte[] encode(final List<EsploraBlock> blocks) throws EsploraClientException {
+        final int count = blocks.size();
+        final Writer writer = new Writer(count * (2 * HASH_SIZE + 16) + HASH_SIZE + 10);
+
+        final int startHeight = count > 0 ? blocks.get(0).getHeight() : 0;
+        writer.writeVarInt(startHeight);
+        writer.writeVarInt(count);
+
+        if (count == 0) {
+            return writer.toByteArray();
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (blocks.get(i).getHeight() != startHeight + i) {
+                throw new EsploraClientException("blocks of a segment must be consecutive");
+            }
+        }
+
+        // previous hash of the first block, zero for the genesis block
+        writer.writeHash(blocks.get(0).getHashPrevious());
+
+        for (final EsploraBlock block : blocks) {
+            writer.writeHash(block.getHash());
+        }
+
+        for (final EsploraBlock block : blocks) {
+            writer.writeHash(block.getMerkleRoot());
+        }
+
+        long previous = 0;
+        for (final EsploraBlock block : blocks) {
+            writer.writeZigZag(block.getVersion() - previous);
+            previous = block.getVersion();
+        }
+
+        previous = 0;
+        for (final EsploraBlock block : blocks) {
+            final long timestamp = block.getTime().getTime() / 1000;
+            writer.writeZigZag(timestamp - previous);
+            previous = timestamp;
+        }
+
+        previous = 0;
+        for (final EsploraBlock block : blocks) {
+            writer.writeZigZag(block.getBits() - previous);
+            previous = block.getBits();
+        }
+
+        for (final EsploraBlock block : blocks) {
+            writer.writeIntLittleEndian(block.getNonce());
+        }
+
+        for (final EsploraBlock block : blocks) {
+            writer.writeVarInt(block.getTxCount());
+        }
+
+        for (final EsploraBlock block : blocks) {
+            writer.writeVarInt(block.getSize());
+        }
+
+        for (final EsploraBlock block : blocks) {
+            writer.writeVarInt(4L * block.getSize() - block.getWeight());
+        }
+
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes an encoded segment.
+     *
+     * @param data   Array containing the encoded segment.
+     * @param offset Offset of the segment in the array.
+     * @return The blocks of the segment in ascending height order.
+     * @throws EsploraClientException The data is not a valid segment.
+     */
+    public static ArrayList<EsploraBlock> decode(final byte[] data, final int offset)
+            throws EsploraClientException {
+        try {
+            final Reader reader = new Reader(data, offset);
+
+            final int startHeight = (int) reader.readVarInt();
+            final int count = (int) reader.readVarInt();
+
+            final ArrayList<EsploraBlock> blocks = new ArrayList<>(count);
+            if (count == 0) {
+                return blocks;
+            }
+
+            final String hashPrevious = reader.readHash();
+
+            final String[] hashes = new String[count];
+            for (int i = 0; i < count; i++) {
+                hashes[i] = reader.readHash();
+            }
+
+            final String[] merkleRoots = new String[count];
+            for (int i = 0; i < count; i++) {
+                merkleRoots[i] = reader.readHash();
+            }
+
+            final int[] versions = new int[count];
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += reader.readZigZag();
+                versions[i] = (int) previous;
+            }
+
+            final long[] timestamps = new long[count];
+            previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += reader.readZigZag();
+                timestamps[i] = previous;
+            }
+
+            final int[] bits = new int[count];
+            previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += reader.readZigZag();
+                bits[i] = (int) previous;
+            }
+
+            final int[] nonces = new int[count];
+            for (int i = 0; i < count; i++) {
+                nonces[i] = reader.readIntLittleEndian();
+            }
+
+            final int[] txCounts = new int[count];
+            for (int i = 0; i < count; i++) {
+                txCounts[i] = (int) reader.readVarInt();
+            }
+
+            final int[] sizes = new int[count];
+            for (int i = 0; i < count; i++) {
+                sizes[i] = (int) reader.readVarInt();
+            }
+
+            for (int i = 0; i < count; i++) {
+                final int weight = (int) (4L * sizes[i] - reader.readVarInt());
+
+                blocks.add(new EsploraBlock(
+                        hashes[i],
+                        i == 0 ? hashPrevious : hashes[i - 1],
+                        startHeight + i,
+                        versions[i],
+                        timestamps[i],
+                        txCounts[i],
+                        sizes[i],
+                        weight,
+                        merkleRoots[i],
+                        nonces[i],
+                        bits[i]
+                ));
+            }
+
+            return blocks;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new EsploraClientException("truncated block segment");
+        }
+    }
+
+    /**
+     * Writes varints and raw values to a growing byte array.
+     */
+    private static class Writer {
+        private byte[] data;
+        private int length = 0;
+
+        /**
+         * @param capacity Expected size of the output.
+         */
+        Writer(final int capacity) {
+            data = new byte[capacity];
+        }
+
+        /**
+         * @param value An unsigned value written in 7 bit groups, least significant first.
+         */
+        void writeVarInt(long value) {
+            ensureCapacity(10);
+
+            while ((value & ~0x7fL) != 0) {
+                data[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+
+            data[length++] = (byte) value;
+        }
+
+        /**
+         * @param value A signed value mapped to an unsigned one, so small negative values stay
+         *              small.
+         */
+        void writeZigZag(final long value) {
+            writeVarInt((value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * @param value A value written as 4 bytes in little-endian order.
+         */
+        void writeIntLittleEndian(final int value) {
+            ensureCapacity(4);
+
+            data[length++] = (byte) value;
+            data[length++] = (byte) (value >>> 8);
+            data[length++] = (byte) (value >>> 16);
+            data[length++] = (byte) (value >>> 24);
+        }
+
+        /**
+         * @param hash A hash as displayed (hex) written in internal byte order, or null to
+         *             write zeros.
+         */
+        void writeHash(final String hash) {
+            ensureCapacity(HASH_SIZE);
+
+            if (hash != null) {
+                EsploraHex.decodeReversed(hash, data, length);
+            }
+
+            length += HASH_SIZE;
+        }
+
+        /**
+         * @return The written bytes.
+         */
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, length);
+        }
+
+        /**
+         * @param bytes Amount of bytes about to be written.
+         */
+        private void ensureCapacity(final int bytes) {
+            if (length + bytes > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + bytes));
+            }
+        }
+    }
+
+    /**
+     * Reads varints and raw values from a byte array.
+     */
+    private static class Reader {
+        private final byte[] data;
+        private int position;
+
+        /**
+         * @param data     Array to read from.
+         * @param position Offset to start reading at.
+         */
+        Reader(final byte[] data, final int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        /**
+         * @return An unsigned varint value.
+         * @throws EsploraClientException The varint is too long.
+         */
+        long readVarInt() throws EsploraClientException {
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                final byte b = data[position++];
+                value |= (long) (b & 0x7f) << shift;
+
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new EsploraClientException("malformed varint");
+        }
+
+        /**
+         * @return A zig-zag encoded signed value.
+         * @throws EsploraClientException The varint is too long.
+         */
+        long readZigZag() throws EsploraClientException {
+            final long value = readVarInt();
+
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * @return A 4 byte little-endian value.
+         */
+        int readIntLittleEndian() {
+            final int value = (data[position] & 0xff)
+                    | (data[position + 1] & 0xff) << 8
+                    | (data[position + 2] & 0xff) << 16
+                    | (data[position + 3] & 0xff) << 24;
+            position += 4;
+
+            return value;
+        }
+
+        /**
+         * @return A hash as displayed (hex), or null if all bytes are zero.
+         */
+        String readHash() {
+            if (position + HASH_SIZE > data.length) {
+                throw new ArrayIndexOutOfBoundsException(position + HASH_SIZE);
+            }
+
+            boolean isZero = true;
+            for (int i = 0; i < HASH_SIZE && isZero; i++) {
+                isZero = data[position + i] == 0;
+            }
+
+            final String hash = isZero
+                    ? null
+                    : EsploraHex.encodeReversed(data, position, HASH_SIZE);
+            position += HASH_SIZE;
+
+            return hash;
+        }
+    }
+}
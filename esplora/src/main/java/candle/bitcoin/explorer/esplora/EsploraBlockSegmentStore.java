@@ -0,0 +1,288 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent store of block metadata in immutable segments of {@link EsploraBlockSegment#SIZE}
+ * blocks each, encoded by {@link EsploraBlockSegment}. Segments are appended to a single file
+ * followed by a footer index listing offset, length and CRC32 checksum of every segment:
+ * <pre>
+ * segment 0 | segment 1 | ... | footer entries | footer offset | segment count | magic
+ * </pre>
+ * Opening the store only reads the footer, segments are read and verified on demand. A
+ * segment is only appended once its last block is deep enough to not be affected by a reorg,
+ * see {@link #isImmutable(int, int)}, so stored segments never change.
+ * <p>
+ * A crash while appending leaves an invalid footer behind. Opening such a file fails, the
+ * store is then deleted and refilled from the API.
+ */
+public class EsploraBlockSegmentStore implements Closeable {
+    // file format identifier ("EBS" and version 1)
+    private static final int FILE_MAGIC = 0x45425301;
+
+    // footer offset, segment count and magic at the end of the file
+    private static final int TRAILER_SIZE = 8 + 4 + 4;
+
+    // offset, length and checksum of a segment
+    private static final int FOOTER_ENTRY_SIZE = 8 + 4 + 4;
+
+    private final RandomAccessFile file;
+
+    // footer index
+    private final ArrayList<Long> offsets = new ArrayList<>();
+    private final ArrayList<Integer> lengths = new ArrayList<>();
+    private final ArrayList<Long> checksums = new ArrayList<>();
+
+    // size of the footer index, readable without waiting for an append
+    private volatile int segmentCount = 0;
+
+    // end of the last segment, where the footer starts
+    private long dataEnd = 0;
+
+    // most recently decoded segment, consecutive reads usually hit the same segment
+    private int decodedIndex = -1;
+    private ArrayList<EsploraBlock> decodedBlocks;
+
+    /**
+     * Opens a segment store file, creating it when it does not exist. Only the footer index is
+     * read.
+     *
+     * @param path File of the segment store.
+     * @throws IOException The file can't be opened or its footer is invalid.
+     */
+    public EsploraBlockSegmentStore(final File path) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+
+        try {
+            if (file.length() == 0) {
+                writeFooter();
+            } else {
+                readFooter();
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param segmentIndex Index of a segment.
+     * @param tipHeight    Height of the chain tip.
+     * @return A boolean value indicating if all blocks of the segment are deep enough to not be
+     * affected by a reorg anymore.
+     */
+    public static boolean isImmutable(final int segmentIndex, final int tipHeight) {
+        final int heightLast = (segmentIndex + 1) * EsploraBlockSegment.SIZE - 1;
+
+        return heightLast <= tipHeight - EsploraCachePolicy.IMMUTABLE_CONFIRMATIONS;
+    }
+
+    /**
+     * @return Amount of stored segments. Blocks below segmentCount * 2016 are stored.
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @param height A block height.
+     * @return A boolean value indicating if the block at the given height is stored.
+     */
+    public boolean contains(final int height) {
+        return height >= 0 && height < segmentCount * EsploraBlockSegment.SIZE;
+    }
+
+    /**
+     * @return Size of the store file in bytes.
+     * @throws IOException Reading the file size failed.
+     */
+    public synchronized long getFileSize() throws IOException {
+        return file.length();
+    }
+
+    /**
+     * Appends the next segment. The segment must contain all blocks of the segment following
+     * the last stored one in ascending height order.
+     *
+     * @param blocks The blocks of the segment.
+     * @throws IOException Writing the file failed or the blocks don't form the next segment.
+     */
+    public synchronized void append(final List<EsploraBlock> blocks) throws IOException {
+        final int startHeight = offsets.size() * EsploraBlockSegment.SIZE;
+
+        if (blocks.size() != EsploraBlockSegment.SIZE
+                || blocks.get(0).getHeight() != startHeight) {
+            throw new IOException("expected the segment starting at height " + startHeight);
+        }
+
+        final byte[] data;
+        try {
+            data = EsploraBlockSegment.encode(blocks);
+        } catch (EsploraClientException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+
+        // the segment overwrites the old footer, a new footer is written after it
+        file.seek(dataEnd);
+        file.write(data);
+
+        offsets.add(dataEnd);
+        lengths.add(data.length);
+        checksums.add(crc.getValue());
+        dataEnd += data.length;
+
+        writeFooter();
+        segmentCount = offsets.size();
+    }
+
+    /**
+     * Reads and verifies a segment.
+     *
+     * @param segmentIndex Index of the segment.
+     * @return The blocks of the segment in ascending height order.
+     * @throws IOException Reading the file failed or the segment is corrupted.
+     */
+    public synchronized List<EsploraBlock> getSegment(final int segmentIndex) throws IOException {
+        if (segmentIndex == decodedIndex) {
+            return Collections.unmodifiableList(decodedBlocks);
+        }
+
+        final byte[] data = new byte[lengths.get(segmentIndex)];
+        file.seek(offsets.get(segmentIndex));
+        file.readFully(data);
+
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+
+        if (crc.getValue() != checksums.get(segmentIndex)) {
+            throw new IOException("checksum mismatch in segment " + segmentIndex);
+        }
+
+        try {
+            decodedBlocks = EsploraBlockSegment.decode(data, 0);
+            decodedIndex = segmentIndex;
+        } catch (EsploraClientException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        return Collections.unmodifiableList(decodedBlocks);
+    }
+
+    /**
+     * @param height A block height.
+     * @return The stored block at the given height, or null if it is not stored.
+     * @throws IOException Reading the file failed or the segment is corrupted.
+     */
+    public synchronized EsploraBlock getBlock(final int height) throws IOException {
+        final int segmentIndex = height / EsploraBlockSegment.SIZE;
+
+        if (height < 0 || segmentIndex >= offsets.size()) {
+            return null;
+        }
+
+        return getSegment(segmentIndex).get(height % EsploraBlockSegment.SIZE);
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException Closing the file failed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Reads the footer index from the end of the file.
+     *
+     * @throws IOException Reading the file failed or the footer is invalid.
+     */
+    private void readFooter() throws IOException {
+        if (file.length() < TRAILER_SIZE) {
+            throw new IOException("invalid segment store file");
+        }
+
+        file.seek(file.length() - TRAILER_SIZE);
+        final long footerOffset = file.readLong();
+        final int segmentCount = file.readInt();
+
+        if (file.readInt() != FILE_MAGIC
+                || footerOffset + (long) segmentCount * FOOTER_ENTRY_SIZE + TRAILER_SIZE
+                != file.length()) {
+            throw new IOException("invalid segment store file");
+        }
+
+        final byte[] footer = new byte[segmentCount * FOOTER_ENTRY_SIZE];
+        file.seek(footerOffset);
+        file.readFully(footer);
+
+        for (int i = 0; i < segmentCount; i++) {
+            final int position = i * FOOTER_ENTRY_SIZE;
+
+            offsets.add(readLong(footer, position));
+            lengths.add((int) (readLong(footer, position + 8) >>> 32));
+            checksums.add(readLong(footer, position + 8) & 0xffffffffL);
+        }
+
+        dataEnd = footerOffset;
+        this.segmentCount = segmentCount;
+    }
+
+    /**
+     * Writes the footer index after the last segment and syncs the file.
+     *
+     * @throws IOException Writing the file failed.
+     */
+    private void writeFooter() throws IOException {
+        final byte[] footer = new byte[offsets.size() * FOOTER_ENTRY_SIZE + TRAILER_SIZE];
+
+        for (int i = 0; i < offsets.size(); i++) {
+            final int position = i * FOOTER_ENTRY_SIZE;
+
+            writeLong(offsets.get(i), footer, position);
+            writeLong((long) lengths.get(i) << 32 | checksums.get(i), footer, position + 8);
+        }
+
+        final int trailer = offsets.size() * FOOTER_ENTRY_SIZE;
+        writeLong(dataEnd, footer, trailer);
+        writeLong((long) offsets.size() << 32 | FILE_MAGIC, footer, trailer + 8);
+
+        file.seek(dataEnd);
+        file.write(footer);
+        file.setLength(dataEnd + footer.length);
+        file.getFD().sync();
+    }
+
+    /**
+     * @return A big-endian long read from the given array.
+     */
+    private static long readLong(final byte[] data, final int offset) {
+        long value = 0;
+
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (data[offset + i] & 0xff);
+        }
+
+        return value;
+    }
+
+    /**
+     * Writes a big-endian long to the given array.
+     */
+    private static void writeLong(final long value, final byte[] data, final int offset) {
+        for (int i = 0; i < 8; i++) {
+            data[offset + i] = (byte) (value >>> (56 - i * 8));
+        }
+    }
+}
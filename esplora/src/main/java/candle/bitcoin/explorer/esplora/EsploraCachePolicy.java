@@ -0,0 +1,105 @@
+package candle.bitcoin.explorer.esplora;
+
+/**
+ * Freshness policy of a cached Esplora HTTP API response. A fresh response is served without
+ * contacting the API. A stale response is served within the stale-while-revalidate window and
+ * revalidated in the background. Older responses are revalidated with a conditional request
+ * before being served.
+ */
+class EsploraCachePolicy {
+    // blocks with at least this amount of confirmations are not expected to change anymore
+    static final int IMMUTABLE_CONFIRMATIONS = 6;
+
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+
+    /**
+     * Data that never changes, i.e. a block requested by its hash.
+     */
+    static final EsploraCachePolicy IMMUTABLE = new EsploraCachePolicy(Long.MAX_VALUE, 0);
+
+    /**
+     * Data describing the tip of the chain, which changes with every new block.
+     */
+    static final EsploraCachePolicy TIP = new EsploraCachePolicy(10 * SECOND, 10 * MINUTE);
+
+    /**
+     * Data about blocks close to the tip, which might still change due to a reorg.
+     */
+    static final EsploraCachePolicy RECENT = new EsploraCachePolicy(MINUTE, 10 * MINUTE);
+
+    /**
+     * Any other data, always revalidated before being served.
+     */
+    static final EsploraCachePolicy REVALIDATE = new EsploraCachePolicy(0, 0);
+
+    private final long maxAgeMillis;
+    private final long staleWhileRevalidateMillis;
+
+    /**
+     * @param maxAgeMillis               Duration a response is considered to be fresh.
+     * @param staleWhileRevalidateMillis Duration after maxAge a stale response may be served
+     *                                   while being revalidated in the background.
+     */
+    private EsploraCachePolicy(final long maxAgeMillis, final long staleWhileRevalidateMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+        this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+    }
+
+    /**
+     * Determines the policy of an Esplora HTTP API endpoint.
+     *
+     * @param relativeUrl Relative URL of the requested endpoint.
+     * @param tipHeight   Highest block height known so far, or -1 if unknown.
+     * @return The policy of the endpoint.
+     */
+    static EsploraCachePolicy forUrl(final String relativeUrl, final int tipHeight) {
+        if (relativeUrl.startsWith("block/")) {
+            return IMMUTABLE;
+        }
+
+        if (relativeUrl.equals("blocks") || relativeUrl.startsWith("blocks/tip/")) {
+            return TIP;
+        }
+
+        // block lists and block hashes by height are immutable when deep enough
+        final String heightPath;
+
+        if (relativeUrl.startsWith("blocks/")) {
+            heightPath = relativeUrl.substring("blocks/".length());
+        } else if (relativeUrl.startsWith("block-height/")) {
+            heightPath = relativeUrl.substring("block-height/".length());
+        } else {
+            return REVALIDATE;
+        }
+
+        try {
+            final int height = Integer.parseInt(heightPath);
+
+            if (tipHeight >= 0 && height <= tipHeight - IMMUTABLE_CONFIRMATIONS) {
+                return IMMUTABLE;
+            }
+        } catch (NumberFormatException e) {
+            return REVALIDATE;
+        }
+
+        return RECENT;
+    }
+
+    /**
+     * @param ageMillis Age of a cached response.
+     * @return A boolean value indicating if the response may be served without revalidation.
+     */
+    boolean isFresh(final long ageMillis) {
+        return ageMillis < maxAgeMillis;
+    }
+
+    /**
+     * @param ageMillis Age of a cached response.
+     * @return A boolean value indicating if the response may be served while being revalidated
+     * in the background.
+     */
+    boolean isUsableWhileRevalidating(final long ageMillis) {
+        return ageMillis - maxAgeMillis < staleWhileRevalidateMillis;
+    }
+}
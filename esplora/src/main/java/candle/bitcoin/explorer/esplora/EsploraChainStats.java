@@ -0,0 +1,635 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Rolling statistics of a window of the most recent consecutive blocks received by the
+ * {@link EsploraClient}: block interval (mean, median, min, max), average size, weight and
+ * transaction count, estimated hashrate and blocks per hour.
+ * <p>
+ * Every update is O(1): the fields of the blocks are kept in primitive ring buffers indexed by
+ * height, sums are adjusted when a block enters or leaves the window, minimum and maximum are
+ * kept in monotonic deques and the median interval is taken from a histogram of fixed bins.
+ * The window grows at the tip with new blocks and at the bottom with older pages (e.g. while
+ * scrolling) until it is full; blocks which are not adjacent to the window are ignored, a newer
+ * block after a gap or a different block at a known height (a reorg) restarts the window.
+ * <p>
+ * All methods are thread safe.
+ */
+public class EsploraChainStats {
+    /**
+     * Default amount of blocks in the window, about one day.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 144;
+
+    // width and amount of the bins of the interval histogram, up to 4 hours
+    private static final int INTERVAL_BIN_SECONDS = 30;
+    private static final int INTERVAL_BIN_COUNT = 480;
+
+    // expected amount of hashes to find a block of difficulty 1
+    private static final double HASHES_PER_DIFFICULTY = 4294967296.0;
+
+    private final int capacity;
+
+    // fields of the blocks in the window, indexed by height modulo the capacity
+    private final String[] hashes;
+    private final long[] timestamps;
+    private final int[] sizes;
+    private final int[] weights;
+    private final int[] txCounts;
+    private final double[] work;
+
+    // heights of the oldest and newest block in the window, -1 when empty
+    private int lowHeight = -1;
+    private int highHeight = -1;
+
+    private long sizeSum;
+    private long weightSum;
+    private long txCountSum;
+    private double workSum;
+
+    // intervals of the blocks in the window above the oldest block; the first bin counts
+    // negative intervals (timestamps are not strictly increasing), the last bin longer ones
+    private final int[] intervalBins = new int[INTERVAL_BIN_COUNT + 2];
+
+    private final MonotonicDeque intervalMin;
+    private final MonotonicDeque intervalMax;
+    private final MonotonicDeque sizeMax;
+
+    /**
+     * Initializes statistics over the default window size.
+     */
+    public EsploraChainStats() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize Amount of blocks in the window, at least 2.
+     */
+    public EsploraChainStats(final int windowSize) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("window must hold at least 2 blocks");
+        }
+
+        capacity = windowSize;
+
+        hashes = new String[capacity];
+        timestamps = new long[capacity];
+        sizes = new int[capacity];
+        weights = new int[capacity];
+        txCounts = new int[capacity];
+        work = new double[capacity];
+
+        intervalMin = new MonotonicDeque(capacity, false);
+        intervalMax = new MonotonicDeque(capacity, true);
+        sizeMax = new MonotonicDeque(capacity, true);
+    }
+
+    /**
+     * Adds the blocks of a page, in any order. Blocks above the window are added from the
+     * lowest, blocks below the window from the highest, so they connect to the window.
+     *
+     * @param blocks The received blocks.
+     */
+    public synchronized void addAll(final Collection<EsploraBlock> blocks) {
+        final ArrayList<EsploraBlock> sorted = new ArrayList<>(blocks);
+
+        Collections.sort(sorted, new Comparator<EsploraBlock>() {
+            @Override
+            public int compare(final EsploraBlock a, final EsploraBlock b) {
+                return a.getHeight() < b.getHeight() ? -1 : a.getHeight() == b.getHeight() ? 0 : 1;
+            }
+        });
+
+        for (final EsploraBlock block : sorted) {
+            if (lowHeight < 0 || block.getHeight() >= lowHeight) {
+                add(block);
+            }
+        }
+
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            if (sorted.get(i).getHeight() < lowHeight) {
+                add(sorted.get(i));
+            }
+        }
+    }
+
+    /**
+     * Adds a received block, see the class documentation for blocks not adjacent to the window.
+     *
+     * @param block The received block.
+     */
+    public synchronized void add(final EsploraBlock block) {
+        final int height = block.getHeight();
+
+        if (lowHeight < 0) {
+            pushHigh(block);
+            return;
+        }
+
+        if (height >= lowHeight && height <= highHeight) {
+            // a different block at a known height, the window is restarted on the new chain
+            if (!hashes[index(height)].equals(block.getHash())) {
+                clear();
+                pushHigh(block);
+            }
+
+            return;
+        }
+
+        if (height == highHeight + 1) {
+            if (highHeight - lowHeight + 1 == capacity) {
+                evictLow();
+            }
+
+            pushHigh(block);
+            return;
+        }
+
+        if (height > highHeight + 1) {
+            clear();
+            pushHigh(block);
+            return;
+        }
+
+        if (height == lowHeight - 1 && highHeight - lowHeight + 1 < capacity) {
+            pushLow(block);
+        }
+    }
+
+    /**
+     * Removes all blocks from the window.
+     */
+    public synchronized void clear() {
+        lowHeight = -1;
+        highHeight = -1;
+
+        sizeSum = 0;
+        weightSum = 0;
+        txCountSum = 0;
+        workSum = 0;
+
+        for (int i = 0; i < intervalBins.length; i++) {
+            intervalBins[i] = 0;
+        }
+
+        intervalMin.clear();
+        intervalMax.clear();
+        sizeMax.clear();
+    }
+
+    /**
+     * @return The current statistics.
+     */
+    public synchronized Snapshot getSnapshot() {
+        if (lowHeight < 0) {
+            return new Snapshot(0, -1, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+
+        final int count = highHeight - lowHeight + 1;
+        final long span = timestamps[index(highHeight)] - timestamps[index(lowHeight)];
+        final double meanInterval = count > 1 ? (double) span / (count - 1) : 0;
+
+        // work of the blocks above the oldest one was done during the span
+        final double hashrate = span > 0 ? (workSum - work[index(lowHeight)]) / span : 0;
+
+        return new Snapshot(
+                count,
+                lowHeight,
+                highHeight,
+                meanInterval,
+                getMedianInterval(count - 1),
+                intervalMin.isEmpty() ? 0 : intervalMin.peek(),
+                intervalMax.isEmpty() ? 0 : intervalMax.peek(),
+                (double) sizeSum / count,
+                sizeMax.peek(),
+                (double) weightSum / count,
+                (double) txCountSum / count,
+                hashrate
+        );
+    }
+
+    /**
+     * @param intervalCount Amount of intervals in the histogram.
+     * @return The median interval in seconds, interpolated within its bin.
+     */
+    private double getMedianInterval(final int intervalCount) {
+        if (intervalCount <= 0) {
+            return 0;
+        }
+
+        final double rank = intervalCount / 2.0;
+        int cumulated = 0;
+
+        for (int bin = 0; bin < intervalBins.length; bin++) {
+            final int binCount = intervalBins[bin];
+
+            if (cumulated + binCount >= rank && binCount > 0) {
+                // negative intervals count as zero, longer intervals as the histogram bound
+                if (bin == 0) {
+                    return 0;
+                }
+
+                if (bin == intervalBins.length - 1) {
+                    return INTERVAL_BIN_COUNT * INTERVAL_BIN_SECONDS;
+                }
+
+                final double fraction = (rank - cumulated) / binCount;
+
+                return ((bin - 1) + fraction) * INTERVAL_BIN_SECONDS;
+            }
+
+            cumulated += binCount;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Adds a block above the window, or the first block of an empty window.
+     *
+     * @param block The block at the height above the window.
+     */
+    private void pushHigh(final EsploraBlock block) {
+        final int height = block.getHeight();
+        store(block);
+
+        if (lowHeight < 0) {
+            lowHeight = height;
+        } else {
+            final long interval = timestamps[index(height)] - timestamps[index(height - 1)];
+
+            addInterval(interval);
+            intervalMin.pushNewest(height, interval);
+            intervalMax.pushNewest(height, interval);
+        }
+
+        highHeight = height;
+        sizeMax.pushNewest(height, block.getSize());
+    }
+
+    /**
+     * Adds a block below the window.
+     *
+     * @param block The block at the height below the window.
+     */
+    private void pushLow(final EsploraBlock block) {
+        final int height = block.getHeight();
+        store(block);
+
+        // the former oldest block gets its interval
+        final long interval = timestamps[index(lowHeight)] - timestamps[index(height)];
+
+        addInterval(interval);
+        intervalMin.pushOldest(lowHeight, interval);
+        intervalMax.pushOldest(lowHeight, interval);
+
+        lowHeight = height;
+        sizeMax.pushOldest(height, block.getSize());
+    }
+
+    /**
+     * Removes the oldest block of a full window.
+     */
+    private void evictLow() {
+        final int index = index(lowHeight);
+
+        sizeSum -= sizes[index];
+        weightSum -= weights[index];
+        txCountSum -= txCounts[index];
+        workSum -= work[index];
+        hashes[index] = null;
+
+        sizeMax.evict(lowHeight);
+
+        // the next block loses its interval, as it becomes the oldest block
+        final int nextHeight = lowHeight + 1;
+        removeInterval(timestamps[index(nextHeight)] - timestamps[index]);
+        intervalMin.evict(nextHeight);
+        intervalMax.evict(nextHeight);
+
+        lowHeight = nextHeight;
+    }
+
+    /**
+     * Stores the fields of a block in the ring buffers and adds them to the sums.
+     *
+     * @param block The block.
+     */
+    private void store(final EsploraBlock block) {
+        final int index = index(block.getHeight());
+
+        hashes[index] = block.getHash();
+        timestamps[index] = block.getTime().getTime() / 1000;
+        sizes[index] = block.getSize();
+        weights[index] = block.getWeight();
+        txCounts[index] = block.getTxCount();
+        work[index] = block.getDifficulty() * HASHES_PER_DIFFICULTY;
+
+        sizeSum += sizes[index];
+        weightSum += weights[index];
+        txCountSum += txCounts[index];
+        workSum += work[index];
+    }
+
+    /**
+     * @param interval Interval in seconds to be counted in the histogram.
+     */
+    private void addInterval(final long interval) {
+        intervalBins[getIntervalBin(interval)]++;
+    }
+
+    /**
+     * @param interval Interval in seconds to be removed from the histogram.
+     */
+    private void removeInterval(final long interval) {
+        intervalBins[getIntervalBin(interval)]--;
+    }
+
+    /**
+     * @param interval Interval in seconds.
+     * @return Index of the histogram bin counting the interval.
+     */
+    private static int getIntervalBin(final long interval) {
+        if (interval < 0) {
+            return 0;
+        }
+
+        return (int) Math.min(interval / INTERVAL_BIN_SECONDS, INTERVAL_BIN_COUNT) + 1;
+    }
+
+    /**
+     * @param height A block height.
+     * @return Index of the block in the ring buffers.
+     */
+    private int index(final int height) {
+        return height % capacity;
+    }
+
+    /**
+     * Statistics of the window at one point in time.
+     */
+    public static class Snapshot {
+        private final int blockCount;
+        private final int lowHeight;
+        private final int highHeight;
+        private final double meanInterval;
+        private final double medianInterval;
+        private final long minInterval;
+        private final long maxInterval;
+        private final double averageSize;
+        private final long maxSize;
+        private final double averageWeight;
+        private final double averageTxCount;
+        private final double hashrate;
+
+        /**
+         * @param blockCount     Amount of blocks in the window.
+         * @param lowHeight      Height of the oldest block in the window.
+         * @param highHeight     Height of the newest block in the window.
+         * @param meanInterval   Mean block interval in seconds.
+         * @param medianInterval Median block interval in seconds.
+         * @param minInterval    Shortest block interval in seconds.
+         * @param maxInterval    Longest block interval in seconds.
+         * @param averageSize    Average block size in bytes.
+         * @param maxSize        Largest block size in bytes.
+         * @param averageWeight  Average block weight.
+         * @param averageTxCount Average transaction count.
+         * @param hashrate       Estimated hashrate in hashes per second.
+         */
+        Snapshot(
+                final int blockCount,
+                final int lowHeight,
+                final int highHeight,
+                final double meanInterval,
+                final double medianInterval,
+                final long minInterval,
+                final long maxInterval,
+                final double averageSize,
+                final long maxSize,
+                final double averageWeight,
+                final double averageTxCount,
+                final double hashrate
+        ) {
+            this.blockCount = blockCount;
+            this.lowHeight = lowHeight;
+            this.highHeight = highHeight;
+            this.meanInterval = meanInterval;
+            this.medianInterval = medianInterval;
+            this.minInterval = minInterval;
+            this.maxInterval = maxInterval;
+            this.averageSize = averageSize;
+            this.maxSize = maxSize;
+            this.averageWeight = averageWeight;
+            this.averageTxCount = averageTxCount;
+            this.hashrate = hashrate;
+        }
+
+        /**
+         * @return Amount of blocks in the window.
+         */
+        public int getBlockCount() {
+            return blockCount;
+        }
+
+        /**
+         * @return Height of the oldest block in the window, -1 if empty.
+         */
+        public int getLowHeight() {
+            return lowHeight;
+        }
+
+        /**
+         * @return Height of the newest block in the window, -1 if empty.
+         */
+        public int getHighHeight() {
+            return highHeight;
+        }
+
+        /**
+         * @return Mean block interval in seconds.
+         */
+        public double getMeanInterval() {
+            return meanInterval;
+        }
+
+        /**
+         * @return Median block interval in seconds, with a precision of 30 seconds.
+         */
+        public double getMedianInterval() {
+            return medianInterval;
+        }
+
+        /**
+         * @return Shortest block interval in seconds, may be negative.
+         */
+        public long getMinInterval() {
+            return minInterval;
+        }
+
+        /**
+         * @return Longest block interval in seconds.
+         */
+        public long getMaxInterval() {
+            return maxInterval;
+        }
+
+        /**
+         * @return Average block size in bytes.
+         */
+        public double getAverageSize() {
+            return averageSize;
+        }
+
+        /**
+         * @return Largest block size in bytes.
+         */
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * @return Average block weight.
+         */
+        public double getAverageWeight() {
+            return averageWeight;
+        }
+
+        /**
+         * @return Average transaction count.
+         */
+        public double getAverageTxCount() {
+            return averageTxCount;
+        }
+
+        /**
+         * @return Estimated hashrate in hashes per second.
+         */
+        public double getHashrate() {
+            return hashrate;
+        }
+
+        /**
+         * @return Blocks found per hour at the mean interval.
+         */
+        public double getBlocksPerHour() {
+            return meanInterval > 0 ? 3600 / meanInterval : 0;
+        }
+    }
+
+    /**
+     * Monotonic deque of (height, value) pairs, keeping the minimum or maximum value of a
+     * window in O(1) amortized per update. Values dominated by a newer value (smaller or equal
+     * for a maximum) can never become the extreme again and are dropped.
+     */
+    private static class MonotonicDeque {
+        private final boolean isMax;
+
+        // ring buffer, the head holds the oldest pair and the extreme value
+        private final int[] heights;
+        private final long[] values;
+        private int head = 0;
+        private int size = 0;
+
+        /**
+         * @param capacity Maximum amount of pairs, the window size.
+         * @param isMax    True to keep the maximum, false to keep the minimum.
+         */
+        MonotonicDeque(final int capacity, final boolean isMax) {
+            this.isMax = isMax;
+
+            heights = new int[capacity];
+            values = new long[capacity];
+        }
+
+        /**
+         * @param newer A value of a newer block.
+         * @param older A value of an older block.
+         * @return True if the older value can never be the extreme while the newer is present.
+         */
+        private boolean dominates(final long newer, final long older) {
+            return isMax ? newer >= older : newer <= older;
+        }
+
+        /**
+         * Adds the value of a block newer than all blocks in the deque.
+         *
+         * @param height Height of the block.
+         * @param value  Value of the block.
+         */
+        void pushNewest(final int height, final long value) {
+            while (size > 0 && dominates(value, values[tail()])) {
+                size--;
+            }
+
+            final int index = (head + size) % heights.length;
+            heights[index] = height;
+            values[index] = value;
+            size++;
+        }
+
+        /**
+         * Adds the value of a block older than all blocks in the deque.
+         *
+         * @param height Height of the block.
+         * @param value  Value of the block.
+         */
+        void pushOldest(final int height, final long value) {
+            // the oldest block in the deque is newer, the value is dominated unless it is more
+            // extreme
+            if (size > 0 && dominates(values[head], value)) {
+                return;
+            }
+
+            head = (head - 1 + heights.length) % heights.length;
+            heights[head] = height;
+            values[head] = value;
+            size++;
+        }
+
+        /**
+         * Removes the value of a block leaving the window, if still present.
+         *
+         * @param height Height of the block, the oldest in the window.
+         */
+        void evict(final int height) {
+            if (size > 0 && heights[head] == height) {
+                head = (head + 1) % heights.length;
+                size--;
+            }
+        }
+
+        /**
+         * @return The extreme value, the deque must not be empty.
+         */
+        long peek() {
+            return values[head];
+        }
+
+        /**
+         * @return True if there are no values.
+         */
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Removes all values.
+         */
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        /**
+         * @return Index of the newest pair.
+         */
+        private int tail() {
+            return (head + size - 1) % heights.length;
+        }
+    }
+}
@@ -0,0 +1,1522 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The EsploraClient helps requesting Bitcoin Blockchain data from an Esplora HTTP API endpoint.
+ * See https://github.com/Blockstream/esplora/blob/master/API.md for a documentation of the Esplora
+ * HTTP API endpoint.
+ * <p>
+ * Requests are available as {@link EsploraFuture} objects, which can be transformed and
+ * combined, and as {@link EsploraResponseCallback} based methods adapting these futures.
+ * <p>
+ * The client has no platform dependencies: requests are sent by an {@link EsploraTransport}
+ * and the scheduler runs on the {@link EsploraEventLoop} of {@link EsploraExecutors}, both
+ * replaceable by the platform, e.g. by the Android app.
+ */
+public class EsploraClient {
+    // sends the HTTP requests, see getTransport
+    private static volatile EsploraTransport transport;
+
+    private static final EsploraRequestScheduler scheduler = new EsploraRequestScheduler();
+
+    private static final EsploraResponseCache responseCache = new EsploraResponseCache();
+
+    private static final EsploraBlockHashIndex blockHashIndex = new EsploraBlockHashIndex();
+
+    private static final EsploraHashPrefixIndex hashPrefixIndex =
+            new EsploraHashPrefixIndex(blockHashIndex);
+
+    private static final EsploraBlockRepository blockRepository = new EsploraBlockRepository();
+
+    private static final EsploraSearchPrefetcher searchPrefetcher = new EsploraSearchPrefetcher();
+
+    private static final EsploraChainStats chainStats = new EsploraChainStats();
+
+    private static final EsploraBlockRangeIndex blockRangeIndex = new EsploraBlockRangeIndex();
+
+    private static final EsploraBlockPyramid blockPyramid = new EsploraBlockPyramid();
+
+    private static final EsploraEpochTracker epochTracker = new EsploraEpochTracker();
+
+    // persistent immutable blocks filled by the header sync, null unless set
+    private static volatile EsploraBlockSegmentStore blockSegmentStore;
+
+    /**
+     * URL of the public Esplora HTTP API instance of Blockstream.
+     */
+    public static final String DEFAULT_BASE_URL = "https://blockstream.info/api/";
+
+    private static volatile String baseUrl = DEFAULT_BASE_URL;
+
+    // blocks per page of the blocks/:start endpoint
+    private static final int PAGE_SIZE = 10;
+
+    /**
+     * HTTP status code of a response telling that too many requests have been sent.
+     */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * HTTP status codes of successful responses range from 200 to 299.
+     */
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_MULTIPLE_CHOICES = 300;
+
+    /**
+     * HTTP status code of a response telling that a cached response is still valid.
+     */
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    // metrics of the requested endpoints, see getEndpointMetrics
+    private static final EndpointMetrics blocksMetrics = new EndpointMetrics("blocks");
+    private static final EndpointMetrics blockHeightMetrics = new EndpointMetrics("block_height");
+    private static final EndpointMetrics blockMetrics = new EndpointMetrics("block");
+    private static final EndpointMetrics blockHeaderMetrics = new EndpointMetrics("block_header");
+    private static final EndpointMetrics txStatusMetrics = new EndpointMetrics("tx_status");
+    private static final EndpointMetrics otherMetrics = new EndpointMetrics("other");
+
+    static {
+        registerCacheMetrics();
+    }
+
+    /**
+     * Sets the Esplora HTTP API instance requested, e.g. a local stand-in server during
+     * development. Must be called before the first request, as cached responses and indexes
+     * are not cleared.
+     *
+     * @param baseUrl URL of the API ending with a slash, e.g. "http://10.0.2.2:3000/".
+     */
+    public static void setBaseUrl(final String baseUrl) {
+        if (!baseUrl.endsWith("/")) {
+            throw new IllegalArgumentException("base URL must end with a slash");
+        }
+
+        EsploraClient.baseUrl = baseUrl;
+    }
+
+    /**
+     * @return URL of the requested Esplora HTTP API instance.
+     */
+    public static String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Sets the store of immutable blocks, filled by an {@link EsploraHeaderSync}. Pages and
+     * blocks it contains are read from it instead of being requested.
+     *
+     * @param blockSegmentStore The store or null to request all blocks.
+     */
+    public static void setBlockSegmentStore(final EsploraBlockSegmentStore blockSegmentStore) {
+        EsploraClient.blockSegmentStore = blockSegmentStore;
+    }
+
+    /**
+     * @return The store of immutable blocks or null if none was set.
+     */
+    public static EsploraBlockSegmentStore getBlockSegmentStore() {
+        return blockSegmentStore;
+    }
+
+    /**
+     * Sets the transport sending the HTTP requests, e.g. one using the HTTP stack of the
+     * platform. Must be called before the first request.
+     *
+     * @param transport The transport.
+     */
+    public static void setTransport(final EsploraTransport transport) {
+        EsploraClient.transport = transport;
+    }
+
+    /**
+     * @return The transport sending the HTTP requests, an {@link EsploraUrlConnectionTransport}
+     * unless another one was set.
+     */
+    public static EsploraTransport getTransport() {
+        EsploraTransport current = transport;
+
+        if (current == null) {
+            synchronized (EsploraClient.class) {
+                if (transport == null) {
+                    transport = new EsploraUrlConnectionTransport();
+                }
+
+                current = transport;
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * @return The {@link EsploraRequestScheduler} used to rate limit all requests. Provides
+     * queue depth and wait time metrics.
+     */
+    public static EsploraRequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return The {@link EsploraResponseCache} used to cache responses. Provides hit and
+     * revalidation metrics.
+     */
+    public static EsploraResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * @return The {@link EsploraBlockHashIndex} filled with the hash of every block received.
+     * Used to resolve block heights without a request.
+     */
+    public static EsploraBlockHashIndex getBlockHashIndex() {
+        return blockHashIndex;
+    }
+
+    /**
+     * @return The {@link EsploraHashPrefixIndex} resolving partial hashes of the blocks in the
+     * {@link EsploraBlockHashIndex}.
+     */
+    public static EsploraHashPrefixIndex getHashPrefixIndex() {
+        return hashPrefixIndex;
+    }
+
+    /**
+     * @return The {@link EsploraBlockRepository} holding the recently received blocks. Screens
+     * look up blocks there by height or hash instead of passing them around.
+     */
+    public static EsploraBlockRepository getBlockRepository() {
+        return blockRepository;
+    }
+
+    /**
+     * @return The {@link EsploraSearchPrefetcher} requesting searched blocks while the user
+     * types. Provides hit rate and saved time metrics.
+     */
+    public static EsploraSearchPrefetcher getSearchPrefetcher() {
+        return searchPrefetcher;
+    }
+
+    /**
+     * @return The {@link EsploraChainStats} over the most recent blocks received, updated with
+     * every received page or block.
+     */
+    public static EsploraChainStats getChainStats() {
+        return chainStats;
+    }
+
+    /**
+     * Adds blocks received in an earlier session, e.g. of a restored
+     * {@link EsploraBlockListSnapshot}, to the block indexes and the {@link EsploraChainStats},
+     * like blocks received from the API.
+     *
+     * @param blocks Consecutive blocks in descending height order.
+     */
+    public static void addRestoredBlocks(final List<EsploraBlock> blocks) {
+        for (final EsploraBlock block : blocks) {
+            onBlockReceived(block);
+        }
+
+        chainStats.addAll(blocks);
+    }
+
+    /**
+     * @return The {@link EsploraBlockRangeIndex} over the received blocks, answering aggregate
+     * queries over height ranges without iterating the blocks.
+     */
+    public static EsploraBlockRangeIndex getBlockRangeIndex() {
+        return blockRangeIndex;
+    }
+
+    /**
+     * @return The {@link EsploraBlockPyramid} of the metrics of the received blocks, serving
+     * downsampled charts at any zoom level.
+     */
+    public static EsploraBlockPyramid getBlockPyramid() {
+        return blockPyramid;
+    }
+
+    /**
+     * @return The {@link EsploraEpochTracker} following the difficulty retarget periods of the
+     * received blocks and projecting the next adjustment.
+     */
+    public static EsploraEpochTracker getEpochTracker() {
+        return epochTracker;
+    }
+
+    /**
+     * @return Height of the most recent block seen so far, or -1 if none was seen yet.
+     */
+    public static int getTipHeight() {
+        return Math.max(responseCache.getTipHeight(), blockHashIndex.getHeightMax());
+    }
+
+    /**
+     * The single place deciding whether the block at a height is deep enough below the tip to
+     * not be replaced by a reorg anymore, i.e. has at least
+     * {@link EsploraCachePolicy#IMMUTABLE_CONFIRMATIONS} confirmations. Only such blocks and
+     * their hashes are served from memory by {@link #fetchBlock(int, EsploraRequestPriority)}
+     * and {@link #fetchBlockHash(int, EsploraRequestPriority)}.
+     *
+     * @param blockHeight A block height.
+     * @return A boolean value indicating if the block at the given height is immutable.
+     */
+    static boolean isImmutable(final int blockHeight) {
+        return blockHeight <= getTipHeight() - EsploraCachePolicy.IMMUTABLE_CONFIRMATIONS;
+    }
+
+    /**
+     * Get a ArrayList of EsploraBlock instances with the {@link EsploraRequestPriority#VISIBLE}
+     * priority. See {@link #getBlockList(Integer, EsploraRequestPriority, EsploraResponseCallback)}.
+     *
+     * @param startBlockHeight The block height to start the request from. If null is supplied
+     *                         the most recent blocks will be requested.
+     * @param callback         A EsploraResponseCallback object to be called after the request
+     *                         succeeded or had a failure.
+     * @return A handle to cancel the request.
+     */
+    public static EsploraRequestHandle getBlockList(
+            final Integer startBlockHeight,
+            final EsploraResponseCallback callback
+    ) {
+        return getBlockList(startBlockHeight, EsploraRequestPriority.VISIBLE, callback);
+    }
+
+    /**
+     * Get a ArrayList of EsploraBlock instances. When a block height is supplied the following
+     * blocks after that height are requested. When block height is not supplied (null), the
+     * latest Bitcoin blocks will be requested.
+     *
+     * @param startBlockHeight The block height to start the request from. If null is supplied
+     *                         the most recent blocks will be requested.
+     * @param priority         The priority of the request.
+     * @param callback         A EsploraResponseCallback object to be called after the request
+     *                         succeeded or had a failure.
+     * @return A handle to cancel the request.
+     */
+    public static EsploraRequestHandle getBlockList(
+            final Integer startBlockHeight,
+            final EsploraRequestPriority priority,
+            final EsploraResponseCallback callback
+    ) {
+        return adaptBlockPage(fetchBlockPage(startBlockHeight, priority), callback);
+    }
+
+    /**
+     * Get the most recent blocks for an explicit refresh by the user (e.g. pull to refresh),
+     * with the {@link EsploraRequestPriority#VISIBLE} priority. Unlike
+     * {@link #getBlockList(Integer, EsploraResponseCallback)} a cached list is never served
+     * while being revalidated in the background, it is revalidated before being served.
+     *
+     * @param callback A EsploraResponseCallback object to be called after the request
+     *                 succeeded or had a failure.
+     * @return A handle to cancel the request.
+     */
+    public static EsploraRequestHandle refreshBlockList(final EsploraResponseCallback callback) {
+        return adaptBlockPage(refreshBlockPage(EsploraRequestPriority.VISIBLE), callback);
+    }
+
+    /**
+     * Adapts a future of a page of blocks to a callback invoked on the main thread.
+     *
+     * @param future   The future of the page.
+     * @param callback The callback to be invoked with the blocks of the page.
+     * @return The given future.
+     */
+    private static EsploraRequestHandle adaptBlockPage(
+            final EsploraFuture<EsploraBlockPage> future,
+            final EsploraResponseCallback callback
+    ) {
+        future.addListener(new EsploraFuture.Listener<EsploraBlockPage>() {
+            @Override
+            public void onSuccess(final EsploraBlockPage page) {
+                callback.onSuccess(page.getBlocks());
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                callback.onError();
+            }
+        }, EsploraExecutors.mainThread());
+
+        return future;
+    }
+
+    /**
+     * Requests and instantiates a EsploraBlock by a given block height with the
+     * {@link EsploraRequestPriority#VISIBLE} priority.
+     *
+     * @param blockHeight The block height to be requested.
+     * @param callback    A EsploraResponseCallback object to be called after the request
+     *                    succeeded or had a failure.
+     * @return A handle to cancel the request.
+     */
+    public static EsploraRequestHandle getBlock(
+            final int blockHeight,
+            final EsploraResponseCallback callback
+    ) {
+        return getBlock(blockHeight, EsploraRequestPriority.VISIBLE, callback);
+    }
+
+    /**
+     * Requests and instantiates a EsploraBlock by a given block height.
+     *
+     * @param blockHeight The block height to be requested.
+     * @param priority    The priority of the request.
+     * @param callback    A EsploraResponseCallback object to be called after the request
+     *                    succeeded or had a failure.
+     * @return A handle to cancel the request.
+     */
+    public static EsploraRequestHandle getBlock(
+            final int blockHeight,
+            final EsploraRequestPriority priority,
+            final EsploraResponseCallback callback
+    ) {
+        final EsploraFuture<EsploraBlock> future = fetchBlock(blockHeight, priority);
+
+        future.addListener(new EsploraFuture.Listener<EsploraBlock>() {
+            @Override
+            public void onSuccess(final EsploraBlock block) {
+                final ArrayList<EsploraBlock> blocks = new ArrayList<>();
+                blocks.add(block);
+
+                callback.onSuccess(blocks);
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                callback.onError();
+            }
+        }, EsploraExecutors.mainThread());
+
+        return future;
+    }
+
+    /**
+     * Requests a page of blocks. When a block height is supplied the blocks starting from that
+     * height are requested, otherwise the most recent blocks are requested.
+     *
+     * @param startBlockHeight The block height to start the request from. If null is supplied
+     *                         the most recent blocks will be requested.
+     * @param priority         The priority of the request.
+     * @return A future of the requested page.
+     */
+    public static EsploraFuture<EsploraBlockPage> fetchBlockPage(
+            final Integer startBlockHeight,
+            final EsploraRequestPriority priority
+    ) {
+        return fetchBlockPage(startBlockHeight, priority, false);
+    }
+
+    /**
+     * Requests the most recent blocks, revalidating a cached page before it is served. A
+     * cached page still matching the newest blocks costs a conditional request answered
+     * without a body.
+     *
+     * @param priority The priority of the request.
+     * @return A future of the most recent page.
+     */
+    public static EsploraFuture<EsploraBlockPage> refreshBlockPage(
+            final EsploraRequestPriority priority
+    ) {
+        return fetchBlockPage(null, priority, true);
+    }
+
+    /**
+     * Requests a page of blocks, see {@link #fetchBlockPage(Integer, EsploraRequestPriority)}.
+     *
+     * @param startBlockHeight The block height to start the request from or null.
+     * @param priority         The priority of the request.
+     * @param isRefresh        True to revalidate a cached page before serving it.
+     * @return A future of the requested page.
+     */
+    private static EsploraFuture<EsploraBlockPage> fetchBlockPage(
+            final Integer startBlockHeight,
+            final EsploraRequestPriority priority,
+            final boolean isRefresh
+    ) {
+        String relativeUrl = "blocks";
+
+        // start block height
+        if (startBlockHeight != null) {
+            // prevent request when given start block height is a negative number
+            if (startBlockHeight < 0) {
+                return EsploraFuture.failed(
+                        new EsploraClientException("start block height must be an unsigned integer")
+                );
+            }
+
+            relativeUrl += "/" + startBlockHeight.toString();
+
+            // a page of stored immutable blocks, which don't need to be revalidated
+            final EsploraBlockSegmentStore segmentStore = blockSegmentStore;
+            if (segmentStore != null && segmentStore.contains(startBlockHeight)) {
+                return readBlockPage(segmentStore, startBlockHeight);
+            }
+        }
+
+        // request API and parse the response in the background
+        return request(relativeUrl, priority, isRefresh).map(
+                new EsploraFunction<String, EsploraBlockPage>() {
+                    @Override
+                    public EsploraBlockPage apply(final String response) throws Exception {
+                        return parseBlockPage(response);
+                    }
+                },
+                EsploraExecutors.background()
+        );
+    }
+
+    /**
+     * Reads a page of blocks from the {@link EsploraBlockSegmentStore} in the background, like
+     * the page the API returns for the start height.
+     *
+     * @param segmentStore     The store containing the start height.
+     * @param startBlockHeight Height of the newest block of the page.
+     * @return A future of the page.
+     */
+    private static EsploraFuture<EsploraBlockPage> readBlockPage(
+            final EsploraBlockSegmentStore segmentStore,
+            final int startBlockHeight
+    ) {
+        return EsploraFuture.completed(startBlockHeight).map(
+                new EsploraFunction<Integer, EsploraBlockPage>() {
+                    @Override
+                    public EsploraBlockPage apply(final Integer start) throws Exception {
+                        final ArrayList<EsploraBlock> blocks = new ArrayList<>();
+
+                        for (int height = start;
+                             height > start - PAGE_SIZE && height >= 0;
+                             height--) {
+                            final EsploraBlock block = segmentStore.getBlock(height);
+                            onBlockReceived(block);
+                            blocks.add(block);
+                        }
+
+                        chainStats.addAll(blocks);
+
+                        return new EsploraBlockPage(blocks);
+                    }
+                },
+                EsploraExecutors.background()
+        );
+    }
+
+    /**
+     * Requests a page of blocks for a copy of the chain, like the {@link EsploraHeaderSync}
+     * makes. Unlike {@link #fetchBlockPage(Integer, EsploraRequestPriority)} the response is
+     * neither taken from nor added to the {@link EsploraResponseCache}, and the blocks are not
+     * added to the {@link EsploraBlockHashIndex}, the {@link EsploraBlockRepository} or any
+     * other index, so copying the whole chain leaves them to the blocks the user looks at.
+     *
+     * @param startBlockHeight The block height to start the request from.
+     * @param priority         The priority of the request.
+     * @return A future of the requested page.
+     */
+    static EsploraFuture<EsploraBlockPage> fetchBlockPageUncached(
+            final int startBlockHeight,
+            final EsploraRequestPriority priority
+    ) {
+        if (startBlockHeight < 0) {
+            return EsploraFuture.failed(
+                    new EsploraClientException("start block height must be an unsigned integer")
+            );
+        }
+
+        return send("blocks/" + startBlockHeight, priority, null, false, true).map(
+                new EsploraFunction<String, EsploraBlockPage>() {
+                    @Override
+                    public EsploraBlockPage apply(final String response) throws Exception {
+                        final long parseStartedAt = System.nanoTime();
+                        final ArrayList<EsploraBlock> blocks = parseBlocks(response);
+                        blocksMetrics.parseTime.recordSince(parseStartedAt);
+
+                        return new EsploraBlockPage(blocks);
+                    }
+                },
+                EsploraExecutors.background()
+        );
+    }
+
+    /**
+     * Requests the hash of the block at the given height. Hashes of blocks deep enough to not
+     * be affected by a reorg are taken from the {@link EsploraBlockHashIndex} without a request.
+     *
+     * @param blockHeight The block height to be requested.
+     * @param priority    The priority of the request.
+     * @return A future of the block hash.
+     */
+    public static EsploraFuture<String> fetchBlockHash(
+            final int blockHeight,
+            final EsploraRequestPriority priority
+    ) {
+        // prevent request when given block height is a negative number
+        if (blockHeight < 0) {
+            return EsploraFuture.failed(
+                    new EsploraClientException("height must be an unsigned integer")
+            );
+        }
+
+        // skip the request when the hash is known and not expected to change anymore
+        if (isImmutable(blockHeight)) {
+            final String blockHash = blockHashIndex.getHash(blockHeight);
+
+            if (blockHash != null) {
+                return EsploraFuture.completed(blockHash);
+            }
+        }
+
+        return request("block-height/" + blockHeight, priority).map(
+                new EsploraFunction<String, String>() {
+                    @Override
+                    public String apply(final String blockHash) throws Exception {
+                        if (blockHash.isEmpty()) {
+                            throw new EsploraClientException("empty block hash received");
+                        }
+
+                        blockHashIndex.put(blockHeight, blockHash.trim());
+
+                        return blockHash.trim();
+                    }
+                }
+        );
+    }
+
+    /**
+     * Requests the block at the given height. Requests the hash of the block first and the
+     * block itself afterwards. Blocks in the {@link EsploraBlockRepository} are returned without
+     * a request once they are immutable (see {@link #isImmutable(int)}), blocks close to the
+     * tip may still be replaced by a reorg and are requested again. Blocks in the
+     * {@link EsploraBlockSegmentStore} are read from it.
+     *
+     * @param blockHeight The block height to be requested.
+     * @param priority    The priority of the request.
+     * @return A future of the requested block.
+     */
+    public static EsploraFuture<EsploraBlock> fetchBlock(
+            final int blockHeight,
+            final EsploraRequestPriority priority
+    ) {
+        if (isImmutable(blockHeight)) {
+            final EsploraBlock block = blockRepository.getBlock(blockHeight);
+
+            if (block != null) {
+                return EsploraFuture.completed(block);
+            }
+        }
+
+        // the segment store only holds immutable blocks, even before the tip is known
+        final EsploraBlockSegmentStore segmentStore = blockSegmentStore;
+        if (segmentStore != null && segmentStore.contains(blockHeight)) {
+            return readBlock(segmentStore, blockHeight);
+        }
+
+        return fetchBlockHash(blockHeight, priority).thenCompose(
+                new EsploraFunction<String, EsploraFuture<EsploraBlock>>() {
+                    @Override
+                    public EsploraFuture<EsploraBlock> apply(final String blockHash) {
+                        return fetchBlock(blockHash, priority);
+                    }
+                }
+        );
+    }
+
+    /**
+     * Reads a block from the {@link EsploraBlockSegmentStore} in the background.
+     *
+     * @param segmentStore The store containing the block height.
+     * @param blockHeight  Height of the block.
+     * @return A future of the block.
+     */
+    private static EsploraFuture<EsploraBlock> readBlock(
+            final EsploraBlockSegmentStore segmentStore,
+            final int blockHeight
+    ) {
+        return EsploraFuture.completed(blockHeight).map(
+                new EsploraFunction<Integer, EsploraBlock>() {
+                    @Override
+                    public EsploraBlock apply(final Integer height) throws Exception {
+                        final EsploraBlock block = segmentStore.getBlock(height);
+                        onBlockReceived(block);
+                        chainStats.add(block);
+
+                        return block;
+                    }
+                },
+                EsploraExecutors.background()
+        );
+    }
+
+    /**
+     * Requests the block with the given hash.
+     *
+     * @param blockHash The block hash to be requested.
+     * @param priority  The priority of the request.
+     * @return A future of the requested block.
+     */
+    public static EsploraFuture<EsploraBlock> fetchBlock(
+            final String blockHash,
+            final EsploraRequestPriority priority
+    ) {
+        return request("block/" + blockHash, priority).map(
+                new EsploraFunction<String, EsploraBlock>() {
+                    @Override
+                    public EsploraBlock apply(final String response) throws Exception {
+                        final long parseStartedAt = System.nanoTime();
+                        final EsploraBlock block = new EsploraBlock(new JSONObject(response));
+                        blockMetrics.parseTime.recordSince(parseStartedAt);
+                        onBlockReceived(block);
+                        chainStats.add(block);
+
+                        return block;
+                    }
+                },
+                EsploraExecutors.background()
+        );
+    }
+
+    /**
+     * Requests only the 80 byte header of the block with the given hash. The raw header is
+     * about 160 bytes instead of several hundred bytes of JSON and is decoded without a JSON
+     * parser. See {@link #fetchBlockHeader(String, EsploraRequestPriority, boolean)} when the
+     * transaction count, size or weight are needed.
+     *
+     * @param blockHash The block hash to be requested.
+     * @param priority  The priority of the request.
+     * @return A future of the requested header.
+     */
+    public static EsploraFuture<EsploraBlockHeader> fetchBlockHeader(
+            final String blockHash,
+            final EsploraRequestPriority priority
+    ) {
+        return fetchBlockHeader(blockHash, priority, false);
+    }
+
+    /**
+     * Requests the header of the block with the given hash, optionally with the transaction
+     * count, size and weight of the block. These are not part of the raw header, so a header
+     * with details is taken from the JSON of the block instead (see
+     * {@link #fetchBlock(String, EsploraRequestPriority)}), with the same single request but
+     * several hundred bytes instead of 160.
+     *
+     * @param blockHash   The block hash to be requested.
+     * @param priority    The priority of the request.
+     * @param withDetails Whether transaction count, size and weight are needed.
+     * @return A future of the requested header.
+     */
+    public static EsploraFuture<EsploraBlockHeader> fetchBlockHeader(
+            final String blockHash,
+            final EsploraRequestPriority priority,
+            final boolean withDetails
+    ) {
+        if (withDetails) {
+            return fetchBlock(blockHash, priority).map(
+                    new EsploraFunction<EsploraBlock, EsploraBlockHeader>() {
+                        @Override
+                        public EsploraBlockHeader apply(final EsploraBlock block)
+                                throws Exception {
+                            return EsploraBlockHeader.fromBlock(block);
+                        }
+                    }
+            );
+        }
+
+        return request("block/" + blockHash + "/header", priority).map(
+                new EsploraFunction<String, EsploraBlockHeader>() {
+                    @Override
+                    public EsploraBlockHeader apply(final String response) throws Exception {
+                        final long parseStartedAt = System.nanoTime();
+                        final EsploraBlockHeader header = EsploraBlockHeader.parse(response);
+                        blockHeaderMetrics.parseTime.recordSince(parseStartedAt);
+
+                        if (!header.getHash().equalsIgnoreCase(blockHash)) {
+                            throw new EsploraClientException("block header does not match hash");
+                        }
+
+                        return header;
+                    }
+                }
+        );
+    }
+
+    /**
+     * Requests only the header of the block at the given height. The hash is taken from the
+     * {@link EsploraBlockHashIndex} when possible, see
+     * {@link #fetchBlockHash(int, EsploraRequestPriority)}.
+     *
+     * @param blockHeight The block height to be requested.
+     * @param priority    The priority of the request.
+     * @return A future of the requested header, including its height.
+     */
+    public static EsploraFuture<EsploraBlockHeader> fetchBlockHeader(
+            final int blockHeight,
+            final EsploraRequestPriority priority
+    ) {
+        return fetchBlockHeader(blockHeight, priority, false);
+    }
+
+    /**
+     * Requests the header of the block at the given height, optionally with the transaction
+     * count, size and weight of the block, see
+     * {@link #fetchBlockHeader(String, EsploraRequestPriority, boolean)}.
+     *
+     * @param blockHeight The block height to be requested.
+     * @param priority    The priority of the requests.
+     * @param withDetails Whether transaction count, size and weight are needed.
+     * @return A future of the requested header, including its height.
+     */
+    public static EsploraFuture<EsploraBlockHeader> fetchBlockHeader(
+            final int blockHeight,
+            final EsploraRequestPriority priority,
+            final boolean withDetails
+    ) {
+        if (withDetails) {
+            return fetchBlock(blockHeight, priority).map(
+                    new EsploraFunction<EsploraBlock, EsploraBlockHeader>() {
+                        @Override
+                        public EsploraBlockHeader apply(final EsploraBlock block)
+                                throws Exception {
+                            return EsploraBlockHeader.fromBlock(block);
+                        }
+                    }
+            );
+        }
+
+        return fetchBlockHash(blockHeight, priority).thenCompose(
+                new EsploraFunction<String, EsploraFuture<EsploraBlockHeader>>() {
+                    @Override
+                    public EsploraFuture<EsploraBlockHeader> apply(final String blockHash) {
+                        return fetchBlockHeader(blockHash, priority);
+                    }
+                }
+        ).map(new EsploraFunction<EsploraBlockHeader, EsploraBlockHeader>() {
+            @Override
+            public EsploraBlockHeader apply(final EsploraBlockHeader header) {
+                header.setHeight(blockHeight);
+
+                return header;
+            }
+        });
+    }
+
+    /**
+     * Requests the headers of a range of blocks, including their details. The Esplora HTTP API
+     * has no endpoint for ranges of headers, and a raw header by height takes two requests
+     * (height to hash, hash to header). The range is therefore requested as pages of the
+     * blocks endpoint, one request per 10 headers, and the headers are serialized from the
+     * blocks and checked against their hashes.
+     *
+     * @param startBlockHeight Height of the first header.
+     * @param count            Amount of headers to request, all of them at most at the tip.
+     * @param priority         The priority of the requests.
+     * @return A future of the requested headers in ascending height order.
+     */
+    public static EsploraFuture<List<EsploraBlockHeader>> fetchBlockHeaders(
+            final int startBlockHeight,
+            final int count,
+            final EsploraRequestPriority priority
+    ) {
+        final ArrayList<EsploraFuture<EsploraBlockPage>> pages = new ArrayList<>();
+
+        // pages list the blocks below their start height, the first page starts at the top
+        for (int start = startBlockHeight + count - 1;
+             start >= startBlockHeight;
+             start -= PAGE_SIZE) {
+            pages.add(fetchBlockPage(start, priority));
+        }
+
+        return EsploraFuture.allOf(pages).map(
+                new EsploraFunction<List<EsploraBlockPage>, List<EsploraBlockHeader>>() {
+                    @Override
+                    public List<EsploraBlockHeader> apply(final List<EsploraBlockPage> pages)
+                            throws Exception {
+                        final EsploraBlockHeader[] headers = new EsploraBlockHeader[count];
+
+                        for (final EsploraBlockPage page : pages) {
+                            for (final EsploraBlock block : page.getBlocks()) {
+                                final int index = block.getHeight() - startBlockHeight;
+
+                                if (index >= 0 && index < count) {
+                                    headers[index] = EsploraBlockHeader.fromBlock(block);
+                                }
+                            }
+                        }
+
+                        for (int i = 0; i < count; i++) {
+                            if (headers[i] == null) {
+                                throw new EsploraClientException(
+                                        "no block at height " + (startBlockHeight + i)
+                                );
+                            }
+                        }
+
+                        return Arrays.asList(headers);
+                    }
+                },
+                EsploraExecutors.background()
+        );
+    }
+
+    /**
+     * Resolves a full block hash or transaction id to a block height. Block hashes known to the
+     * {@link EsploraBlockHashIndex} are resolved without a request. Otherwise the id is
+     * requested as a block and, if that fails, as a transaction, resulting in the height of
+     * the block containing it.
+     *
+     * @param id       A block hash or transaction id (64 hex characters).
+     * @param priority The priority of the requests.
+     * @return A future of the block height.
+     */
+    public static EsploraFuture<Integer> fetchBlockHeightById(
+            final String id,
+            final EsploraRequestPriority priority
+    ) {
+        final String normalizedId = id.trim().toLowerCase(Locale.US);
+
+        if (normalizedId.length() != 64) {
+            return EsploraFuture.failed(
+                    new EsploraClientException("id must be 64 hex characters")
+            );
+        }
+
+        final int height = blockHashIndex.getHeight(normalizedId);
+        if (height >= 0) {
+            return EsploraFuture.completed(height);
+        }
+
+        return fetchBlock(normalizedId, priority).map(
+                new EsploraFunction<EsploraBlock, Integer>() {
+                    @Override
+                    public Integer apply(final EsploraBlock block) {
+                        return block.getHeight();
+                    }
+                }
+        ).recover(new EsploraFunction<Throwable, EsploraFuture<Integer>>() {
+            @Override
+            public EsploraFuture<Integer> apply(final Throwable error) {
+                return fetchTransactionBlockHeight(normalizedId, priority);
+            }
+        });
+    }
+
+    /**
+     * Requests the height of the block containing a transaction.
+     *
+     * @param txId     The transaction id.
+     * @param priority The priority of the request.
+     * @return A future of the block height, failing for unconfirmed transactions.
+     */
+    public static EsploraFuture<Integer> fetchTransactionBlockHeight(
+            final String txId,
+            final EsploraRequestPriority priority
+    ) {
+        return request("tx/" + txId + "/status", priority).map(
+                new EsploraFunction<String, Integer>() {
+                    @Override
+                    public Integer apply(final String response) throws Exception {
+                        final JSONObject status = new JSONObject(response);
+
+                        if (!status.optBoolean("confirmed", false)) {
+                            throw new EsploraClientException("transaction is not confirmed");
+                        }
+
+                        return status.getInt("block_height");
+                    }
+                }
+        );
+    }
+
+    /**
+     * Requests the blocks at all given heights concurrently.
+     *
+     * @param blockHeights The block heights to be requested.
+     * @param priority     The priority of the requests.
+     * @return A future of the requested blocks, in the order of the given heights.
+     */
+    public static EsploraFuture<List<EsploraBlock>> fetchBlocks(
+            final List<Integer> blockHeights,
+            final EsploraRequestPriority priority
+    ) {
+        final ArrayList<EsploraFuture<EsploraBlock>> futures = new ArrayList<>();
+
+        for (final Integer blockHeight : blockHeights) {
+            futures.add(fetchBlock(blockHeight, priority));
+        }
+
+        return EsploraFuture.allOf(futures);
+    }
+
+    /**
+     * Backfills the {@link EsploraBlockHashIndex} by requesting pages of blocks below the
+     * highest known height, starting with the most recent gap. The Esplora HTTP API has no bulk
+     * endpoint for block hashes, so each page adds up to 10 hashes. Requests are sent one after
+     * another with the {@link EsploraRequestPriority#PREFETCH} priority, so they never get in
+     * the way of visible data. Cancelling the returned future stops the backfill.
+     *
+     * @param maxPageCount Maximum amount of pages to request.
+     * @return A future of the amount of requested pages.
+     */
+    public static EsploraFuture<Integer> backfillBlockHashIndex(final int maxPageCount) {
+        return backfillBlockHashIndex(maxPageCount, 0);
+    }
+
+    /**
+     * Requests the next page of blocks for {@link #backfillBlockHashIndex(int)}.
+     *
+     * @param maxPageCount Maximum amount of pages to request.
+     * @param pageCount    Amount of pages requested so far.
+     * @return A future of the amount of requested pages.
+     */
+    private static EsploraFuture<Integer> backfillBlockHashIndex(
+            final int maxPageCount,
+            final int pageCount
+    ) {
+        if (pageCount >= maxPageCount) {
+            return EsploraFuture.completed(pageCount);
+        }
+
+        // an empty index starts with the most recent blocks
+        final int heightMax = blockHashIndex.getHeightMax();
+        final int gapHeight = blockHashIndex.findGapBelow(heightMax);
+
+        if (heightMax >= 0 && gapHeight < 0) {
+            return EsploraFuture.completed(pageCount);
+        }
+
+        return fetchBlockPage(
+                heightMax < 0 ? null : gapHeight,
+                EsploraRequestPriority.PREFETCH
+        ).thenCompose(
+                new EsploraFunction<EsploraBlockPage, EsploraFuture<Integer>>() {
+                    @Override
+                    public EsploraFuture<Integer> apply(final EsploraBlockPage page) {
+                        return backfillBlockHashIndex(maxPageCount, pageCount + 1);
+                    }
+                },
+                EsploraExecutors.background()
+        );
+    }
+
+    /**
+     * Requests the given endpoint. Fresh responses are served from the
+     * {@link EsploraResponseCache}. Stale responses are served from the cache as well while
+     * being revalidated in the background, as long as their {@link EsploraCachePolicy} allows
+     * it. Otherwise a (conditional) request is sent.
+     *
+     * @param relativeUrl The relative Esplora HTTP API URL to request.
+     * @param priority    The priority of the request.
+     * @return A future of the body of the response.
+     */
+    private static EsploraFuture<String> request(
+            final String relativeUrl,
+            final EsploraRequestPriority priority
+    ) {
+        return request(relativeUrl, priority, false);
+    }
+
+    /**
+     * Requests the given endpoint, see {@link #request(String, EsploraRequestPriority)}. An
+     * explicit refresh by the user must not be answered with the response it is meant to
+     * replace, so mutable responses are always revalidated before being served.
+     *
+     * @param relativeUrl The relative Esplora HTTP API URL to request.
+     * @param priority    The priority of the request.
+     * @param isRefresh   True to revalidate a cached response unless it is immutable.
+     * @return A future of the body of the response.
+     */
+    private static EsploraFuture<String> request(
+            final String relativeUrl,
+            final EsploraRequestPriority priority,
+            final boolean isRefresh
+    ) {
+        final EsploraResponseCache.Entry cached = responseCache.get(relativeUrl);
+
+        if (cached != null) {
+            final EsploraCachePolicy policy = EsploraCachePolicy.forUrl(
+                    relativeUrl,
+                    responseCache.getTipHeight()
+            );
+            final long ageMillis = cached.getAgeMillis();
+
+            // send a conditional request right away
+            if (isRefresh && policy != EsploraCachePolicy.IMMUTABLE) {
+                responseCache.onMiss();
+                return send(relativeUrl, priority, cached);
+            }
+
+            // serve fresh responses without contacting the API
+            if (policy.isFresh(ageMillis)) {
+                responseCache.onHit(cached);
+                return EsploraFuture.completed(cached.body);
+            }
+
+            // serve stale responses right away and revalidate them in the background
+            if (policy.isUsableWhileRevalidating(ageMillis)) {
+                responseCache.onHit(cached);
+
+                // the saving was counted by the hit, the revalidation doesn't serve anybody
+                if (responseCache.startRevalidation(cached)) {
+                    send(relativeUrl, EsploraRequestPriority.PREFETCH, cached, true, false);
+                }
+
+                return EsploraFuture.completed(cached.body);
+            }
+        }
+
+        responseCache.onMiss();
+
+        return send(relativeUrl, priority, cached);
+    }
+
+    /**
+     * Creates a GET request and submits it to the {@link EsploraRequestScheduler}. The request
+     * is sent as soon as the rate limit and the priority allow it.
+     *
+     * @param relativeUrl The relative Esplora HTTP API URL to request.
+     * @param priority    The priority of the request.
+     * @param cached      A cached response to be revalidated by this request or null.
+     * @return The request, resulting in the body of the response.
+     */
+    private static EsploraRequest send(
+            final String relativeUrl,
+            final EsploraRequestPriority priority,
+            final EsploraResponseCache.Entry cached
+    ) {
+        return send(relativeUrl, priority, cached, true, true);
+    }
+
+    /**
+     * Creates a GET request and submits it to the {@link EsploraRequestScheduler}, see
+     * {@link #send(String, EsploraRequestPriority, EsploraResponseCache.Entry)}.
+     *
+     * @param relativeUrl The relative Esplora HTTP API URL to request.
+     * @param priority    The priority of the request.
+     * @param cached      A cached response to be revalidated by this request or null.
+     * @param isCacheable False to keep the response out of the {@link EsploraResponseCache}.
+     * @param isServed    False for a background revalidation of a response already served.
+     * @return The request, resulting in the body of the response.
+     */
+    private static EsploraRequest send(
+            final String relativeUrl,
+            final EsploraRequestPriority priority,
+            final EsploraResponseCache.Entry cached,
+            final boolean isCacheable,
+            final boolean isServed
+    ) {
+        final EsploraRequest request = new EsploraRequest(scheduler);
+        final ResponseHandler responseHandler = new ResponseHandler(
+                request,
+                relativeUrl,
+                cached,
+                isCacheable,
+                isServed
+        );
+
+        // the scheduler must be used from the main thread
+        EsploraExecutors.mainThread().execute(new Runnable() {
+            @Override
+            public void run() {
+                submit(request, relativeUrl, responseHandler, priority);
+            }
+        });
+
+        return request;
+    }
+
+    /**
+     * Submits a request to the {@link EsploraRequestScheduler}.
+     *
+     * @param request         The request to be submitted. Fails when the scheduler drops it.
+     * @param relativeUrl     The relative Esplora HTTP API URL to request.
+     * @param responseHandler Handler completing the request with the response.
+     * @param priority        The priority of the request.
+     */
+    private static void submit(
+            final EsploraRequest request,
+            final String relativeUrl,
+            final ResponseHandler responseHandler,
+            final EsploraRequestPriority priority
+    ) {
+        if (request.isCancelled()) {
+            responseHandler.onAborted();
+            return;
+        }
+
+        final EsploraRequestScheduler.PendingRequest pendingRequest = scheduler.submit(
+                priority,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        responseHandler.onSent();
+                        request.setCall(getTransport().get(
+                                getAbsoluteUrl(relativeUrl),
+                                responseHandler.getConditionalHeaders(),
+                                responseHandler
+                        ));
+                    }
+                },
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        responseHandler.onAborted();
+                        request.fail(
+                                new EsploraClientException("request dropped by the scheduler")
+                        );
+                    }
+                }
+        );
+
+        request.setPendingRequest(pendingRequest);
+    }
+
+    /**
+     * Informs the {@link EsploraRequestScheduler} when a failed request was rejected by the
+     * Esplora API due to its rate limit.
+     *
+     * @param statusCode HTTP status code of the failed request.
+     * @param headers    HTTP headers of the failed request by lowercase name.
+     */
+    private static void checkRateLimited(final int statusCode, final Map<String, String> headers) {
+        if (statusCode != HTTP_TOO_MANY_REQUESTS) {
+            return;
+        }
+
+        long retryAfterMillis = -1;
+        final String retryAfter = headers.get("retry-after");
+
+        if (retryAfter != null) {
+            try {
+                retryAfterMillis = Long.parseLong(retryAfter.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                // HTTP date values are not supported, use the default back off
+                retryAfterMillis = -1;
+            }
+        }
+
+        scheduler.onRateLimited(retryAfterMillis);
+    }
+
+    /**
+     * Creates a new {@link EsploraBlockPage} object by parsing a JSON array of blocks.
+     *
+     * @param response JSON formatted list of blocks.
+     * @return A new instance of an {@link EsploraBlockPage} object.
+     * @throws Exception Invalid JSON data or an empty list supplied.
+     */
+    private static EsploraBlockPage parseBlockPage(final String response) throws Exception {
+        final long parseStartedAt = System.nanoTime();
+        final ArrayList<EsploraBlock> blocks = parseBlocks(response);
+
+        for (final EsploraBlock block : blocks) {
+            onBlockReceived(block);
+        }
+
+        blocksMetrics.parseTime.recordSince(parseStartedAt);
+        chainStats.addAll(blocks);
+
+        return new EsploraBlockPage(blocks);
+    }
+
+    /**
+     * Parses a JSON array of blocks.
+     *
+     * @param response JSON formatted list of blocks.
+     * @return The blocks of the list.
+     * @throws Exception Invalid JSON data or an empty list supplied.
+     */
+    private static ArrayList<EsploraBlock> parseBlocks(final String response) throws Exception {
+        final JSONArray JSONBlocks = new JSONArray(response);
+
+        // skip empty list
+        if (JSONBlocks.length() == 0) {
+            throw new EsploraClientException("empty block list received");
+        }
+
+        // create EsploraBlock objects and collaborate them in an ArrayList
+        final ArrayList<EsploraBlock> blocks = new ArrayList<>();
+
+        for (int i = 0; i < JSONBlocks.length(); i++) {
+            blocks.add(new EsploraBlock(JSONBlocks.getJSONObject(i)));
+        }
+
+        return blocks;
+    }
+
+    /**
+     * Keeps the tip height of the {@link EsploraResponseCache}, the
+     * {@link EsploraBlockHashIndex}, the {@link EsploraBlockRepository}, the
+     * {@link EsploraBlockRangeIndex}, the {@link EsploraBlockPyramid} and the
+     * {@link EsploraEpochTracker} up to date with every block received from the API.
+     *
+     * @param block A block received from the API.
+     */
+    private static void onBlockReceived(final EsploraBlock block) {
+        responseCache.onBlockHeight(block.getHeight());
+        blockHashIndex.put(block.getHeight(), block.getHash());
+        blockRepository.put(block);
+        blockRangeIndex.put(block);
+        blockPyramid.put(block);
+        epochTracker.add(block);
+    }
+
+    /**
+     * Registers computed gauges of the {@link EsploraResponseCache} in the
+     * {@link EsploraMetrics}.
+     */
+    private static void registerCacheMetrics() {
+        final EsploraMetrics metrics = EsploraMetrics.get();
+
+        metrics.register("cache.hit_ratio_percent", new EsploraMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                final long hitCount = responseCache.getHitCount();
+                final long requestCount = hitCount + responseCache.getMissCount();
+
+                return requestCount == 0 ? 0 : hitCount * 100 / requestCount;
+            }
+        });
+
+        metrics.register("cache.revalidated", new EsploraMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                return responseCache.getRevalidatedCount();
+            }
+        });
+
+        metrics.register("cache.bytes_saved", new EsploraMetrics.Gauge() {
+            @Override
+            public long getValue() {
+                return responseCache.getBytesSaved();
+            }
+        });
+    }
+
+    /**
+     * Maps a relative Esplora HTTP API URL to the metrics of its endpoint, so metrics are
+     * grouped by endpoint instead of by block height or hash.
+     *
+     * @param relativeUrl The relative Esplora HTTP API URL.
+     * @return The metrics of the endpoint.
+     */
+    private static EndpointMetrics getEndpointMetrics(final String relativeUrl) {
+        if (relativeUrl.startsWith("blocks")) {
+            return blocksMetrics;
+        }
+
+        if (relativeUrl.startsWith("block-height/")) {
+            return blockHeightMetrics;
+        }
+
+        if (relativeUrl.startsWith("block/")) {
+            return relativeUrl.endsWith("/header") ? blockHeaderMetrics : blockMetrics;
+        }
+
+        if (relativeUrl.startsWith("tx/")) {
+            return txStatusMetrics;
+        }
+
+        return otherMetrics;
+    }
+
+    /**
+     * Converts a given relative Esplora HTTP API URL to an absolute URL.
+     *
+     * @param relativeUrl The relative Esplora HTTP API URL url.
+     * @return A absolute Esplora HTTP API url.
+     */
+    private static String getAbsoluteUrl(final String relativeUrl) {
+        return baseUrl + relativeUrl;
+    }
+
+    /**
+     * Completes an {@link EsploraRequest} with the body of the HTTP response and keeps the
+     * {@link EsploraResponseCache} up to date, unless the response is not cacheable. Transports
+     * may call back on any thread, the response is handled on the main thread.
+     */
+    private static class ResponseHandler implements EsploraTransport.Callback {
+        private final EsploraRequest request;
+        private final String relativeUrl;
+        private final EsploraResponseCache.Entry cached;
+        private final boolean isCacheable;
+        private final boolean isServed;
+        private final EndpointMetrics endpointMetrics;
+
+        // time the request was sent, used to measure the latency
+        private long sentAt;
+
+        /**
+         * @param request     The request to be completed.
+         * @param relativeUrl The relative Esplora HTTP API URL requested.
+         * @param cached      The cached response being revalidated or null.
+         * @param isCacheable False to keep the response out of the cache.
+         * @param isServed    False for a background revalidation of a response already served.
+         */
+        ResponseHandler(
+                final EsploraRequest request,
+                final String relativeUrl,
+                final EsploraResponseCache.Entry cached,
+                final boolean isCacheable,
+                final boolean isServed
+        ) {
+            this.request = request;
+            this.relativeUrl = relativeUrl;
+            this.cached = cached;
+            this.isCacheable = isCacheable;
+            this.isServed = isServed;
+            this.endpointMetrics = getEndpointMetrics(relativeUrl);
+        }
+
+        /**
+         * Called right before the request is sent.
+         */
+        void onSent() {
+            sentAt = System.nanoTime();
+        }
+
+        /**
+         * @return If-None-Match or If-Modified-Since header to revalidate the cached response,
+         * or no header if there is nothing to revalidate.
+         */
+        Map<String, String> getConditionalHeaders() {
+            if (cached == null || !cached.hasValidator()) {
+                return Collections.emptyMap();
+            }
+
+            final HashMap<String, String> headers = new HashMap<>();
+
+            if (cached.eTag != null) {
+                headers.put("If-None-Match", cached.eTag);
+            } else {
+                headers.put("If-Modified-Since", cached.lastModified);
+            }
+
+            return headers;
+        }
+
+        /**
+         * Called when the request is not going to be sent.
+         */
+        void onAborted() {
+            if (cached != null) {
+                responseCache.stopRevalidation(cached);
+            }
+        }
+
+        @Override
+        public void onResponse(
+                final int statusCode,
+                final Map<String, String> headers,
+                final String body
+        ) {
+            EsploraExecutors.mainThread().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (statusCode >= HTTP_OK && statusCode < HTTP_MULTIPLE_CHOICES) {
+                        onSuccess(headers, body);
+                    } else {
+                        onFailure(statusCode, headers);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onFailure(final Throwable error) {
+            EsploraExecutors.mainThread().execute(new Runnable() {
+                @Override
+                public void run() {
+                    // no status code, no response was received
+                    onFailure(0, Collections.<String, String>emptyMap());
+                }
+            });
+        }
+
+        @Override
+        public void onCancelled() {
+            EsploraExecutors.mainThread().execute(new Runnable() {
+                @Override
+                public void run() {
+                    onAborted();
+                }
+            });
+        }
+
+        /**
+         * Completes the request with a successful response and caches it.
+         *
+         * @param headers HTTP headers of the response by lowercase name.
+         * @param body    Body of the response.
+         */
+        private void onSuccess(final Map<String, String> headers, final String body) {
+            endpointMetrics.latency.recordSince(sentAt);
+            // responses of the API are ASCII, so the length equals the received bytes
+            endpointMetrics.bytesReceived.add(body.length());
+
+            if (isCacheable) {
+                responseCache.put(
+                        relativeUrl,
+                        body,
+                        headers.get("etag"),
+                        headers.get("last-modified")
+                );
+            }
+
+            request.complete(body);
+        }
+
+        /**
+         * Completes the request with the cached response if it is still valid, fails it
+         * otherwise.
+         *
+         * @param statusCode HTTP status code of the response, 0 if none was received.
+         * @param headers    HTTP headers of the response by lowercase name.
+         */
+        private void onFailure(final int statusCode, final Map<String, String> headers) {
+            endpointMetrics.latency.recordSince(sentAt);
+
+            // the cached response is still valid
+            if (statusCode == HTTP_NOT_MODIFIED && cached != null) {
+                responseCache.onNotModified(cached, isServed);
+                request.complete(cached.body);
+                return;
+            }
+
+            endpointMetrics.errors.increment();
+            onAborted();
+            checkRateLimited(statusCode, headers);
+            request.fail(new EsploraClientException("request failed with status " + statusCode));
+        }
+    }
+
+    /**
+     * Metrics of an Esplora HTTP API endpoint, registered in the {@link EsploraMetrics} once.
+     * Latencies and parse times are recorded in microseconds.
+     */
+    private static class EndpointMetrics {
+        final EsploraMetrics.Histogram latency;
+        final EsploraMetrics.Histogram parseTime;
+        final EsploraMetrics.Counter bytesReceived;
+        final EsploraMetrics.Counter errors;
+
+        /**
+         * @param name Name of the endpoint used in the metric names.
+         */
+        EndpointMetrics(final String name) {
+            final EsploraMetrics metrics = EsploraMetrics.get();
+
+            latency = metrics.histogram("http." + name + ".latency_us");
+            parseTime = metrics.histogram("http." + name + ".parse_us");
+            bytesReceived = metrics.counter("http." + name + ".bytes_received");
+            errors = metrics.counter("http." + name + ".errors");
+        }
+    }
+}
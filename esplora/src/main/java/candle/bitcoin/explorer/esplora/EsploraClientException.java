@@ -3,7 +3,7 @@ package candle.bitcoin.explorer.esplora;
 /**
  * Exception thrown by EsploraClient.
  */
-class EsploraClientException extends Exception {
+public class EsploraClientException extends Exception {
     /**
      * @param exeption Provided Exception.
      */
@@ -0,0 +1,490 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tracks the difficulty retarget periods (epochs) of {@link #EPOCH_LENGTH} blocks. For every
+ * epoch the first and last block are kept as they are received, which gives the actual
+ * duration of the epoch and its difficulty change against the previous epoch. The epoch of the
+ * newest block is tracked as it grows, projecting the next difficulty adjustment from the
+ * average block interval so far.
+ * <p>
+ * Consensus compares the time between the first and the last block of an epoch (2015
+ * intervals) with two weeks and limits the adjustment to a factor of 4 in either direction,
+ * the projection follows the same rule.
+ * <p>
+ * Every update is O(1). Only the first block of the current epoch and the last block of the
+ * previous one are needed in addition to the newest block, {@link #fetchCurrentEpoch} requests
+ * them if they were not received. Failed requests are remembered per epoch and sent again only
+ * after a back-off, which doubles from {@link #RETRY_DELAY_MILLIS} up to
+ * {@link #MAX_RETRY_DELAY_MILLIS}. The tracker is filled by the EsploraClient with every block
+ * it receives. All methods are thread safe.
+ */
+public class EsploraEpochTracker {
+    /**
+     * Amount of blocks per retarget period.
+     */
+    public static final int EPOCH_LENGTH = 2016;
+
+    /**
+     * Intended time between two blocks in seconds.
+     */
+    public static final int TARGET_SPACING_SECONDS = 600;
+
+    /**
+     * Intended duration of an epoch in seconds, two weeks.
+     */
+    public static final long TARGET_TIMESPAN_SECONDS =
+            (long) EPOCH_LENGTH * TARGET_SPACING_SECONDS;
+
+    /**
+     * Time after the first failed request of the boundary blocks of an epoch until they are
+     * requested again.
+     */
+    public static final long RETRY_DELAY_MILLIS = 30000;
+
+    /**
+     * Longest time between two requests of the boundary blocks of an epoch after failures.
+     */
+    public static final long MAX_RETRY_DELAY_MILLIS = 30 * 60000;
+
+    // limit of a single adjustment in either direction
+    private static final int MAX_ADJUSTMENT_FACTOR = 4;
+
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    // first and last block of every epoch seen so far by epoch index
+    private final HashMap<Integer, Boundaries> boundaries = new HashMap<>();
+
+    // the newest block, null if none was received
+    private EsploraBlock tip;
+
+    // requests of the boundary blocks of the current epoch, null if none are running
+    private EsploraFuture<Epoch> boundaryRequest;
+    private int boundaryRequestEpoch = -1;
+
+    // failed or dropped requests of the boundary blocks of an epoch, -1 if the last succeeded
+    private int failedEpoch = -1;
+    private int failureCount = 0;
+
+    // System.nanoTime() before which the failed epoch is not requested again
+    private long retryAt;
+
+    /**
+     * Adds a received block. Blocks other than the newest block and the first and last block
+     * of an epoch are ignored.
+     *
+     * @param block The block.
+     */
+    public synchronized void add(final EsploraBlock block) {
+        final int height = block.getHeight();
+        final int position = height % EPOCH_LENGTH;
+
+        if (position == 0 || position == EPOCH_LENGTH - 1) {
+            final int index = height / EPOCH_LENGTH;
+            Boundaries epochBoundaries = boundaries.get(index);
+
+            if (epochBoundaries == null) {
+                epochBoundaries = new Boundaries();
+                boundaries.put(index, epochBoundaries);
+            }
+
+            // a reorg replaces the block received before
+            if (position == 0) {
+                epochBoundaries.first = block;
+            } else {
+                epochBoundaries.last = block;
+            }
+        }
+
+        if (tip == null || height >= tip.getHeight()) {
+            tip = block;
+        }
+    }
+
+    /**
+     * @return The epoch of the newest block, or null if no block was received.
+     */
+    public synchronized Epoch getCurrentEpoch() {
+        return tip != null ? getEpoch(tip.getHeight() / EPOCH_LENGTH) : null;
+    }
+
+    /**
+     * @param height A block height.
+     * @return The epoch containing the block height.
+     */
+    public synchronized Epoch getEpochOf(final int height) {
+        return getEpoch(height / EPOCH_LENGTH);
+    }
+
+    /**
+     * @param index Index of an epoch, the height of its first block divided by
+     *              {@link #EPOCH_LENGTH}.
+     * @return What is known about the epoch.
+     */
+    public synchronized Epoch getEpoch(final int index) {
+        final Boundaries epochBoundaries = boundaries.get(index);
+        final Boundaries previousBoundaries = boundaries.get(index - 1);
+
+        final EsploraBlock first = epochBoundaries != null ? epochBoundaries.first : null;
+        EsploraBlock last = epochBoundaries != null ? epochBoundaries.last : null;
+
+        // the newest block stands in for the last block of an epoch in progress
+        final boolean isCurrent = tip != null && tip.getHeight() / EPOCH_LENGTH == index;
+        if (last == null && isCurrent) {
+            last = tip;
+        }
+
+        // all blocks of an epoch share the difficulty, the last block of the previous epoch
+        // has the previous difficulty
+        EsploraBlock previous = previousBoundaries != null ? previousBoundaries.last : null;
+        if (previous == null && previousBoundaries != null) {
+            previous = previousBoundaries.first;
+        }
+
+        final EsploraBlock any = first != null ? first : last;
+
+        return new Epoch(
+                index,
+                first,
+                last,
+                isCurrent,
+                any != null ? any.getDifficulty() : 0,
+                previous != null ? previous.getDifficulty() : 0
+        );
+    }
+
+    /**
+     * Requests the first block of the current epoch and the last block of the previous epoch
+     * unless they were received already, which takes at most two block requests per epoch
+     * while they succeed. After a failure the epoch is completed with what is known until the
+     * back-off of the epoch ran out.
+     * <p>
+     * The requests are shared by all callers. Every caller gets a future of its own, so
+     * cancelling it, e.g. with a request scope, drops its listeners without cancelling the
+     * requests of other callers.
+     *
+     * @param priority Priority of the requests.
+     * @return A future of the current epoch, completed right away if nothing is missing or the
+     * epoch is backing off. The epoch is null if no block was received yet.
+     */
+    public synchronized EsploraFuture<Epoch> fetchCurrentEpoch(
+            final EsploraRequestPriority priority
+    ) {
+        if (tip == null) {
+            return EsploraFuture.completed(null);
+        }
+
+        final int index = tip.getHeight() / EPOCH_LENGTH;
+
+        // the boundary blocks are requested once at a time
+        if (boundaryRequest != null
+                && boundaryRequestEpoch == index
+                && !boundaryRequest.isFinished()) {
+            return follow(boundaryRequest);
+        }
+
+        final int startHeight = index * EPOCH_LENGTH;
+        final Epoch epoch = getEpoch(index);
+
+        if (index == failedEpoch && System.nanoTime() - retryAt < 0) {
+            return EsploraFuture.completed(epoch);
+        }
+        final List<EsploraFuture<EsploraBlock>> requests = new ArrayList<>();
+
+        // received blocks are added to the tracker by the EsploraClient
+        if (!epoch.hasFirstBlock()) {
+            requests.add(EsploraClient.fetchBlock(startHeight, priority));
+        }
+
+        if (epoch.getPreviousDifficulty() == 0 && startHeight > 0) {
+            requests.add(EsploraClient.fetchBlock(startHeight - 1, priority));
+        }
+
+        if (requests.isEmpty()) {
+            return EsploraFuture.completed(epoch);
+        }
+
+        boundaryRequestEpoch = index;
+        boundaryRequest = EsploraFuture.allOf(requests).map(
+                new EsploraFunction<List<EsploraBlock>, Epoch>() {
+                    @Override
+                    public Epoch apply(final List<EsploraBlock> blocks) {
+                        onBoundaryRequestFinished(index, true);
+
+                        return getCurrentEpoch();
+                    }
+                }
+        );
+        boundaryRequest.addListener(new EsploraFuture.Listener<Epoch>() {
+            @Override
+            public void onSuccess(final Epoch value) {
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                onBoundaryRequestFinished(index, false);
+            }
+        });
+
+        return follow(boundaryRequest);
+    }
+
+    /**
+     * Remembers the outcome of the requests of the boundary blocks of an epoch, starting or
+     * extending its back-off after a failure.
+     *
+     * @param index        Index of the epoch.
+     * @param isSuccessful False if a request failed or was dropped.
+     */
+    private synchronized void onBoundaryRequestFinished(
+            final int index,
+            final boolean isSuccessful
+    ) {
+        if (isSuccessful) {
+            if (index == failedEpoch) {
+                failedEpoch = -1;
+                failureCount = 0;
+            }
+
+            return;
+        }
+
+        if (index != failedEpoch) {
+            failedEpoch = index;
+            failureCount = 0;
+        }
+
+        final long delayMillis = Math.min(
+                RETRY_DELAY_MILLIS << Math.min(failureCount, 16),
+                MAX_RETRY_DELAY_MILLIS
+        );
+
+        failureCount++;
+        retryAt = System.nanoTime() + delayMillis * NANOS_PER_MILLI;
+    }
+
+    /**
+     * @param request The shared request of the boundary blocks.
+     * @return A future of a caller completed with the request, cancelled on its own.
+     */
+    private static EsploraFuture<Epoch> follow(final EsploraFuture<Epoch> request) {
+        final EsploraFuture<Epoch> future = new EsploraFuture<>();
+
+        request.addListener(new EsploraFuture.Listener<Epoch>() {
+            @Override
+            public void onSuccess(final Epoch value) {
+                future.complete(value);
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                future.fail(error);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * First and last block of an epoch, null until received.
+     */
+    private static class Boundaries {
+        EsploraBlock first;
+        EsploraBlock last;
+    }
+
+    /**
+     * What is known about an epoch at one point in time: its difficulty and the change against
+     * the previous epoch, its duration and the resulting adjustment of the next epoch, which is
+     * a projection while the epoch is in progress.
+     */
+    public static class Epoch {
+        private final int index;
+        private final EsploraBlock first;
+        private final EsploraBlock last;
+        private final boolean isCurrent;
+        private final double difficulty;
+        private final double previousDifficulty;
+
+        /**
+         * @param index              Index of the epoch.
+         * @param first              First block of the epoch, null if unknown.
+         * @param last               Last block, or the newest block of the current epoch, null
+         *                           if unknown.
+         * @param isCurrent          True if the epoch contains the newest block.
+         * @param difficulty         Difficulty of the epoch, 0 if unknown.
+         * @param previousDifficulty Difficulty of the previous epoch, 0 if unknown.
+         */
+        Epoch(
+                final int index,
+                final EsploraBlock first,
+                final EsploraBlock last,
+                final boolean isCurrent,
+                final double difficulty,
+                final double previousDifficulty
+        ) {
+            this.index = index;
+            this.first = first;
+            this.last = last;
+            this.isCurrent = isCurrent;
+            this.difficulty = difficulty;
+            this.previousDifficulty = previousDifficulty;
+        }
+
+        /**
+         * @return Index of the epoch.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return Height of the first block of the epoch.
+         */
+        public int getStartHeight() {
+            return index * EPOCH_LENGTH;
+        }
+
+        /**
+         * @return Height of the last block of the epoch.
+         */
+        public int getEndHeight() {
+            return getStartHeight() + EPOCH_LENGTH - 1;
+        }
+
+        /**
+         * @return True if the epoch contains the newest block, its adjustment is projected.
+         */
+        public boolean isCurrent() {
+            return isCurrent;
+        }
+
+        /**
+         * @return True if the first block of the epoch is known.
+         */
+        public boolean hasFirstBlock() {
+            return first != null;
+        }
+
+        /**
+         * @return Amount of blocks of the epoch up to the newest known block, 0 if unknown.
+         */
+        public int getBlockCount() {
+            return last != null ? last.getHeight() - getStartHeight() + 1 : 0;
+        }
+
+        /**
+         * @return Amount of blocks until the next adjustment, 0 for a complete epoch.
+         */
+        public int getRemainingBlockCount() {
+            return last != null ? getEndHeight() - last.getHeight() : EPOCH_LENGTH;
+        }
+
+        /**
+         * @return Difficulty of the epoch, 0 if unknown.
+         */
+        public double getDifficulty() {
+            return difficulty;
+        }
+
+        /**
+         * @return Difficulty of the previous epoch, 0 if unknown.
+         */
+        public double getPreviousDifficulty() {
+            return previousDifficulty;
+        }
+
+        /**
+         * @return Relative change of the difficulty against the previous epoch (e.g. 0.05 for
+         * 5 % harder), 0 if unknown.
+         */
+        public double getDifficultyChange() {
+            return difficulty > 0 && previousDifficulty > 0
+                    ? difficulty / previousDifficulty - 1
+                    : 0;
+        }
+
+        /**
+         * @return True if the duration of the epoch up to the newest known block is known.
+         */
+        public boolean hasDuration() {
+            return first != null && last != null && last != first;
+        }
+
+        /**
+         * @return Time from the first to the newest known block of the epoch in seconds, as
+         * compared by consensus.
+         */
+        public long getActualDuration() {
+            if (!hasDuration()) {
+                return 0;
+            }
+
+            return (last.getTime().getTime() - first.getTime().getTime()) / 1000;
+        }
+
+        /**
+         * @return Intended time from the first to the newest known block of the epoch in
+         * seconds, two weeks for a complete epoch.
+         */
+        public long getExpectedDuration() {
+            if (getRemainingBlockCount() == 0) {
+                return TARGET_TIMESPAN_SECONDS;
+            }
+
+            return (long) (getBlockCount() - 1) * TARGET_SPACING_SECONDS;
+        }
+
+        /**
+         * Relative difficulty adjustment at the end of the epoch, from its duration for a
+         * complete epoch and projected from the average block interval so far otherwise.
+         *
+         * @return The adjustment (e.g. 0.05 for 5 % harder), 0 if the duration is unknown.
+         */
+        public double getAdjustment() {
+            final long timespan = getProjectedTimespan();
+            if (timespan <= 0) {
+                return 0;
+            }
+
+            final double factor = Math.max(
+                    1.0 / MAX_ADJUSTMENT_FACTOR,
+                    Math.min(MAX_ADJUSTMENT_FACTOR, (double) TARGET_TIMESPAN_SECONDS / timespan)
+            );
+
+            return factor - 1;
+        }
+
+        /**
+         * @return Projected time of the last block of the epoch in milliseconds since the
+         * epoch, at the average interval so far, 0 if unknown.
+         */
+        public long getProjectedEndTime() {
+            if (!hasDuration()) {
+                return 0;
+            }
+
+            final double averageInterval = (double) getActualDuration() / (getBlockCount() - 1);
+
+            return last.getTime().getTime()
+                    + (long) (getRemainingBlockCount() * averageInterval * 1000);
+        }
+
+        /**
+         * @return Time from the first to the last block of the epoch in seconds, extrapolated
+         * from the average interval for an epoch in progress, 0 if unknown.
+         */
+        private long getProjectedTimespan() {
+            if (!hasDuration()) {
+                return 0;
+            }
+
+            final int intervalCount = getBlockCount() - 1;
+
+            return getActualDuration() * (EPOCH_LENGTH - 1) / intervalCount;
+        }
+    }
+}
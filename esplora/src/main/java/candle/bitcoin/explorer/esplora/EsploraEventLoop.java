@@ -0,0 +1,29 @@
+package candle.bitcoin.explorer.esplora;
+
+/**
+ * The single thread the {@link EsploraRequestScheduler} and the listeners run by
+ * {@link EsploraExecutors#mainThread()} are confined to, e.g. the Android main thread. Without
+ * a configured event loop a daemon thread of the library takes this role, see
+ * {@link EsploraExecutors#setEventLoop(EsploraEventLoop)}.
+ */
+public interface EsploraEventLoop {
+    /**
+     * @return True if called from the thread of this event loop.
+     */
+    boolean isCurrentThread();
+
+    /**
+     * Runs a task on the thread of this event loop after the tasks posted before.
+     *
+     * @param task The task.
+     */
+    void post(Runnable task);
+
+    /**
+     * Runs a task on the thread of this event loop after a delay.
+     *
+     * @param task        The task.
+     * @param delayMillis Delay in milliseconds.
+     */
+    void postDelayed(Runnable task, long delayMillis);
+}
@@ -0,0 +1,137 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executors used to control on which thread the listeners of an {@link EsploraFuture} run.
+ */
+public class EsploraExecutors {
+    // runs the given runnable right away on the calling thread
+    private static final Executor direct = new Executor() {
+        @Override
+        public void execute(final Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    // event loop standing in for the main thread, replaced by the platform (e.g. Android)
+    private static volatile EsploraEventLoop eventLoop;
+
+    // runs the given runnable on the thread of the event loop
+    private static final Executor mainThread = new Executor() {
+        @Override
+        public void execute(final Runnable runnable) {
+            final EsploraEventLoop eventLoop = getEventLoop();
+
+            if (eventLoop.isCurrentThread()) {
+                runnable.run();
+                return;
+            }
+
+            eventLoop.post(runnable);
+        }
+    };
+
+    // small pool of daemon threads for parsing responses off the main thread
+    private static final ExecutorService background = Executors.newFixedThreadPool(
+            2,
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "esplora-background");
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            }
+    );
+
+    /**
+     * Sets the event loop acting as the main thread, e.g. the Android main looper. Must be
+     * called before the first request; on the JVM a daemon thread is used by default.
+     *
+     * @param eventLoop The event loop.
+     */
+    public static void setEventLoop(final EsploraEventLoop eventLoop) {
+        EsploraExecutors.eventLoop = eventLoop;
+    }
+
+    /**
+     * @return The event loop acting as the main thread.
+     */
+    public static EsploraEventLoop getEventLoop() {
+        EsploraEventLoop current = eventLoop;
+
+        if (current == null) {
+            synchronized (EsploraExecutors.class) {
+                if (eventLoop == null) {
+                    eventLoop = new ThreadEventLoop();
+                }
+
+                current = eventLoop;
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * @return An Executor running tasks immediately on the calling thread.
+     */
+    public static Executor direct() {
+        return direct;
+    }
+
+    /**
+     * @return An Executor running tasks on the main thread, see {@link #getEventLoop()}. Tasks
+     * submitted from the main thread run immediately.
+     */
+    public static Executor mainThread() {
+        return mainThread;
+    }
+
+    /**
+     * @return An Executor running tasks on a background thread, e.g. to parse responses.
+     */
+    public static Executor background() {
+        return background;
+    }
+
+    /**
+     * Event loop of a single daemon thread, used when the platform sets none, e.g. on the JVM.
+     */
+    private static class ThreadEventLoop implements EsploraEventLoop {
+        private volatile Thread thread;
+
+        private final ScheduledExecutorService executor =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        thread = new Thread(runnable, "esplora-main");
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+
+        @Override
+        public boolean isCurrentThread() {
+            return Thread.currentThread() == thread;
+        }
+
+        @Override
+        public void post(final Runnable task) {
+            executor.execute(task);
+        }
+
+        @Override
+        public void postDelayed(final Runnable task, final long delayMillis) {
+            executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
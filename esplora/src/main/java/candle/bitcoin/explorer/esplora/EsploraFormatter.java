@@ -59,6 +59,20 @@ public class EsploraFormatter {
         return byteSizeNumberFormat.format(sizeKB);
     }
 
+    /**
+     * Formats a given total byte size, e.g. of a range of blocks, and converts it to megabyte.
+     *
+     * @param size Total size in bytes.
+     * @return Formatted size in megabyte.
+     */
+    public static String byteSizeTotal(final long size) {
+        // convert size from byte to megabyte
+        final double sizeMB = (double) size / 1000000;
+
+        // format number
+        return byteSizeNumberFormat.format(sizeMB);
+    }
+
     /**
      * Formats a given virtual byte size and converts it to kilobyte.
      *
@@ -85,4 +99,44 @@ public class EsploraFormatter {
         return (hex.length() % 2 == 0 ? "0x" : "0x0") + hex;
     }
 
+    /**
+     * Formats a given difficulty with a unit prefix (i.e. 92.67 T).
+     *
+     * @param difficulty Difficulty of a block.
+     * @return Formatted difficulty.
+     */
+    public static String difficulty(final double difficulty) {
+        final String[] units = {"", " k", " M", " G", " T", " P", " E"};
+        double value = difficulty;
+        int unit = 0;
+
+        // scale down by 1000 until the value fits the unit
+        while (value >= 1000 && unit < units.length - 1) {
+            value /= 1000;
+            unit++;
+        }
+
+        return String.format(Locale.US, "%.2f%s", value, units[unit]);
+    }
+
+    /**
+     * Formats a given hashrate with a unit prefix (i.e. 512.3 EH/s).
+     *
+     * @param hashrate Hashrate in hashes per second.
+     * @return Formatted hashrate.
+     */
+    public static String hashrate(final double hashrate) {
+        final String[] units = {"H/s", "kH/s", "MH/s", "GH/s", "TH/s", "PH/s", "EH/s", "ZH/s"};
+        double value = hashrate;
+        int unit = 0;
+
+        // scale down by 1000 until the value fits the unit
+        while (value >= 1000 && unit < units.length - 1) {
+            value /= 1000;
+            unit++;
+        }
+
+        return String.format(Locale.US, "%.1f %s", value, units[unit]);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package candle.bitcoin.explorer.esplora;
+
+/**
+ * A function transforming the result of an {@link EsploraFuture}. Used instead of
+ * java.util.function.Function, which is not available on all supported Android versions.
+ *
+ * @param <T> Type of the input value.
+ * @param <R> Type of the result.
+ */
+public interface EsploraFunction<T, R> {
+    /**
+     * Applies this function to the given value.
+     *
+     * @param value The input value.
+     * @return The result.
+     * @throws Exception Thrown exceptions fail the resulting {@link EsploraFuture}.
+     */
+    R apply(T value) throws Exception;
+}
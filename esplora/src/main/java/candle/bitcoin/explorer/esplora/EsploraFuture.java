@@ -0,0 +1,537 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The result of an asynchronous EsploraClient request, which can be transformed and combined
+ * with other requests. Similar to java.util.concurrent.CompletableFuture, which is not
+ * available on all supported Android versions.
+ * <p>
+ * Cancelling a future cancels the requests it was derived from, i.e. cancelling the result of
+ * {@link #map(EsploraFunction)} cancels the underlying HTTP request. Listeners of a cancelled
+ * future are never invoked. This includes listeners already handed to their executor when the
+ * future gets cancelled right after it completed, e.g. a result posted to the main thread
+ * while the screen waiting for it gets destroyed.
+ *
+ * @param <T> Type of the result.
+ */
+public class EsploraFuture<T> implements EsploraRequestHandle {
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_SUCCEEDED = 1;
+    private static final int STATE_FAILED = 2;
+    private static final int STATE_CANCELLED = 3;
+
+    private volatile int state = STATE_PENDING;
+
+    // set when a done future gets cancelled, listeners not invoked yet are skipped
+    private volatile boolean isDetached = false;
+
+    // listeners handed to their executor but not invoked or skipped yet
+    private final AtomicInteger pendingListenerCount = new AtomicInteger();
+    private T value;
+    private Throwable error;
+
+    // listeners waiting for the result, released once the future is done
+    private ArrayList<ListenerEntry<? super T>> listeners = new ArrayList<>();
+
+    // handles of the requests this future was derived from, cancelled along with this future
+    private ArrayList<EsploraRequestHandle> upstream = new ArrayList<>();
+
+    /**
+     * Creates a pending future.
+     */
+    EsploraFuture() {
+    }
+
+    /**
+     * @param value The result.
+     * @param <T>   Type of the result.
+     * @return A future that already succeeded with the given result.
+     */
+    public static <T> EsploraFuture<T> completed(final T value) {
+        final EsploraFuture<T> future = new EsploraFuture<>();
+        future.complete(value);
+
+        return future;
+    }
+
+    /**
+     * @param error The error.
+     * @param <T>   Type of the result.
+     * @return A future that already failed with the given error.
+     */
+    public static <T> EsploraFuture<T> failed(final Throwable error) {
+        final EsploraFuture<T> future = new EsploraFuture<>();
+        future.fail(error);
+
+        return future;
+    }
+
+    /**
+     * Combines several futures into one, which succeeds with the results of all futures in the
+     * given order. The combined future fails as soon as one of the futures fails, the remaining
+     * futures are cancelled in this case.
+     *
+     * @param futures Futures to be combined.
+     * @param <T>     Type of the results.
+     * @return A future of the list of all results.
+     */
+    public static <T> EsploraFuture<List<T>> allOf(final List<EsploraFuture<T>> futures) {
+        final EsploraFuture<List<T>> combined = new EsploraFuture<>();
+        final int count = futures.size();
+
+        if (count == 0) {
+            combined.complete(new ArrayList<T>());
+            return combined;
+        }
+
+        final Object[] results = new Object[count];
+        final AtomicInteger remaining = new AtomicInteger(count);
+
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            final EsploraFuture<T> future = futures.get(i);
+
+            combined.addUpstream(future);
+            future.addListener(new Listener<T>() {
+                @SuppressWarnings("unchecked")
+                @Override
+                public void onSuccess(final T value) {
+                    results[index] = value;
+
+                    if (remaining.decrementAndGet() != 0) {
+                        return;
+                    }
+
+                    final ArrayList<T> list = new ArrayList<>(count);
+                    for (final Object result : results) {
+                        list.add((T) result);
+                    }
+
+                    combined.complete(list);
+                }
+
+                @Override
+                public void onError(final Throwable error) {
+                    if (!combined.fail(error)) {
+                        return;
+                    }
+
+                    // the other results are of no use anymore
+                    for (final EsploraFuture<T> other : futures) {
+                        other.cancel();
+                    }
+                }
+            });
+        }
+
+        return combined;
+    }
+
+    /**
+     * Transforms the result of this future on the thread completing this future.
+     *
+     * @param function Function transforming the result.
+     * @param <R>      Type of the transformed result.
+     * @return A future of the transformed result.
+     */
+    public <R> EsploraFuture<R> map(final EsploraFunction<? super T, ? extends R> function) {
+        return map(function, EsploraExecutors.direct());
+    }
+
+    /**
+     * Transforms the result of this future.
+     *
+     * @param function Function transforming the result.
+     * @param executor Executor running the function.
+     * @param <R>      Type of the transformed result.
+     * @return A future of the transformed result.
+     */
+    public <R> EsploraFuture<R> map(
+            final EsploraFunction<? super T, ? extends R> function,
+            final Executor executor
+    ) {
+        final EsploraFuture<R> future = new EsploraFuture<>();
+        future.addUpstream(this);
+
+        addListener(new Listener<T>() {
+            @Override
+            public void onSuccess(final T value) {
+                final R result;
+
+                try {
+                    result = function.apply(value);
+                } catch (Exception e) {
+                    future.fail(e);
+                    return;
+                }
+
+                future.complete(result);
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                future.fail(error);
+            }
+        }, executor);
+
+        return future;
+    }
+
+    /**
+     * Starts another request with the result of this future on the thread completing this
+     * future, i.e. requesting a block after its hash was requested.
+     *
+     * @param function Function starting the next request.
+     * @param <R>      Type of the result of the next request.
+     * @return A future of the result of the next request.
+     */
+    public <R> EsploraFuture<R> thenCompose(
+            final EsploraFunction<? super T, EsploraFuture<R>> function
+    ) {
+        return thenCompose(function, EsploraExecutors.direct());
+    }
+
+    /**
+     * Starts another request with the result of this future.
+     *
+     * @param function Function starting the next request.
+     * @param executor Executor running the function.
+     * @param <R>      Type of the result of the next request.
+     * @return A future of the result of the next request.
+     */
+    public <R> EsploraFuture<R> thenCompose(
+            final EsploraFunction<? super T, EsploraFuture<R>> function,
+            final Executor executor
+    ) {
+        final EsploraFuture<R> future = new EsploraFuture<>();
+        future.addUpstream(this);
+
+        addListener(new Listener<T>() {
+            @Override
+            public void onSuccess(final T value) {
+                final EsploraFuture<R> next;
+
+                try {
+                    next = function.apply(value);
+                } catch (Exception e) {
+                    future.fail(e);
+                    return;
+                }
+
+                future.addUpstream(next);
+                next.addListener(new Listener<R>() {
+                    @Override
+                    public void onSuccess(final R value) {
+                        future.complete(value);
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                        future.fail(error);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                future.fail(error);
+            }
+        }, executor);
+
+        return future;
+    }
+
+    /**
+     * Starts another request when this future fails, i.e. looking up an id as a transaction
+     * after it was not found as a block. The result of this future is passed on unchanged when
+     * it succeeds.
+     *
+     * @param function Function starting the fallback request with the error.
+     * @return A future of the result of this future or of the fallback request.
+     */
+    public EsploraFuture<T> recover(final EsploraFunction<Throwable, EsploraFuture<T>> function) {
+        final EsploraFuture<T> future = new EsploraFuture<>();
+        future.addUpstream(this);
+
+        addListener(new Listener<T>() {
+            @Override
+            public void onSuccess(final T value) {
+                future.complete(value);
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                final EsploraFuture<T> next;
+
+                try {
+                    next = function.apply(error);
+                } catch (Exception e) {
+                    future.fail(e);
+                    return;
+                }
+
+                future.addUpstream(next);
+                next.addListener(new Listener<T>() {
+                    @Override
+                    public void onSuccess(final T value) {
+                        future.complete(value);
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                        future.fail(error);
+                    }
+                });
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Adds a listener invoked on the thread completing this future. If this future is done
+     * already, the listener is invoked right away.
+     *
+     * @param listener Listener to be invoked with the result.
+     * @return This future.
+     */
+    public EsploraFuture<T> addListener(final Listener<? super T> listener) {
+        return addListener(listener, EsploraExecutors.direct());
+    }
+
+    /**
+     * Adds a listener invoked by the given executor. If this future is done already, the
+     * listener is submitted to the executor right away.
+     *
+     * @param listener Listener to be invoked with the result.
+     * @param executor Executor invoking the listener.
+     * @return This future.
+     */
+    public EsploraFuture<T> addListener(
+            final Listener<? super T> listener,
+            final Executor executor
+    ) {
+        final ListenerEntry<? super T> entry = new ListenerEntry<>(listener, executor);
+
+        synchronized (this) {
+            if (state == STATE_CANCELLED) {
+                return this;
+            }
+
+            if (state == STATE_PENDING) {
+                listeners.add(entry);
+                return this;
+            }
+        }
+
+        notifyListener(entry);
+
+        return this;
+    }
+
+    /**
+     * Completes this future successfully and notifies its listeners.
+     *
+     * @param value The result.
+     * @return False if this future was already done or cancelled.
+     */
+    boolean complete(final T value) {
+        final ArrayList<ListenerEntry<? super T>> listeners;
+
+        synchronized (this) {
+            if (state != STATE_PENDING) {
+                return false;
+            }
+
+            state = STATE_SUCCEEDED;
+            this.value = value;
+
+            listeners = this.listeners;
+            this.listeners = null;
+            upstream = null;
+        }
+
+        for (final ListenerEntry<? super T> entry : listeners) {
+            notifyListener(entry);
+        }
+
+        return true;
+    }
+
+    /**
+     * Fails this future and notifies its listeners.
+     *
+     * @param error The error.
+     * @return False if this future was already done or cancelled.
+     */
+    boolean fail(final Throwable error) {
+        final ArrayList<ListenerEntry<? super T>> listeners;
+
+        synchronized (this) {
+            if (state != STATE_PENDING) {
+                return false;
+            }
+
+            state = STATE_FAILED;
+            this.error = error;
+
+            listeners = this.listeners;
+            this.listeners = null;
+            upstream = null;
+        }
+
+        for (final ListenerEntry<? super T> entry : listeners) {
+            notifyListener(entry);
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds a handle to be cancelled along with this future. The handle is cancelled right away
+     * if this future was already cancelled.
+     *
+     * @param handle Handle of a request this future depends on.
+     */
+    void addUpstream(final EsploraRequestHandle handle) {
+        synchronized (this) {
+            if (state == STATE_PENDING) {
+                upstream.add(handle);
+                return;
+            }
+
+            if (state != STATE_CANCELLED) {
+                return;
+            }
+        }
+
+        handle.cancel();
+    }
+
+    /**
+     * Called once when this future gets cancelled. Subclasses abort their work here.
+     */
+    void onCancelled() {
+    }
+
+    /**
+     * Invokes a listener with the result of this future by using its executor.
+     *
+     * @param entry The listener and its executor.
+     */
+    private void notifyListener(final ListenerEntry<? super T> entry) {
+        pendingListenerCount.incrementAndGet();
+
+        entry.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // cancelled after the result was handed to the executor
+                    if (isDetached) {
+                        return;
+                    }
+
+                    if (state == STATE_SUCCEEDED) {
+                        entry.listener.onSuccess(value);
+                    } else {
+                        entry.listener.onError(error);
+                    }
+                } finally {
+                    pendingListenerCount.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * A done future may still have listeners waiting for their executor, e.g. for the main
+     * thread. Cancelling the future skips them, so it must not be forgotten before.
+     *
+     * @return True if listeners were handed to their executor but did not run yet.
+     */
+    boolean hasPendingListeners() {
+        return pendingListenerCount.get() > 0;
+    }
+
+    @Override
+    public void cancel() {
+        final ArrayList<EsploraRequestHandle> upstream;
+
+        synchronized (this) {
+            if (state != STATE_PENDING) {
+                // the listeners may still be waiting for their executor
+                if (state != STATE_CANCELLED) {
+                    isDetached = true;
+                }
+
+                return;
+            }
+
+            state = STATE_CANCELLED;
+
+            upstream = this.upstream;
+            this.upstream = null;
+            listeners = null;
+        }
+
+        onCancelled();
+
+        for (final EsploraRequestHandle handle : upstream) {
+            handle.cancel();
+        }
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == STATE_CANCELLED || isDetached;
+    }
+
+    @Override
+    public synchronized boolean isFinished() {
+        return state == STATE_SUCCEEDED || state == STATE_FAILED;
+    }
+
+    /**
+     * Listener of an {@link EsploraFuture}.
+     *
+     * @param <T> Type of the result.
+     */
+    public interface Listener<T> {
+        /**
+         * Called when the future succeeded.
+         *
+         * @param value The result.
+         */
+        void onSuccess(T value);
+
+        /**
+         * Called when the future failed.
+         *
+         * @param error The error causing the failure.
+         */
+        void onError(Throwable error);
+    }
+
+    /**
+     * A listener and the executor invoking it.
+     *
+     * @param <T> Type of the result.
+     */
+    private static class ListenerEntry<T> {
+        final Listener<T> listener;
+        final Executor executor;
+
+        /**
+         * @param listener The listener.
+         * @param executor Executor invoking the listener.
+         */
+        ListenerEntry(final Listener<T> listener, final Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves partial block hashes (prefixes of the displayed hex hash) to block heights. The index
+ * is a single int array of all heights known to an {@link EsploraBlockHashIndex}, sorted by
+ * their displayed hash, so a prefix is found with a binary search over the hashes stored in
+ * the block hash index. It takes 4 bytes per block.
+ * <p>
+ * The sorted array is rebuilt when the block hash index changed, at most every
+ * {@link #REBUILD_INTERVAL_MILLIS}. Blocks added in between are found once the index got
+ * rebuilt. All methods are thread safe, lookups should not run on the main thread as they may
+ * rebuild the index.
+ */
+public class EsploraHashPrefixIndex {
+    /**
+     * Minimum duration between two rebuilds of the sorted array.
+     */
+    public static final long REBUILD_INTERVAL_MILLIS = 10000;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final EsploraBlockHashIndex blockHashIndex;
+
+    // known heights sorted by their displayed hash
+    private int[] sortedHeights = new int[0];
+    private int builtModificationCount = -1;
+    private long builtAt = 0;
+
+    /**
+     * @param blockHashIndex The index providing the block hashes.
+     */
+    public EsploraHashPrefixIndex(final EsploraBlockHashIndex blockHashIndex) {
+        this.blockHashIndex = blockHashIndex;
+    }
+
+    /**
+     * Finds the blocks whose hash starts with the given prefix.
+     *
+     * @param prefix   Hex prefix of a displayed block hash, up to 64 characters.
+     * @param maxCount Maximum amount of results.
+     * @return Heights of the matching blocks, ordered by their hash.
+     */
+    public synchronized List<Integer> find(final String prefix, final int maxCount) {
+        final ArrayList<Integer> heights = new ArrayList<>();
+        final int length = prefix.length();
+
+        if (length == 0 || length > 64) {
+            return heights;
+        }
+
+        final byte[] nibbles = new byte[length];
+        for (int i = 0; i < length; i++) {
+            final int digit = EsploraHex.digit(prefix.charAt(i));
+
+            if (digit < 0) {
+                return heights;
+            }
+
+            nibbles[i] = (byte) digit;
+        }
+
+        rebuildIfStale();
+
+        // lower bound of the prefix
+        int low = 0;
+        int high = sortedHeights.length;
+
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+
+            if (blockHashIndex.compareDisplayedPrefix(sortedHeights[middle], nibbles, length) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        for (int i = low; i < sortedHeights.length && heights.size() < maxCount; i++) {
+            final int height = sortedHeights[i];
+
+            if (blockHashIndex.compareDisplayedPrefix(height, nibbles, length) != 0) {
+                break;
+            }
+
+            // skip heights replaced by a reorg since the last rebuild
+            if (blockHashIndex.contains(height)) {
+                heights.add(height);
+            }
+        }
+
+        return heights;
+    }
+
+    /**
+     * @return Amount of blocks in the sorted array.
+     */
+    public synchronized int size() {
+        return sortedHeights.length;
+    }
+
+    /**
+     * Rebuilds the sorted array if the block hash index changed since the last rebuild and the
+     * rebuild interval passed.
+     */
+    private void rebuildIfStale() {
+        final int modificationCount = blockHashIndex.getModificationCount();
+        final long elapsedMillis = (System.nanoTime() - builtAt) / NANOS_PER_MILLI;
+
+        if (modificationCount == builtModificationCount
+                || (builtModificationCount >= 0 && elapsedMillis < REBUILD_INTERVAL_MILLIS)) {
+            return;
+        }
+
+        final int[] heights = blockHashIndex.getKnownHeights();
+        blockHashIndex.sortByDisplayedHash(heights);
+
+        sortedHeights = heights;
+        builtModificationCount = modificationCount;
+        builtAt = System.nanoTime();
+    }
+}
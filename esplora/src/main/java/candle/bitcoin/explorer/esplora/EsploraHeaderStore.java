@@ -0,0 +1,467 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file of fixed size block header records, one per height starting at the genesis block.
+ * Each record holds the 80 raw header bytes as hashed by Bitcoin plus the transaction count,
+ * size and weight provided by Esplora, so the record of a height is found at
+ * FILE_HEADER_SIZE + height * RECORD_SIZE without any index.
+ * <p>
+ * The file is read through a {@link MappedByteBuffer}, so the operating system pages records
+ * in on demand and the heap stays small even for the whole chain. Records are read with a
+ * {@link Cursor}, a flyweight decoding the fields in place without allocating.
+ * <p>
+ * The amount of valid records is stored in the file header and written after the records
+ * themselves, so a crash while appending or truncating never exposes partially written
+ * records. Writing methods are synchronized, reading through a cursor is safe from any thread.
+ */
+public class EsploraHeaderStore implements Closeable {
+    /**
+     * Size of a raw Bitcoin block header.
+     */
+    public static final int HEADER_SIZE = 80;
+
+    /**
+     * Size of a record: raw header, transaction count, size and weight.
+     */
+    public static final int RECORD_SIZE = HEADER_SIZE + 3 * 4;
+
+    // file format identifier ("EHS" and version 1)
+    private static final int FILE_MAGIC = 0x45485301;
+
+    // file header: magic, record size, record count, padded to keep records aligned
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_RECORD_SIZE = 4;
+    private static final int OFFSET_RECORD_COUNT = 8;
+
+    // the mapped region grows in steps of this amount of records (about 9 MB)
+    private static final int GROWTH_RECORDS = 100000;
+
+    // field offsets within a record (little-endian like the Bitcoin serialization)
+    private static final int FIELD_VERSION = 0;
+    private static final int FIELD_HASH_PREVIOUS = 4;
+    private static final int FIELD_MERKLE_ROOT = 36;
+    private static final int FIELD_TIME = 68;
+    private static final int FIELD_BITS = 72;
+    private static final int FIELD_NONCE = 76;
+    private static final int FIELD_TX_COUNT = 80;
+    private static final int FIELD_SIZE = 84;
+    private static final int FIELD_WEIGHT = 88;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    // current mapping, replaced by a larger one when the file grows
+    private volatile MappedByteBuffer buffer;
+
+    // amount of valid records, i.e. the height of the next record
+    private volatile int recordCount;
+
+    /**
+     * Opens a header store file, creating it when it does not exist.
+     *
+     * @param path File of the header store.
+     * @throws IOException The file can't be opened or is not a header store.
+     */
+    public EsploraHeaderStore(final File path) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+
+        final boolean isNew = file.length() < FILE_HEADER_SIZE;
+
+        try {
+            map(Math.max(file.length(), getFileSize(GROWTH_RECORDS)));
+
+            if (isNew) {
+                buffer.putInt(OFFSET_MAGIC, FILE_MAGIC);
+                buffer.putInt(OFFSET_RECORD_SIZE, RECORD_SIZE);
+                buffer.putInt(OFFSET_RECORD_COUNT, 0);
+                buffer.force();
+            } else if (buffer.getInt(OFFSET_MAGIC) != FILE_MAGIC
+                    || buffer.getInt(OFFSET_RECORD_SIZE) != RECORD_SIZE) {
+                throw new IOException("invalid header store file");
+            }
+
+            recordCount = buffer.getInt(OFFSET_RECORD_COUNT);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Amount of stored records, i.e. the height of the next record to be appended.
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return A new cursor to read records. Cursors are not thread safe, use one per thread.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Appends the header of the next block. See {@link #append(int, byte[], int, int, int, int)}.
+     *
+     * @param block Block at height {@link #getRecordCount()}.
+     * @throws IOException Writing the file failed.
+     */
+    public synchronized void append(final EsploraBlock block) throws IOException {
+        final byte[] header = new byte[HEADER_SIZE];
+        writeHeader(block, header, 0);
+
+        append(block.getHeight(), header, 0, block.getTxCount(), block.getSize(), block.getWeight());
+    }
+
+    /**
+     * Appends the record of the next block. The record becomes visible after the record count
+     * in the file header got updated.
+     *
+     * @param height  Height of the block, must equal {@link #getRecordCount()}.
+     * @param header  Array containing the 80 raw header bytes.
+     * @param offset  Offset of the header in the array.
+     * @param txCount Transaction count of the block.
+     * @param size    Size of the block in byte.
+     * @param weight  Weight of the block.
+     * @throws IOException Writing the file failed.
+     */
+    public synchronized void append(
+            final int height,
+            final byte[] header,
+            final int offset,
+            final int txCount,
+            final int size,
+            final int weight
+    ) throws IOException {
+        if (height != recordCount) {
+            throw new IOException("expected height " + recordCount + " but got " + height);
+        }
+
+        ensureCapacity(height + 1);
+
+        final MappedByteBuffer mapped = buffer;
+        final int position = getRecordOffset(height);
+
+        for (int i = 0; i < HEADER_SIZE; i++) {
+            mapped.put(position + i, header[offset + i]);
+        }
+
+        mapped.putInt(position + FIELD_TX_COUNT, txCount);
+        mapped.putInt(position + FIELD_SIZE, size);
+        mapped.putInt(position + FIELD_WEIGHT, weight);
+
+        // publish the record
+        recordCount = height + 1;
+        mapped.putInt(OFFSET_RECORD_COUNT, recordCount);
+    }
+
+    /**
+     * Removes all records from the given height on, e.g. the blocks replaced by a reorg. The
+     * record count is reduced and flushed before the records are cleared, so a crash never
+     * leaves cleared records marked as valid.
+     *
+     * @param height Height of the first record to remove.
+     * @throws IOException Writing the file failed.
+     */
+    public synchronized void truncate(final int height) throws IOException {
+        if (height < 0 || height >= recordCount) {
+            return;
+        }
+
+        final int previousCount = recordCount;
+        final MappedByteBuffer mapped = buffer;
+
+        recordCount = height;
+        mapped.putInt(OFFSET_RECORD_COUNT, height);
+        mapped.force();
+
+        for (int position = getRecordOffset(height);
+             position < getRecordOffset(previousCount);
+             position += 4) {
+            mapped.putInt(position, 0);
+        }
+    }
+
+    /**
+     * Writes all changes to the storage device.
+     */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Flushes and closes the file. Cursors must not be used afterwards.
+     *
+     * @throws IOException Closing the file failed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        file.close();
+    }
+
+    /**
+     * Serializes the 80 byte header of a block the way Bitcoin hashes it.
+     *
+     * @param block       The block.
+     * @param destination Array to write the header to.
+     * @param offset      Offset in the array.
+     */
+    static void writeHeader(final EsploraBlock block, final byte[] destination, final int offset) {
+        writeIntLittleEndian(block.getVersion(), destination, offset + FIELD_VERSION);
+
+        // the genesis block has no previous block
+        if (block.getHashPrevious() != null) {
+            EsploraHex.decodeReversed(
+                    block.getHashPrevious(),
+                    destination,
+                    offset + FIELD_HASH_PREVIOUS
+            );
+        } else {
+            for (int i = 0; i < 32; i++) {
+                destination[offset + FIELD_HASH_PREVIOUS + i] = 0;
+            }
+        }
+
+        EsploraHex.decodeReversed(block.getMerkleRoot(), destination, offset + FIELD_MERKLE_ROOT);
+
+        writeIntLittleEndian(
+                (int) (block.getTime().getTime() / 1000),
+                destination,
+                offset + FIELD_TIME
+        );
+        writeIntLittleEndian(block.getBits(), destination, offset + FIELD_BITS);
+        writeIntLittleEndian(block.getNonce(), destination, offset + FIELD_NONCE);
+    }
+
+    /**
+     * @param value       Value to write.
+     * @param destination Array to write the value to.
+     * @param offset      Offset in the array.
+     */
+    private static void writeIntLittleEndian(
+            final int value,
+            final byte[] destination,
+            final int offset
+    ) {
+        destination[offset] = (byte) value;
+        destination[offset + 1] = (byte) (value >>> 8);
+        destination[offset + 2] = (byte) (value >>> 16);
+        destination[offset + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * Maps a larger region of the file when the given amount of records does not fit in.
+     *
+     * @param records Required amount of records.
+     * @throws IOException Mapping the file failed.
+     */
+    private void ensureCapacity(final int records) throws IOException {
+        if (getFileSize(records) <= buffer.capacity()) {
+            return;
+        }
+
+        map(getFileSize(records + GROWTH_RECORDS));
+    }
+
+    /**
+     * Maps the given region of the file, growing the file if necessary.
+     *
+     * @param size Size of the region in bytes.
+     * @throws IOException Mapping the file failed.
+     */
+    private void map(final long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("header store exceeds the maximum mapping size");
+        }
+
+        final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer = mapped;
+    }
+
+    /**
+     * @param records Amount of records.
+     * @return Size of a file holding the given amount of records.
+     */
+    private static long getFileSize(final int records) {
+        return FILE_HEADER_SIZE + (long) records * RECORD_SIZE;
+    }
+
+    /**
+     * @param height A block height.
+     * @return Offset of the record of the given height in the file.
+     */
+    private static int getRecordOffset(final int height) {
+        return FILE_HEADER_SIZE + height * RECORD_SIZE;
+    }
+
+    /**
+     * A flyweight pointing at one record of the store. All getters decode the field directly
+     * from the mapped file without allocating.
+     */
+    public class Cursor {
+        private MappedByteBuffer mapped;
+        private int position = -1;
+        private int height = -1;
+
+        /**
+         * Points this cursor at the record of the given height.
+         *
+         * @param height A block height.
+         * @return False if there is no record for the given height.
+         */
+        public boolean moveTo(final int height) {
+            if (height < 0 || height >= recordCount) {
+                return false;
+            }
+
+            this.mapped = buffer;
+            this.position = getRecordOffset(height);
+            this.height = height;
+
+            return true;
+        }
+
+        /**
+         * @return Height of the current record.
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * @return Version of the block.
+         */
+        public int getVersion() {
+            return mapped.getInt(position + FIELD_VERSION);
+        }
+
+        /**
+         * @return Unix timestamp of the block creation in seconds.
+         */
+        public long getTimestamp() {
+            return mapped.getInt(position + FIELD_TIME) & 0xffffffffL;
+        }
+
+        /**
+         * @return Bits of the block.
+         */
+        public int getBits() {
+            return mapped.getInt(position + FIELD_BITS);
+        }
+
+        /**
+         * @return Nonce of the block.
+         */
+        public int getNonce() {
+            return mapped.getInt(position + FIELD_NONCE);
+        }
+
+        /**
+         * @return Transaction count of the block.
+         */
+        public int getTxCount() {
+            return mapped.getInt(position + FIELD_TX_COUNT);
+        }
+
+        /**
+         * @return Size of the block in byte.
+         */
+        public int getSize() {
+            return mapped.getInt(position + FIELD_SIZE);
+        }
+
+        /**
+         * @return Weight of the block.
+         */
+        public int getWeight() {
+            return mapped.getInt(position + FIELD_WEIGHT);
+        }
+
+        /**
+         * Copies the previous block hash in internal byte order.
+         *
+         * @param destination Array to copy the hash to.
+         * @param offset      Offset in the array.
+         */
+        public void copyHashPrevious(final byte[] destination, final int offset) {
+            copy(FIELD_HASH_PREVIOUS, destination, offset, 32);
+        }
+
+        /**
+         * Copies the merkle root in internal byte order.
+         *
+         * @param destination Array to copy the merkle root to.
+         * @param offset      Offset in the array.
+         */
+        public void copyMerkleRoot(final byte[] destination, final int offset) {
+            copy(FIELD_MERKLE_ROOT, destination, offset, 32);
+        }
+
+        /**
+         * Copies the 80 raw header bytes, e.g. to compute the block hash.
+         *
+         * @param destination Array to copy the header to.
+         * @param offset      Offset in the array.
+         */
+        public void copyHeader(final byte[] destination, final int offset) {
+            copy(0, destination, offset, HEADER_SIZE);
+        }
+
+        /**
+         * Builds a block of the current record, computing its hash from the header.
+         *
+         * @return The block of the current record.
+         */
+        public EsploraBlock getBlock() {
+            final byte[] bytes = new byte[HEADER_SIZE];
+            copyHeader(bytes, 0);
+
+            final EsploraBlockHeader header = new EsploraBlockHeader(bytes);
+
+            return new EsploraBlock(
+                    header.getHash(),
+                    height > 0 ? header.getHashPrevious() : null,
+                    height,
+                    header.getVersion(),
+                    header.getTimestamp(),
+                    getTxCount(),
+                    getSize(),
+                    getWeight(),
+                    header.getMerkleRoot(),
+                    header.getNonce(),
+                    header.getBits()
+            );
+        }
+
+        /**
+         * @param field       Offset of the field within the record.
+         * @param destination Array to copy the field to.
+         * @param offset      Offset in the array.
+         * @param length      Length of the field.
+         */
+        private void copy(
+                final int field,
+                final byte[] destination,
+                final int offset,
+                final int length
+        ) {
+            for (int i = 0; i < length; i++) {
+                destination[offset + i] = mapped.get(position + field + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,774 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A background job copying the header chain from genesis to tip into an
+ * {@link EsploraHeaderStore}. Headers are downloaded in chunks of {@link #CHUNK_SIZE} blocks,
+ * with a bounded amount of chunks in flight at the same time. All requests use the
+ * {@link EsploraRequestPriority#PREFETCH} priority, so the scheduler keeps them from delaying
+ * visible data. The pages of the chunks bypass the {@link EsploraResponseCache} and the block
+ * indexes of the {@link EsploraClient}, the headers are only written to the store. A request
+ * that failed or was dropped by the scheduler in favour of visible requests is sent again
+ * after a back off, so the sync pauses while the user browses instead of stopping.
+ * <p>
+ * A full sync of the main chain takes one request per 10 headers, about 90k requests for 900k
+ * blocks. At the 5 requests per second of the {@link EsploraRequestScheduler} that is at least
+ * 5 hours, longer while visible requests take the tokens. The sync is therefore meant to be
+ * owned by the process rather than by a screen, and resumes from its checkpoint in the next
+ * process. {@link #start()} and {@link #cancel()} return right away, the file operations run
+ * in the background.
+ * <p>
+ * Each chunk is checked for previous hash linkage and for headers matching their hashes as it
+ * arrives. Chunks are written in height order, checking the linkage to the stored chain.
+ * After each written chunk the store is flushed and a checkpoint (height and hash of the last
+ * stored header) is written, so the sync resumes from there after process death. A linkage
+ * mismatch at the stored tip means a reorg: the last blocks are dropped, all requested and
+ * downloaded chunks are discarded and the sync restarts from the new stored tip. Callbacks of
+ * requests made before the restart are recognized by their generation and ignored.
+ * <p>
+ * With an {@link EsploraBlockSegmentStore} the stored headers are also written to it in
+ * segments, once all blocks of a segment are immutable, so the blocks can be served without
+ * requests, see {@link EsploraClient#setBlockSegmentStore(EsploraBlockSegmentStore)}.
+ */
+public class EsploraHeaderSync implements EsploraRequestHandle {
+    /**
+     * Amount of blocks per chunk.
+     */
+    public static final int CHUNK_SIZE = 100;
+
+    // blocks per page of the blocks/:start endpoint
+    private static final int PAGE_SIZE = 10;
+
+    // amount of blocks dropped when a reorg was detected at the stored tip
+    private static final int REORG_DEPTH = EsploraCachePolicy.IMMUTABLE_CONFIRMATIONS;
+
+    private static final double NANOS_PER_SECOND = 1000000000.0;
+
+    // back off of the first retry of a request, doubled with every attempt up to the maximum
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60000;
+
+    private static final EsploraMetrics.Counter retryCounter =
+            EsploraMetrics.get().counter("headersync.retries");
+
+    private final EsploraHeaderStore store;
+    private final File checkpointFile;
+    private final EsploraBlockSegmentStore segmentStore;
+    private final int maxChunksInFlight;
+    private final Listener listener;
+    private final Executor listenerExecutor;
+
+    // chunks being downloaded
+    private final ArrayList<EsploraFuture<List<EsploraBlock>>> chunksInFlight = new ArrayList<>();
+
+    // downloaded chunks waiting for their predecessors, by start height
+    private final TreeMap<Integer, List<EsploraBlock>> chunksCompleted = new TreeMap<>();
+
+    private EsploraFuture<EsploraBlockPage> tipRequest;
+    private int tipHeight = -1;
+    private int nextChunkHeight;
+
+    // hash of the last stored header, null when the store is empty
+    private String lastHash;
+
+    // incremented on every restart, callbacks of older generations are ignored
+    private int generation = 0;
+
+    private boolean isStarted = false;
+
+    // read without the lock, so cancelling never waits for a chunk being written
+    private volatile boolean isCancelled = false;
+    private volatile boolean isFinished = false;
+
+    // throughput
+    private long startedAt;
+    private int syncedCount = 0;
+
+    /**
+     * @param store             The store to fill, must not be written by anybody else.
+     * @param checkpointFile    File to store the checkpoint in.
+     * @param maxChunksInFlight Maximum amount of chunks downloaded at the same time.
+     * @param listener          Listener informed about progress, completion and errors.
+     * @param listenerExecutor  Executor to call the listener with.
+     */
+    public EsploraHeaderSync(
+            final EsploraHeaderStore store,
+            final File checkpointFile,
+            final int maxChunksInFlight,
+            final Listener listener,
+            final Executor listenerExecutor
+    ) {
+        this(store, checkpointFile, null, maxChunksInFlight, listener, listenerExecutor);
+    }
+
+    /**
+     * @param store             The store to fill, must not be written by anybody else.
+     * @param checkpointFile    File to store the checkpoint in.
+     * @param segmentStore      Store to write immutable segments of blocks to or null, must
+     *                          not be written by anybody else.
+     * @param maxChunksInFlight Maximum amount of chunks downloaded at the same time.
+     * @param listener          Listener informed about progress, completion and errors.
+     * @param listenerExecutor  Executor to call the listener with.
+     */
+    public EsploraHeaderSync(
+            final EsploraHeaderStore store,
+            final File checkpointFile,
+            final EsploraBlockSegmentStore segmentStore,
+            final int maxChunksInFlight,
+            final Listener listener,
+            final Executor listenerExecutor
+    ) {
+        this.store = store;
+        this.checkpointFile = checkpointFile;
+        this.segmentStore = segmentStore;
+        this.maxChunksInFlight = Math.max(1, maxChunksInFlight);
+        this.listener = listener;
+        this.listenerExecutor = listenerExecutor;
+    }
+
+    /**
+     * Starts the sync from the last checkpoint. Can only be called once. Restoring the
+     * checkpoint runs in the background.
+     */
+    public synchronized void start() {
+        if (isStarted) {
+            throw new IllegalStateException("sync already started");
+        }
+
+        isStarted = true;
+
+        EsploraExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (EsploraHeaderSync.this) {
+                    if (isCancelled) {
+                        return;
+                    }
+
+                    startedAt = System.nanoTime();
+
+                    try {
+                        restoreCheckpoint();
+                    } catch (IOException e) {
+                        onError(e);
+                        return;
+                    }
+
+                    requestTip();
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the sync without waiting for a chunk being written, which is completed in the
+     * background. No chunk is written after it.
+     */
+    @Override
+    public void cancel() {
+        if (isCancelled || isFinished) {
+            return;
+        }
+
+        isCancelled = true;
+
+        EsploraExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (EsploraHeaderSync.this) {
+                    cancelRequests();
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    /**
+     * Requests the current tip and schedules all chunks between the stored tip and it.
+     */
+    private void requestTip() {
+        final int requestGeneration = generation;
+
+        // a cached tip could be older than the chain the store is restarted on
+        tipRequest = sendWithRetries(
+                new EsploraFunction<Integer, EsploraFuture<EsploraBlockPage>>() {
+                    @Override
+                    public EsploraFuture<EsploraBlockPage> apply(final Integer attempt) {
+                        return EsploraClient.refreshBlockPage(EsploraRequestPriority.PREFETCH);
+                    }
+                },
+                0
+        );
+
+        tipRequest.addListener(new EsploraFuture.Listener<EsploraBlockPage>() {
+            @Override
+            public void onSuccess(final EsploraBlockPage page) {
+                synchronized (EsploraHeaderSync.this) {
+                    if (isCancelled || isFinished || requestGeneration != generation) {
+                        return;
+                    }
+
+                    tipHeight = page.getBlocks().get(0).getHeight();
+                    nextChunkHeight = store.getRecordCount();
+
+                    // segments left behind by a previous sync, e.g. one without segment store
+                    try {
+                        appendSegments();
+                    } catch (IOException e) {
+                        EsploraHeaderSync.this.onError(e);
+                        return;
+                    }
+
+                    scheduleChunks();
+                    checkFinished();
+                }
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                synchronized (EsploraHeaderSync.this) {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+
+                    EsploraHeaderSync.this.onError(error);
+                }
+            }
+        }, EsploraExecutors.background());
+    }
+
+    /**
+     * Starts downloading chunks until the limit of chunks in flight is reached. Downloads pause
+     * while too many chunks wait for a slower predecessor.
+     */
+    private void scheduleChunks() {
+        while (chunksInFlight.size() < maxChunksInFlight
+                && chunksCompleted.size() < maxChunksInFlight * 4
+                && nextChunkHeight <= tipHeight) {
+            final int startHeight = nextChunkHeight;
+            final int endHeight = Math.min(startHeight + CHUNK_SIZE - 1, tipHeight);
+
+            nextChunkHeight = endHeight + 1;
+            requestChunk(startHeight, endHeight);
+        }
+    }
+
+    /**
+     * Downloads the blocks of a chunk page by page and verifies them. Pages of a chunk are
+     * requested one after another, so the amount of queued requests stays within the limits of
+     * the scheduler.
+     *
+     * @param startHeight Height of the first block of the chunk.
+     * @param endHeight   Height of the last block of the chunk.
+     */
+    private void requestChunk(final int startHeight, final int endHeight) {
+        final int requestGeneration = generation;
+        final EsploraFuture<List<EsploraBlock>> chunk = requestPages(
+                new ArrayList<EsploraBlockPage>(),
+                startHeight + PAGE_SIZE - 1,
+                endHeight
+        ).map(
+                new EsploraFunction<List<EsploraBlockPage>, List<EsploraBlock>>() {
+                    @Override
+                    public List<EsploraBlock> apply(final List<EsploraBlockPage> pages)
+                            throws Exception {
+                        return assembleChunk(pages, startHeight, endHeight);
+                    }
+                },
+                EsploraExecutors.background()
+        );
+
+        chunksInFlight.add(chunk);
+
+        chunk.addListener(new EsploraFuture.Listener<List<EsploraBlock>>() {
+            @Override
+            public void onSuccess(final List<EsploraBlock> blocks) {
+                synchronized (EsploraHeaderSync.this) {
+                    if (isCancelled || isFinished || requestGeneration != generation) {
+                        return;
+                    }
+
+                    chunksInFlight.remove(chunk);
+                    chunksCompleted.put(startHeight, blocks);
+
+                    try {
+                        // the restart requested a new tip, which schedules the chunks again
+                        if (!writeChunks()) {
+                            return;
+                        }
+                    } catch (IOException e) {
+                        EsploraHeaderSync.this.onError(e);
+                        return;
+                    }
+
+                    scheduleChunks();
+                    checkFinished();
+                }
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                synchronized (EsploraHeaderSync.this) {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+
+                    chunksInFlight.remove(chunk);
+                    EsploraHeaderSync.this.onError(error);
+                }
+            }
+        }, EsploraExecutors.background());
+    }
+
+    /**
+     * Requests the remaining pages of a chunk one after another.
+     *
+     * @param pages     Pages requested so far.
+     * @param pageStart Start height of the next page, a page starting at height h contains the
+     *                  blocks h - 9 to h.
+     * @param endHeight Height of the last block of the chunk.
+     * @return A future of all pages of the chunk.
+     */
+    private static EsploraFuture<List<EsploraBlockPage>> requestPages(
+            final List<EsploraBlockPage> pages,
+            final int pageStart,
+            final int endHeight
+    ) {
+        if (pageStart - PAGE_SIZE >= endHeight) {
+            return EsploraFuture.completed(pages);
+        }
+
+        return sendWithRetries(new EsploraFunction<Integer, EsploraFuture<EsploraBlockPage>>() {
+            @Override
+            public EsploraFuture<EsploraBlockPage> apply(final Integer attempt) {
+                return EsploraClient.fetchBlockPageUncached(
+                        Math.min(pageStart, endHeight),
+                        EsploraRequestPriority.PREFETCH
+                );
+            }
+        }, 0).thenCompose(
+                new EsploraFunction<EsploraBlockPage, EsploraFuture<List<EsploraBlockPage>>>() {
+                    @Override
+                    public EsploraFuture<List<EsploraBlockPage>> apply(
+                            final EsploraBlockPage page
+                    ) {
+                        pages.add(page);
+
+                        return requestPages(pages, pageStart + PAGE_SIZE, endHeight);
+                    }
+                }
+        );
+    }
+
+    /**
+     * Sends a request and sends it again after a back off whenever it fails, e.g. because the
+     * scheduler dropped it in favour of visible requests, until it succeeds or is cancelled.
+     *
+     * @param request Function sending the request, called with the number of the attempt.
+     * @param attempt Number of the attempt, 0 for the first one.
+     * @param <T>     Type of the result.
+     * @return A future of the result of the first successful attempt.
+     */
+    private static <T> EsploraFuture<T> sendWithRetries(
+            final EsploraFunction<Integer, EsploraFuture<T>> request,
+            final int attempt
+    ) {
+        EsploraFuture<T> future;
+
+        try {
+            future = request.apply(attempt);
+        } catch (Exception e) {
+            future = EsploraFuture.failed(e);
+        }
+
+        return future.recover(new EsploraFunction<Throwable, EsploraFuture<T>>() {
+            @Override
+            public EsploraFuture<T> apply(final Throwable error) {
+                retryCounter.increment();
+
+                return retryLater(request, attempt + 1);
+            }
+        });
+    }
+
+    /**
+     * Sends a request again after the back off of the given attempt.
+     *
+     * @param request Function sending the request, called with the number of the attempt.
+     * @param attempt Number of the attempt, at least 1.
+     * @param <T>     Type of the result.
+     * @return A future of the result of the first successful attempt from this one on.
+     */
+    private static <T> EsploraFuture<T> retryLater(
+            final EsploraFunction<Integer, EsploraFuture<T>> request,
+            final int attempt
+    ) {
+        final EsploraFuture<T> retry = new EsploraFuture<>();
+        final long delayMillis = Math.min(
+                MAX_RETRY_DELAY_MILLIS,
+                RETRY_DELAY_MILLIS << Math.min(attempt - 1, 16)
+        );
+
+        EsploraExecutors.getEventLoop().postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (retry.isCancelled()) {
+                    return;
+                }
+
+                final EsploraFuture<T> next = sendWithRetries(request, attempt);
+
+                retry.addUpstream(next);
+                next.addListener(new EsploraFuture.Listener<T>() {
+                    @Override
+                    public void onSuccess(final T value) {
+                        retry.complete(value);
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                        retry.fail(error);
+                    }
+                });
+            }
+        }, delayMillis);
+
+        return retry;
+    }
+
+    /**
+     * Orders the blocks of the pages of a chunk by height and verifies them.
+     *
+     * @param pages       Pages covering the chunk, possibly overlapping.
+     * @param startHeight Height of the first block of the chunk.
+     * @param endHeight   Height of the last block of the chunk.
+     * @return The blocks of the chunk in ascending height order.
+     * @throws EsploraClientException Blocks are missing, not linked or don't match their hash.
+     */
+    private static List<EsploraBlock> assembleChunk(
+            final List<EsploraBlockPage> pages,
+            final int startHeight,
+            final int endHeight
+    ) throws EsploraClientException {
+        final EsploraBlock[] blocks = new EsploraBlock[endHeight - startHeight + 1];
+
+        for (final EsploraBlockPage page : pages) {
+            for (final EsploraBlock block : page.getBlocks()) {
+                if (block.getHeight() >= startHeight && block.getHeight() <= endHeight) {
+                    blocks[block.getHeight() - startHeight] = block;
+                }
+            }
+        }
+
+        final byte[] header = new byte[EsploraBlockHeader.SIZE];
+
+        for (int i = 0; i < blocks.length; i++) {
+            if (blocks[i] == null) {
+                throw new EsploraClientException("block " + (startHeight + i) + " is missing");
+            }
+
+            if (i > 0 && !blocks[i - 1].getHash().equals(blocks[i].getHashPrevious())) {
+                throw new EsploraClientException("block " + (startHeight + i) + " is not linked");
+            }
+
+            // the header rebuilt from the API data must hash to the block hash
+            EsploraHeaderStore.writeHeader(blocks[i], header, 0);
+            if (!new EsploraBlockHeader(header.clone()).getHash().equals(blocks[i].getHash())) {
+                throw new EsploraClientException("block " + (startHeight + i) + " is invalid");
+            }
+        }
+
+        final ArrayList<EsploraBlock> chunk = new ArrayList<>(blocks.length);
+        for (final EsploraBlock block : blocks) {
+            chunk.add(block);
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Writes all downloaded chunks directly following the stored tip.
+     *
+     * @return False if a reorg was detected and the sync restarted.
+     * @throws IOException Writing the store or the checkpoint failed.
+     */
+    private boolean writeChunks() throws IOException {
+        List<EsploraBlock> blocks;
+
+        while ((blocks = chunksCompleted.remove(store.getRecordCount())) != null) {
+            final EsploraBlock first = blocks.get(0);
+
+            // the chain changed below the chunk, start over a few blocks earlier
+            if (lastHash != null && !lastHash.equals(first.getHashPrevious())) {
+                restartAfterReorg();
+                return false;
+            }
+
+            for (final EsploraBlock block : blocks) {
+                store.append(block);
+            }
+
+            lastHash = blocks.get(blocks.size() - 1).getHash();
+            syncedCount += blocks.size();
+
+            store.flush();
+            writeCheckpoint();
+            appendSegments();
+            notifyProgress();
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the stored headers to the segment store, segment by segment, once all blocks of
+     * the next segment are stored and immutable. Segments missing after an update or a lost
+     * segment store are built from the header store as well.
+     *
+     * @throws IOException Writing the segment store failed.
+     */
+    private void appendSegments() throws IOException {
+        if (segmentStore == null) {
+            return;
+        }
+
+        final EsploraHeaderStore.Cursor cursor = store.cursor();
+
+        while (true) {
+            final int segmentIndex = segmentStore.getSegmentCount();
+            final int startHeight = segmentIndex * EsploraBlockSegment.SIZE;
+            final int endHeight = startHeight + EsploraBlockSegment.SIZE - 1;
+
+            if (endHeight >= store.getRecordCount()
+                    || !EsploraBlockSegmentStore.isImmutable(segmentIndex, tipHeight)) {
+                return;
+            }
+
+            final ArrayList<EsploraBlock> blocks = new ArrayList<>(EsploraBlockSegment.SIZE);
+
+            for (int height = startHeight; height <= endHeight; height++) {
+                cursor.moveTo(height);
+                blocks.add(cursor.getBlock());
+            }
+
+            segmentStore.append(blocks);
+        }
+    }
+
+    /**
+     * Drops the last blocks of the store, discards all requested and downloaded chunks and
+     * restarts the sync from the new stored tip.
+     *
+     * @throws IOException Truncating the store or writing the checkpoint failed.
+     */
+    private void restartAfterReorg() throws IOException {
+        generation++;
+
+        cancelRequests();
+        chunksCompleted.clear();
+        tipHeight = -1;
+
+        store.truncate(Math.max(0, store.getRecordCount() - REORG_DEPTH));
+        lastHash = readLastHash();
+        writeCheckpoint();
+
+        requestTip();
+    }
+
+    /**
+     * Finishes the sync once the store reached the tip.
+     */
+    private void checkFinished() {
+        if (isFinished || isCancelled || store.getRecordCount() <= tipHeight) {
+            return;
+        }
+
+        isFinished = true;
+
+        final int height = store.getRecordCount() - 1;
+        listenerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFinished(height);
+            }
+        });
+    }
+
+    /**
+     * Stops the sync after an error. Stored chunks are kept.
+     *
+     * @param error The error.
+     */
+    private void onError(final Throwable error) {
+        if (isCancelled || isFinished) {
+            return;
+        }
+
+        isFinished = true;
+        cancelRequests();
+
+        listenerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onError(error);
+            }
+        });
+    }
+
+    /**
+     * Cancels the tip request and all chunks in flight.
+     */
+    private void cancelRequests() {
+        if (tipRequest != null) {
+            tipRequest.cancel();
+        }
+
+        for (final EsploraFuture<List<EsploraBlock>> chunk :
+                new ArrayList<>(chunksInFlight)) {
+            chunk.cancel();
+        }
+
+        chunksInFlight.clear();
+    }
+
+    /**
+     * Informs the listener about the stored tip and the throughput.
+     */
+    private void notifyProgress() {
+        final int height = store.getRecordCount() - 1;
+        final int tip = tipHeight;
+        final double seconds = (System.nanoTime() - startedAt) / NANOS_PER_SECOND;
+        final double headersPerSecond = seconds > 0 ? syncedCount / seconds : 0;
+
+        listenerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled()) {
+                    return;
+                }
+
+                listener.onProgress(height, tip, headersPerSecond);
+            }
+        });
+    }
+
+    /**
+     * Truncates the store to the last checkpoint, dropping records written after it, and
+     * verifies the checkpoint hash. Without a valid checkpoint the store is cleared.
+     *
+     * @throws IOException Reading the checkpoint or truncating the store failed.
+     */
+    private void restoreCheckpoint() throws IOException {
+        int height = -1;
+        String hash = null;
+
+        if (checkpointFile.exists()) {
+            final DataInputStream input = new DataInputStream(new FileInputStream(checkpointFile));
+
+            try {
+                height = input.readInt();
+                hash = input.readUTF();
+            } catch (IOException e) {
+                height = -1;
+            } finally {
+                input.close();
+            }
+        }
+
+        store.truncate(height + 1);
+        lastHash = readLastHash();
+
+        if (lastHash != null && !lastHash.equals(hash)) {
+            store.truncate(0);
+            lastHash = null;
+        }
+    }
+
+    /**
+     * Writes the height and hash of the last stored header to the checkpoint file.
+     *
+     * @throws IOException Writing the checkpoint failed.
+     */
+    private void writeCheckpoint() throws IOException {
+        final File temporaryFile = new File(checkpointFile.getPath() + ".tmp");
+        final FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile);
+        final DataOutputStream output = new DataOutputStream(fileOutputStream);
+
+        try {
+            output.writeInt(store.getRecordCount() - 1);
+            output.writeUTF(lastHash != null ? lastHash : "");
+            output.flush();
+            fileOutputStream.getFD().sync();
+        } finally {
+            output.close();
+        }
+
+        if (!temporaryFile.renameTo(checkpointFile)) {
+            throw new IOException("unable to rename " + temporaryFile);
+        }
+    }
+
+    /**
+     * @return Hash of the last stored header, or null if the store is empty.
+     */
+    private String readLastHash() {
+        final EsploraHeaderStore.Cursor cursor = store.cursor();
+
+        if (!cursor.moveTo(store.getRecordCount() - 1)) {
+            return null;
+        }
+
+        final byte[] header = new byte[EsploraBlockHeader.SIZE];
+        cursor.copyHeader(header, 0);
+
+        return new EsploraBlockHeader(header).getHash();
+    }
+
+    /**
+     * Listener of an {@link EsploraHeaderSync}.
+     */
+    public interface Listener {
+        /**
+         * Called after a chunk was stored.
+         *
+         * @param height           Height of the last stored header.
+         * @param tipHeight        Height of the tip being synced to.
+         * @param headersPerSecond Headers stored per second since the sync started.
+         */
+        void onProgress(int height, int tipHeight, double headersPerSecond);
+
+        /**
+         * Called when the store reached the tip.
+         *
+         * @param height Height of the last stored header.
+         */
+        void onFinished(int height);
+
+        /**
+         * Called when the sync stopped due to an error. Stored headers are kept and the sync
+         * can be started again later.
+         *
+         * @param error The error.
+         */
+        void onError(Throwable error);
+    }
+}
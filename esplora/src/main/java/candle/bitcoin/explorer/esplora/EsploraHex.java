@@ -0,0 +1,124 @@
+package candle.bitcoin.explorer.esplora;
+
+/**
+ * A util class to convert between hex strings and bytes without allocating intermediate
+ * objects. Bitcoin displays hashes in reversed byte order, so there are variants converting
+ * between the displayed hex string and the internal byte order.
+ */
+public class EsploraHex {
+    private static final char[] digits = "0123456789abcdef".toCharArray();
+
+    /**
+     * @param character A hex character.
+     * @return Value of the hex character or -1 if it is not a hex character.
+     */
+    static int digit(final char character) {
+        if (character >= '0' && character <= '9') {
+            return character - '0';
+        }
+        if (character >= 'a' && character <= 'f') {
+            return character - 'a' + 10;
+        }
+        if (character >= 'A' && character <= 'F') {
+            return character - 'A' + 10;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Decodes a hex string into the given byte array.
+     *
+     * @param hex         Hex string with an even length.
+     * @param destination Byte array to write the decoded bytes to.
+     * @param offset      Offset in the byte array.
+     * @return False if the string contains non-hex characters.
+     */
+    public static boolean decode(final String hex, final byte[] destination, final int offset) {
+        final int length = hex.length() / 2;
+
+        for (int i = 0; i < length; i++) {
+            final int high = digit(hex.charAt(i * 2));
+            final int low = digit(hex.charAt(i * 2 + 1));
+
+            if (high < 0 || low < 0) {
+                return false;
+            }
+
+            destination[offset + i] = (byte) (high << 4 | low);
+        }
+
+        return true;
+    }
+
+    /**
+     * Decodes a displayed hash into the given byte array in internal (reversed) byte order.
+     *
+     * @param hex         Hex string of the hash as displayed.
+     * @param destination Byte array to write the decoded bytes to.
+     * @param offset      Offset in the byte array.
+     * @return False if the string contains non-hex characters.
+     */
+    public static boolean decodeReversed(
+            final String hex,
+            final byte[] destination,
+            final int offset
+    ) {
+        final int length = hex.length() / 2;
+
+        for (int i = 0; i < length; i++) {
+            final int high = digit(hex.charAt(i * 2));
+            final int low = digit(hex.charAt(i * 2 + 1));
+
+            if (high < 0 || low < 0) {
+                return false;
+            }
+
+            destination[offset + length - 1 - i] = (byte) (high << 4 | low);
+        }
+
+        return true;
+    }
+
+    /**
+     * Encodes bytes as a lower case hex string.
+     *
+     * @param source Byte array to read from.
+     * @param offset Offset in the byte array.
+     * @param length Amount of bytes to encode.
+     * @return The hex string.
+     */
+    public static String encode(final byte[] source, final int offset, final int length) {
+        final char[] hex = new char[length * 2];
+
+        for (int i = 0; i < length; i++) {
+            final int value = source[offset + i] & 0xff;
+
+            hex[i * 2] = digits[value >>> 4];
+            hex[i * 2 + 1] = digits[value & 0x0f];
+        }
+
+        return new String(hex);
+    }
+
+    /**
+     * Encodes bytes in internal byte order as a displayed (reversed) hex string.
+     *
+     * @param source Byte array to read from.
+     * @param offset Offset in the byte array.
+     * @param length Amount of bytes to encode.
+     * @return The hex string as displayed.
+     */
+    public static String encodeReversed(final byte[] source, final int offset, final int length) {
+        final char[] hex = new char[length * 2];
+
+        for (int i = 0; i < length; i++) {
+            final int value = source[offset + length - 1 - i] & 0xff;
+
+            hex[i * 2] = digits[value >>> 4];
+            hex[i * 2 + 1] = digits[value & 0x0f];
+        }
+
+        return new String(hex);
+    }
+}
@@ -0,0 +1,494 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * High-concurrency ingestion of block ranges on the JVM, e.g. to fill a database from an own
+ * Esplora instance. Pages of blocks are requested by many worker threads at once with blocking
+ * requests, bypassing the rate limit, cache and indexes of the {@link EsploraClient}, which are
+ * tuned for a UI talking to a public instance.
+ * <p>
+ * The amount of requests in flight is bounded, so a range of any size is ingested with
+ * constant memory. Any executor can be passed, e.g. one starting a virtual thread per task on
+ * Java 21; by default a fixed pool of platform threads is used. Requests failing with HTTP 429,
+ * a server error or a network error are retried with a back off.
+ */
+public class EsploraIngestion {
+    // amount of blocks of a page of the blocks endpoint
+    private static final int PAGE_SIZE = 10;
+
+    // attempts per page before the ingestion fails
+    private static final int MAX_ATTEMPTS = 4;
+
+    // back off of the first retry, doubled with every attempt
+    private static final long RETRY_DELAY_MILLIS = 250;
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_INTERNAL_ERROR = 500;
+
+    private final String baseUrl;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final boolean isExecutorOwned;
+
+    private final EsploraMetrics.Histogram pageTime =
+            EsploraMetrics.get().histogram("ingest.page_us");
+    private final EsploraMetrics.Counter blockCounter =
+            EsploraMetrics.get().counter("ingest.blocks");
+    private final EsploraMetrics.Counter retryCounter =
+            EsploraMetrics.get().counter("ingest.retries");
+
+    /**
+     * Receives the ingested blocks. Called concurrently from the worker threads, in no
+     * particular order, so implementations must be thread safe.
+     */
+    public interface Sink {
+        /**
+         * @param blocks The blocks of a page in descending height order.
+         * @throws Exception The blocks could not be stored, fails the ingestion.
+         */
+        void onBlocks(List<EsploraBlock> blocks) throws Exception;
+    }
+
+    /**
+     * Initializes an ingestion with its own fixed pool of threads.
+     *
+     * @param baseUrl     URL of the API ending with a slash.
+     * @param concurrency Amount of worker threads and requests in flight.
+     */
+    public EsploraIngestion(final String baseUrl, final int concurrency) {
+        this(baseUrl, Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "esplora-ingestion");
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        }), concurrency, true);
+    }
+
+    /**
+     * Initializes an ingestion running on the given executor, which is not shut down by
+     * {@link #shutdown()}.
+     *
+     * @param baseUrl     URL of the API ending with a slash.
+     * @param executor    Executor of the blocking page requests.
+     * @param maxInFlight Maximum amount of requests in flight.
+     */
+    public EsploraIngestion(
+            final String baseUrl,
+            final ExecutorService executor,
+            final int maxInFlight
+    ) {
+        this(baseUrl, executor, maxInFlight, false);
+    }
+
+    /**
+     * @param baseUrl         URL of the API ending with a slash.
+     * @param executor        Executor of the blocking page requests.
+     * @param maxInFlight     Maximum amount of requests in flight.
+     * @param isExecutorOwned True if the executor is shut down by {@link #shutdown()}.
+     */
+    private EsploraIngestion(
+            final String baseUrl,
+            final ExecutorService executor,
+            final int maxInFlight,
+            final boolean isExecutorOwned
+    ) {
+        if (!baseUrl.endsWith("/")) {
+            throw new IllegalArgumentException("base URL must end with a slash");
+        }
+
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("at least one request must be in flight");
+        }
+
+        this.baseUrl = baseUrl;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.isExecutorOwned = isExecutorOwned;
+    }
+
+    /**
+     * Ingests all blocks of a height range. Pages are handed to the sink as soon as they are
+     * received, concurrently and in no particular order. Blocks until every page was handed to
+     * the sink or the first page failed.
+     *
+     * @param fromHeight Lowest height to ingest.
+     * @param toHeight   Highest height to ingest.
+     * @param sink       Receiver of the blocks.
+     * @return Statistics of the ingestion.
+     * @throws EsploraClientException A page could not be requested or stored.
+     * @throws InterruptedException   The calling thread was interrupted while waiting.
+     */
+    public Result ingest(final int fromHeight, final int toHeight, final Sink sink)
+            throws EsploraClientException, InterruptedException {
+        return run(fromHeight, toHeight, sink, false);
+    }
+
+    /**
+     * Ingests all blocks of a height range in ascending height order, e.g. to write them to a
+     * file. Pages are still requested concurrently, but handed to the sink one after another
+     * in height order. A received page waits for the pages below it while holding its slot of
+     * the requests in flight, so at most that many pages are buffered. The executor must start
+     * tasks in the order they are submitted, as thread pools and virtual threads do.
+     *
+     * @param fromHeight Lowest height to ingest.
+     * @param toHeight   Highest height to ingest.
+     * @param sink       Receiver of the blocks, called from one thread at a time.
+     * @return Statistics of the ingestion.
+     * @throws EsploraClientException A page could not be requested or stored.
+     * @throws InterruptedException   The calling thread was interrupted while waiting.
+     */
+    public Result ingestOrdered(final int fromHeight, final int toHeight, final Sink sink)
+            throws EsploraClientException, InterruptedException {
+        return run(fromHeight, toHeight, sink, true);
+    }
+
+    /**
+     * Ingests all blocks of a height range, see {@link #ingest(int, int, Sink)} and
+     * {@link #ingestOrdered(int, int, Sink)}.
+     *
+     * @param fromHeight Lowest height to ingest.
+     * @param toHeight   Highest height to ingest.
+     * @param sink       Receiver of the blocks.
+     * @param isOrdered  True to hand the pages to the sink in ascending height order.
+     * @return Statistics of the ingestion.
+     * @throws EsploraClientException A page could not be requested or stored.
+     * @throws InterruptedException   The calling thread was interrupted while waiting.
+     */
+    private Result run(
+            final int fromHeight,
+            final int toHeight,
+            final Sink sink,
+            final boolean isOrdered
+    ) throws EsploraClientException, InterruptedException {
+        if (fromHeight < 0 || toHeight < fromHeight) {
+            throw new IllegalArgumentException("invalid height range");
+        }
+
+        final long startedAt = System.nanoTime();
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final AtomicLong blockCount = new AtomicLong();
+        final AtomicLong requestCount = new AtomicLong();
+        final AtomicLong retryCount = new AtomicLong();
+
+        // index of the page to be handed to the sink next, when ordered
+        final int[] nextPageIndex = {0};
+
+        final int pageCount = (toHeight - fromHeight) / PAGE_SIZE + 1;
+
+        for (int i = 0; i < pageCount; i++) {
+            inFlight.acquire();
+
+            if (failure.get() != null) {
+                inFlight.release();
+                break;
+            }
+
+            // ordered pages are requested from the bottom of the range, others from the top
+            final int pageIndex = i;
+            final int lowHeight = isOrdered
+                    ? fromHeight + i * PAGE_SIZE
+                    : Math.max(fromHeight, toHeight - i * PAGE_SIZE - PAGE_SIZE + 1);
+            final int highHeight = isOrdered
+                    ? Math.min(toHeight, lowHeight + PAGE_SIZE - 1)
+                    : toHeight - i * PAGE_SIZE;
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final List<EsploraBlock> blocks = fetchPage(
+                                lowHeight,
+                                highHeight,
+                                requestCount,
+                                retryCount
+                        );
+
+                        if (isOrdered) {
+                            Collections.reverse(blocks);
+
+                            synchronized (nextPageIndex) {
+                                while (nextPageIndex[0] != pageIndex && failure.get() == null) {
+                                    nextPageIndex.wait();
+                                }
+
+                                if (failure.get() != null) {
+                                    return;
+                                }
+
+                                sink.onBlocks(blocks);
+                                nextPageIndex[0]++;
+                                nextPageIndex.notifyAll();
+                            }
+                        } else {
+                            sink.onBlocks(blocks);
+                        }
+
+                        blockCount.addAndGet(blocks.size());
+                        blockCounter.add(blocks.size());
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+
+                        // pages waiting for their turn give up
+                        synchronized (nextPageIndex) {
+                            nextPageIndex.notifyAll();
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            });
+        }
+
+        // wait for the pages still in flight
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+
+        final Exception error = failure.get();
+        if (error instanceof EsploraClientException) {
+            throw (EsploraClientException) error;
+        }
+
+        if (error != null) {
+            throw new EsploraClientException(error);
+        }
+
+        return new Result(
+                blockCount.get(),
+                requestCount.get(),
+                retryCount.get(),
+                System.nanoTime() - startedAt
+        );
+    }
+
+    /**
+     * Requests the height of the most recent block, e.g. to ingest up to the tip.
+     *
+     * @param baseUrl URL of the API ending with a slash.
+     * @return Height of the most recent block.
+     * @throws EsploraClientException The request failed.
+     */
+    public static int fetchTipHeight(final String baseUrl) throws EsploraClientException {
+        final String url = baseUrl + "blocks/tip/height";
+
+        try {
+            final EsploraUrlConnectionTransport.Response response = EsploraUrlConnectionTransport
+                    .execute(url, Collections.<String, String>emptyMap());
+
+            if (response.statusCode != HTTP_OK) {
+                throw new EsploraClientException(
+                        "request of " + url + " failed with status " + response.statusCode
+                );
+            }
+
+            return Integer.parseInt(response.body.trim());
+        } catch (IOException | NumberFormatException e) {
+            throw new EsploraClientException(e);
+        }
+    }
+
+    /**
+     * Shuts down the worker threads if they were created by this ingestion.
+     */
+    public void shutdown() {
+        if (isExecutorOwned) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Requests a page of blocks, retrying failed requests with a back off.
+     *
+     * @param lowHeight    Lowest height to ingest, lower blocks of the page are skipped.
+     * @param highHeight   Height of the newest block of the page.
+     * @param requestCount Counter of the sent requests.
+     * @param retryCount   Counter of the retried requests.
+     * @return The blocks of the page within the range in descending height order.
+     * @throws Exception The page could not be requested or parsed, or misses blocks.
+     */
+    private List<EsploraBlock> fetchPage(
+            final int lowHeight,
+            final int highHeight,
+            final AtomicLong requestCount,
+            final AtomicLong retryCount
+    ) throws Exception {
+        final String url = baseUrl + "blocks/" + highHeight;
+        long retryDelayMillis = RETRY_DELAY_MILLIS;
+
+        for (int attempt = 1; ; attempt++) {
+            final long sentAt = System.nanoTime();
+            EsploraUrlConnectionTransport.Response response = null;
+            IOException networkError = null;
+
+            requestCount.incrementAndGet();
+
+            try {
+                response = EsploraUrlConnectionTransport.execute(
+                        url,
+                        Collections.<String, String>emptyMap()
+                );
+            } catch (IOException e) {
+                networkError = e;
+            }
+
+            if (response != null && response.statusCode == HTTP_OK) {
+                final List<EsploraBlock> blocks = parsePage(response.body, lowHeight, highHeight);
+                pageTime.recordSince(sentAt);
+
+                // heights above the tip are not served
+                if (blocks.size() != highHeight - lowHeight + 1) {
+                    throw new EsploraClientException("blocks missing in the page of " + url);
+                }
+
+                return blocks;
+            }
+
+            final boolean isRetryable = networkError != null
+                    || response.statusCode == HTTP_TOO_MANY_REQUESTS
+                    || response.statusCode >= HTTP_INTERNAL_ERROR;
+
+            if (!isRetryable || attempt >= MAX_ATTEMPTS) {
+                throw networkError != null
+                        ? new EsploraClientException(networkError)
+                        : new EsploraClientException(
+                                "request of " + url + " failed with status " + response.statusCode
+                        );
+            }
+
+            retryCount.incrementAndGet();
+            retryCounter.increment();
+
+            Thread.sleep(Math.max(retryDelayMillis, getRetryAfterMillis(response)));
+            retryDelayMillis *= 2;
+        }
+    }
+
+    /**
+     * @param response A failed response or null if none was received.
+     * @return The delay in milliseconds requested by a Retry-After header, or 0.
+     */
+    private static long getRetryAfterMillis(final EsploraUrlConnectionTransport.Response response) {
+        final String retryAfter = response != null ? response.headers.get("retry-after") : null;
+
+        if (retryAfter == null) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            // HTTP date values are not supported, use the back off
+            return 0;
+        }
+    }
+
+    /**
+     * @param response   JSON formatted list of blocks.
+     * @param lowHeight  Lowest height to ingest, lower blocks are skipped.
+     * @param highHeight Highest height to ingest, higher blocks are skipped.
+     * @return The parsed blocks.
+     * @throws EsploraClientException Invalid JSON data supplied.
+     */
+    private static List<EsploraBlock> parsePage(
+            final String response,
+            final int lowHeight,
+            final int highHeight
+    ) throws EsploraClientException {
+        try {
+            final JSONArray JSONBlocks = new JSONArray(response);
+            final ArrayList<EsploraBlock> blocks = new ArrayList<>(JSONBlocks.length());
+
+            for (int i = 0; i < JSONBlocks.length(); i++) {
+                final EsploraBlock block = new EsploraBlock(JSONBlocks.getJSONObject(i));
+
+                if (block.getHeight() >= lowHeight && block.getHeight() <= highHeight) {
+                    blocks.add(block);
+                }
+            }
+
+            return blocks;
+        } catch (JSONException e) {
+            throw new EsploraClientException(e);
+        }
+    }
+
+    /**
+     * Statistics of a finished ingestion.
+     */
+    public static class Result {
+        private final long blockCount;
+        private final long requestCount;
+        private final long retryCount;
+        private final long elapsedNanos;
+
+        /**
+         * @param blockCount   Amount of ingested blocks.
+         * @param requestCount Amount of sent requests, including retries.
+         * @param retryCount   Amount of retried requests.
+         * @param elapsedNanos Duration of the ingestion in nanoseconds.
+         */
+        Result(
+                final long blockCount,
+                final long requestCount,
+                final long retryCount,
+                final long elapsedNanos
+        ) {
+            this.blockCount = blockCount;
+            this.requestCount = requestCount;
+            this.retryCount = retryCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return Amount of ingested blocks.
+         */
+        public long getBlockCount() {
+            return blockCount;
+        }
+
+        /**
+         * @return Amount of sent requests, including retries.
+         */
+        public long getRequestCount() {
+            return requestCount;
+        }
+
+        /**
+         * @return Amount of retried requests.
+         */
+        public long getRetryCount() {
+            return retryCount;
+        }
+
+        /**
+         * @return Duration of the ingestion in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return elapsedNanos / 1000000;
+        }
+
+        /**
+         * @return Throughput of the ingestion in blocks per second.
+         */
+        public double getBlocksPerSecond() {
+            return elapsedNanos > 0 ? blockCount * 1e9 / elapsedNanos : 0;
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Registry of lightweight metrics: counters, gauges, fixed-bucket histograms and per-minute
+ * rates. Metrics are looked up by name once, usually into a static field, and recorded without
+ * locks or allocations afterwards, so they can be used on hot paths like list binding.
+ * <p>
+ * {@link #toJson()} dumps all metrics in a machine-readable form, {@link #toText()} in a form
+ * readable on a debug screen. All methods are thread safe.
+ */
+public class EsploraMetrics {
+    private static final EsploraMetrics instance = new EsploraMetrics();
+
+    /**
+     * Upper bounds of the histogram buckets, roughly doubling. Latencies are recorded in
+     * microseconds, so they range from 50 microseconds to 30 seconds, the last bucket catches everything above.
+     */
+    private static final long[] LATENCY_BUCKET_BOUNDS = {
+            50, 100, 250, 500,
+            1000, 2500, 5000, 10000, 25000, 50000,
+            100000, 250000, 500000, 1000000, 2500000, 5000000, 10000000, 30000000,
+            Long.MAX_VALUE
+    };
+
+    // quantiles reported for histograms
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Rate> rates = new ConcurrentHashMap<>();
+
+    /**
+     * @return The process-wide registry.
+     */
+    public static EsploraMetrics get() {
+        return instance;
+    }
+
+    /**
+     * @param name Name of the counter.
+     * @return The counter with the given name, created if needed.
+     */
+    public Counter counter(final String name) {
+        final Counter counter = counters.get(name);
+        if (counter != null) {
+            return counter;
+        }
+
+        counters.putIfAbsent(name, new Counter());
+
+        return counters.get(name);
+    }
+
+    /**
+     * @param name Name of the gauge.
+     * @return The gauge with the given name, created if needed.
+     */
+    public Gauge gauge(final String name) {
+        final Gauge gauge = gauges.get(name);
+        if (gauge != null) {
+            return gauge;
+        }
+
+        gauges.putIfAbsent(name, new Gauge());
+
+        return gauges.get(name);
+    }
+
+    /**
+     * Registers a gauge computing its value when the metrics are dumped, replacing a gauge of
+     * the same name. Used for values already tracked elsewhere, like queue depths.
+     *
+     * @param name  Name of the gauge.
+     * @param gauge The gauge, overriding {@link Gauge#getValue()}.
+     */
+    public void register(final String name, final Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * @param name Name of the histogram.
+     * @return The latency histogram with the given name, created if needed.
+     */
+    public Histogram histogram(final String name) {
+        return histogram(name, LATENCY_BUCKET_BOUNDS);
+    }
+
+    /**
+     * @param name         Name of the histogram.
+     * @param bucketBounds Ascending upper bounds of the buckets, the last one is usually
+     *                     {@link Long#MAX_VALUE}. Only used if the histogram is created.
+     * @return The histogram with the given name, created if needed.
+     */
+    public Histogram histogram(final String name, final long[] bucketBounds) {
+        final Histogram histogram = histograms.get(name);
+        if (histogram != null) {
+            return histogram;
+        }
+
+        histograms.putIfAbsent(name, new Histogram(bucketBounds));
+
+        return histograms.get(name);
+    }
+
+    /**
+     * @param name Name of the rate.
+     * @return The rate with the given name, created if needed.
+     */
+    public Rate rate(final String name) {
+        final Rate rate = rates.get(name);
+        if (rate != null) {
+            return rate;
+        }
+
+        rates.putIfAbsent(name, new Rate());
+
+        return rates.get(name);
+    }
+
+    /**
+     * Dumps all metrics for field diagnostics. Histograms contain their count, sum, maximum,
+     * quantiles and the non-empty buckets by upper bound.
+     *
+     * @return The metrics as JSON object.
+     */
+    public JSONObject toJson() {
+        final JSONObject json = new JSONObject();
+
+        try {
+            json.put("time", System.currentTimeMillis());
+
+            final JSONObject countersJson = new JSONObject();
+            for (final Map.Entry<String, Counter> entry : sorted(counters).entrySet()) {
+                countersJson.put(entry.getKey(), entry.getValue().getValue());
+            }
+            json.put("counters", countersJson);
+
+            final JSONObject gaugesJson = new JSONObject();
+            for (final Map.Entry<String, Gauge> entry : sorted(gauges).entrySet()) {
+                gaugesJson.put(entry.getKey(), entry.getValue().getValue());
+            }
+            json.put("gauges", gaugesJson);
+
+            final JSONObject ratesJson = new JSONObject();
+            for (final Map.Entry<String, Rate> entry : sorted(rates).entrySet()) {
+                ratesJson.put(entry.getKey(), entry.getValue().getPerMinute());
+            }
+            json.put("rates_per_minute", ratesJson);
+
+            final JSONObject histogramsJson = new JSONObject();
+            for (final Map.Entry<String, Histogram> entry : sorted(histograms).entrySet()) {
+                histogramsJson.put(entry.getKey(), entry.getValue().toJson());
+            }
+            json.put("histograms", histogramsJson);
+        } catch (JSONException e) {
+            // only thrown for non-finite numbers, which are never put
+            throw new IllegalStateException(e);
+        }
+
+        return json;
+    }
+
+    /**
+     * @return All metrics as text, one metric per line.
+     */
+    public String toText() {
+        final StringBuilder text = new StringBuilder();
+
+        for (final Map.Entry<String, Counter> entry : sorted(counters).entrySet()) {
+            text.append(entry.getKey()).append(": ").append(entry.getValue().getValue());
+            text.append('\n');
+        }
+
+        for (final Map.Entry<String, Gauge> entry : sorted(gauges).entrySet()) {
+            text.append(entry.getKey()).append(": ").append(entry.getValue().getValue());
+            text.append('\n');
+        }
+
+        for (final Map.Entry<String, Rate> entry : sorted(rates).entrySet()) {
+            text.append(entry.getKey()).append(": ").append(entry.getValue().getPerMinute());
+            text.append("/min\n");
+        }
+
+        for (final Map.Entry<String, Histogram> entry : sorted(histograms).entrySet()) {
+            final Histogram histogram = entry.getValue();
+
+            text.append(entry.getKey()).append(": ").append(String.format(
+                    Locale.US,
+                    "n=%d avg=%.1f p50=%d p90=%d p99=%d max=%d",
+                    histogram.getCount(),
+                    histogram.getAverage(),
+                    histogram.getQuantile(0.5),
+                    histogram.getQuantile(0.9),
+                    histogram.getQuantile(0.99),
+                    histogram.getMax()
+            ));
+            text.append('\n');
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * @param metrics Metrics by name.
+     * @param <T>     Type of the metrics.
+     * @return The metrics sorted by name.
+     */
+    private static <T> TreeMap<String, T> sorted(final Map<String, T> metrics) {
+        return new TreeMap<>(metrics);
+    }
+
+    /**
+     * A monotonically increasing count.
+     */
+    public static class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        /**
+         * Increments the counter by one.
+         */
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        /**
+         * @param delta Amount to add.
+         */
+        public void add(final long delta) {
+            value.addAndGet(delta);
+        }
+
+        /**
+         * @return The current count.
+         */
+        public long getValue() {
+            return value.get();
+        }
+    }
+
+    /**
+     * A value that may go up and down. Subclasses may compute the value instead.
+     */
+    public static class Gauge {
+        private final AtomicLong value = new AtomicLong();
+
+        /**
+         * @param value The new value.
+         */
+        public void set(final long value) {
+            this.value.set(value);
+        }
+
+        /**
+         * @return The current value.
+         */
+        public long getValue() {
+            return value.get();
+        }
+    }
+
+    /**
+     * Distribution of recorded values in fixed buckets, by default the
+     * {@link #LATENCY_BUCKET_BOUNDS}. Quantiles are estimated by the upper bound of the bucket
+     * containing them.
+     */
+    public static class Histogram {
+        private final long[] bucketBounds;
+        private final AtomicLongArray buckets;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * @param bucketBounds Ascending upper bounds of the buckets.
+         */
+        Histogram(final long[] bucketBounds) {
+            this.bucketBounds = bucketBounds;
+            this.buckets = new AtomicLongArray(bucketBounds.length);
+        }
+
+        /**
+         * @param value The value to record, usually a duration in microseconds.
+         */
+        public void record(final long value) {
+            int bucket = 0;
+            while (bucket < bucketBounds.length - 1 && value > bucketBounds[bucket]) {
+                bucket++;
+            }
+
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            sum.addAndGet(value);
+
+            long currentMax = max.get();
+            while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+                currentMax = max.get();
+            }
+        }
+
+        /**
+         * Records the time passed since the given time in microseconds.
+         *
+         * @param startNanos Start time from {@link System#nanoTime()}.
+         */
+        public void recordSince(final long startNanos) {
+            record((System.nanoTime() - startNanos) / 1000);
+        }
+
+        /**
+         * @return Amount of recorded values.
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return Largest recorded value.
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @return Average of the recorded values, 0 if none was recorded.
+         */
+        public double getAverage() {
+            final long currentCount = count.get();
+
+            return currentCount == 0 ? 0 : (double) sum.get() / currentCount;
+        }
+
+        /**
+         * @param quantile A quantile between 0 and 1.
+         * @return Upper bound of the bucket containing the quantile, capped at the maximum.
+         */
+        public long getQuantile(final double quantile) {
+            final long currentCount = count.get();
+            if (currentCount == 0) {
+                return 0;
+            }
+
+            final long rank = (long) Math.ceil(quantile * currentCount);
+            long seen = 0;
+
+            for (int i = 0; i < bucketBounds.length; i++) {
+                seen += buckets.get(i);
+
+                if (seen >= rank) {
+                    return Math.min(bucketBounds[i], max.get());
+                }
+            }
+
+            return max.get();
+        }
+
+        /**
+         * @return The histogram as JSON object.
+         * @throws JSONException Never, the values are finite.
+         */
+        JSONObject toJson() throws JSONException {
+            final JSONObject json = new JSONObject();
+            json.put("count", getCount());
+            json.put("sum", sum.get());
+            json.put("max", getMax());
+
+            for (final double quantile : QUANTILES) {
+                json.put("p" + Math.round(quantile * 100), getQuantile(quantile));
+            }
+
+            final JSONArray bucketsJson = new JSONArray();
+            for (int i = 0; i < bucketBounds.length; i++) {
+                final long bucketCount = buckets.get(i);
+                if (bucketCount == 0) {
+                    continue;
+                }
+
+                final JSONArray bucket = new JSONArray();
+                bucket.put(bucketBounds[i] == Long.MAX_VALUE ? -1 : bucketBounds[i]);
+                bucket.put(bucketCount);
+                bucketsJson.put(bucket);
+            }
+            json.put("buckets", bucketsJson);
+
+            return json;
+        }
+    }
+
+    /**
+     * Amount of events within the last minute, counted in one-second slots.
+     */
+    public static class Rate {
+        private static final int SLOT_COUNT = 60;
+
+        // second each slot counts for, and the count of the slot
+        private final AtomicLongArray slotSeconds = new AtomicLongArray(SLOT_COUNT);
+        private final AtomicLongArray slotCounts = new AtomicLongArray(SLOT_COUNT);
+
+        /**
+         * Records an event.
+         */
+        public void mark() {
+            final long second = System.nanoTime() / 1000000000L;
+            final int slot = (int) (second % SLOT_COUNT);
+
+            // claim an outdated slot for the current second, losing a few events on a race
+            final long slotSecond = slotSeconds.get(slot);
+            if (slotSecond != second && slotSeconds.compareAndSet(slot, slotSecond, second)) {
+                slotCounts.set(slot, 0);
+            }
+
+            slotCounts.incrementAndGet(slot);
+        }
+
+        /**
+         * @return Amount of events within the last 60 seconds.
+         */
+        public long getPerMinute() {
+            final long second = System.nanoTime() / 1000000000L;
+            long total = 0;
+
+            for (int slot = 0; slot < SLOT_COUNT; slot++) {
+                if (second - slotSeconds.get(slot) < SLOT_COUNT) {
+                    total += slotCounts.get(slot);
+                }
+            }
+
+            return total;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package candle.bitcoin.explorer.esplora;
+
+/**
+ * A single HTTP request of the EsploraClient, resulting in the body of the response. Keeps
+ * track of the request while it is queued in the {@link EsploraRequestScheduler} or running,
+ * so it can be cancelled at any time.
+ * <p>
+ * All methods except cancel must be called from the main thread.
+ */
+class EsploraRequest extends EsploraFuture<String> {
+    private final EsploraRequestScheduler scheduler;
+
+    // HTTP request currently waiting in the scheduler queue
+    private EsploraRequestScheduler.PendingRequest pendingRequest;
+
+    // HTTP request currently running
+    private EsploraTransport.Call call;
+
+    /**
+     * @param scheduler The scheduler the HTTP request is queued in.
+     */
+    EsploraRequest(final EsploraRequestScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param pendingRequest The queued HTTP request.
+     */
+    synchronized void setPendingRequest(
+            final EsploraRequestScheduler.PendingRequest pendingRequest
+    ) {
+        // already sent while being submitted
+        if (call != null) {
+            return;
+        }
+
+        this.pendingRequest = pendingRequest;
+    }
+
+    /**
+     * @param call The sent HTTP request.
+     */
+    void setCall(final EsploraTransport.Call call) {
+        synchronized (this) {
+            this.pendingRequest = null;
+            this.call = call;
+        }
+
+        // cancelled while the HTTP request was being sent
+        if (isCancelled()) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * Removes the HTTP request from the scheduler queue or aborts it when it is running.
+     */
+    @Override
+    void onCancelled() {
+        final EsploraRequestScheduler.PendingRequest pendingRequest;
+        final EsploraTransport.Call call;
+
+        synchronized (this) {
+            pendingRequest = this.pendingRequest;
+            call = this.call;
+
+            this.pendingRequest = null;
+            this.call = null;
+        }
+
+        if (pendingRequest != null) {
+            scheduler.cancel(pendingRequest);
+        }
+
+        if (call != null) {
+            call.cancel();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package candle.bitcoin.explorer.esplora;
+
+/**
+ * Handle of a request sent by the EsploraClient. Allows to cancel the request, e.g. when the
+ * screen waiting for its result is gone.
+ */
+public interface EsploraRequestHandle {
+    /**
+     * Cancels the request. A queued request is removed from the queue, a running HTTP request
+     * is aborted. The callback of a cancelled request is never invoked and the reference to it
+     * is released. A finished request can be cancelled as well, which skips its callback if it
+     * was not invoked yet.
+     */
+    void cancel();
+
+    /**
+     * @return A boolean value indicating if the request was cancelled, before or after it
+     * finished.
+     */
+    boolean isCancelled();
+
+    /**
+     * @return A boolean value indicating if the request finished, either successfully or with
+     * an error.
+     */
+    boolean isFinished();
+}
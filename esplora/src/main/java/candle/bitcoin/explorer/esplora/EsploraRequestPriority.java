@@ -0,0 +1,24 @@
+package candle.bitcoin.explorer.esplora;
+
+/**
+ * Priority classes of requests sent by the EsploraClient. The {@link EsploraRequestScheduler}
+ * always dispatches queued requests of a higher priority class first.
+ */
+public enum EsploraRequestPriority {
+    /**
+     * Interactive requests the user is actively waiting for (i.e. a block search).
+     */
+    SEARCH,
+
+    /**
+     * Requests loading data that is, or is about to be, visible on the screen (i.e. a page of
+     * the block list).
+     */
+    VISIBLE,
+
+    /**
+     * Speculative requests loading data the user might need later. These requests are the
+     * first to be dropped when the rate limit is reached.
+     */
+    PREFETCH
+}
@@ -0,0 +1,440 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The EsploraRequestScheduler limits the rate of requests sent to the Esplora HTTP API with a
+ * token bucket and dispatches queued requests by their {@link EsploraRequestPriority}. Public
+ * Esplora instances answer bursts of requests with HTTP 429, so every request of the
+ * EsploraClient passes this scheduler.
+ * <p>
+ * Under pressure, queued {@link EsploraRequestPriority#PREFETCH} requests are dropped in favour
+ * of higher priority requests, while {@link EsploraRequestPriority#VISIBLE} and
+ * {@link EsploraRequestPriority#SEARCH} requests are deferred until a token is available and
+ * never dropped. A queue of these classes deeper than its limit is saturated instead, see
+ * {@link #isSaturated(EsploraRequestPriority)}, telling producers to hold back further requests.
+ * <p>
+ * All methods must be called from the main thread, see {@link EsploraExecutors#getEventLoop()}.
+ */
+public class EsploraRequestScheduler {
+    // default amount of requests per second
+    private static final double DEFAULT_PERMITS_PER_SECOND = 5;
+
+    // default amount of requests that may be sent in a single burst
+    private static final int DEFAULT_BURST = 10;
+
+    // back off duration when the API responds with HTTP 429 without a Retry-After header
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 2000;
+
+    // maximum amount of queued requests per priority (see EsploraRequestPriority order), a hard
+    // limit for prefetch requests and the saturation limit of the other classes
+    private static final int[] MAX_QUEUE_DEPTH = {16, 32, 8};
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final double permitsPerSecond;
+    private final int burst;
+
+    // currently available tokens and the time they were last refilled
+    private double tokens;
+    private long tokensRefilledAt;
+
+    // no request is dispatched before this time (set when being rate limited)
+    private long pausedUntil;
+
+    // one FIFO queue per EsploraRequestPriority, by ordinal
+    private final List<ArrayDeque<PendingRequest>> queues;
+
+    // dispatching queued requests as soon as new tokens are available is posted to the event loop
+    private boolean isDrainScheduled = false;
+
+    // metrics per EsploraRequestPriority
+    private final long[] dispatchedCount;
+    private final long[] droppedCount;
+    private final long[] saturatedCount;
+    private final long[] waitTimeTotal;
+    private final long[] waitTimeMax;
+    private final EsploraMetrics.Histogram[] waitTimeHistograms;
+
+    // drains the queues, posted to the event loop
+    private final Runnable drainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isDrainScheduled = false;
+            drain();
+        }
+    };
+
+    /**
+     * Initializes the scheduler with the default rate limit.
+     */
+    EsploraRequestScheduler() {
+        this(DEFAULT_PERMITS_PER_SECOND, DEFAULT_BURST);
+    }
+
+    /**
+     * Initializes the scheduler with a custom rate limit.
+     *
+     * @param permitsPerSecond Amount of requests that may be sent per second.
+     * @param burst            Amount of requests that may be sent in a single burst.
+     */
+    EsploraRequestScheduler(final double permitsPerSecond, final int burst) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+
+        tokens = burst;
+        tokensRefilledAt = System.nanoTime();
+
+        final int priorityCount = EsploraRequestPriority.values().length;
+
+        queues = new ArrayList<>(priorityCount);
+        for (int i = 0; i < priorityCount; i++) {
+            queues.add(new ArrayDeque<PendingRequest>());
+        }
+
+        dispatchedCount = new long[priorityCount];
+        droppedCount = new long[priorityCount];
+        saturatedCount = new long[priorityCount];
+        waitTimeTotal = new long[priorityCount];
+        waitTimeMax = new long[priorityCount];
+        waitTimeHistograms = new EsploraMetrics.Histogram[priorityCount];
+
+        registerMetrics();
+    }
+
+    /**
+     * Registers the queue wait time histograms and computed queue depth and drop gauges of
+     * every priority class in the {@link EsploraMetrics}.
+     */
+    private void registerMetrics() {
+        final EsploraMetrics metrics = EsploraMetrics.get();
+
+        for (final EsploraRequestPriority priority : EsploraRequestPriority.values()) {
+            final String name = priority.name().toLowerCase(Locale.US);
+
+            waitTimeHistograms[priority.ordinal()] =
+                    metrics.histogram("scheduler.wait_us." + name);
+
+            metrics.register("scheduler.queue_depth." + name, new EsploraMetrics.Gauge() {
+                @Override
+                public long getValue() {
+                    return queues.get(priority.ordinal()).size();
+                }
+            });
+
+            metrics.register("scheduler.dropped." + name, new EsploraMetrics.Gauge() {
+                @Override
+                public long getValue() {
+                    return droppedCount[priority.ordinal()];
+                }
+            });
+
+            metrics.register("scheduler.saturated." + name, new EsploraMetrics.Gauge() {
+                @Override
+                public long getValue() {
+                    return saturatedCount[priority.ordinal()];
+                }
+            });
+        }
+    }
+
+    /**
+     * Submits a request. The request is dispatched immediately if a token is available and no
+     * request of the same or a higher priority is waiting, otherwise it gets queued. A full
+     * {@link EsploraRequestPriority#PREFETCH} queue drops its oldest request, requests of the
+     * other classes are always queued.
+     *
+     * @param priority  Priority class of the request.
+     * @param request   Runnable sending the request.
+     * @param onDropped Runnable invoked when the request got dropped without being sent.
+     * @return The queued request, which can be passed to {@link #cancel(PendingRequest)}.
+     */
+    PendingRequest submit(
+            final EsploraRequestPriority priority,
+            final Runnable request,
+            final Runnable onDropped
+    ) {
+        final int index = priority.ordinal();
+        final ArrayDeque<PendingRequest> queue = queues.get(index);
+
+        if (queue.size() >= MAX_QUEUE_DEPTH[index]) {
+            if (priority == EsploraRequestPriority.PREFETCH) {
+                // make room in a full queue by dropping its oldest speculative request
+                drop(index, queue.pollFirst());
+            } else {
+                // visible work is deferred, but nothing speculative may compete with it
+                saturatedCount[index]++;
+                dropAll(EsploraRequestPriority.PREFETCH.ordinal());
+            }
+        }
+
+        final PendingRequest pendingRequest = new PendingRequest(
+                index,
+                request,
+                onDropped,
+                System.nanoTime()
+        );
+
+        queue.addLast(pendingRequest);
+
+        // lower priority work gives way when higher priority requests start to pile up
+        if (priority != EsploraRequestPriority.PREFETCH && !hasToken()) {
+            dropAll(EsploraRequestPriority.PREFETCH.ordinal());
+        }
+
+        drain();
+
+        return pendingRequest;
+    }
+
+    /**
+     * Removes a request from the queue without notifying its owner. Does nothing if the
+     * request was already sent or dropped.
+     *
+     * @param pendingRequest The queued request to be removed.
+     */
+    void cancel(final PendingRequest pendingRequest) {
+        queues.get(pendingRequest.priorityIndex).remove(pendingRequest);
+    }
+
+    /**
+     * Called when the Esplora API responded with HTTP 429 (too many requests). Pauses the
+     * dispatching of requests and empties the token bucket.
+     *
+     * @param retryAfterMillis Duration in milliseconds suggested by the API to wait before
+     *                         sending the next request, or a negative value if unknown.
+     */
+    void onRateLimited(final long retryAfterMillis) {
+        final long backOff = retryAfterMillis >= 0 ? retryAfterMillis : DEFAULT_RETRY_AFTER_MILLIS;
+
+        tokens = 0;
+        tokensRefilledAt = System.nanoTime();
+        pausedUntil = tokensRefilledAt + backOff * NANOS_PER_MILLI;
+
+        // speculative requests would only prolong the back off
+        dropAll(EsploraRequestPriority.PREFETCH.ordinal());
+        scheduleDrain(backOff);
+    }
+
+    /**
+     * Dispatches queued requests by priority as long as tokens are available. Schedules
+     * another drain for the time the next token becomes available.
+     */
+    private void drain() {
+        while (true) {
+            final int index = getHighestPriorityIndex();
+            if (index < 0) {
+                return;
+            }
+
+            if (!hasToken()) {
+                scheduleDrain(getMillisUntilNextToken());
+                return;
+            }
+
+            tokens -= 1;
+
+            final PendingRequest pendingRequest = queues.get(index).pollFirst();
+            final long waitTime = System.nanoTime() - pendingRequest.submittedAt;
+
+            dispatchedCount[index]++;
+            waitTimeTotal[index] += waitTime;
+            waitTimeMax[index] = Math.max(waitTimeMax[index], waitTime);
+            waitTimeHistograms[index].record(waitTime / 1000);
+
+            pendingRequest.request.run();
+        }
+    }
+
+    /**
+     * Drops a queued request and notifies its owner.
+     *
+     * @param index          Index of the priority class the request was queued in.
+     * @param pendingRequest The request to drop.
+     */
+    private void drop(final int index, final PendingRequest pendingRequest) {
+        if (pendingRequest == null) {
+            return;
+        }
+
+        droppedCount[index]++;
+        pendingRequest.onDropped.run();
+    }
+
+    /**
+     * Drops all queued requests of a priority class.
+     *
+     * @param index Index of the priority class.
+     */
+    private void dropAll(final int index) {
+        final ArrayDeque<PendingRequest> queue = queues.get(index);
+
+        while (!queue.isEmpty()) {
+            drop(index, queue.pollFirst());
+        }
+    }
+
+    /**
+     * @return Index of the highest priority class having queued requests, or -1 when all
+     * queues are empty.
+     */
+    private int getHighestPriorityIndex() {
+        for (int i = 0; i < queues.size(); i++) {
+            if (!queues.get(i).isEmpty()) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Refills the token bucket and checks if a request may be sent right now.
+     *
+     * @return A boolean value representing the availability of a token.
+     */
+    private boolean hasToken() {
+        final long now = System.nanoTime();
+
+        if (now < pausedUntil) {
+            return false;
+        }
+
+        // refill tokens by the time passed since the last refill
+        final double elapsedSeconds = (double) (now - tokensRefilledAt) / NANOS_PER_SECOND;
+        tokens = Math.min(burst, tokens + elapsedSeconds * permitsPerSecond);
+        tokensRefilledAt = now;
+
+        return tokens >= 1;
+    }
+
+    /**
+     * @return Duration in milliseconds until the next token is available.
+     */
+    private long getMillisUntilNextToken() {
+        final long now = System.nanoTime();
+
+        if (now < pausedUntil) {
+            return (pausedUntil - now) / NANOS_PER_MILLI + 1;
+        }
+
+        return (long) Math.ceil((1 - tokens) / permitsPerSecond * 1000);
+    }
+
+    /**
+     * Schedules a drain of the queues, unless one is already scheduled.
+     *
+     * @param delayMillis Delay of the drain in milliseconds.
+     */
+    private void scheduleDrain(final long delayMillis) {
+        if (isDrainScheduled) {
+            return;
+        }
+
+        isDrainScheduled = true;
+        EsploraExecutors.getEventLoop().postDelayed(drainRunnable, Math.max(1, delayMillis));
+    }
+
+    /**
+     * @param priority A priority class.
+     * @return Amount of requests currently queued in the given priority class.
+     */
+    public int getQueueDepth(final EsploraRequestPriority priority) {
+        return queues.get(priority.ordinal()).size();
+    }
+
+    /**
+     * Tells producers of many requests to hold back. Requests of a saturated class are still
+     * queued and sent, but only at the rate limit, so further requests only add latency to the
+     * ones already waiting.
+     *
+     * @param priority A priority class.
+     * @return True if at least as many requests of the class are queued as its queue limit.
+     */
+    public boolean isSaturated(final EsploraRequestPriority priority) {
+        final int index = priority.ordinal();
+
+        return queues.get(index).size() >= MAX_QUEUE_DEPTH[index];
+    }
+
+    /**
+     * @param priority A priority class.
+     * @return Amount of requests of the given priority class queued while the class was
+     * saturated, always 0 for {@link EsploraRequestPriority#PREFETCH}.
+     */
+    public long getSaturatedCount(final EsploraRequestPriority priority) {
+        return saturatedCount[priority.ordinal()];
+    }
+
+    /**
+     * @param priority A priority class.
+     * @return Amount of requests of the given priority class sent so far.
+     */
+    public long getDispatchedCount(final EsploraRequestPriority priority) {
+        return dispatchedCount[priority.ordinal()];
+    }
+
+    /**
+     * @param priority A priority class.
+     * @return Amount of requests of the given priority class dropped so far.
+     */
+    public long getDroppedCount(final EsploraRequestPriority priority) {
+        return droppedCount[priority.ordinal()];
+    }
+
+    /**
+     * @param priority A priority class.
+     * @return Average time in milliseconds the sent requests of the given priority class
+     * waited in the queue.
+     */
+    public double getWaitTimeAverageMillis(final EsploraRequestPriority priority) {
+        final int index = priority.ordinal();
+
+        if (dispatchedCount[index] == 0) {
+            return 0;
+        }
+
+        return (double) waitTimeTotal[index] / dispatchedCount[index] / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @param priority A priority class.
+     * @return Longest time in milliseconds a sent request of the given priority class waited
+     * in the queue.
+     */
+    public double getWaitTimeMaxMillis(final EsploraRequestPriority priority) {
+        return (double) waitTimeMax[priority.ordinal()] / NANOS_PER_MILLI;
+    }
+
+    /**
+     * A request waiting in the queue of the scheduler.
+     */
+    static class PendingRequest {
+        final int priorityIndex;
+        final Runnable request;
+        final Runnable onDropped;
+        final long submittedAt;
+
+        /**
+         * @param priorityIndex Index of the priority class the request is queued in.
+         * @param request       Runnable sending the request.
+         * @param onDropped     Runnable invoked when the request got dropped.
+         * @param submittedAt   Time the request got submitted in nanoseconds.
+         */
+        PendingRequest(
+                final int priorityIndex,
+                final Runnable request,
+                final Runnable onDropped,
+                final long submittedAt
+        ) {
+            this.priorityIndex = priorityIndex;
+            this.request = request;
+            this.onDropped = onDropped;
+            this.submittedAt = submittedAt;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * A scope owning several {@link EsploraRequestHandle} objects. Cancelling the scope cancels
+ * every request it owns, e.g. when the screen that sent them gets destroyed. Requests added
+ * after the scope was cancelled are cancelled right away. Finished requests are kept until
+ * their callbacks ran, a result posted to the main thread is skipped when the scope gets
+ * cancelled before.
+ * <p>
+ * All methods must be called from the main thread.
+ */
+public class EsploraRequestScope {
+    private final ArrayList<EsploraRequestHandle> requestHandles = new ArrayList<>();
+
+    private boolean isCancelled = false;
+
+    /**
+     * Adds a request to this scope.
+     *
+     * @param requestHandle Handle of the request to be owned by this scope.
+     * @return The given request handle.
+     */
+    public EsploraRequestHandle add(final EsploraRequestHandle requestHandle) {
+        if (isCancelled) {
+            requestHandle.cancel();
+            return requestHandle;
+        }
+
+        // forget about requests that are done already
+        final Iterator<EsploraRequestHandle> iterator = requestHandles.iterator();
+        while (iterator.hasNext()) {
+            if (isDone(iterator.next())) {
+                iterator.remove();
+            }
+        }
+
+        requestHandles.add(requestHandle);
+
+        return requestHandle;
+    }
+
+    /**
+     * Cancels all requests owned by this scope and every request added later on.
+     */
+    public void cancel() {
+        isCancelled = true;
+
+        for (final EsploraRequestHandle requestHandle : requestHandles) {
+            requestHandle.cancel();
+        }
+
+        requestHandles.clear();
+    }
+
+    /**
+     * @param requestHandle A request handle owned by this scope.
+     * @return True if the request can't invoke a callback anymore.
+     */
+    private static boolean isDone(final EsploraRequestHandle requestHandle) {
+        if (requestHandle.isCancelled()) {
+            return true;
+        }
+
+        if (!requestHandle.isFinished()) {
+            return false;
+        }
+
+        // the result of a finished future may still wait for the main thread
+        return !(requestHandle instanceof EsploraFuture)
+                || !((EsploraFuture<?>) requestHandle).hasPendingListeners();
+    }
+
+    /**
+     * @return A boolean value indicating if this scope was cancelled.
+     */
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * @return Amount of requests owned by this scope that are still queued or running.
+     */
+    public int getActiveCount() {
+        int count = 0;
+
+        for (final EsploraRequestHandle requestHandle : requestHandles) {
+            if (!requestHandle.isFinished() && !requestHandle.isCancelled()) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
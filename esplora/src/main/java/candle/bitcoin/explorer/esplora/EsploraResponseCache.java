@@ -0,0 +1,230 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of Esplora HTTP API responses, keyed by their relative URL. The least
+ * recently used responses are evicted when the size limit is reached. Each response keeps the
+ * ETag and Last-Modified validators sent by the API, so it can be revalidated with a
+ * conditional request. See {@link EsploraCachePolicy} for the freshness rules.
+ */
+public class EsploraResponseCache {
+    // maximum amount of characters of all cached responses (about 1 MB)
+    private static final long MAX_SIZE = 512 * 1024;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    // responses in access order, used to evict the least recently used responses
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long size = 0;
+
+    // highest block height seen so far, used to detect immutable responses
+    private volatile int tipHeight = -1;
+
+    // metrics
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long revalidatedCount = 0;
+    private long bytesSaved = 0;
+
+    /**
+     * @param relativeUrl Relative URL of the response.
+     * @return The cached response or null.
+     */
+    synchronized Entry get(final String relativeUrl) {
+        return entries.get(relativeUrl);
+    }
+
+    /**
+     * Caches a response, replacing a previously cached one.
+     *
+     * @param relativeUrl  Relative URL of the response.
+     * @param body         Body of the response.
+     * @param eTag         ETag header of the response or null.
+     * @param lastModified Last-Modified header of the response or null.
+     */
+    synchronized void put(
+            final String relativeUrl,
+            final String body,
+            final String eTag,
+            final String lastModified
+    ) {
+        final Entry entry = new Entry(body, eTag, lastModified, System.nanoTime());
+
+        final Entry previous = entries.put(relativeUrl, entry);
+        if (previous != null) {
+            size -= previous.body.length();
+        }
+
+        size += body.length();
+
+        // evict least recently used responses
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (size > MAX_SIZE && iterator.hasNext()) {
+            final Entry evicted = iterator.next().getValue();
+
+            if (evicted == entry) {
+                continue;
+            }
+
+            size -= evicted.body.length();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Marks a cached response as fresh again after the API confirmed it is unchanged (HTTP 304).
+     * The body counts as saved only if the revalidation serves it, a background revalidation of
+     * a stale response was already counted by its {@link #onHit(Entry)}.
+     *
+     * @param entry    The revalidated response.
+     * @param isServed False for a background revalidation of a response already served.
+     */
+    synchronized void onNotModified(final Entry entry, final boolean isServed) {
+        entry.storedAt = System.nanoTime();
+        entry.isRevalidating = false;
+
+        revalidatedCount++;
+
+        if (isServed) {
+            bytesSaved += entry.body.length();
+        }
+    }
+
+    /**
+     * Records a response served from the cache without a request.
+     *
+     * @param entry The served response.
+     */
+    synchronized void onHit(final Entry entry) {
+        hitCount++;
+        bytesSaved += entry.body.length();
+    }
+
+    /**
+     * Records a request the cache could not serve.
+     */
+    synchronized void onMiss() {
+        missCount++;
+    }
+
+    /**
+     * Marks a response as being revalidated in the background.
+     *
+     * @param entry The response to be revalidated.
+     * @return False if the response is already being revalidated.
+     */
+    synchronized boolean startRevalidation(final Entry entry) {
+        if (entry.isRevalidating) {
+            return false;
+        }
+
+        entry.isRevalidating = true;
+
+        return true;
+    }
+
+    /**
+     * Marks a background revalidation as finished without result.
+     *
+     * @param entry The response that was revalidated.
+     */
+    synchronized void stopRevalidation(final Entry entry) {
+        entry.isRevalidating = false;
+    }
+
+    /**
+     * @param blockHeight Height of a block received from the API.
+     */
+    synchronized void onBlockHeight(final int blockHeight) {
+        if (blockHeight > tipHeight) {
+            tipHeight = blockHeight;
+        }
+    }
+
+    /**
+     * @return Highest block height seen so far, or -1 if none was seen yet.
+     */
+    int getTipHeight() {
+        return tipHeight;
+    }
+
+    /**
+     * @return Amount of responses served from the cache without a request.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return Amount of requests the cache could not serve.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return Amount of conditional requests answered with HTTP 304 (not modified).
+     */
+    public synchronized long getRevalidatedCount() {
+        return revalidatedCount;
+    }
+
+    /**
+     * @return Amount of response characters that did not need to be transferred thanks to
+     * the cache.
+     */
+    public synchronized long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * A cached response.
+     */
+    static class Entry {
+        final String body;
+        final String eTag;
+        final String lastModified;
+
+        // time the response was stored or last revalidated in nanoseconds
+        volatile long storedAt;
+
+        // indicates a running background revalidation
+        boolean isRevalidating = false;
+
+        /**
+         * @param body         Body of the response.
+         * @param eTag         ETag header of the response or null.
+         * @param lastModified Last-Modified header of the response or null.
+         * @param storedAt     Time the response was stored in nanoseconds.
+         */
+        Entry(
+                final String body,
+                final String eTag,
+                final String lastModified,
+                final long storedAt
+        ) {
+            this.body = body;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+        }
+
+        /**
+         * @return Age of the response in milliseconds.
+         */
+        long getAgeMillis() {
+            return (System.nanoTime() - storedAt) / NANOS_PER_MILLI;
+        }
+
+        /**
+         * @return A boolean value indicating if the response can be revalidated with a
+         * conditional request.
+         */
+        boolean hasValidator() {
+            return eTag != null || lastModified != null;
+        }
+    }
+}
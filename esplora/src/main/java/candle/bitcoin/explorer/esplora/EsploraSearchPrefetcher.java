@@ -0,0 +1,222 @@
+package candle.bitcoin.explorer.esplora;
+
+/**
+ * Speculatively requests the block a search is most likely going to ask for, while the user is
+ * still typing. Requesting a block by height takes two round trips (height to hash, hash to
+ * block), which are mostly done by the time the search is submitted.
+ * <p>
+ * Only a single speculative request is kept, a new speculation cancels the previous one. A
+ * finished speculation is kept for {@link #MAX_AGE_MILLIS} and handed out once by
+ * {@link #fetchBlock(int, EsploraRequestPriority)}. All methods are thread safe, except
+ * {@link #prefetch(int)} consulting the scheduler, which must be called from the main thread.
+ */
+public class EsploraSearchPrefetcher {
+    /**
+     * Duration a speculatively requested block stays usable after it was received.
+     */
+    public static final long MAX_AGE_MILLIS = 30000;
+
+    // speculation is done below the priority of submitted searches
+    private static final EsploraRequestPriority SPECULATION_PRIORITY =
+            EsploraRequestPriority.VISIBLE;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    // the current speculation or null
+    private Speculation speculation;
+
+    // metrics
+    private long speculationCount = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long cancelledCount = 0;
+    private long savedMillis = 0;
+
+    /**
+     * Starts requesting the block at the given height, unless it is already requested. A
+     * running speculation of another height is cancelled. Heights above the highest known
+     * block are not requested, the user is most likely still typing. Nothing is requested while
+     * the scheduler is saturated with requests of the speculation priority.
+     *
+     * @param blockHeight The block height likely to be searched.
+     */
+    public void prefetch(final int blockHeight) {
+        final int tipHeight = EsploraClient.getTipHeight();
+
+        if (blockHeight < 0 || (tipHeight >= 0 && blockHeight > tipHeight)) {
+            cancel();
+            return;
+        }
+
+        // speculating would only delay the visible requests already waiting
+        if (EsploraClient.getScheduler().isSaturated(SPECULATION_PRIORITY)) {
+            return;
+        }
+
+        final Speculation previous;
+        final Speculation next;
+
+        synchronized (this) {
+            if (speculation != null
+                    && speculation.blockHeight == blockHeight
+                    && !speculation.isExpired()) {
+                return;
+            }
+
+            previous = speculation;
+            next = new Speculation(blockHeight);
+            speculation = next;
+            speculationCount++;
+
+            if (previous != null && !previous.future.isFinished()) {
+                cancelledCount++;
+            }
+        }
+
+        if (previous != null) {
+            previous.future.cancel();
+        }
+
+        next.future.addListener(new EsploraFuture.Listener<EsploraBlock>() {
+            @Override
+            public void onSuccess(final EsploraBlock block) {
+                next.receivedAt = System.nanoTime();
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                synchronized (EsploraSearchPrefetcher.this) {
+                    // a failed speculation is not handed out, the search requests again
+                    if (speculation == next) {
+                        speculation = null;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the running speculation, for example when the search text no longer names a
+     * block. A finished speculation is kept until it expires.
+     */
+    public void cancel() {
+        final Speculation previous;
+
+        synchronized (this) {
+            if (speculation == null || speculation.future.isFinished()) {
+                return;
+            }
+
+            previous = speculation;
+            speculation = null;
+            cancelledCount++;
+        }
+
+        previous.future.cancel();
+    }
+
+    /**
+     * Requests the block at the given height, reusing the speculative request when it matches.
+     *
+     * @param blockHeight The block height to be requested.
+     * @param priority    The priority of a new request.
+     * @return A future of the requested block.
+     */
+    public EsploraFuture<EsploraBlock> fetchBlock(
+            final int blockHeight,
+            final EsploraRequestPriority priority
+    ) {
+        synchronized (this) {
+            final Speculation match = speculation;
+
+            if (match != null && match.blockHeight == blockHeight && !match.isExpired()) {
+                speculation = null;
+                hitCount++;
+
+                // a finished speculation saved the whole request, a running one the time so far
+                final long end = match.receivedAt != 0 ? match.receivedAt : System.nanoTime();
+                savedMillis += (end - match.startedAt) / NANOS_PER_MILLI;
+
+                return match.future;
+            }
+
+            missCount++;
+        }
+
+        return EsploraClient.fetchBlock(blockHeight, priority);
+    }
+
+    /**
+     * @return Amount of speculative requests started.
+     */
+    public synchronized long getSpeculationCount() {
+        return speculationCount;
+    }
+
+    /**
+     * @return Amount of searches served by a speculative request.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return Amount of searches not served by a speculative request.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return Amount of speculative requests cancelled before they finished.
+     */
+    public synchronized long getCancelledCount() {
+        return cancelledCount;
+    }
+
+    /**
+     * @return Share of searches served by a speculative request, between 0 and 1.
+     */
+    public synchronized double getHitRate() {
+        final long searchCount = hitCount + missCount;
+
+        return searchCount == 0 ? 0 : (double) hitCount / searchCount;
+    }
+
+    /**
+     * @return Total request time in milliseconds that searches did not need to wait for.
+     */
+    public synchronized long getSavedMillis() {
+        return savedMillis;
+    }
+
+    /**
+     * A speculative request of a block.
+     */
+    private static class Speculation {
+        final int blockHeight;
+        final EsploraFuture<EsploraBlock> future;
+        final long startedAt = System.nanoTime();
+
+        // time the block was received in nanoseconds, 0 while running
+        volatile long receivedAt = 0;
+
+        /**
+         * @param blockHeight The block height to be requested.
+         */
+        Speculation(final int blockHeight) {
+            this.blockHeight = blockHeight;
+            this.future = EsploraClient.fetchBlock(blockHeight, SPECULATION_PRIORITY);
+        }
+
+        /**
+         * @return A boolean value indicating if the block was received too long ago.
+         */
+        boolean isExpired() {
+            final long receivedAt = this.receivedAt;
+
+            return receivedAt != 0
+                    && (System.nanoTime() - receivedAt) / NANOS_PER_MILLI > MAX_AGE_MILLIS;
+        }
+    }
+}
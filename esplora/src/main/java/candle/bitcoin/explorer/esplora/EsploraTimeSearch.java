@@ -0,0 +1,367 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the first block at or after a point in time. Block timestamps are not monotonic, a
+ * block may be up to two hours ahead of or behind its neighbours. The median time past (MTP)
+ * of a block, the median of the timestamps of the block and its 10 predecessors, never
+ * decreases, so the search looks for the first block whose MTP is at or after the given time.
+ * As the MTP lags behind the block timestamps, the result is moved back to the first block
+ * from which on all timestamps up to it are at or after the given time.
+ * <p>
+ * With an {@link EsploraHeaderStore} covering the time, the search is a local binary search.
+ * Otherwise the height is interpolated between known blocks and probed with block pages, which
+ * usually finds the block in less than 10 requests.
+ */
+public class EsploraTimeSearch {
+    // amount of blocks the median time past is computed of
+    private static final int MEDIAN_TIME_SPAN = 11;
+
+    // blocks per page of the blocks/:start endpoint
+    private static final int PAGE_SIZE = 10;
+
+    // width of the window resolved with exact median times past
+    private static final int WINDOW_SIZE = 2 * PAGE_SIZE;
+
+    // after this amount of probes the search falls back to bisection
+    private static final int MAX_INTERPOLATION_PROBES = 6;
+
+    // timestamp of the genesis block
+    private static final long GENESIS_TIMESTAMP = 1231006505L;
+
+    /**
+     * Searches the first block at or after the given time in a header store.
+     *
+     * @param store     The header store.
+     * @param timestamp Unix timestamp in seconds.
+     * @return Height of the block, or -1 if the time is after the median time past of the last
+     * stored block.
+     */
+    public static int searchLocal(final EsploraHeaderStore store, final long timestamp) {
+        final int count = store.getRecordCount();
+        if (count == 0) {
+            return -1;
+        }
+
+        final EsploraHeaderStore.Cursor cursor = store.cursor();
+        final long[] window = new long[MEDIAN_TIME_SPAN];
+
+        if (getMedianTimePast(cursor, count - 1, window) < timestamp) {
+            return -1;
+        }
+
+        // the median time past never decreases
+        int low = 0;
+        int high = count - 1;
+
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+
+            if (getMedianTimePast(cursor, middle, window) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        // move back to the first block from which on all timestamps are at or after the time
+        int height = low;
+        cursor.moveTo(height);
+
+        if (cursor.getTimestamp() >= timestamp) {
+            while (height > Math.max(0, low - MEDIAN_TIME_SPAN)
+                    && cursor.moveTo(height - 1)
+                    && cursor.getTimestamp() >= timestamp) {
+                height--;
+            }
+        }
+
+        return height;
+    }
+
+    /**
+     * Searches the first block at or after the given time. The local header store is used when
+     * it covers the time, otherwise the Esplora API is probed.
+     *
+     * @param timestamp Unix timestamp in seconds.
+     * @param store     A header store or null.
+     * @param priority  The priority of the requests.
+     * @return A future of the height of the block, or -1 if no block is at or after the time.
+     */
+    public static EsploraFuture<Integer> search(
+            final long timestamp,
+            final EsploraHeaderStore store,
+            final EsploraRequestPriority priority
+    ) {
+        if (timestamp <= GENESIS_TIMESTAMP) {
+            return EsploraFuture.completed(0);
+        }
+
+        if (store != null) {
+            final int height = searchLocal(store, timestamp);
+
+            if (height >= 0) {
+                return EsploraFuture.completed(height);
+            }
+        }
+
+        return new NetworkSearch(timestamp, priority).start();
+    }
+
+    /**
+     * @param cursor    A cursor of the header store.
+     * @param height    A stored block height.
+     * @param window    Array of {@link #MEDIAN_TIME_SPAN} timestamps to reuse.
+     * @return The median time past of the block at the given height.
+     */
+    private static long getMedianTimePast(
+            final EsploraHeaderStore.Cursor cursor,
+            final int height,
+            final long[] window
+    ) {
+        final int start = Math.max(0, height - MEDIAN_TIME_SPAN + 1);
+        final int length = height - start + 1;
+
+        for (int i = 0; i < length; i++) {
+            cursor.moveTo(start + i);
+            window[i] = cursor.getTimestamp();
+        }
+
+        return median(window, length);
+    }
+
+    /**
+     * Sorts the first values of the given array and returns their median.
+     *
+     * @param values Array of values, partially sorted afterwards.
+     * @param length Amount of values to consider.
+     * @return The median of the values.
+     */
+    private static long median(final long[] values, final int length) {
+        Arrays.sort(values, 0, length);
+
+        return values[length / 2];
+    }
+
+    /**
+     * A search probing the Esplora API. The height of the time is interpolated between the
+     * closest known blocks, assuming a steady block rate in between, and probed with a page of
+     * blocks. The median timestamp of a page narrows down the range, until the range is small
+     * enough to be resolved with exact median times past.
+     */
+    private static class NetworkSearch {
+        private final long timestamp;
+        private final EsploraRequestPriority priority;
+
+        private int tipHeight;
+        private int probeCount = 0;
+
+        /**
+         * @param timestamp Unix timestamp in seconds.
+         * @param priority  The priority of the requests.
+         */
+        NetworkSearch(final long timestamp, final EsploraRequestPriority priority) {
+            this.timestamp = timestamp;
+            this.priority = priority;
+        }
+
+        /**
+         * @return A future of the height of the block, or -1 if no block is at or after the
+         * time.
+         */
+        EsploraFuture<Integer> start() {
+            return EsploraClient.fetchBlockPage(null, priority).thenCompose(
+                    new EsploraFunction<EsploraBlockPage, EsploraFuture<Integer>>() {
+                        @Override
+                        public EsploraFuture<Integer> apply(final EsploraBlockPage page) {
+                            tipHeight = page.getBlocks().get(0).getHeight();
+
+                            return probe(0, GENESIS_TIMESTAMP, tipHeight, getMedianTime(page));
+                        }
+                    }
+            );
+        }
+
+        /**
+         * Probes the range between two blocks with known (median) times.
+         *
+         * @param low      Height of a block before the time.
+         * @param lowTime  Median time around the lower block.
+         * @param high     Height of a block at or after the time.
+         * @param highTime Median time around the higher block.
+         * @return A future of the height of the block.
+         */
+        private EsploraFuture<Integer> probe(
+                final int low,
+                final long lowTime,
+                final int high,
+                final long highTime
+        ) {
+            if (high - low <= WINDOW_SIZE) {
+                return resolve(low, high);
+            }
+
+            // the time is after the median time of the highest block, close to or after the tip
+            if (timestamp > highTime) {
+                return resolve(Math.max(low, high - WINDOW_SIZE), high);
+            }
+
+            int probe;
+
+            if (probeCount < MAX_INTERPOLATION_PROBES && highTime > lowTime) {
+                probe = low + (int) ((timestamp - lowTime) * (high - low) / (highTime - lowTime));
+            } else {
+                probe = (low + high) >>> 1;
+            }
+
+            // the probed page must lie within the range, so the range shrinks with every probe
+            probe = Math.max(low + PAGE_SIZE, Math.min(high - 1, probe + PAGE_SIZE / 2));
+            probeCount++;
+
+            final int pageStart = probe;
+
+            return EsploraClient.fetchBlockPage(pageStart, priority).thenCompose(
+                    new EsploraFunction<EsploraBlockPage, EsploraFuture<Integer>>() {
+                        @Override
+                        public EsploraFuture<Integer> apply(final EsploraBlockPage page) {
+                            final long medianTime = getMedianTime(page);
+
+                            if (medianTime < timestamp) {
+                                return probe(pageStart - PAGE_SIZE + 1, medianTime, high, highTime);
+                            }
+
+                            return probe(low, lowTime, pageStart, medianTime);
+                        }
+                    }
+            );
+        }
+
+        /**
+         * Requests all blocks of a small range and the blocks needed for their median times
+         * past, and searches the range. The range is extended when the result is outside.
+         *
+         * @param low  Lowest height of the range.
+         * @param high Highest height of the range.
+         * @return A future of the height of the block.
+         */
+        private EsploraFuture<Integer> resolve(final int low, final int high) {
+            final int first = Math.max(0, low - MEDIAN_TIME_SPAN + 1);
+            final ArrayList<EsploraFuture<EsploraBlockPage>> pages = new ArrayList<>();
+
+            for (int pageStart = high; pageStart >= first; pageStart -= PAGE_SIZE) {
+                pages.add(EsploraClient.fetchBlockPage(pageStart, priority));
+            }
+
+            return EsploraFuture.allOf(pages).thenCompose(
+                    new EsploraFunction<List<EsploraBlockPage>, EsploraFuture<Integer>>() {
+                        @Override
+                        public EsploraFuture<Integer> apply(final List<EsploraBlockPage> pages) {
+                            return search(pages, first, low, high);
+                        }
+                    }
+            );
+        }
+
+        /**
+         * Searches a range with exact median times past.
+         *
+         * @param pages Pages containing all blocks from first to high.
+         * @param first Lowest height contained in the pages.
+         * @param low   Lowest height of the range.
+         * @param high  Highest height of the range.
+         * @return A future of the height of the block.
+         */
+        private EsploraFuture<Integer> search(
+                final List<EsploraBlockPage> pages,
+                final int first,
+                final int low,
+                final int high
+        ) {
+            final long[] timestamps = new long[high - first + 1];
+
+            for (final EsploraBlockPage page : pages) {
+                for (final EsploraBlock block : page.getBlocks()) {
+                    if (block.getHeight() >= first && block.getHeight() <= high) {
+                        timestamps[block.getHeight() - first] = block.getTime().getTime() / 1000;
+                    }
+                }
+            }
+
+            final long[] window = new long[MEDIAN_TIME_SPAN];
+
+            // the block is below the range, search a larger range below
+            if (low > 0 && getMedianTimePast(timestamps, first, low, window) >= timestamp) {
+                final int width = high - low + WINDOW_SIZE;
+
+                return resolve(Math.max(0, low - width), low);
+            }
+
+            // the block is above the range, search a larger range above
+            if (getMedianTimePast(timestamps, first, high, window) < timestamp) {
+                if (high >= tipHeight) {
+                    return EsploraFuture.completed(-1);
+                }
+
+                final int width = high - low + WINDOW_SIZE;
+
+                return resolve(high, Math.min(tipHeight, high + width));
+            }
+
+            int height = low;
+            while (getMedianTimePast(timestamps, first, height, window) < timestamp) {
+                height++;
+            }
+
+            // move back to the first block from which on all timestamps are at or after the time
+            final int result = height;
+
+            if (timestamps[height - first] >= timestamp) {
+                while (height > Math.max(first, result - MEDIAN_TIME_SPAN)
+                        && timestamps[height - 1 - first] >= timestamp) {
+                    height--;
+                }
+            }
+
+            return EsploraFuture.completed(height);
+        }
+
+        /**
+         * @param timestamps Timestamps of consecutive blocks.
+         * @param first      Height of the first timestamp.
+         * @param height     A height between first and the last timestamp.
+         * @param window     Array of {@link #MEDIAN_TIME_SPAN} timestamps to reuse.
+         * @return The median time past of the block at the given height.
+         */
+        private static long getMedianTimePast(
+                final long[] timestamps,
+                final int first,
+                final int height,
+                final long[] window
+        ) {
+            final int start = Math.max(first, height - MEDIAN_TIME_SPAN + 1);
+            final int length = height - start + 1;
+
+            System.arraycopy(timestamps, start - first, window, 0, length);
+
+            return median(window, length);
+        }
+
+        /**
+         * @param page A page of blocks.
+         * @return The median timestamp of the blocks of the page.
+         */
+        private static long getMedianTime(final EsploraBlockPage page) {
+            final List<EsploraBlock> blocks = page.getBlocks();
+            final long[] timestamps = new long[blocks.size()];
+
+            for (int i = 0; i < timestamps.length; i++) {
+                timestamps[i] = blocks.get(i).getTime().getTime() / 1000;
+            }
+
+            return median(timestamps, timestamps.length);
+        }
+    }
+}
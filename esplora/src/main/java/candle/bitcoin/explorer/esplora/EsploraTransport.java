@@ -0,0 +1,57 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.Map;
+
+/**
+ * Sends the HTTP GET requests of the {@link EsploraClient}. The library ships the
+ * {@link EsploraUrlConnectionTransport} working on any JVM; platforms with their own HTTP stack
+ * plug it in with {@link EsploraClient#setTransport(EsploraTransport)}.
+ */
+public interface EsploraTransport {
+    /**
+     * Sends a GET request. Exactly one method of the callback is called, on any thread.
+     *
+     * @param url      Absolute URL to request.
+     * @param headers  Additional request headers by name, may be empty.
+     * @param callback Callback receiving the response.
+     * @return The running request, which can be cancelled.
+     */
+    Call get(String url, Map<String, String> headers, Callback callback);
+
+    /**
+     * A request sent by a transport.
+     */
+    interface Call {
+        /**
+         * Aborts the request. The callback gets {@link Callback#onCancelled()} unless it was
+         * called already.
+         */
+        void cancel();
+    }
+
+    /**
+     * Receives the outcome of a request.
+     */
+    interface Callback {
+        /**
+         * Called when a response was received, regardless of its status code.
+         *
+         * @param statusCode HTTP status code of the response.
+         * @param headers    Response headers by lowercase name.
+         * @param body       Body of the response, empty if there is none.
+         */
+        void onResponse(int statusCode, Map<String, String> headers, String body);
+
+        /**
+         * Called when no response was received, e.g. due to a network error.
+         *
+         * @param error The cause.
+         */
+        void onFailure(Throwable error);
+
+        /**
+         * Called when the request got cancelled before a response was received.
+         */
+        void onCancelled();
+    }
+}
@@ -0,0 +1,219 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends requests with HttpURLConnection on a small pool of daemon threads. The default
+ * {@link EsploraTransport} of the {@link EsploraClient}, available on any JVM. Blocking
+ * requests are available with {@link #execute(String, Map)}, e.g. for worker threads of the
+ * {@link EsploraIngestion}.
+ */
+public class EsploraUrlConnectionTransport implements EsploraTransport {
+    // amount of concurrent requests, like the connection limit of common Android HTTP clients
+    private static final int DEFAULT_THREAD_COUNT = 10;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+
+    private final ExecutorService executor;
+
+    /**
+     * Initializes the transport with the default amount of threads.
+     */
+    public EsploraUrlConnectionTransport() {
+        this(DEFAULT_THREAD_COUNT);
+    }
+
+    /**
+     * @param threadCount Maximum amount of concurrent requests.
+     */
+    public EsploraUrlConnectionTransport(final int threadCount) {
+        executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "esplora-http");
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public Call get(final String url, final Map<String, String> headers, final Callback callback) {
+        // guards the callback from being called twice when cancelled while completing
+        final AtomicBoolean isDone = new AtomicBoolean(false);
+
+        // the running connection, closed when cancelled to stop receiving the response
+        final AtomicReference<HttpURLConnection> connection = new AtomicReference<>();
+
+        final Future<?> future = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Response response;
+
+                try {
+                    response = execute(url, headers, connection, isDone);
+                } catch (IOException e) {
+                    if (isDone.compareAndSet(false, true)) {
+                        callback.onFailure(e);
+                    }
+
+                    return;
+                }
+
+                if (isDone.compareAndSet(false, true)) {
+                    callback.onResponse(response.statusCode, response.headers, response.body);
+                }
+            }
+        });
+
+        return new Call() {
+            @Override
+            public void cancel() {
+                if (isDone.compareAndSet(false, true)) {
+                    future.cancel(true);
+
+                    // blocking socket reads ignore the interrupt, closing the socket ends them
+                    final HttpURLConnection running = connection.get();
+                    if (running != null) {
+                        running.disconnect();
+                    }
+
+                    callback.onCancelled();
+                }
+            }
+        };
+    }
+
+    /**
+     * Sends a GET request on the calling thread.
+     *
+     * @param url     Absolute URL to request.
+     * @param headers Additional request headers by name.
+     * @return The response, regardless of its status code.
+     * @throws IOException No response was received.
+     */
+    static Response execute(final String url, final Map<String, String> headers)
+            throws IOException {
+        return execute(url, headers, null, null);
+    }
+
+    /**
+     * Sends a GET request on the calling thread, which can be aborted from another thread.
+     *
+     * @param url              Absolute URL to request.
+     * @param headers          Additional request headers by name.
+     * @param connectionHolder Receives the opened connection, so it can be disconnected, or
+     *                         null.
+     * @param isDone           Set when the request got cancelled, or null.
+     * @return The response, regardless of its status code.
+     * @throws IOException No response was received or the request got aborted.
+     */
+    private static Response execute(
+            final String url,
+            final Map<String, String> headers,
+            final AtomicReference<HttpURLConnection> connectionHolder,
+            final AtomicBoolean isDone
+    ) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+
+        if (connectionHolder != null) {
+            connectionHolder.set(connection);
+
+            // cancelled before the connection was visible to cancel
+            if (isDone.get()) {
+                throw new InterruptedIOException("request cancelled");
+            }
+        }
+
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+
+            for (final Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            final int statusCode = connection.getResponseCode();
+
+            final HashMap<String, String> responseHeaders = new HashMap<>();
+            for (final Map.Entry<String, List<String>> header
+                    : connection.getHeaderFields().entrySet()) {
+                // the status line is listed without a name
+                if (header.getKey() == null || header.getValue().isEmpty()) {
+                    continue;
+                }
+
+                responseHeaders.put(
+                        header.getKey().toLowerCase(Locale.US),
+                        header.getValue().get(header.getValue().size() - 1)
+                );
+            }
+
+            final InputStream input = statusCode >= HttpURLConnection.HTTP_BAD_REQUEST
+                    ? connection.getErrorStream()
+                    : connection.getInputStream();
+
+            return new Response(statusCode, responseHeaders, input != null ? read(input) : "");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @param input Stream to be read completely, closed afterwards.
+     * @return The read text.
+     * @throws IOException Reading failed.
+     */
+    private static String read(final InputStream input) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+
+        try {
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                bytes.write(buffer, 0, length);
+            }
+        } finally {
+            input.close();
+        }
+
+        return bytes.toString("UTF-8");
+    }
+
+    /**
+     * A received HTTP response.
+     */
+    static class Response {
+        final int statusCode;
+        final Map<String, String> headers;
+        final String body;
+
+        /**
+         * @param statusCode HTTP status code of the response.
+         * @param headers    Response headers by lowercase name.
+         * @param body       Body of the response, empty if there is none.
+         */
+        Response(final int statusCode, final Map<String, String> headers, final String body) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+}
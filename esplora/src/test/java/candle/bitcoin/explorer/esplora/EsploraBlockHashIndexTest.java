@@ -0,0 +1,98 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests saving the {@link EsploraBlockHashIndex} to files it was not loaded from and saving
+ * after more changes than its change log holds.
+ */
+public class EsploraBlockHashIndexTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * An index saved to an existing file it was never loaded from replaces the file instead of
+     * appending its changes to foreign records.
+     *
+     * @throws Exception Writing or reading the file failed.
+     */
+    @Test
+    public void saveToForeignFileRewritesIt() throws Exception {
+        final File file = new File(folder.getRoot(), "hashes.index");
+
+        final EsploraBlockHashIndex foreign = new EsploraBlockHashIndex();
+        fill(foreign, 0, 100);
+        foreign.save(file);
+
+        final EsploraBlockHashIndex index = new EsploraBlockHashIndex();
+        fill(index, 1000, 10);
+        index.save(file);
+
+        final EsploraBlockHashIndex loaded = new EsploraBlockHashIndex();
+        loaded.load(file);
+
+        assertEquals(10, loaded.getCount());
+        assertNull(loaded.getHash(0));
+        assertEquals(hash(1005), loaded.getHash(1005));
+    }
+
+    /**
+     * An index changed more often than its change log holds before the first save, like one
+     * filled on the JVM, is saved completely.
+     *
+     * @throws Exception Writing or reading the file failed.
+     */
+    @Test
+    public void saveAfterManyChangesRewritesTheFile() throws Exception {
+        final File file = new File(folder.getRoot(), "hashes.index");
+
+        final EsploraBlockHashIndex index = new EsploraBlockHashIndex();
+        fill(index, 0, 10);
+        index.save(file);
+
+        // more changes than the change log holds, appended to the own file otherwise
+        final int count = 100000;
+        fill(index, 10, count);
+        index.save(file);
+
+        final EsploraBlockHashIndex loaded = new EsploraBlockHashIndex();
+        loaded.load(file);
+
+        assertEquals(count + 10, loaded.getCount());
+        assertEquals(hash(count), loaded.getHash(count));
+        assertEquals(4 + (count + 10) * 36L, file.length());
+
+        // the log works again after the rewrite
+        fill(index, count + 10, 5);
+        index.save(file);
+
+        assertEquals(4 + (count + 15) * 36L, file.length());
+    }
+
+    /**
+     * @param index The index to fill.
+     * @param start The first height to add.
+     * @param count Amount of heights to add.
+     */
+    private static void fill(final EsploraBlockHashIndex index, final int start, final int count) {
+        for (int height = start; height < start + count; height++) {
+            index.put(height, hash(height));
+        }
+    }
+
+    /**
+     * @param height A block height.
+     * @return A valid block hash unique to the height.
+     */
+    private static String hash(final int height) {
+        return String.format(Locale.US, "00000000%056x", height + 1);
+    }
+}
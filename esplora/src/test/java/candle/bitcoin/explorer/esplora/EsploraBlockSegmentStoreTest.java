@@ -0,0 +1,247 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import candle.bitcoin.explorer.standin.EsploraStandinServer;
+import candle.bitcoin.explorer.standin.MinedChainSource;
+import candle.bitcoin.explorer.standin.NetworkConditions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests filling the {@link EsploraBlockSegmentStore} by the {@link EsploraHeaderSync} and
+ * serving pages and blocks of the client from it without requests.
+ */
+public class EsploraBlockSegmentStoreTest {
+    // a complete segment, its last block buried deeper than the reorg depth
+    private static final int TIP_HEIGHT = EsploraBlockSegment.SIZE + 30;
+
+    // headers stored before the sync starts, so it only downloads the last pages
+    private static final int STORED_COUNT = EsploraBlockSegment.SIZE + 10;
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private static EsploraStandinServer server;
+    private static MinedChainSource chain;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Mines the chain and starts the stand-in server.
+     *
+     * @throws IOException The server could not be started.
+     */
+    @BeforeClass
+    public static void startServer() throws IOException {
+        chain = new MinedChainSource(TIP_HEIGHT);
+        server = new EsploraStandinServer(0, chain, new NetworkConditions(0, 0, 0, 0));
+        server.start();
+
+        EsploraClient.setBaseUrl(server.getBaseUrl());
+    }
+
+    /**
+     * Stops the stand-in server and detaches the segment store from the client.
+     */
+    @AfterClass
+    public static void stopServer() {
+        EsploraClient.setBlockSegmentStore(null);
+        server.stop();
+    }
+
+    /**
+     * Syncs the last headers on top of a store holding a complete segment. The sync writes the
+     * immutable segment, and the client serves a page and a block of it without a request.
+     *
+     * @throws Exception The sync failed or a block could not be read.
+     */
+    @Test
+    public void syncFillsSegmentsServedByTheClient() throws Exception {
+        final File storeFile = new File(folder.getRoot(), "headers.store");
+        final File checkpointFile = new File(folder.getRoot(), "headers.checkpoint");
+
+        final EsploraHeaderStore store = new EsploraHeaderStore(storeFile);
+        for (int height = 0; height < STORED_COUNT; height++) {
+            store.append(block(height));
+        }
+        store.flush();
+        writeCheckpoint(checkpointFile, STORED_COUNT - 1);
+
+        final EsploraBlockSegmentStore segmentStore =
+                new EsploraBlockSegmentStore(new File(folder.getRoot(), "blocks.segments"));
+        sync(store, checkpointFile, segmentStore);
+
+        assertEquals(1, segmentStore.getSegmentCount());
+        assertTrue(segmentStore.contains(EsploraBlockSegment.SIZE - 1));
+        assertTrue(!segmentStore.contains(EsploraBlockSegment.SIZE));
+
+        EsploraClient.setBlockSegmentStore(segmentStore);
+        final long requestsBefore = server.getRequestCount();
+
+        final int pageHeight = EsploraBlockSegment.SIZE - 1;
+        final EsploraBlockPage page = get(EsploraClient.fetchBlockPage(
+                pageHeight,
+                EsploraRequestPriority.VISIBLE
+        ));
+
+        assertEquals(10, page.getBlocks().size());
+        for (int i = 0; i < page.getBlocks().size(); i++) {
+            final EsploraBlock block = page.getBlocks().get(i);
+
+            assertEquals(pageHeight - i, block.getHeight());
+            assertEquals(chain.getHash(pageHeight - i), block.getHash());
+        }
+
+        final EsploraBlock block = get(EsploraClient.fetchBlock(
+                1000,
+                EsploraRequestPriority.VISIBLE
+        ));
+
+        assertEquals(chain.getHash(1000), block.getHash());
+        assertEquals(chain.getHash(999), block.getHashPrevious());
+        assertEquals(block(1000).getTxCount(), block.getTxCount());
+        assertEquals(block(1000).getWeight(), block.getWeight());
+
+        assertEquals(requestsBefore, server.getRequestCount());
+        assertNull(get(EsploraClient.fetchBlock(0, EsploraRequestPriority.VISIBLE))
+                .getHashPrevious());
+
+        store.close();
+        segmentStore.close();
+    }
+
+    /**
+     * @param height A block height.
+     * @return The block of the mined chain at the height, as served by the API.
+     * @throws Exception The block could not be parsed.
+     */
+    private static EsploraBlock block(final int height) throws Exception {
+        return new EsploraBlock(new JSONObject(chain.get("block/" + chain.getHash(height))));
+    }
+
+    /**
+     * Writes a checkpoint like the sync does after storing a chunk.
+     *
+     * @param checkpointFile The file of the checkpoint.
+     * @param height         Height of the last stored header.
+     * @throws IOException Writing the checkpoint failed.
+     */
+    private static void writeCheckpoint(final File checkpointFile, final int height)
+            throws IOException {
+        final DataOutputStream output =
+                new DataOutputStream(new FileOutputStream(checkpointFile));
+
+        try {
+            output.writeInt(height);
+            output.writeUTF(chain.getHash(height));
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Runs a sync from the checkpoint until it finished.
+     *
+     * @param store          The store to fill.
+     * @param checkpointFile The file of the checkpoint.
+     * @param segmentStore   The segment store to fill.
+     * @throws Exception The sync failed or did not finish in time.
+     */
+    private static void sync(
+            final EsploraHeaderStore store,
+            final File checkpointFile,
+            final EsploraBlockSegmentStore segmentStore
+    ) throws Exception {
+        final CountDownLatch isDone = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        final EsploraHeaderSync sync = new EsploraHeaderSync(
+                store,
+                checkpointFile,
+                segmentStore,
+                2,
+                new EsploraHeaderSync.Listener() {
+                    @Override
+                    public void onProgress(
+                            final int height,
+                            final int tipHeight,
+                            final double headersPerSecond
+                    ) {
+                    }
+
+                    @Override
+                    public void onFinished(final int height) {
+                        isDone.countDown();
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                        failure.set(error);
+                        isDone.countDown();
+                    }
+                },
+                EsploraExecutors.direct()
+        );
+
+        sync.start();
+
+        if (!isDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            sync.cancel();
+            throw new IllegalStateException("the sync stalled at " + store.getRecordCount());
+        }
+
+        if (failure.get() != null) {
+            throw new IllegalStateException(failure.get());
+        }
+    }
+
+    /**
+     * @param future A future of the client.
+     * @param <T>    Type of the result.
+     * @return The result of the future.
+     * @throws Exception The future failed or did not complete in time.
+     */
+    private static <T> T get(final EsploraFuture<T> future) throws Exception {
+        final CountDownLatch isDone = new CountDownLatch(1);
+        final AtomicReference<T> result = new AtomicReference<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        future.addListener(new EsploraFuture.Listener<T>() {
+            @Override
+            public void onSuccess(final T value) {
+                result.set(value);
+                isDone.countDown();
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                failure.set(error);
+                isDone.countDown();
+            }
+        }, EsploraExecutors.direct());
+
+        assertTrue(isDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        if (failure.get() != null) {
+            throw new IllegalStateException(failure.get());
+        }
+
+        return result.get();
+    }
+}
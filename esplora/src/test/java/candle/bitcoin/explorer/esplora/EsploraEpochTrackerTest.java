@@ -0,0 +1,180 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import candle.bitcoin.explorer.standin.EsploraStandinServer;
+import candle.bitcoin.explorer.standin.MinedChainSource;
+import candle.bitcoin.explorer.standin.NetworkConditions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests requesting the boundary blocks of the current epoch by the {@link EsploraEpochTracker}:
+ * callers cancel their own futures without cancelling the shared requests, and failed requests
+ * are not sent again before their back-off ran out.
+ */
+public class EsploraEpochTrackerTest {
+    // the newest block in the second epoch, so both boundary blocks are missing
+    private static final int TIP_HEIGHT = EsploraEpochTracker.EPOCH_LENGTH + 10;
+
+    // the newest block in the third epoch, its boundary blocks not cached by the other test
+    private static final int FAILING_TIP_HEIGHT = 2 * EsploraEpochTracker.EPOCH_LENGTH + 10;
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private EsploraStandinServer server;
+    private MinedChainSource chain;
+
+    /**
+     * Stops the stand-in server of the test.
+     */
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    /**
+     * Cancelling the future of one caller, like a destroyed screen, leaves the requests of
+     * another caller running.
+     *
+     * @throws Exception The epoch could not be requested.
+     */
+    @Test
+    public void cancellingACallerKeepsTheSharedRequest() throws Exception {
+        startServer(TIP_HEIGHT, 0);
+
+        final EsploraEpochTracker tracker = new EsploraEpochTracker();
+        tracker.add(block(TIP_HEIGHT));
+
+        final EsploraFuture<EsploraEpochTracker.Epoch> cancelled =
+                tracker.fetchCurrentEpoch(EsploraRequestPriority.VISIBLE);
+        final EsploraFuture<EsploraEpochTracker.Epoch> kept =
+                tracker.fetchCurrentEpoch(EsploraRequestPriority.VISIBLE);
+        cancelled.cancel();
+
+        // the client adds the received blocks to its own tracker
+        await(kept);
+        tracker.add(block(EsploraEpochTracker.EPOCH_LENGTH));
+        tracker.add(block(EsploraEpochTracker.EPOCH_LENGTH - 1));
+
+        assertTrue(cancelled.isCancelled());
+        assertTrue(kept.isFinished());
+        assertTrue(tracker.getCurrentEpoch().hasDuration());
+    }
+
+    /**
+     * A failed request of the boundary blocks is not sent again by the next callers, who get
+     * what is known about the epoch right away.
+     *
+     * @throws Exception The stand-in could not be started.
+     */
+    @Test
+    public void backsOffAfterFailure() throws Exception {
+        startServer(FAILING_TIP_HEIGHT, 1);
+
+        final EsploraEpochTracker tracker = new EsploraEpochTracker();
+        tracker.add(block(FAILING_TIP_HEIGHT));
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final EsploraFuture<EsploraEpochTracker.Epoch> failed =
+                tracker.fetchCurrentEpoch(EsploraRequestPriority.VISIBLE);
+        await(failed, failure);
+        assertNotNull(failure.get());
+
+        final long requestsBefore = server.getRequestCount();
+
+        for (int i = 0; i < 5; i++) {
+            final EsploraFuture<EsploraEpochTracker.Epoch> future =
+                    tracker.fetchCurrentEpoch(EsploraRequestPriority.VISIBLE);
+
+            assertTrue(future.isFinished());
+            assertFalse(await(future).hasFirstBlock());
+        }
+
+        assertEquals(requestsBefore, server.getRequestCount());
+    }
+
+    /**
+     * Mines the chain and starts a stand-in server serving it.
+     *
+     * @param tipHeight Height of the newest block.
+     * @param errorRate Share of the requests failing.
+     * @throws IOException The server could not be started.
+     */
+    private void startServer(final int tipHeight, final double errorRate) throws IOException {
+        chain = new MinedChainSource(tipHeight);
+        server = new EsploraStandinServer(0, chain, new NetworkConditions(0, 0, errorRate, 0));
+        server.start();
+
+        EsploraClient.setBaseUrl(server.getBaseUrl());
+    }
+
+    /**
+     * @param height A block height.
+     * @return The block of the mined chain at the height, as served by the API.
+     * @throws Exception The block could not be parsed.
+     */
+    private EsploraBlock block(final int height) throws Exception {
+        return new EsploraBlock(new JSONObject(chain.get("block/" + chain.getHash(height))));
+    }
+
+    /**
+     * @param future A future of the tracker.
+     * @return The result of the future.
+     * @throws Exception The future failed or did not complete in time.
+     */
+    private static EsploraEpochTracker.Epoch await(
+            final EsploraFuture<EsploraEpochTracker.Epoch> future
+    ) throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final EsploraEpochTracker.Epoch epoch = await(future, failure);
+
+        if (failure.get() != null) {
+            throw new IllegalStateException(failure.get());
+        }
+
+        return epoch;
+    }
+
+    /**
+     * @param future  A future of the tracker.
+     * @param failure Receives the error if the future failed.
+     * @return The result of the future, null if it failed.
+     * @throws Exception The future did not complete in time.
+     */
+    private static EsploraEpochTracker.Epoch await(
+            final EsploraFuture<EsploraEpochTracker.Epoch> future,
+            final AtomicReference<Throwable> failure
+    ) throws Exception {
+        final CountDownLatch isDone = new CountDownLatch(1);
+        final AtomicReference<EsploraEpochTracker.Epoch> result = new AtomicReference<>();
+
+        future.addListener(new EsploraFuture.Listener<EsploraEpochTracker.Epoch>() {
+            @Override
+            public void onSuccess(final EsploraEpochTracker.Epoch value) {
+                result.set(value);
+                isDone.countDown();
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                failure.set(error);
+                isDone.countDown();
+            }
+        }, EsploraExecutors.direct());
+
+        assertTrue(isDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        return result.get();
+    }
+}
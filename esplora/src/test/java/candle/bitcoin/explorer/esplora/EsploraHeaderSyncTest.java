@@ -0,0 +1,322 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import candle.bitcoin.explorer.standin.EsploraStandinServer;
+import candle.bitcoin.explorer.standin.MinedChainSource;
+import candle.bitcoin.explorer.standin.NetworkConditions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link EsploraHeaderSync} against a stand-in server serving a mined chain, whose
+ * headers hash to the block hashes like on the real chain: resuming after the process was
+ * killed during the sync, restarting after a reorg below the stored tip and continuing after
+ * the scheduler dropped its requests.
+ */
+public class EsploraHeaderSyncTest {
+    // a few chunks, every page costs a token of the rate limit of the request scheduler
+    private static final int TIP_HEIGHT = 300;
+
+    // the first sync is killed once it stored this height
+    private static final int KILL_HEIGHT = 100;
+
+    // blocks per page of the blocks endpoint
+    private static final int PAGE_SIZE = 10;
+
+    // chunks downloaded at the same time, like by the app
+    private static final int MAX_CHUNKS_IN_FLIGHT = 2;
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private static EsploraStandinServer server;
+    private static MinedChainSource chain;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Mines the chain and starts the stand-in server.
+     *
+     * @throws IOException The server could not be started.
+     */
+    @BeforeClass
+    public static void startServer() throws IOException {
+        chain = new MinedChainSource(TIP_HEIGHT);
+        server = new EsploraStandinServer(0, chain, new NetworkConditions(0, 0, 0, 0));
+        server.start();
+
+        EsploraClient.setBaseUrl(server.getBaseUrl());
+    }
+
+    /**
+     * Stops the stand-in server.
+     */
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    /**
+     * Kills a sync halfway, with a record written after the last checkpoint like by a process
+     * killed between writing a chunk and its checkpoint. The next sync drops the record,
+     * resumes from the checkpoint without downloading the stored chunks again and reaches the
+     * tip. The historic pages don't reach the response cache or the block indexes.
+     *
+     * @throws Exception The sync failed or did not finish in time.
+     */
+    @Test
+    public void resumesAfterKill() throws Exception {
+        final File storeFile = folder.newFile("headers.store");
+        final File checkpointFile = new File(folder.getRoot(), "headers.checkpoint");
+        storeFile.delete();
+
+        final CountDownLatch isKillHeightStored = new CountDownLatch(1);
+        EsploraHeaderStore store = new EsploraHeaderStore(storeFile);
+        final EsploraHeaderSync killedSync = new EsploraHeaderSync(
+                store,
+                checkpointFile,
+                MAX_CHUNKS_IN_FLIGHT,
+                new EsploraHeaderSync.Listener() {
+                    @Override
+                    public void onProgress(
+                            final int height,
+                            final int tipHeight,
+                            final double headersPerSecond
+                    ) {
+                        if (height >= KILL_HEIGHT) {
+                            isKillHeightStored.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onFinished(final int height) {
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                    }
+                },
+                EsploraExecutors.direct()
+        );
+
+        killedSync.start();
+        assertTrue(isKillHeightStored.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // cancelling doesn't wait for a chunk being written, its lock does
+        killedSync.cancel();
+        synchronized (killedSync) {
+            assertTrue(killedSync.isCancelled());
+        }
+
+        final int checkpointCount = store.getRecordCount();
+        final byte[] header = new byte[EsploraHeaderStore.HEADER_SIZE];
+
+        // a chunk written without its checkpoint
+        final EsploraHeaderStore.Cursor cursor = store.cursor();
+        cursor.moveTo(0);
+        cursor.copyHeader(header, 0);
+        store.append(checkpointCount, header, 0, 1, 1, 1);
+        store.flush();
+        store.close();
+
+        final long requestsBefore = server.getRequestCount();
+
+        store = new EsploraHeaderStore(storeFile);
+        assertEquals(chain.getTipHeight(), sync(store, checkpointFile));
+
+        // one request per page of the remaining chunks, a partial page per chunk and the tip
+        final int remainingCount = chain.getTipHeight() + 1 - checkpointCount;
+        final int chunkCount = (remainingCount + EsploraHeaderSync.CHUNK_SIZE - 1)
+                / EsploraHeaderSync.CHUNK_SIZE;
+        assertTrue(server.getRequestCount() - requestsBefore
+                <= remainingCount / PAGE_SIZE + chunkCount + 1);
+
+        assertChain(store);
+        store.close();
+
+        assertNull(EsploraClient.getResponseCache().get("blocks/" + (KILL_HEIGHT - 1)));
+        assertNull(EsploraClient.getBlockHashIndex().getHash(KILL_HEIGHT - 1));
+        assertNull(EsploraClient.getBlockRepository().getBlock(KILL_HEIGHT - 1));
+    }
+
+    /**
+     * Syncs to the tip, replaces the last blocks by a competing branch and extends it by more
+     * than a chunk. The next sync detects the reorg at the stored tip, restarts below it and
+     * reaches the new tip instead of stalling or failing on the chunks requested before.
+     *
+     * @throws Exception The sync failed or did not finish in time.
+     */
+    @Test
+    public void restartsAfterReorg() throws Exception {
+        final File storeFile = folder.newFile("headers.store");
+        final File checkpointFile = new File(folder.getRoot(), "headers.checkpoint");
+        storeFile.delete();
+
+        final EsploraHeaderStore store = new EsploraHeaderStore(storeFile);
+        final int storedTipHeight = chain.getTipHeight();
+        assertEquals(storedTipHeight, sync(store, checkpointFile));
+
+        chain.reorg(storedTipHeight - 2);
+        chain.extend(3 * EsploraHeaderSync.CHUNK_SIZE / 2);
+
+        assertEquals(chain.getTipHeight(), sync(store, checkpointFile));
+        assertChain(store);
+        store.close();
+    }
+
+    /**
+     * Sends visible requests while the sync waits for tokens, so the scheduler drops its
+     * queued pages. The sync sends them again after a back off and reaches the tip.
+     *
+     * @throws Exception The sync failed or did not finish in time.
+     */
+    @Test
+    public void continuesAfterDroppedPages() throws Exception {
+        final File storeFile = folder.newFile("headers.store");
+        final File checkpointFile = new File(folder.getRoot(), "headers.checkpoint");
+        storeFile.delete();
+
+        final EsploraRequestScheduler scheduler = EsploraClient.getScheduler();
+        final long droppedBefore = scheduler.getDroppedCount(EsploraRequestPriority.PREFETCH);
+
+        final CountDownLatch isDone = new CountDownLatch(1);
+        final AtomicInteger finishedHeight = new AtomicInteger(-1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicInteger visibleCount = new AtomicInteger();
+
+        final EsploraHeaderStore store = new EsploraHeaderStore(storeFile);
+        final EsploraHeaderSync sync = new EsploraHeaderSync(
+                store,
+                checkpointFile,
+                MAX_CHUNKS_IN_FLIGHT,
+                new EsploraHeaderSync.Listener() {
+                    @Override
+                    public void onProgress(
+                            final int height,
+                            final int tipHeight,
+                            final double headersPerSecond
+                    ) {
+                        // pages of the list above the kill height, checked by another test
+                        if (visibleCount.getAndIncrement() > 0) {
+                            return;
+                        }
+
+                        for (int start = 290; start > KILL_HEIGHT + PAGE_SIZE; start -= 20) {
+                            EsploraClient.fetchBlockPage(start, EsploraRequestPriority.VISIBLE);
+                        }
+                    }
+
+                    @Override
+                    public void onFinished(final int height) {
+                        finishedHeight.set(height);
+                        isDone.countDown();
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                        failure.set(error);
+                        isDone.countDown();
+                    }
+                },
+                EsploraExecutors.direct()
+        );
+
+        sync.start();
+        assertTrue(isDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNull(failure.get());
+
+        assertTrue(scheduler.getDroppedCount(EsploraRequestPriority.PREFETCH) > droppedBefore);
+        assertEquals(chain.getTipHeight(), finishedHeight.get());
+        assertChain(store);
+        store.close();
+    }
+
+    /**
+     * Runs a sync from the checkpoint until it finished.
+     *
+     * @param store          The store to fill.
+     * @param checkpointFile The file of the checkpoint.
+     * @return Height of the last stored header.
+     * @throws Exception The sync failed or did not finish in time.
+     */
+    private static int sync(final EsploraHeaderStore store, final File checkpointFile)
+            throws Exception {
+        final CountDownLatch isDone = new CountDownLatch(1);
+        final AtomicInteger finishedHeight = new AtomicInteger(-1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        final EsploraHeaderSync sync = new EsploraHeaderSync(
+                store,
+                checkpointFile,
+                MAX_CHUNKS_IN_FLIGHT,
+                new EsploraHeaderSync.Listener() {
+                    @Override
+                    public void onProgress(
+                            final int height,
+                            final int tipHeight,
+                            final double headersPerSecond
+                    ) {
+                    }
+
+                    @Override
+                    public void onFinished(final int height) {
+                        finishedHeight.set(height);
+                        isDone.countDown();
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                        failure.set(error);
+                        isDone.countDown();
+                    }
+                },
+                EsploraExecutors.direct()
+        );
+
+        sync.start();
+
+        if (!isDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            sync.cancel();
+            throw new IllegalStateException("the sync stalled at " + store.getRecordCount());
+        }
+
+        if (failure.get() != null) {
+            throw new IllegalStateException(failure.get());
+        }
+
+        return finishedHeight.get();
+    }
+
+    /**
+     * Checks the stored headers against the hashes of the current chain.
+     *
+     * @param store The synced store.
+     */
+    private static void assertChain(final EsploraHeaderStore store) {
+        assertEquals(chain.getTipHeight() + 1, store.getRecordCount());
+
+        final EsploraHeaderStore.Cursor cursor = store.cursor();
+        final byte[] header = new byte[EsploraBlockHeader.SIZE];
+
+        for (int height = 0; height < store.getRecordCount(); height++) {
+            assertTrue(cursor.moveTo(height));
+            cursor.copyHeader(header, 0);
+
+            assertEquals(chain.getHash(height), new EsploraBlockHeader(header).getHash());
+        }
+    }
+}
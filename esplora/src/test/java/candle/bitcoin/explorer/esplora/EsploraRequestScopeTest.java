@@ -0,0 +1,284 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import candle.bitcoin.explorer.standin.EsploraStandinServer;
+import candle.bitcoin.explorer.standin.NetworkConditions;
+import candle.bitcoin.explorer.standin.SyntheticChainSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link EsploraRequestScope} objects bound to screens that are destroyed while their
+ * requests are in flight, like an Activity rotated over and over again. Destroyed screens must
+ * neither receive callbacks nor be kept from being garbage collected, and their requests must
+ * stop using bandwidth.
+ */
+public class EsploraRequestScopeTest {
+    private static final int TIP_HEIGHT = 100000;
+
+    // blocks per page of the blocks endpoint
+    private static final int PAGE_SIZE = 10;
+
+    private static final int ROTATION_COUNT = 10;
+    private static final int PAGES_PER_SCREEN = 2;
+
+    // time a screen lives before it gets rotated, shorter than any response takes
+    private static final long SCREEN_LIFETIME_MILLIS = 100;
+
+    // responses start after 300 ms and a page takes several seconds at 1 KB/s
+    private static final long LATENCY_MILLIS = 300;
+    private static final long BYTES_PER_SECOND = 1024;
+
+    private static EsploraStandinServer server;
+    private static SyntheticChainSource chain;
+
+    /**
+     * Starts a slow stand-in server, so every request is in flight when its screen is gone.
+     *
+     * @throws IOException The server could not be started.
+     */
+    @BeforeClass
+    public static void startServer() throws IOException {
+        chain = new SyntheticChainSource(TIP_HEIGHT);
+        server = new EsploraStandinServer(
+                0,
+                chain,
+                new NetworkConditions(LATENCY_MILLIS, 0, 0, BYTES_PER_SECOND)
+        );
+        server.start();
+
+        EsploraClient.setBaseUrl(server.getBaseUrl());
+    }
+
+    /**
+     * Stops the stand-in server.
+     */
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    /**
+     * A result posted to the main thread right before the scope got cancelled must not reach
+     * its listener, even when the scope was cleaned up in between.
+     *
+     * @throws Exception The main thread did not respond.
+     */
+    @Test
+    public void cancelSkipsResultPostedToMainThread() throws Exception {
+        final EsploraRequestScope scope = new EsploraRequestScope();
+        final EsploraFuture<String> future = new EsploraFuture<>();
+        final AtomicInteger callbackCount = new AtomicInteger();
+
+        MainThread.run(new Runnable() {
+            @Override
+            public void run() {
+                scope.add(future.addListener(new EsploraFuture.Listener<String>() {
+                    @Override
+                    public void onSuccess(final String value) {
+                        callbackCount.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onError(final Throwable error) {
+                        callbackCount.incrementAndGet();
+                    }
+                }, EsploraExecutors.mainThread()));
+            }
+        });
+
+        final CountDownLatch isMainThreadBusy = new CountDownLatch(1);
+        final CountDownLatch isResultPosted = new CountDownLatch(1);
+
+        // the screen gets destroyed while the result waits for the main thread
+        EsploraExecutors.getEventLoop().post(new Runnable() {
+            @Override
+            public void run() {
+                isMainThreadBusy.countDown();
+                awaitUninterruptibly(isResultPosted);
+
+                // adding a request forgets about finished ones, which must not include it
+                scope.add(EsploraFuture.completed("other"));
+                scope.cancel();
+            }
+        });
+
+        isMainThreadBusy.await();
+        future.complete("result");
+        isResultPosted.countDown();
+        MainThread.flush();
+
+        assertTrue(future.isCancelled());
+        assertEquals(0, callbackCount.get());
+    }
+
+    /**
+     * Rotates a screen requesting pages of blocks over and over again. Every screen is destroyed
+     * before its pages arrive.
+     *
+     * @throws Exception The main thread did not respond.
+     */
+    @Test
+    public void rotationsReleaseScreensAndAbortTheirRequests() throws Exception {
+        final List<WeakReference<Screen>> destroyedScreens = new ArrayList<>();
+        final long bytesSentBefore = server.getBytesSent();
+        long requestedBytes = 0;
+
+        for (int rotation = 0; rotation < ROTATION_COUNT; rotation++) {
+            final Screen screen = new Screen();
+            final int firstPage = rotation * PAGES_PER_SCREEN;
+
+            // every page is requested once, so none is served by the response cache
+            for (int page = firstPage; page < firstPage + PAGES_PER_SCREEN; page++) {
+                requestedBytes += chain.get("blocks/" + getPageHeight(page)).length();
+            }
+
+            MainThread.run(new Runnable() {
+                @Override
+                public void run() {
+                    screen.onCreate(firstPage);
+                }
+            });
+
+            Thread.sleep(SCREEN_LIFETIME_MILLIS);
+
+            MainThread.run(new Runnable() {
+                @Override
+                public void run() {
+                    screen.onDestroy();
+                }
+            });
+
+            destroyedScreens.add(new WeakReference<>(screen));
+        }
+
+        // late responses would arrive by now
+        Thread.sleep(LATENCY_MILLIS + 2000);
+        MainThread.flush();
+
+        assertEquals(0, Screen.callbacksAfterDestroy.get());
+
+        for (int attempt = 0; attempt < 20 && countReachable(destroyedScreens) > 0; attempt++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        assertEquals(0, countReachable(destroyedScreens));
+
+        final long bytesSent = server.getBytesSent() - bytesSentBefore;
+
+        // aborted responses stop at their first chunk, queued requests are never sent
+        assertTrue(
+                ROTATION_COUNT + " rotations sent " + bytesSent + " of " + requestedBytes
+                        + " requested bytes in " + server.getRequestCount() + " requests",
+                bytesSent < requestedBytes / 4
+        );
+    }
+
+    /**
+     * @param page Index of a page.
+     * @return Height of the newest block of the page.
+     */
+    private static int getPageHeight(final int page) {
+        return TIP_HEIGHT - page * PAGE_SIZE;
+    }
+
+    /**
+     * @param references Weak references to screens.
+     * @return Amount of screens not garbage collected yet.
+     */
+    private static int countReachable(final List<WeakReference<Screen>> references) {
+        int count = 0;
+
+        for (final WeakReference<Screen> reference : references) {
+            if (reference.get() != null) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @param latch Latch to wait for, ignoring interrupts.
+     */
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // keep waiting, the test thread counts down
+            }
+        }
+    }
+
+    /**
+     * Stands in for an Activity: it owns a large view hierarchy referenced by the callbacks of
+     * its requests, which are owned by a scope cancelled when it gets destroyed.
+     */
+    private static class Screen {
+        static final AtomicInteger callbacksAfterDestroy = new AtomicInteger();
+
+        private final EsploraRequestScope requestScope = new EsploraRequestScope();
+
+        // makes a leaked screen noticeable
+        private final byte[] views = new byte[1024 * 1024];
+
+        private boolean isDestroyed = false;
+
+        /**
+         * Requests the pages shown by the screen.
+         *
+         * @param firstPage Index of the first page.
+         */
+        void onCreate(final int firstPage) {
+            for (int page = firstPage; page < firstPage + PAGES_PER_SCREEN; page++) {
+                requestScope.add(EsploraClient.getBlockList(
+                        getPageHeight(page),
+                        new EsploraResponseCallback() {
+                            @Override
+                            public void onSuccess(final ArrayList<EsploraBlock> blocks) {
+                                bind(blocks.size());
+                            }
+
+                            @Override
+                            public void onError() {
+                                bind(0);
+                            }
+                        }
+                ));
+            }
+        }
+
+        /**
+         * Cancels all requests of the screen.
+         */
+        void onDestroy() {
+            isDestroyed = true;
+            requestScope.cancel();
+        }
+
+        /**
+         * @param blockCount Amount of received blocks.
+         */
+        private void bind(final int blockCount) {
+            if (isDestroyed) {
+                callbacksAfterDestroy.incrementAndGet();
+            }
+
+            views[0] = (byte) blockCount;
+        }
+    }
+}
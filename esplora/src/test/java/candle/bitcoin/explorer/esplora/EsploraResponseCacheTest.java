@@ -0,0 +1,183 @@
+package candle.bitcoin.explorer.esplora;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import candle.bitcoin.explorer.standin.EsploraStandinServer;
+import candle.bitcoin.explorer.standin.NetworkConditions;
+import candle.bitcoin.explorer.standin.SyntheticChainSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link EsploraResponseCache} against a stand-in server answering conditional
+ * requests with 304 Not Modified, measuring the bytes the cache and the revalidation save.
+ */
+public class EsploraResponseCacheTest {
+    private static final int TIP_HEIGHT = 100000;
+
+    // blocks per page of the blocks endpoint
+    private static final int PAGE_SIZE = 10;
+
+    private static final int HISTORIC_PAGE_COUNT = 5;
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static EsploraStandinServer server;
+    private static SyntheticChainSource chain;
+
+    /**
+     * Starts the stand-in server.
+     *
+     * @throws IOException The server could not be started.
+     */
+    @BeforeClass
+    public static void startServer() throws IOException {
+        chain = new SyntheticChainSource(TIP_HEIGHT);
+        server = new EsploraStandinServer(0, chain, new NetworkConditions(0, 0, 0, 0));
+        server.start();
+
+        EsploraClient.setBaseUrl(server.getBaseUrl());
+    }
+
+    /**
+     * Stops the stand-in server.
+     */
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    /**
+     * Opens the block list, browses historic pages, comes back to them and refreshes the list
+     * explicitly. Browsing again is served by the cache, the refresh reaches the server and
+     * costs a 304 without a body.
+     *
+     * @throws Exception The main thread did not respond.
+     */
+    @Test
+    public void refreshRevalidatesAndSavesTheBody() throws Exception {
+        final EsploraResponseCache cache = EsploraClient.getResponseCache();
+        final int tipPageLength = chain.get("blocks").length();
+
+        assertEquals(PAGE_SIZE, loadBlockList(null, false));
+
+        long historicBytes = 0;
+
+        for (int page = 1; page <= HISTORIC_PAGE_COUNT; page++) {
+            assertEquals(PAGE_SIZE, loadBlockList(getPageHeight(page), false));
+            historicBytes += chain.get("blocks/" + getPageHeight(page)).length();
+        }
+
+        final long requestsBefore = server.getRequestCount();
+        final long bytesSentBefore = server.getBytesSent();
+
+        // confirmed pages never change, they are served without a request
+        for (int page = 1; page <= HISTORIC_PAGE_COUNT; page++) {
+            assertEquals(PAGE_SIZE, loadBlockList(getPageHeight(page), false));
+        }
+
+        assertEquals(requestsBefore, server.getRequestCount());
+        assertEquals(historicBytes, cache.getBytesSaved());
+
+        // the fresh list would be served from the cache, the explicit refresh asks the server
+        assertEquals(PAGE_SIZE, loadBlockList(null, true));
+
+        assertEquals(requestsBefore + 1, server.getRequestCount());
+        assertEquals(1, server.getNotModifiedCount());
+        assertEquals(1, cache.getRevalidatedCount());
+        assertEquals(historicBytes + tipPageLength, cache.getBytesSaved());
+
+        final long bytesSent = server.getBytesSent() - bytesSentBefore;
+
+        // the 304 carries no body
+        assertTrue(
+                "the refresh sent " + bytesSent + " of " + tipPageLength + " bytes",
+                bytesSent < tipPageLength
+        );
+    }
+
+    /**
+     * A stale response served while it is revalidated in the background saves its body once,
+     * not again when the revalidation is answered with 304. A refresh answered with 304 serves
+     * the body and counts it.
+     */
+    @Test
+    public void staleHitIsCountedOnce() {
+        final EsploraResponseCache cache = new EsploraResponseCache();
+        final String body = chain.get("blocks");
+
+        cache.put("blocks", body, "\"etag\"", null);
+        final EsploraResponseCache.Entry entry = cache.get("blocks");
+
+        cache.onHit(entry);
+        assertTrue(cache.startRevalidation(entry));
+        cache.onNotModified(entry, false);
+
+        assertEquals(body.length(), cache.getBytesSaved());
+        assertEquals(1, cache.getRevalidatedCount());
+
+        cache.onNotModified(entry, true);
+
+        assertEquals(2L * body.length(), cache.getBytesSaved());
+    }
+
+    /**
+     * Loads a page of the block list like the block list screen does.
+     *
+     * @param startBlockHeight Height of the newest block of the page, null for the tip.
+     * @param isRefresh        True for an explicit refresh by the user.
+     * @return Amount of received blocks.
+     * @throws InterruptedException Waiting was interrupted.
+     */
+    private static int loadBlockList(final Integer startBlockHeight, final boolean isRefresh)
+            throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger blockCount = new AtomicInteger(-1);
+        final EsploraResponseCallback callback = new EsploraResponseCallback() {
+            @Override
+            public void onSuccess(final ArrayList<EsploraBlock> blocks) {
+                blockCount.set(blocks.size());
+                done.countDown();
+            }
+
+            @Override
+            public void onError() {
+                done.countDown();
+            }
+        };
+
+        MainThread.run(new Runnable() {
+            @Override
+            public void run() {
+                if (isRefresh) {
+                    EsploraClient.refreshBlockList(callback);
+                } else {
+                    EsploraClient.getBlockList(startBlockHeight, callback);
+                }
+            }
+        });
+
+        if (!done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("the block list was not loaded");
+        }
+
+        return blockCount.get();
+    }
+
+    /**
+     * @param page Index of a page.
+     * @return Height of the newest block of the page.
+     */
+    private static int getPageHeight(final int page) {
+        return TIP_HEIGHT - page * PAGE_SIZE;
+    }
+}
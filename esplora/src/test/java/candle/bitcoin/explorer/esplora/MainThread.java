@@ -0,0 +1,53 @@
+package candle.bitcoin.explorer.esplora;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs test code on the event loop the EsploraClient uses as main thread, like the code of a
+ * screen runs on the Android main looper.
+ */
+final class MainThread {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private MainThread() {
+    }
+
+    /**
+     * Runs a task on the main thread and waits for it.
+     *
+     * @param task The task.
+     * @throws InterruptedException Waiting was interrupted.
+     */
+    static void run(final Runnable task) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+
+        EsploraExecutors.getEventLoop().post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+
+        if (!done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("main thread did not run the task");
+        }
+    }
+
+    /**
+     * Waits until everything posted to the main thread so far ran.
+     *
+     * @throws InterruptedException Waiting was interrupted.
+     */
+    static void flush() throws InterruptedException {
+        run(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package candle.bitcoin.explorer.exporter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import candle.bitcoin.explorer.esplora.EsploraBlock;
+
+/**
+ * Writes one CSV row per block:
+ * <pre>
+ * height,hash,timestamp,interval,size,weight,tx_count
+ * </pre>
+ * The timestamp is in Unix seconds, the interval is the difference to the timestamp of the
+ * previous block in seconds (negative values are valid) and empty for the genesis block.
+ */
+class CsvExportWriter implements ExportWriter {
+    private static final String HEADER = "height,hash,timestamp,interval,size,weight,tx_count\n";
+
+    private final FileOutputStream fileOutput;
+    private final OutputStream output;
+
+    // length of the file including the buffered rows
+    private long length;
+
+    /**
+     * Opens a CSV file for appending, writing the header into an empty file.
+     *
+     * @param file   The CSV file.
+     * @param length Length of the valid part of the file, anything after it is discarded.
+     * @throws IOException The file could not be opened.
+     */
+    CsvExportWriter(final File file, final long length) throws IOException {
+        EsploraExporter.truncate(file, length);
+
+        this.fileOutput = new FileOutputStream(file, true);
+        this.output = new BufferedOutputStream(fileOutput, 1 << 16);
+        this.length = length;
+
+        if (length == 0) {
+            writeAscii(HEADER);
+        }
+    }
+
+    @Override
+    public void write(final EsploraBlock block, final EsploraBlock previous) throws IOException {
+        final long timestamp = block.getTime().getTime() / 1000;
+
+        final StringBuilder row = new StringBuilder(128);
+        row.append(block.getHeight()).append(',');
+        row.append(block.getHash()).append(',');
+        row.append(timestamp).append(',');
+
+        if (previous != null) {
+            row.append(timestamp - previous.getTime().getTime() / 1000);
+        }
+
+        row.append(',').append(block.getSize());
+        row.append(',').append(block.getWeight());
+        row.append(',').append(block.getTxCount());
+        row.append('\n');
+
+        writeAscii(row.toString());
+    }
+
+    @Override
+    public long commit() throws IOException {
+        output.flush();
+        fileOutput.getFD().sync();
+
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    /**
+     * @param text Text consisting of ASCII characters only.
+     * @throws IOException Writing failed.
+     */
+    private void writeAscii(final String text) throws IOException {
+        final byte[] bytes = text.getBytes("US-ASCII");
+
+        output.write(bytes);
+        length += bytes.length;
+    }
+}
@@ -0,0 +1,310 @@
+package candle.bitcoin.explorer.exporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import candle.bitcoin.explorer.esplora.EsploraBlock;
+import candle.bitcoin.explorer.esplora.EsploraBlockSegment;
+import candle.bitcoin.explorer.esplora.EsploraClient;
+import candle.bitcoin.explorer.esplora.EsploraIngestion;
+
+/**
+ * Exports the metadata of a range of blocks into a CSV file (see {@link CsvExportWriter}) or a
+ * compact binary columnar file (see {@link SegmentExportWriter}). Pages of blocks are requested
+ * concurrently by an {@link EsploraIngestion} and written in ascending height order, so memory
+ * use does not depend on the size of the range. Progress is saved in a checkpoint file every
+ * {@link EsploraBlockSegment#SIZE} blocks; running the same export again resumes it.
+ * <p>
+ * Options:
+ * <pre>
+ * --output FILE          export file, required
+ * --from 0               lowest height to export
+ * --to TIP               highest height to export, by default the current tip or, when
+ *                        resuming, the tip the export started with
+ * --format FORMAT        csv or binary, csv for files ending with .csv and binary otherwise
+ * --url URL              Esplora HTTP API to export from, blockstream.info by default
+ * --concurrency 8        requests in flight
+ * --checkpoint FILE      checkpoint file, the export file with ".checkpoint" appended by default
+ * --decode FILE          convert the binary export FILE to the CSV file given by --output
+ * </pre>
+ */
+public class EsploraExporter {
+    private static final int DEFAULT_CONCURRENCY = 8;
+
+    private static final String FORMAT_CSV = "csv";
+    private static final String FORMAT_BINARY = "binary";
+
+    /**
+     * Runs an export, see the class documentation.
+     *
+     * @param args Options.
+     * @throws Exception The export failed, it can be resumed by running it again.
+     */
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = parseOptions(args);
+
+        if (!options.containsKey("output")) {
+            throw new IllegalArgumentException("--output is required");
+        }
+
+        final File output = new File(options.get("output"));
+
+        if (options.containsKey("decode")) {
+            decode(new File(options.get("decode")), output);
+            return;
+        }
+
+        final String baseUrl = options.containsKey("url")
+                ? options.get("url")
+                : EsploraClient.DEFAULT_BASE_URL;
+        final String format = options.containsKey("format")
+                ? options.get("format")
+                : output.getName().endsWith(".csv") ? FORMAT_CSV : FORMAT_BINARY;
+
+        if (!format.equals(FORMAT_CSV) && !format.equals(FORMAT_BINARY)) {
+            throw new IllegalArgumentException("unknown format " + format);
+        }
+
+        final int fromHeight = getInt(options, "from", 0);
+        final File checkpointFile = new File(options.containsKey("checkpoint")
+                ? options.get("checkpoint")
+                : output.getPath() + ".checkpoint");
+        final ExportCheckpoint checkpoint = ExportCheckpoint.load(checkpointFile);
+
+        // the tip moved since an interrupted export started, its range is kept
+        final int toHeight;
+        if (options.containsKey("to")) {
+            toHeight = Integer.parseInt(options.get("to"));
+        } else if (checkpoint != null) {
+            toHeight = checkpoint.toHeight;
+        } else {
+            toHeight = EsploraIngestion.fetchTipHeight(baseUrl);
+        }
+
+        export(
+                new EsploraIngestion(
+                        baseUrl,
+                        getInt(options, "concurrency", DEFAULT_CONCURRENCY)
+                ),
+                fromHeight,
+                toHeight,
+                format,
+                output,
+                checkpoint,
+                checkpointFile
+        );
+    }
+
+    /**
+     * Exports a range of blocks, resuming from the checkpoint if there is one.
+     *
+     * @param ingestion      Ingestion requesting the blocks.
+     * @param fromHeight     Lowest height to export.
+     * @param toHeight       Highest height to export.
+     * @param format         Format of the export file.
+     * @param output         The export file.
+     * @param checkpoint     The saved checkpoint or null if there is none.
+     * @param checkpointFile The checkpoint file, deleted when the export is complete.
+     * @throws Exception The export failed.
+     */
+    private static void export(
+            final EsploraIngestion ingestion,
+            final int fromHeight,
+            final int toHeight,
+            final String format,
+            final File output,
+            final ExportCheckpoint checkpoint,
+            final File checkpointFile
+    ) throws Exception {
+        if (checkpoint != null && !checkpoint.matches(fromHeight, toHeight, format)) {
+            throw new IllegalStateException(checkpointFile + " belongs to another export");
+        }
+
+        if (checkpoint == null && output.length() > 0) {
+            throw new IllegalStateException(output + " exists and there is no checkpoint");
+        }
+
+        final int startHeight = checkpoint != null ? checkpoint.nextHeight : fromHeight;
+        final long outputLength = checkpoint != null ? checkpoint.outputLength : 0;
+
+        if (checkpoint != null) {
+            System.out.println("resuming at height " + startHeight);
+        }
+
+        final ExportWriter writer = format.equals(FORMAT_CSV)
+                ? new CsvExportWriter(output, outputLength)
+                : new SegmentExportWriter(output, outputLength);
+
+        final long startedAt = System.nanoTime();
+        final long[] exportedCount = {0};
+
+        try {
+            // the block before the range is requested for the interval of the first block
+            ingestion.ingestOrdered(
+                    Math.max(0, startHeight - 1),
+                    toHeight,
+                    new EsploraIngestion.Sink() {
+                        private EsploraBlock previous;
+
+                        @Override
+                        public void onBlocks(final List<EsploraBlock> blocks) throws IOException {
+                            for (final EsploraBlock block : blocks) {
+                                if (block.getHeight() >= startHeight) {
+                                    writer.write(block, previous);
+                                    exportedCount[0]++;
+                                    onWritten(block.getHeight());
+                                }
+
+                                previous = block;
+                            }
+                        }
+
+                        /**
+                         * Saves a checkpoint after every full segment of the export.
+                         *
+                         * @param height Height of the written block.
+                         * @throws IOException The checkpoint could not be saved.
+                         */
+                        private void onWritten(final int height) throws IOException {
+                            if ((height - fromHeight + 1) % EsploraBlockSegment.SIZE != 0
+                                    || height == toHeight) {
+                                return;
+                            }
+
+                            new ExportCheckpoint(
+                                    fromHeight,
+                                    toHeight,
+                                    format,
+                                    height + 1,
+                                    writer.commit()
+                            ).save(checkpointFile);
+
+                            System.out.println(String.format(
+                                    Locale.US,
+                                    "height %d, %.0f blocks/s",
+                                    height,
+                                    exportedCount[0] * 1e9 / (System.nanoTime() - startedAt)
+                            ));
+                        }
+                    }
+            );
+
+            writer.commit();
+        } finally {
+            writer.close();
+            ingestion.shutdown();
+        }
+
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            throw new IOException("unable to delete " + checkpointFile);
+        }
+
+        final long elapsedNanos = System.nanoTime() - startedAt;
+
+        System.out.println(String.format(
+                Locale.US,
+                "exported %d blocks to %s in %.1f s, %.0f blocks/s, %d bytes",
+                exportedCount[0],
+                output,
+                elapsedNanos / 1e9,
+                exportedCount[0] * 1e9 / elapsedNanos,
+                output.length()
+        ));
+    }
+
+    /**
+     * Converts a binary export file to CSV.
+     *
+     * @param input  The binary export file.
+     * @param output The CSV file, replaced if it exists.
+     * @throws IOException Reading or writing failed.
+     */
+    private static void decode(final File input, final File output) throws IOException {
+        final SegmentExportReader reader = new SegmentExportReader(input);
+        final CsvExportWriter writer = new CsvExportWriter(output, 0);
+
+        try {
+            EsploraBlock previous = null;
+            List<EsploraBlock> blocks;
+
+            while ((blocks = reader.next()) != null) {
+                for (final EsploraBlock block : blocks) {
+                    // the interval of the first block is unknown unless it is the genesis block
+                    final boolean isConsecutive = previous != null
+                            && previous.getHeight() == block.getHeight() - 1;
+
+                    writer.write(block, isConsecutive ? previous : null);
+                    previous = block;
+                }
+            }
+
+            writer.commit();
+        } finally {
+            writer.close();
+            reader.close();
+        }
+    }
+
+    /**
+     * Discards the part of a file after the given length, e.g. written after the last
+     * checkpoint.
+     *
+     * @param file   The file, created if it does not exist.
+     * @param length The length to keep in bytes.
+     * @throws IOException The file is shorter than the given length or can't be truncated.
+     */
+    static void truncate(final File file, final long length) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+        try {
+            if (randomAccessFile.length() < length) {
+                throw new IOException(file + " is shorter than its checkpoint");
+            }
+
+            randomAccessFile.setLength(length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Parses "--name value" pairs.
+     *
+     * @param args Command line arguments.
+     * @return The values by option name without the leading dashes.
+     */
+    private static Map<String, String> parseOptions(final String[] args) {
+        final HashMap<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("expected --name value, got " + args[i]);
+            }
+
+            options.put(args[i].substring(2), args[++i]);
+        }
+
+        return options;
+    }
+
+    /**
+     * @param options      The parsed options.
+     * @param name         Name of an integer option.
+     * @param defaultValue Value used when the option is not given.
+     * @return The value of the option.
+     */
+    private static int getInt(
+            final Map<String, String> options,
+            final String name,
+            final int defaultValue
+    ) {
+        final String value = options.get(name);
+
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+}
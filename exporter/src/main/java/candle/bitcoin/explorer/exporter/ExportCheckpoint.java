@@ -0,0 +1,120 @@
+package candle.bitcoin.explorer.exporter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Progress of an export, saved after every committed part of the export file. An interrupted
+ * export resumes at the next height, after discarding what was written to the file after the
+ * checkpoint. The range and format are saved as well, so a checkpoint is never applied to a
+ * different export, and an export up to the tip resumes up to the tip it started with.
+ */
+class ExportCheckpoint {
+    final int fromHeight;
+    final int toHeight;
+    final String format;
+    final int nextHeight;
+    final long outputLength;
+
+    /**
+     * @param fromHeight   Lowest height of the export.
+     * @param toHeight     Highest height of the export.
+     * @param format       Format of the export file.
+     * @param nextHeight   Height of the next block to be exported.
+     * @param outputLength Length of the export file up to the next block in bytes.
+     */
+    ExportCheckpoint(
+            final int fromHeight,
+            final int toHeight,
+            final String format,
+            final int nextHeight,
+            final long outputLength
+    ) {
+        this.fromHeight = fromHeight;
+        this.toHeight = toHeight;
+        this.format = format;
+        this.nextHeight = nextHeight;
+        this.outputLength = outputLength;
+    }
+
+    /**
+     * @param file The checkpoint file.
+     * @return The saved checkpoint or null if the file does not exist.
+     * @throws IOException The file could not be read or is invalid.
+     */
+    static ExportCheckpoint load(final File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        final InputStream input = new FileInputStream(file);
+
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+
+        try {
+            return new ExportCheckpoint(
+                    Integer.parseInt(properties.getProperty("from")),
+                    Integer.parseInt(properties.getProperty("to")),
+                    properties.getProperty("format"),
+                    Integer.parseInt(properties.getProperty("next")),
+                    Long.parseLong(properties.getProperty("output_length"))
+            );
+        } catch (NumberFormatException e) {
+            throw new IOException("invalid checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * Saves the checkpoint, written to a temporary file first so a crash never leaves a
+     * partial checkpoint behind.
+     *
+     * @param file The checkpoint file.
+     * @throws IOException The file could not be written.
+     */
+    void save(final File file) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("from", Integer.toString(fromHeight));
+        properties.setProperty("to", Integer.toString(toHeight));
+        properties.setProperty("format", format);
+        properties.setProperty("next", Integer.toString(nextHeight));
+        properties.setProperty("output_length", Long.toString(outputLength));
+
+        final File temporaryFile = new File(file.getPath() + ".tmp");
+        final FileOutputStream output = new FileOutputStream(temporaryFile);
+
+        try {
+            properties.store(output, "esplora export checkpoint");
+
+            // the rename may reach the storage device before the content otherwise
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+
+        // renameTo does not replace an existing file on every platform
+        if (!temporaryFile.renameTo(file) && !(file.delete() && temporaryFile.renameTo(file))) {
+            throw new IOException("unable to rename " + temporaryFile);
+        }
+    }
+
+    /**
+     * @param fromHeight Lowest height of an export.
+     * @param toHeight   Highest height of an export.
+     * @param format     Format of an export file.
+     * @return True if this checkpoint belongs to the given export.
+     */
+    boolean matches(final int fromHeight, final int toHeight, final String format) {
+        return this.fromHeight == fromHeight
+                && this.toHeight == toHeight
+                && this.format.equals(format);
+    }
+}
@@ -0,0 +1,28 @@
+package candle.bitcoin.explorer.exporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import candle.bitcoin.explorer.esplora.EsploraBlock;
+
+/**
+ * Appends blocks in ascending height order to an export file. Written blocks may be buffered
+ * until {@link #commit()}, only committed blocks are covered by a checkpoint.
+ */
+interface ExportWriter extends Closeable {
+    /**
+     * @param block    The block to be written.
+     * @param previous The block before it, or null for the genesis block.
+     * @throws IOException Writing failed.
+     */
+    void write(EsploraBlock block, EsploraBlock previous) throws IOException;
+
+    /**
+     * Writes all buffered blocks to the file and syncs it to the storage device, so a
+     * checkpoint saved afterwards never covers blocks lost in a power failure.
+     *
+     * @return Length of the file in bytes after the written blocks.
+     * @throws IOException Writing failed.
+     */
+    long commit() throws IOException;
+}
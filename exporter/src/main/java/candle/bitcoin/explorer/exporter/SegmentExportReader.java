@@ -0,0 +1,73 @@
+package candle.bitcoin.explorer.exporter;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import candle.bitcoin.explorer.esplora.EsploraBlock;
+import candle.bitcoin.explorer.esplora.EsploraBlockSegment;
+import candle.bitcoin.explorer.esplora.EsploraClientException;
+
+/**
+ * Reads the records of a file written by the {@link SegmentExportWriter} one after another,
+ * so only one record is held in memory.
+ */
+class SegmentExportReader implements Closeable {
+    private final DataInputStream input;
+
+    /**
+     * @param file The export file.
+     * @throws IOException The file could not be opened or is no segment export file.
+     */
+    SegmentExportReader(final File file) throws IOException {
+        input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+
+        if (input.readInt() != SegmentExportWriter.FILE_MAGIC) {
+            input.close();
+            throw new IOException(file + " is no segment export file");
+        }
+    }
+
+    /**
+     * @return The blocks of the next record in ascending height order, or null at the end of
+     * the file.
+     * @throws IOException Reading failed or the record is corrupt.
+     */
+    List<EsploraBlock> next() throws IOException {
+        final int length;
+
+        try {
+            length = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+
+        final int expectedChecksum = input.readInt();
+        final byte[] segment = new byte[length];
+        input.readFully(segment);
+
+        final CRC32 checksum = new CRC32();
+        checksum.update(segment);
+
+        if ((int) checksum.getValue() != expectedChecksum) {
+            throw new IOException("corrupt record");
+        }
+
+        try {
+            return EsploraBlockSegment.decode(segment, 0);
+        } catch (EsploraClientException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,109 @@
+package candle.bitcoin.explorer.exporter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+import candle.bitcoin.explorer.esplora.EsploraBlock;
+import candle.bitcoin.explorer.esplora.EsploraBlockSegment;
+import candle.bitcoin.explorer.esplora.EsploraClientException;
+
+/**
+ * Writes blocks in the compact columnar {@link EsploraBlockSegment} encoding, the format of the
+ * segment store of the app. The file is a magic number followed by records of up to
+ * {@link EsploraBlockSegment#SIZE} consecutive blocks:
+ * <pre>
+ * magic | length | CRC32 | segment | length | CRC32 | segment | ...
+ * </pre>
+ * Unlike the segment store there is no footer, so the file can be appended to while being
+ * exported and read as a stream, see {@link SegmentExportReader}. Records start at any height.
+ */
+class SegmentExportWriter implements ExportWriter {
+    // file format identifier ("EBX" and version 1)
+    static final int FILE_MAGIC = 0x45425801;
+
+    private final FileOutputStream fileOutput;
+    private final DataOutputStream output;
+
+    // blocks of the record being written
+    private final ArrayList<EsploraBlock> blocks = new ArrayList<>(EsploraBlockSegment.SIZE);
+
+    // length of the file including the written records
+    private long length;
+
+    /**
+     * Opens a segment export file for appending, writing the magic number into an empty file.
+     *
+     * @param file   The export file.
+     * @param length Length of the valid part of the file, anything after it is discarded.
+     * @throws IOException The file could not be opened.
+     */
+    SegmentExportWriter(final File file, final long length) throws IOException {
+        EsploraExporter.truncate(file, length);
+
+        this.fileOutput = new FileOutputStream(file, true);
+        this.output = new DataOutputStream(new BufferedOutputStream(fileOutput, 1 << 16));
+        this.length = length;
+
+        if (length == 0) {
+            output.writeInt(FILE_MAGIC);
+            this.length = 4;
+        }
+    }
+
+    @Override
+    public void write(final EsploraBlock block, final EsploraBlock previous) throws IOException {
+        blocks.add(block);
+
+        if (blocks.size() == EsploraBlockSegment.SIZE) {
+            writeRecord();
+        }
+    }
+
+    @Override
+    public long commit() throws IOException {
+        writeRecord();
+        output.flush();
+        fileOutput.getFD().sync();
+
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    /**
+     * Encodes the buffered blocks into a record.
+     *
+     * @throws IOException Writing failed.
+     */
+    private void writeRecord() throws IOException {
+        if (blocks.isEmpty()) {
+            return;
+        }
+
+        final byte[] segment;
+
+        try {
+            segment = EsploraBlockSegment.encode(blocks);
+        } catch (EsploraClientException e) {
+            throw new IOException(e);
+        }
+
+        final CRC32 checksum = new CRC32();
+        checksum.update(segment);
+
+        output.writeInt(segment.length);
+        output.writeInt((int) checksum.getValue());
+        output.write(segment);
+
+        length += 8 + segment.length;
+        blocks.clear();
+    }
+}
@@ -0,0 +1,129 @@
+package candle.bitcoin.explorer.standin;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import candle.bitcoin.explorer.esplora.EsploraBlock;
+import candle.bitcoin.explorer.esplora.EsploraIngestion;
+
+/**
+ * Measures the throughput of the {@link EsploraIngestion} of the esplora library in blocks per
+ * second, by default against an in-process {@link EsploraStandinServer}, once per given
+ * concurrency. The stand-in latency makes the difference between sequential and concurrent
+ * ingestion visible; without latency the benchmark mostly measures JSON parsing.
+ * <p>
+ * Options in addition to the server options of {@link EsploraStandinServer}:
+ * <pre>
+ * --url URL              API to run against instead of an in-process stand-in
+ * --blocks 20000         amount of blocks below the tip to ingest per run
+ * --concurrency 1,4,16,64
+ *                        requests in flight of the runs
+ * --executor fixed       fixed (a thread per request in flight) or virtual (Java 21 and later)
+ * </pre>
+ */
+public class EsploraIngestionBenchmark {
+    private static final int DEFAULT_BLOCK_COUNT = 20000;
+    private static final String DEFAULT_CONCURRENCY = "1,4,16,64";
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Options, see the class documentation.
+     * @throws Exception The stand-in could not be started or an ingestion failed.
+     */
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = EsploraStandinServer.parseOptions(args);
+        final int blockCount = EsploraStandinServer.getInt(options, "blocks", DEFAULT_BLOCK_COUNT);
+        final boolean isVirtual = "virtual".equals(options.get("executor"));
+
+        String baseUrl = options.get("url");
+        EsploraStandinServer server = null;
+
+        if (baseUrl == null) {
+            options.put("port", "0");
+            server = EsploraStandinServer.create(options);
+            server.start();
+            baseUrl = server.getBaseUrl();
+        }
+
+        try {
+            final int tipHeight = EsploraIngestion.fetchTipHeight(baseUrl);
+            final int fromHeight = Math.max(0, tipHeight - blockCount + 1);
+
+            System.out.println("ingesting blocks " + fromHeight + " to " + tipHeight
+                    + " from " + baseUrl + " with " + (isVirtual ? "virtual" : "platform")
+                    + " threads");
+            System.out.println(String.format(
+                    Locale.US,
+                    "%12s %10s %10s %10s %12s",
+                    "concurrency", "blocks", "requests", "retries", "blocks/s"
+            ));
+
+            final String concurrencies = options.containsKey("concurrency")
+                    ? options.get("concurrency")
+                    : DEFAULT_CONCURRENCY;
+
+            for (final String value : concurrencies.split(",")) {
+                final int concurrency = Integer.parseInt(value.trim());
+                final EsploraIngestion ingestion = isVirtual
+                        ? new EsploraIngestion(baseUrl, newVirtualThreadExecutor(), concurrency)
+                        : new EsploraIngestion(baseUrl, concurrency);
+
+                final AtomicLong received = new AtomicLong();
+                final EsploraIngestion.Result result = ingestion.ingest(
+                        fromHeight,
+                        tipHeight,
+                        new EsploraIngestion.Sink() {
+                            @Override
+                            public void onBlocks(final List<EsploraBlock> blocks) {
+                                received.addAndGet(blocks.size());
+                            }
+                        }
+                );
+
+                ingestion.shutdown();
+
+                if (received.get() != tipHeight - fromHeight + 1) {
+                    throw new IllegalStateException("received " + received.get() + " blocks");
+                }
+
+                System.out.println(String.format(
+                        Locale.US,
+                        "%12d %10d %10d %10d %12.0f",
+                        concurrency,
+                        result.getBlockCount(),
+                        result.getRequestCount(),
+                        result.getRetryCount(),
+                        result.getBlocksPerSecond()
+                ));
+            }
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * The module targets Java 8, so the executor of virtual threads is looked up at runtime.
+     *
+     * @return An executor starting a virtual thread per task.
+     * @throws Exception Virtual threads are not available on the running JVM.
+     */
+    private static ExecutorService newVirtualThreadExecutor() throws Exception {
+        final Method method;
+
+        try {
+            method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("virtual threads need Java 21 or later", e);
+        }
+
+        return (ExecutorService) method.invoke(null);
+    }
+}
@@ -0,0 +1,735 @@
+package candle.bitcoin.explorer.standin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import candle.bitcoin.explorer.esplora.EsploraBlockPage;
+import candle.bitcoin.explorer.esplora.EsploraClient;
+import candle.bitcoin.explorer.esplora.EsploraExecutors;
+import candle.bitcoin.explorer.esplora.EsploraFuture;
+import candle.bitcoin.explorer.esplora.EsploraMetrics;
+import candle.bitcoin.explorer.esplora.EsploraRequestPriority;
+
+/**
+ * Drives scripted sessions against an Esplora HTTP API, by default an in-process
+ * {@link EsploraStandinServer}, and reports throughput and latency percentiles. The sessions
+ * send the requests the app sends in these situations:
+ * <ul>
+ * <li>cold-start: the newest page, the detail of the newest block and the next two pages
+ * concurrently, followed by the block hash index backfill,</li>
+ * <li>deep-scroll: pages of older blocks one after another, like endless scrolling,</li>
+ * <li>search-storm: many searched heights resolved to their blocks concurrently, like typing
+ * with speculative prefetching.</li>
+ * </ul>
+ * In the raw mode the requests are sent with HttpURLConnection, measuring the API alone. In
+ * the client mode the sessions call the {@link EsploraClient} instead, so its request
+ * scheduler with the rate limit, its response cache and its block indexes take part: a report
+ * line counts client calls and their latency, the requests actually sent and the bytes
+ * received by the client.
+ * <p>
+ * Options in addition to the server options of {@link EsploraStandinServer}:
+ * <pre>
+ * --url URL              API to run against instead of an in-process stand-in
+ * --mode raw             raw or client
+ * --session all          cold-start, deep-scroll, search-storm or all
+ * --concurrency 5        maximum amount of concurrent requests or searches
+ * --pages 100            amount of pages of the deep-scroll session
+ * --searches 200         amount of searches of the search-storm session
+ * --json FILE            additionally write the reports as JSON to FILE
+ * </pre>
+ */
+public class EsploraLoadHarness {
+    private static final String[] SESSIONS = {"cold-start", "deep-scroll", "search-storm"};
+
+    // amount of blocks of a page of the blocks endpoint
+    private static final int PAGE_SIZE = 10;
+
+    // amount of pages the cold-start session backfills
+    private static final int BACKFILL_PAGES = 20;
+
+    private static final Pattern HEIGHT_PATTERN = Pattern.compile("\"height\":(\\d+)");
+    private static final Pattern ID_PATTERN = Pattern.compile("\"id\":\"([0-9a-f]{64})\"");
+
+    // endpoints of the metrics of the client counting the received bytes
+    private static final String[] CLIENT_ENDPOINTS = {
+            "blocks", "block_height", "block", "block_header", "tx_status", "other"
+    };
+
+    // a client call waits for the rate limit, a search storm queues many of them
+    private static final long CLIENT_TIMEOUT_SECONDS = 600;
+
+    private final String baseUrl;
+    private final int concurrency;
+    private final boolean isClientMode;
+    private final ExecutorService executor;
+
+    // report of the running session
+    private Report report;
+
+    /**
+     * @param baseUrl      URL of the API ending with a slash.
+     * @param concurrency  Maximum amount of concurrent requests or searches.
+     * @param isClientMode True to drive the {@link EsploraClient} instead of raw requests.
+     */
+    private EsploraLoadHarness(
+            final String baseUrl,
+            final int concurrency,
+            final boolean isClientMode
+    ) {
+        this.baseUrl = baseUrl;
+        this.concurrency = concurrency;
+        this.isClientMode = isClientMode;
+        this.executor = Executors.newFixedThreadPool(concurrency);
+
+        if (isClientMode) {
+            EsploraClient.setBaseUrl(baseUrl);
+        }
+    }
+
+    /**
+     * Runs a session.
+     *
+     * @param session  Name of the session.
+     * @param options  The parsed options.
+     * @return The report of the session.
+     * @throws Exception A request of the session failed in a way the session cannot continue.
+     */
+    private Report run(final String session, final Map<String, String> options)
+            throws Exception {
+        report = new Report(session);
+        final long startedAt = System.nanoTime();
+        final long sentBefore = getClientSentCount();
+        final long bytesBefore = getClientByteCount();
+
+        if (session.equals("cold-start")) {
+            if (isClientMode) {
+                runClientColdStart();
+            } else {
+                runColdStart();
+            }
+        } else if (session.equals("deep-scroll")) {
+            final int pageCount = EsploraStandinServer.getInt(options, "pages", 100);
+
+            if (isClientMode) {
+                runClientDeepScroll(pageCount);
+            } else {
+                runDeepScroll(pageCount);
+            }
+        } else if (session.equals("search-storm")) {
+            final int searchCount = EsploraStandinServer.getInt(options, "searches", 200);
+
+            if (isClientMode) {
+                runClientSearchStorm(searchCount);
+            } else {
+                runSearchStorm(searchCount);
+            }
+        } else {
+            throw new IllegalArgumentException("unknown session " + session);
+        }
+
+        report.durationNanos = System.nanoTime() - startedAt;
+
+        if (isClientMode) {
+            report.setTransfer(
+                    getClientSentCount() - sentBefore,
+                    getClientByteCount() - bytesBefore
+            );
+        }
+
+        return report;
+    }
+
+    /**
+     * Requests the newest page, then the detail and the next pages, then backfills.
+     *
+     * @throws Exception The newest page could not be requested.
+     */
+    private void runColdStart() throws Exception {
+        final String page = request("blocks");
+        final int tipHeight = parseTipHeight(page);
+
+        final ArrayList<String> urls = new ArrayList<>();
+        urls.add("block/" + parseFirstHash(page));
+        urls.add("blocks/" + (tipHeight - PAGE_SIZE));
+        urls.add("blocks/" + (tipHeight - 2 * PAGE_SIZE));
+        requestAll(urls);
+
+        urls.clear();
+        for (int i = 3; i < 3 + BACKFILL_PAGES; i++) {
+            urls.add("blocks/" + (tipHeight - i * PAGE_SIZE));
+        }
+        requestAll(urls);
+    }
+
+    /**
+     * Requests pages one after another.
+     *
+     * @param pageCount Amount of pages after the newest page.
+     * @throws Exception The newest page could not be requested.
+     */
+    private void runDeepScroll(final int pageCount) throws Exception {
+        int height = parseTipHeight(request("blocks"));
+
+        for (int i = 0; i < pageCount && height >= PAGE_SIZE; i++) {
+            height -= PAGE_SIZE;
+            request("blocks/" + height);
+        }
+    }
+
+    /**
+     * Resolves random heights to their hashes and requests the blocks.
+     *
+     * @param searchCount Amount of searched heights.
+     * @throws Exception The newest page could not be requested.
+     */
+    private void runSearchStorm(final int searchCount) throws Exception {
+        final int tipHeight = parseTipHeight(request("blocks"));
+        final Random random = new Random(searchCount);
+        final ArrayList<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < searchCount; i++) {
+            final int height = random.nextInt(tipHeight + 1);
+
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    final String hash = request("block-height/" + height);
+                    if (hash != null) {
+                        request("block/" + hash.trim());
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        await(futures);
+    }
+
+    /**
+     * Calls the client like the block list at its start: the newest page, then the detail of
+     * the newest block and the next pages, then the backfill of the block hash index.
+     *
+     * @throws Exception The newest page could not be requested.
+     */
+    private void runClientColdStart() throws Exception {
+        final EsploraBlockPage page = await(
+                track(EsploraClient.fetchBlockPage(null, EsploraRequestPriority.VISIBLE))
+        );
+        if (page == null || page.getBlocks().isEmpty()) {
+            throw new IOException("unable to request the newest blocks");
+        }
+
+        final int tipHeight = page.getBlocks().get(0).getHeight();
+
+        final List<EsploraFuture<?>> futures = Arrays.<EsploraFuture<?>>asList(
+                track(EsploraClient.fetchBlock(
+                        page.getBlocks().get(0).getHash(),
+                        EsploraRequestPriority.VISIBLE
+                )),
+                track(EsploraClient.fetchBlockPage(
+                        tipHeight - PAGE_SIZE,
+                        EsploraRequestPriority.VISIBLE
+                )),
+                track(EsploraClient.fetchBlockPage(
+                        tipHeight - 2 * PAGE_SIZE,
+                        EsploraRequestPriority.VISIBLE
+                ))
+        );
+
+        for (final EsploraFuture<?> future : futures) {
+            await(future);
+        }
+
+        await(track(EsploraClient.backfillBlockHashIndex(BACKFILL_PAGES)));
+    }
+
+    /**
+     * Calls the client for pages one after another, like endless scrolling.
+     *
+     * @param pageCount Amount of pages after the newest page.
+     * @throws Exception The newest page could not be requested.
+     */
+    private void runClientDeepScroll(final int pageCount) throws Exception {
+        final EsploraBlockPage page = await(
+                track(EsploraClient.fetchBlockPage(null, EsploraRequestPriority.VISIBLE))
+        );
+        if (page == null || page.getBlocks().isEmpty()) {
+            throw new IOException("unable to request the newest blocks");
+        }
+
+        int height = page.getBlocks().get(0).getHeight();
+
+        for (int i = 0; i < pageCount && height >= PAGE_SIZE; i++) {
+            height -= PAGE_SIZE;
+            await(track(EsploraClient.fetchBlockPage(height, EsploraRequestPriority.VISIBLE)));
+        }
+    }
+
+    /**
+     * Calls the client for blocks at random heights, with at most as many searches in flight
+     * as the concurrency.
+     *
+     * @param searchCount Amount of searched heights.
+     * @throws Exception The newest page could not be requested.
+     */
+    private void runClientSearchStorm(final int searchCount) throws Exception {
+        final EsploraBlockPage page = await(
+                track(EsploraClient.fetchBlockPage(null, EsploraRequestPriority.VISIBLE))
+        );
+        if (page == null || page.getBlocks().isEmpty()) {
+            throw new IOException("unable to request the newest blocks");
+        }
+
+        final int tipHeight = page.getBlocks().get(0).getHeight();
+        final Random random = new Random(searchCount);
+        final Semaphore searches = new Semaphore(concurrency);
+
+        for (int i = 0; i < searchCount; i++) {
+            searches.acquire();
+
+            track(EsploraClient.fetchBlock(
+                    random.nextInt(tipHeight + 1),
+                    EsploraRequestPriority.SEARCH
+            )).addListener(new EsploraFuture.Listener<Object>() {
+                @Override
+                public void onSuccess(final Object value) {
+                    searches.release();
+                }
+
+                @Override
+                public void onError(final Throwable error) {
+                    searches.release();
+                }
+            }, EsploraExecutors.direct());
+        }
+
+        if (!searches.tryAcquire(concurrency, CLIENT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IOException("the searches did not finish in time");
+        }
+    }
+
+    /**
+     * Records the latency and the outcome of a client call in the report.
+     *
+     * @param future The future of the call, just made.
+     * @param <T>    Type of the result.
+     * @return The given future.
+     */
+    private <T> EsploraFuture<T> track(final EsploraFuture<T> future) {
+        final long startedAt = System.nanoTime();
+        final Report sessionReport = report;
+
+        future.addListener(new EsploraFuture.Listener<T>() {
+            @Override
+            public void onSuccess(final T value) {
+                sessionReport.add(System.nanoTime() - startedAt, 0, true);
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                sessionReport.add(System.nanoTime() - startedAt, 0, false);
+            }
+        }, EsploraExecutors.direct());
+
+        return future;
+    }
+
+    /**
+     * @param future The future of a client call.
+     * @param <T>    Type of the result.
+     * @return The result or null if the call failed.
+     * @throws Exception Waiting was interrupted or the call did not finish in time.
+     */
+    private static <T> T await(final EsploraFuture<T> future) throws Exception {
+        final CountDownLatch isDone = new CountDownLatch(1);
+        final AtomicReference<T> result = new AtomicReference<>();
+
+        future.addListener(new EsploraFuture.Listener<T>() {
+            @Override
+            public void onSuccess(final T value) {
+                result.set(value);
+                isDone.countDown();
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                isDone.countDown();
+            }
+        }, EsploraExecutors.direct());
+
+        if (!isDone.await(CLIENT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IOException("a client call did not finish in time");
+        }
+
+        return result.get();
+    }
+
+    /**
+     * @return Amount of requests the scheduler of the client sent so far.
+     */
+    private static long getClientSentCount() {
+        long count = 0;
+
+        for (final EsploraRequestPriority priority : EsploraRequestPriority.values()) {
+            count += EsploraClient.getScheduler().getDispatchedCount(priority);
+        }
+
+        return count;
+    }
+
+    /**
+     * @return Amount of response bytes the client received so far.
+     */
+    private static long getClientByteCount() {
+        long count = 0;
+
+        for (final String endpoint : CLIENT_ENDPOINTS) {
+            count += EsploraMetrics.get()
+                    .counter("http." + endpoint + ".bytes_received")
+                    .getValue();
+        }
+
+        return count;
+    }
+
+    /**
+     * Requests URLs concurrently and waits for all of them.
+     *
+     * @param relativeUrls Relative URLs to be requested.
+     * @throws Exception Waiting was interrupted.
+     */
+    private void requestAll(final List<String> relativeUrls) throws Exception {
+        final ArrayList<Future<?>> futures = new ArrayList<>();
+
+        for (final String relativeUrl : relativeUrls) {
+            futures.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return request(relativeUrl);
+                }
+            }));
+        }
+
+        await(futures);
+    }
+
+    /**
+     * @param futures Futures to wait for.
+     * @throws Exception Waiting was interrupted or a task failed unexpectedly.
+     */
+    private static void await(final List<Future<?>> futures) throws Exception {
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Sends a request and records it in the report.
+     *
+     * @param relativeUrl The relative URL.
+     * @return The body of the response or null if the request failed.
+     */
+    private String request(final String relativeUrl) {
+        final long startedAt = System.nanoTime();
+        String body = null;
+        long byteCount = 0;
+
+        try {
+            final HttpURLConnection connection =
+                    (HttpURLConnection) new URL(baseUrl + relativeUrl).openConnection();
+
+            try {
+                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                    final byte[] bytes = read(connection.getInputStream());
+                    byteCount = bytes.length;
+                    body = new String(bytes, "UTF-8");
+                } else {
+                    final InputStream errorStream = connection.getErrorStream();
+                    if (errorStream != null) {
+                        byteCount = read(errorStream).length;
+                    }
+                }
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            body = null;
+        }
+
+        report.add(System.nanoTime() - startedAt, byteCount, body != null);
+
+        return body;
+    }
+
+    /**
+     * @param page A page of the blocks endpoint.
+     * @return Height of the first block of the page.
+     * @throws IOException The page could not be requested or parsed.
+     */
+    private static int parseTipHeight(final String page) throws IOException {
+        final Matcher matcher = HEIGHT_PATTERN.matcher(page != null ? page : "");
+        if (!matcher.find()) {
+            throw new IOException("unable to request the newest blocks");
+        }
+
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    /**
+     * @param page A page of the blocks endpoint.
+     * @return Hash of the first block of the page.
+     * @throws IOException The page could not be parsed.
+     */
+    private static String parseFirstHash(final String page) throws IOException {
+        final Matcher matcher = ID_PATTERN.matcher(page);
+        if (!matcher.find()) {
+            throw new IOException("unable to parse the newest blocks");
+        }
+
+        return matcher.group(1);
+    }
+
+    /**
+     * @param input Stream to be read completely, closed afterwards.
+     * @return The read bytes.
+     * @throws IOException Reading failed.
+     */
+    private static byte[] read(final InputStream input) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+
+        try {
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                bytes.write(buffer, 0, length);
+            }
+        } finally {
+            input.close();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Runs the sessions given in the options and prints their reports.
+     *
+     * @param args Options, see the class documentation.
+     * @throws Exception A session failed.
+     */
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = EsploraStandinServer.parseOptions(args);
+
+        // run against an in-process stand-in on a free port unless a URL is given
+        EsploraStandinServer server = null;
+        String baseUrl = options.get("url");
+
+        if (baseUrl == null) {
+            if (!options.containsKey("port")) {
+                options.put("port", "0");
+            }
+
+            server = EsploraStandinServer.create(options);
+            server.start();
+            baseUrl = server.getBaseUrl();
+        }
+
+        final String session = options.containsKey("session") ? options.get("session") : "all";
+        final List<String> sessions = session.equals("all")
+                ? Arrays.asList(SESSIONS)
+                : Arrays.asList(session);
+
+        final String mode = options.containsKey("mode") ? options.get("mode") : "raw";
+        if (!mode.equals("raw") && !mode.equals("client")) {
+            throw new IllegalArgumentException("unknown mode " + mode);
+        }
+
+        final EsploraLoadHarness harness = new EsploraLoadHarness(
+                baseUrl,
+                EsploraStandinServer.getInt(options, "concurrency", 5),
+                mode.equals("client")
+        );
+        final ArrayList<Report> reports = new ArrayList<>();
+
+        try {
+            System.out.println(Report.HEADER);
+
+            for (final String name : sessions) {
+                final Report report = harness.run(name, options);
+                reports.add(report);
+                System.out.println(report);
+            }
+        } finally {
+            harness.executor.shutdownNow();
+
+            if (server != null) {
+                server.stop();
+            }
+        }
+
+        if (options.containsKey("json")) {
+            final StringBuilder json = new StringBuilder("[");
+
+            for (int i = 0; i < reports.size(); i++) {
+                json.append(i > 0 ? ",\n" : "\n").append(reports.get(i).toJson());
+            }
+
+            final OutputStream output = new FileOutputStream(options.get("json"));
+            try {
+                output.write(json.append("\n]\n").toString().getBytes("UTF-8"));
+            } finally {
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * Requests, errors, bytes and latencies of a session. Thread safe.
+     */
+    private static class Report {
+        static final String HEADER = String.format(
+                Locale.US,
+                "%-13s %8s %6s %6s %10s %9s %8s %8s %8s %8s",
+                "session", "requests", "errors", "sent", "bytes", "req/s",
+                "p50 ms", "p90 ms", "p99 ms", "max ms"
+        );
+
+        final String session;
+        long durationNanos;
+
+        private final ArrayList<Long> latencies = new ArrayList<>();
+        private long errorCount = 0;
+        private long byteCount = 0;
+
+        // requests sent, -1 while every recorded request was sent
+        private long sentCount = -1;
+
+        /**
+         * @param session Name of the session.
+         */
+        Report(final String session) {
+            this.session = session;
+        }
+
+        /**
+         * @param latencyNanos Duration of a request.
+         * @param bytes        Amount of received body bytes.
+         * @param isSuccessful False if the request failed.
+         */
+        synchronized void add(
+                final long latencyNanos,
+                final long bytes,
+                final boolean isSuccessful
+        ) {
+            latencies.add(latencyNanos);
+            byteCount += bytes;
+
+            if (!isSuccessful) {
+                errorCount++;
+            }
+        }
+
+        /**
+         * Sets the requests actually sent and the bytes received, which differ from the
+         * recorded calls when they are made through the client.
+         *
+         * @param sent  Amount of sent requests.
+         * @param bytes Amount of received body bytes.
+         */
+        synchronized void setTransfer(final long sent, final long bytes) {
+            sentCount = sent;
+            byteCount = bytes;
+        }
+
+        /**
+         * @return Amount of sent requests.
+         */
+        synchronized long getSentCount() {
+            return sentCount >= 0 ? sentCount : latencies.size();
+        }
+
+        /**
+         * @param quantile A quantile between 0 and 1.
+         * @return The latency at the quantile in milliseconds.
+         */
+        synchronized double getLatencyMillis(final double quantile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+
+            final Long[] sorted = latencies.toArray(new Long[0]);
+            Arrays.sort(sorted);
+
+            final int index = (int) Math.ceil(quantile * sorted.length) - 1;
+
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+
+        /**
+         * @return Requests per second over the whole session.
+         */
+        synchronized double getThroughput() {
+            return durationNanos > 0 ? latencies.size() * 1e9 / durationNanos : 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format(
+                    Locale.US,
+                    "%-13s %8d %6d %6d %10d %9.1f %8.1f %8.1f %8.1f %8.1f",
+                    session, latencies.size(), errorCount, getSentCount(), byteCount,
+                    getThroughput(),
+                    getLatencyMillis(0.5), getLatencyMillis(0.9), getLatencyMillis(0.99),
+                    getLatencyMillis(1)
+            );
+        }
+
+        /**
+         * @return The report as JSON object.
+         */
+        synchronized String toJson() {
+            return String.format(
+                    Locale.US,
+                    "{\"session\":\"%s\",\"requests\":%d,\"errors\":%d,\"sent\":%d,"
+                            + "\"bytes\":%d,\"duration_ms\":%.1f,"
+                            + "\"throughput_per_second\":%.2f,"
+                            + "\"latency_ms\":{\"p50\":%.2f,\"p90\":%.2f,\"p99\":%.2f,"
+                            + "\"max\":%.2f}}",
+                    session, latencies.size(), errorCount, getSentCount(), byteCount,
+                    durationNanos / 1e6,
+                    getThroughput(), getLatencyMillis(0.5), getLatencyMillis(0.9),
+                    getLatencyMillis(0.99), getLatencyMillis(1)
+            );
+        }
+    }
+}
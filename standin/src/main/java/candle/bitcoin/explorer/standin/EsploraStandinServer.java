@@ -0,0 +1,304 @@
+package candle.bitcoin.explorer.standin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for the Esplora HTTP API serving the endpoints the EsploraClient requests,
+ * either from a {@link SyntheticChainSource} or from recorded fixtures (see
+ * {@link FixtureSource}), under simulated {@link NetworkConditions}. Responses carry an ETag
+ * and conditional requests are answered with 304, like the real API does.
+ * <p>
+ * Options, all optional:
+ * <pre>
+ * --port 3000            port to listen on, 0 for any free port
+ * --tip 650000           tip height of the synthetic chain
+ * --fixtures DIR         serve recorded responses from DIR instead of the synthetic chain
+ * --record URL           record missing fixtures from the API at URL, e.g. blockstream.info
+ * --latency 0            delay of every response in milliseconds
+ * --jitter 0             maximum random deviation of the delay in milliseconds
+ * --error-rate 0         fraction of requests answered with 503
+ * --bandwidth 0          bandwidth of response bodies in bytes per second, 0 for unlimited
+ * </pre>
+ * The app requests the stand-in when built with -PesploraBaseUrl=http://10.0.2.2:3000/ (the
+ * host as seen from the emulator). Tests start it in-process on a free port and read the
+ * amount of requests and body bytes it served.
+ */
+public class EsploraStandinServer {
+    private static final int DEFAULT_PORT = 3000;
+    private static final int DEFAULT_TIP_HEIGHT = 650000;
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_BAD_METHOD = 405;
+    private static final int HTTP_UNAVAILABLE = 503;
+
+    static {
+        // without TCP_NODELAY small responses are delayed by about 40 ms (Nagle's algorithm
+        // meeting delayed acknowledgements), which would dwarf the simulated latency
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ResponseSource source;
+    private final NetworkConditions conditions;
+
+    // served requests, answered with 304 or not, and body bytes written to the clients
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    /**
+     * @param port       Port to listen on, 0 for any free port.
+     * @param source     Source of the served responses.
+     * @param conditions Simulated network conditions.
+     * @throws IOException The port could not be bound.
+     */
+    public EsploraStandinServer(
+            final int port,
+            final ResponseSource source,
+            final NetworkConditions conditions
+    ) throws IOException {
+        this.source = source;
+        this.conditions = conditions;
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+
+        // requests are delayed by sleeping, every request gets its own thread
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Creates a server from command line options, see the class documentation.
+     *
+     * @param options The parsed options, see {@link #parseOptions(String[])}.
+     * @return The server, not started yet.
+     * @throws IOException The port could not be bound.
+     */
+    public static EsploraStandinServer create(final Map<String, String> options)
+            throws IOException {
+        final ResponseSource source;
+
+        if (options.containsKey("fixtures")) {
+            source = new FixtureSource(new File(options.get("fixtures")), options.get("record"));
+        } else {
+            source = new SyntheticChainSource(getInt(options, "tip", DEFAULT_TIP_HEIGHT));
+        }
+
+        final NetworkConditions conditions = new NetworkConditions(
+                getInt(options, "latency", 0),
+                getInt(options, "jitter", 0),
+                options.containsKey("error-rate")
+                        ? Double.parseDouble(options.get("error-rate"))
+                        : 0,
+                getInt(options, "bandwidth", 0)
+        );
+
+        return new EsploraStandinServer(getInt(options, "port", DEFAULT_PORT), source, conditions);
+    }
+
+    /**
+     * Parses "--name value" pairs.
+     *
+     * @param args Command line arguments.
+     * @return The values by option name without the leading dashes.
+     */
+    static Map<String, String> parseOptions(final String[] args) {
+        final HashMap<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("expected --name value, got " + args[i]);
+            }
+
+            options.put(args[i].substring(2), args[++i]);
+        }
+
+        return options;
+    }
+
+    /**
+     * @param options      The parsed options.
+     * @param name         Name of an integer option.
+     * @param defaultValue Value used when the option is not given.
+     * @return The value of the option.
+     */
+    static int getInt(final Map<String, String> options, final String name, final int defaultValue) {
+        final String value = options.get(name);
+
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    /**
+     * Starts serving requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops serving requests and releases the port.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return URL of the served API ending with a slash.
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @return Amount of requests received so far.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return Amount of conditional requests answered with 304 (not modified) so far.
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    /**
+     * @return Amount of response body bytes written so far. Bodies of responses the client
+     * aborted are counted up to the point the connection was closed.
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Answers a request under the simulated network conditions.
+     *
+     * @param exchange The request and its response.
+     * @throws IOException          The response could not be written.
+     * @throws InterruptedException The thread was interrupted while delaying the response.
+     */
+    private void serve(final HttpExchange exchange) throws IOException, InterruptedException {
+        requestCount.incrementAndGet();
+
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, HTTP_BAD_METHOD, "method not allowed");
+            return;
+        }
+
+        conditions.delay();
+
+        if (conditions.isError()) {
+            respond(exchange, HTTP_UNAVAILABLE, "simulated error");
+            return;
+        }
+
+        final String relativeUrl = exchange.getRequestURI().getRawPath().substring(1);
+        final String body = source.get(relativeUrl);
+
+        if (body == null) {
+            respond(exchange, HTTP_NOT_FOUND, "not found");
+            return;
+        }
+
+        final String eTag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        exchange.getResponseHeaders().set("ETag", eTag);
+
+        if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModifiedCount.incrementAndGet();
+            exchange.sendResponseHeaders(HTTP_NOT_MODIFIED, -1);
+            return;
+        }
+
+        respond(exchange, HTTP_OK, body);
+    }
+
+    /**
+     * Sends a response, limited to the simulated bandwidth.
+     *
+     * @param exchange   The request and its response.
+     * @param statusCode HTTP status code of the response.
+     * @param body       Body of the response.
+     * @throws IOException          The response could not be written.
+     * @throws InterruptedException The thread was interrupted while throttled.
+     */
+    private void respond(final HttpExchange exchange, final int statusCode, final String body)
+            throws IOException, InterruptedException {
+        final byte[] bytes = body.getBytes("UTF-8");
+        final boolean isJson = body.startsWith("{") || body.startsWith("[");
+
+        exchange.getResponseHeaders().set(
+                "Content-Type",
+                isJson ? "application/json" : "text/plain"
+        );
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+
+        // bytes count as sent once they were flushed to the connection
+        final OutputStream output = new FilterOutputStream(exchange.getResponseBody()) {
+            private long pendingBytes = 0;
+
+            @Override
+            public void write(final byte[] buffer, final int offset, final int length)
+                    throws IOException {
+                out.write(buffer, offset, length);
+                pendingBytes += length;
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+                bytesSent.addAndGet(pendingBytes);
+                pendingBytes = 0;
+            }
+        };
+
+        conditions.write(output, bytes);
+        output.close();
+    }
+
+    /**
+     * Starts a stand-in server until the process is terminated.
+     *
+     * @param args Options, see the class documentation.
+     * @throws IOException The port could not be bound.
+     */
+    public static void main(final String[] args) throws IOException {
+        final Map<String, String> options = parseOptions(args);
+        final EsploraStandinServer server = create(options);
+
+        server.start();
+
+        System.out.println("serving " + (options.containsKey("fixtures")
+                ? "fixtures of " + options.get("fixtures")
+                : "a synthetic chain") + " at " + server.getBaseUrl());
+        System.out.println(server.conditions);
+    }
+}
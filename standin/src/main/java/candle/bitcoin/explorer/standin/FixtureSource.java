@@ -0,0 +1,142 @@
+package candle.bitcoin.explorer.standin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Serves recorded responses from a fixture directory. The response of a relative URL is stored
+ * in the file at the same relative path, e.g. "blocks/600000" in "fixtures/blocks/600000".
+ * As "block/:hash" and "block/:hash/header" would need a file and a directory of the same
+ * name, every response is stored in a file named "body" inside the directory of its path.
+ * <p>
+ * When an upstream Esplora HTTP API is given, missing responses are requested from it and
+ * recorded, so a session against the real API can be replayed later without network access.
+ */
+class FixtureSource implements ResponseSource {
+    private static final String BODY_FILE = "body";
+
+    private final File directory;
+    private final String upstreamUrl;
+
+    /**
+     * @param directory   Directory of the fixtures.
+     * @param upstreamUrl URL of the API missing responses are recorded from, ending with a
+     *                    slash, or null to replay only.
+     */
+    FixtureSource(final File directory, final String upstreamUrl) {
+        this.directory = directory;
+        this.upstreamUrl = upstreamUrl;
+    }
+
+    @Override
+    public String get(final String relativeUrl) throws IOException {
+        // reject paths escaping the fixture directory
+        if (relativeUrl.contains("..")) {
+            return null;
+        }
+
+        final File file = new File(new File(directory, relativeUrl), BODY_FILE);
+
+        if (file.isFile()) {
+            return new String(read(new FileInputStream(file)), "UTF-8");
+        }
+
+        if (upstreamUrl == null) {
+            return null;
+        }
+
+        final String body = request(relativeUrl);
+        if (body == null) {
+            return null;
+        }
+
+        record(file, body);
+
+        return body;
+    }
+
+    /**
+     * Requests a response from the upstream API.
+     *
+     * @param relativeUrl The relative Esplora HTTP API URL.
+     * @return The body of the response or null if the resource does not exist.
+     * @throws IOException The request failed.
+     */
+    private String request(final String relativeUrl) throws IOException {
+        final HttpURLConnection connection =
+                (HttpURLConnection) new URL(upstreamUrl + relativeUrl).openConnection();
+
+        try {
+            final int statusCode = connection.getResponseCode();
+
+            if (statusCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+
+            if (statusCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("upstream responded with status " + statusCode);
+            }
+
+            return new String(read(connection.getInputStream()), "UTF-8");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Stores a response, written to a temporary file first so a replay never reads a partial
+     * recording.
+     *
+     * @param file File of the response.
+     * @param body Body of the response.
+     * @throws IOException The file could not be written.
+     */
+    private static synchronized void record(final File file, final String body)
+            throws IOException {
+        final File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("unable to create " + parent);
+        }
+
+        final File temporaryFile = new File(parent, BODY_FILE + ".tmp");
+        final OutputStream output = new FileOutputStream(temporaryFile);
+
+        try {
+            output.write(body.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            throw new IOException("unable to rename " + temporaryFile);
+        }
+    }
+
+    /**
+     * @param input Stream to be read completely, closed afterwards.
+     * @return The read bytes.
+     * @throws IOException Reading failed.
+     */
+    private static byte[] read(final InputStream input) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+
+        try {
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                bytes.write(buffer, 0, length);
+            }
+        } finally {
+            input.close();
+        }
+
+        return bytes.toByteArray();
+    }
+}
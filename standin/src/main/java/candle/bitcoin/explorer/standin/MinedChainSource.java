@@ -0,0 +1,273 @@
+package candle.bitcoin.explorer.standin;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Serves a small chain of mined blocks, whose hashes are the double SHA-256 of their headers
+ * like on the real chain, so clients verifying headers against hashes accept them. Blocks are
+ * mined to a hash starting with "00", which takes a few hundred hashes per block, so the chain
+ * is meant for some thousand blocks, not for the height of the real chain.
+ * <p>
+ * Unlike the {@link SyntheticChainSource} the chain can grow and reorg while it is served:
+ * {@link #reorg(int)} replaces the blocks from a height on by a competing branch. The endpoints
+ * listing and resolving blocks are served, like by the synthetic chain, and the raw headers of
+ * the blocks.
+ */
+public class MinedChainSource implements ResponseSource {
+    // amount of blocks of a page of the blocks endpoint
+    private static final int PAGE_SIZE = 10;
+
+    // timestamp of the genesis block
+    private static final long GENESIS_TIMESTAMP = 1231006505L;
+
+    private static final int VERSION = 0x20000000;
+    private static final int BITS = 0x1d00ffff;
+
+    private static final int HEADER_SIZE = 80;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // hashes, JSON objects and raw header hex of the blocks of the current chain, by height
+    private final ArrayList<String> hashes = new ArrayList<>();
+    private final ArrayList<String> blocks = new ArrayList<>();
+    private final ArrayList<String> headers = new ArrayList<>();
+
+    // heights of the blocks of the current chain, by hash
+    private final HashMap<String, Integer> heights = new HashMap<>();
+
+    // incremented by every reorg, changes the merkle roots of the blocks mined afterwards
+    private int branch = 0;
+
+    /**
+     * @param tipHeight Height of the newest block of the chain.
+     */
+    public MinedChainSource(final int tipHeight) {
+        extend(tipHeight + 1);
+    }
+
+    /**
+     * @return Height of the newest block of the chain.
+     */
+    public synchronized int getTipHeight() {
+        return hashes.size() - 1;
+    }
+
+    /**
+     * @param height A block height.
+     * @return The hash of the block of the current chain at the given height.
+     */
+    public synchronized String getHash(final int height) {
+        return hashes.get(height);
+    }
+
+    /**
+     * Mines blocks on top of the tip.
+     *
+     * @param count Amount of blocks to mine.
+     */
+    public synchronized void extend(final int count) {
+        for (int i = 0; i < count; i++) {
+            mine(hashes.size());
+        }
+    }
+
+    /**
+     * Replaces the blocks from the given height to the tip by blocks of a competing branch,
+     * keeping the tip height.
+     *
+     * @param forkHeight Height of the first replaced block.
+     */
+    public synchronized void reorg(final int forkHeight) {
+        final int tipHeight = getTipHeight();
+
+        for (int height = tipHeight; height >= forkHeight; height--) {
+            heights.remove(hashes.remove(height));
+            blocks.remove(height);
+            headers.remove(height);
+        }
+
+        branch++;
+        extend(tipHeight - forkHeight + 1);
+    }
+
+    @Override
+    public synchronized String get(final String relativeUrl) {
+        final String[] segments = relativeUrl.split("/");
+        final int tipHeight = getTipHeight();
+
+        try {
+            if (relativeUrl.equals("blocks")) {
+                return page(tipHeight);
+            }
+
+            if (relativeUrl.equals("blocks/tip/height")) {
+                return Integer.toString(tipHeight);
+            }
+
+            if (relativeUrl.equals("blocks/tip/hash")) {
+                return hashes.get(tipHeight);
+            }
+
+            if (segments.length == 2 && segments[0].equals("blocks")) {
+                return page(Math.min(Integer.parseInt(segments[1]), tipHeight));
+            }
+
+            if (segments.length == 2 && segments[0].equals("block-height")) {
+                final int height = Integer.parseInt(segments[1]);
+
+                return height >= 0 && height <= tipHeight ? hashes.get(height) : null;
+            }
+
+            if (segments.length == 2 && segments[0].equals("block")) {
+                final Integer height = heights.get(segments[1]);
+
+                return height != null ? blocks.get(height) : null;
+            }
+
+            if (segments.length == 3 && segments[0].equals("block")
+                    && segments[2].equals("header")) {
+                final Integer height = heights.get(segments[1]);
+
+                return height != null ? headers.get(height) : null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param startHeight Height of the newest block of the page.
+     * @return A JSON array of the block at the given height and up to 9 blocks before it.
+     */
+    private String page(final int startHeight) {
+        final StringBuilder json = new StringBuilder("[");
+
+        for (int height = startHeight; height > startHeight - PAGE_SIZE && height >= 0; height--) {
+            if (height != startHeight) {
+                json.append(',');
+            }
+
+            json.append(blocks.get(height));
+        }
+
+        return json.append(']').toString();
+    }
+
+    /**
+     * Mines the block at the given height on top of the tip.
+     *
+     * @param height Height of the block, one above the tip.
+     */
+    private void mine(final int height) {
+        final String previousHash = height > 0 ? hashes.get(height - 1) : null;
+        final String seed = "merkle" + branch + "/" + height;
+        final String merkleRoot = toHex(sha256(seed.getBytes(StandardCharsets.UTF_8)));
+        final long timestamp = GENESIS_TIMESTAMP + height * 600L;
+
+        // header fields as serialized on the wire, hashes in internal byte order
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(VERSION);
+        header.put(previousHash != null ? reverse(fromHex(previousHash)) : new byte[32]);
+        header.put(reverse(fromHex(merkleRoot)));
+        header.putInt((int) timestamp);
+        header.putInt(BITS);
+
+        int nonce = 0;
+        byte[] hash;
+
+        // the displayed hash is reversed, so its leading byte is the last one of the digest
+        do {
+            header.putInt(76, nonce++);
+            hash = sha256(sha256(header.array()));
+        } while (hash[31] != 0);
+
+        final String blockHash = toHex(reverse(hash));
+
+        final StringBuilder json = new StringBuilder(512);
+        json.append("{\"id\":\"").append(blockHash).append('"');
+        json.append(",\"height\":").append(height);
+        json.append(",\"version\":").append(VERSION);
+        json.append(",\"timestamp\":").append(timestamp);
+        json.append(",\"tx_count\":").append(1 + height % 3000);
+        json.append(",\"size\":").append(200000 + height % 1000);
+        json.append(",\"weight\":").append(800000 + height % 3000);
+        json.append(",\"merkle_root\":\"").append(merkleRoot).append('"');
+
+        if (previousHash != null) {
+            json.append(",\"previousblockhash\":\"").append(previousHash).append('"');
+        }
+
+        json.append(",\"mediantime\":").append(timestamp - 3600);
+        json.append(",\"nonce\":").append((nonce - 1) & 0xffffffffL);
+        json.append(",\"bits\":").append(BITS);
+        json.append(",\"difficulty\":1}");
+
+        hashes.add(blockHash);
+        blocks.add(json.toString());
+        headers.add(toHex(header.array()));
+        heights.put(blockHash, height);
+    }
+
+    /**
+     * @param data Data to be hashed.
+     * @return SHA-256 of the data.
+     */
+    private static byte[] sha256(final byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param bytes Bytes to be reversed.
+     * @return A reversed copy of the bytes.
+     */
+    private static byte[] reverse(final byte[] bytes) {
+        final byte[] reversed = new byte[bytes.length];
+
+        for (int i = 0; i < bytes.length; i++) {
+            reversed[i] = bytes[bytes.length - 1 - i];
+        }
+
+        return reversed;
+    }
+
+    /**
+     * @param bytes Bytes to be encoded.
+     * @return The bytes as lowercase hex.
+     */
+    private static String toHex(final byte[] bytes) {
+        final char[] hex = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+
+        return new String(hex);
+    }
+
+    /**
+     * @param hex Lowercase hex.
+     * @return The decoded bytes.
+     */
+    private static byte[] fromHex(final String hex) {
+        final byte[] bytes = new byte[hex.length() / 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,113 @@
+package candle.bitcoin.explorer.standin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Simulated network conditions of the {@link EsploraStandinServer}: a latency with uniform
+ * jitter before the response starts, a rate of failing requests and a bandwidth limit while
+ * the body is written. Thread safe.
+ */
+public class NetworkConditions {
+    // size of the chunks written when the bandwidth is limited
+    private static final int CHUNK_SIZE = 1024;
+
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final long bytesPerSecond;
+
+    private final Random random = new Random();
+
+    /**
+     * @param latencyMillis  Delay before every response in milliseconds.
+     * @param jitterMillis   Maximum random deviation of the delay in milliseconds.
+     * @param errorRate      Fraction of requests answered with an error, between 0 and 1.
+     * @param bytesPerSecond Bandwidth of response bodies, 0 for unlimited.
+     */
+    public NetworkConditions(
+            final long latencyMillis,
+            final long jitterMillis,
+            final double errorRate,
+            final long bytesPerSecond
+    ) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Blocks for the latency of a response, including jitter.
+     *
+     * @throws InterruptedException The thread was interrupted while waiting.
+     */
+    void delay() throws InterruptedException {
+        final long jitter;
+
+        synchronized (random) {
+            jitter = jitterMillis > 0
+                    ? (long) ((random.nextDouble() * 2 - 1) * jitterMillis)
+                    : 0;
+        }
+
+        final long delay = latencyMillis + jitter;
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * @return True if the current request should fail.
+     */
+    boolean isError() {
+        if (errorRate <= 0) {
+            return false;
+        }
+
+        synchronized (random) {
+            return random.nextDouble() < errorRate;
+        }
+    }
+
+    /**
+     * Writes a response body, limited to the bandwidth.
+     *
+     * @param output Stream of the response body.
+     * @param body   The body.
+     * @throws IOException          Writing failed.
+     * @throws InterruptedException The thread was interrupted while throttled.
+     */
+    void write(final OutputStream output, final byte[] body)
+            throws IOException, InterruptedException {
+        if (bytesPerSecond <= 0) {
+            output.write(body);
+            return;
+        }
+
+        final long startedAt = System.nanoTime();
+
+        for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+            final int length = Math.min(CHUNK_SIZE, body.length - offset);
+            output.write(body, offset, length);
+            output.flush();
+
+            // sleep until the written bytes are due at the given bandwidth
+            final long dueMillis = (offset + length) * 1000L / bytesPerSecond;
+            final long elapsedMillis = (System.nanoTime() - startedAt) / 1000000;
+
+            if (dueMillis > elapsedMillis) {
+                Thread.sleep(dueMillis - elapsedMillis);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "latency " + latencyMillis + " ms"
+                + ", jitter " + jitterMillis + " ms"
+                + ", error rate " + errorRate
+                + ", bandwidth " + (bytesPerSecond > 0 ? bytesPerSecond + " B/s" : "unlimited");
+    }
+}
@@ -0,0 +1,15 @@
+package candle.bitcoin.explorer.standin;
+
+import java.io.IOException;
+
+/**
+ * Provides the bodies of the responses served by the {@link EsploraStandinServer}.
+ */
+public interface ResponseSource {
+    /**
+     * @param relativeUrl The requested relative Esplora HTTP API URL, e.g. "blocks/600000".
+     * @return The body of the response or null if the resource does not exist.
+     * @throws IOException The response could not be read or recorded.
+     */
+    String get(String relativeUrl) throws IOException;
+}
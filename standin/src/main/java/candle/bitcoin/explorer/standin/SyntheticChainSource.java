@@ -0,0 +1,175 @@
+package candle.bitcoin.explorer.standin;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Serves a deterministic synthetic chain up to a given tip height. Every block is derived from
+ * its height alone, so any height can be served without generating the chain before it. The
+ * last 8 hex digits of a hash are the height of the block, which makes hashes resolvable
+ * without an index. Hashes start with "00", as the EsploraBlock validation expects.
+ * <p>
+ * Only the endpoints listing and resolving blocks are served; there are no transactions and
+ * no raw headers, these requests are answered with 404 like unknown resources.
+ */
+public class SyntheticChainSource implements ResponseSource {
+    // amount of blocks of a page of the blocks endpoint
+    private static final int PAGE_SIZE = 10;
+
+    // timestamp of the genesis block
+    private static final long GENESIS_TIMESTAMP = 1231006505L;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final int tipHeight;
+
+    /**
+     * @param tipHeight Height of the newest block of the chain.
+     */
+    public SyntheticChainSource(final int tipHeight) {
+        this.tipHeight = tipHeight;
+    }
+
+    @Override
+    public String get(final String relativeUrl) {
+        final String[] segments = relativeUrl.split("/");
+
+        try {
+            if (relativeUrl.equals("blocks")) {
+                return page(tipHeight);
+            }
+
+            if (segments.length == 2 && segments[0].equals("blocks")) {
+                return page(Math.min(Integer.parseInt(segments[1]), tipHeight));
+            }
+
+            if (segments.length == 2 && segments[0].equals("block-height")) {
+                final int height = Integer.parseInt(segments[1]);
+
+                return height >= 0 && height <= tipHeight ? hash(height) : null;
+            }
+
+            if (segments.length == 2 && segments[0].equals("block")) {
+                final int height = height(segments[1]);
+
+                return height >= 0 ? block(height) : null;
+            }
+
+            if (relativeUrl.equals("blocks/tip/height")) {
+                return Integer.toString(tipHeight);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param height A block height.
+     * @return The hash of the block at the given height.
+     */
+    static String hash(final int height) {
+        return "00"
+                + sha256Hex("block" + height).substring(0, 54)
+                + String.format(Locale.US, "%08x", height);
+    }
+
+    /**
+     * @param hash A block hash.
+     * @return The height of the block with the given hash or -1 if it is not in the chain.
+     */
+    private int height(final String hash) {
+        if (hash.length() != 64) {
+            return -1;
+        }
+
+        final int height;
+
+        try {
+            height = (int) Long.parseLong(hash.substring(56), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        if (height < 0 || height > tipHeight || !hash(height).equals(hash)) {
+            return -1;
+        }
+
+        return height;
+    }
+
+    /**
+     * @param startHeight Height of the newest block of the page.
+     * @return A JSON array of the block at the given height and up to 9 blocks before it.
+     */
+    private String page(final int startHeight) {
+        final StringBuilder json = new StringBuilder("[");
+
+        for (int height = startHeight; height > startHeight - PAGE_SIZE && height >= 0; height--) {
+            if (height != startHeight) {
+                json.append(',');
+            }
+
+            json.append(block(height));
+        }
+
+        return json.append(']').toString();
+    }
+
+    /**
+     * @param height A block height.
+     * @return The block at the given height as JSON object like the Esplora API returns it.
+     */
+    static String block(final int height) {
+        final Random random = new Random(height);
+        final int size = 200000 + random.nextInt(1300000);
+        final long timestamp = GENESIS_TIMESTAMP + height * 600L + random.nextInt(1200) - 600;
+
+        final StringBuilder json = new StringBuilder(512);
+        json.append("{\"id\":\"").append(hash(height)).append('"');
+        json.append(",\"height\":").append(height);
+        json.append(",\"version\":").append(0x20000000 | random.nextInt(0x2000));
+        json.append(",\"timestamp\":").append(timestamp);
+        json.append(",\"tx_count\":").append(1 + random.nextInt(3500));
+        json.append(",\"size\":").append(size);
+        json.append(",\"weight\":").append(size * 3 + random.nextInt(size));
+        json.append(",\"merkle_root\":\"").append(sha256Hex("merkle" + height)).append('"');
+
+        if (height > 0) {
+            json.append(",\"previousblockhash\":\"").append(hash(height - 1)).append('"');
+        }
+
+        json.append(",\"mediantime\":").append(timestamp - 3600);
+        json.append(",\"nonce\":").append(random.nextInt() & 0xffffffffL);
+        json.append(",\"bits\":").append(0x17000000 | random.nextInt(0x1000000));
+        json.append(",\"difficulty\":15000000000000}");
+
+        return json.toString();
+    }
+
+    /**
+     * @param text Text to be hashed.
+     * @return SHA-256 of the text as lowercase hex.
+     */
+    private static String sha256Hex(final String text) {
+        final byte[] digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+
+        return new String(hex);
+    }
+}